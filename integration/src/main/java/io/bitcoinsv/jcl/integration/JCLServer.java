@@ -10,6 +10,7 @@ import io.bitcoinsv.jcl.net.protocol.events.data.RawTxMsgReceivedEvent;
 import io.bitcoinsv.jcl.net.protocol.events.data.RawTxsBatchMsgReceivedEvent;
 import io.bitcoinsv.jcl.net.protocol.handlers.block.BlockDownloaderHandler;
 import io.bitcoinsv.jcl.net.protocol.handlers.handshake.HandshakeHandlerConfig;
+import io.bitcoinsv.jcl.net.protocol.handlers.message.InventoryTrackerConfig;
 import io.bitcoinsv.jcl.net.protocol.handlers.message.MessageBatchConfig;
 import io.bitcoinsv.jcl.net.protocol.handlers.message.MessageHandlerConfig;
 import io.bitcoinsv.jcl.net.protocol.handlers.pingPong.PingPongHandler;
@@ -175,8 +176,10 @@ public class JCLServer {
 
         // We configure the Serialization:
         // - We enable RAW Txs
+        // - We enable the Inventory tracking, so the same Tx is not requested to several Peers at the same time
         MessageHandlerConfig messageConfig = protocolConfig.getMessageConfig().toBuilder()
                 .rawTxsEnabled(true) // IMPORTANT: It affects both Tx and Blocks
+                .inventoryTrackerConfig(InventoryTrackerConfig.builder().build())
                 .build();
         // - We enable (depending on parameters) the Batch of Txs...
         if (config.useTxsBatch) {
@@ -55,4 +55,59 @@ public interface NetworkConfig {
     /** An aproximation of the max size of a message that will be sent/receive by the Net */
     int getMaxMessageSizeAvgInBytes();
 
+    /**
+     * Only relevant for NIO-based implementations. Number of I/O Reactors used to read/write from/to the Sockets. Each
+     * Reactor runs its own Selector in its own Thread, and every new connection is assigned to the Reactor with the
+     * lowest load at that moment. Accepting/opening connections is always done by an additional Selector, so the
+     * total number of Selectors is this value + 1.
+     */
+    int getNioNumReactors();
+
+    /**
+     * Only relevant for NIO-based implementations. If true, the bytes read from the Sockets are passed down the
+     * Stream as slices of the same Buffer they've been read into (ref-counted Segments), and they are NOT copied
+     * until they are finally deserialized. If false, a copy of the bytes is made after every read.
+     */
+    boolean isNioZeroCopyReads();
+
+    /**
+     * Only relevant for NIO-based implementations. When the bytes queued to be sent to a Peer go above this value, the
+     * Peer is marked as NOT writable (a PeerWritabilityChangedEvent is published), so we can stop producing data for it.
+     */
+    int getOutboundHighWatermark();
+
+    /**
+     * Only relevant for NIO-based implementations. When the bytes queued to be sent to a Peer that is NOT writable go
+     * below this value, the Peer is marked as writable again (a PeerWritabilityChangedEvent is published).
+     */
+    int getOutboundLowWatermark();
+
+    /**
+     * Maximum number of new connections to remote Peers opened per second. The connections are throttled by a
+     * Token Bucket, so short bursts of up to this number of connections are allowed.
+     */
+    int getMaxConnectionsOpenedPerSec();
+
+    /**
+     * Time (in millisecs) to wait for the Stream of a new connection to be ready (see NIOInputStream.markReady())
+     * before starting reading from the Socket anyway.
+     */
+    int getTimeoutStreamReady();
+
+    /**
+     * Only relevant for NIO-based implementations. If true, the Buffer used to read from each Socket (and the
+     * SO_RCVBUF of the Socket) grows and shrinks automatically, based on the number of bytes returned by each read,
+     * between the "normal" size and "getNioBufferSizeAdaptiveMax()".
+     */
+    boolean isNioAdaptiveBuffers();
+
+    /** Only relevant for NIO-based implementations. Max size a read Buffer can grow to on its own (adaptive sizing) */
+    int getNioBufferSizeAdaptiveMax();
+
+    /**
+     * Only relevant for NIO-based implementations. Max memory (in bytes) used by all the read Buffers together. The
+     * Buffers can NOT grow on their own beyond this limit (the Buffers explicitly upgraded are not affected by it).
+     */
+    long getNioReadBuffersMaxTotalBytes();
+
 }
\ No newline at end of file
@@ -24,6 +24,15 @@ public class NetworkConfigImpl extends HandlerConfig implements NetworkConfig {
     private int nioBufferSizeUpgrade;
     private int maxMessageSizeAvgInBytes;
     private boolean blockingOnListeners;
+    private int nioNumReactors;
+    private boolean nioZeroCopyReads;
+    private int outboundHighWatermark;
+    private int outboundLowWatermark;
+    private int maxConnectionsOpenedPerSec;
+    private int timeoutStreamReady;
+    private boolean nioAdaptiveBuffers;
+    private int nioBufferSizeAdaptiveMax;
+    private long nioReadBuffersMaxTotalBytes;
 
     public NetworkConfigImpl(int port,
                              OptionalInt maxSocketConnections,
@@ -36,7 +45,16 @@ public class NetworkConfigImpl extends HandlerConfig implements NetworkConfig {
                              int nioBufferSizeUpperBound,
                              int nioBufferSizeUpgrade,
                              int maxMessageSizeAvgInBytes,
-                             boolean blockingOnListeners) {
+                             boolean blockingOnListeners,
+                             int nioNumReactors,
+                             boolean nioZeroCopyReads,
+                             int outboundHighWatermark,
+                             int outboundLowWatermark,
+                             int maxConnectionsOpenedPerSec,
+                             int timeoutStreamReady,
+                             boolean nioAdaptiveBuffers,
+                             int nioBufferSizeAdaptiveMax,
+                             long nioReadBuffersMaxTotalBytes) {
         this.port = port;
         this.maxSocketConnections = maxSocketConnections;
         this.maxSocketPendingConnections = maxSocketPendingConnections;
@@ -49,6 +67,15 @@ public class NetworkConfigImpl extends HandlerConfig implements NetworkConfig {
         this.nioBufferSizeUpgrade = nioBufferSizeUpgrade;
         this.maxMessageSizeAvgInBytes = maxMessageSizeAvgInBytes;
         this.blockingOnListeners = blockingOnListeners;
+        this.nioNumReactors = nioNumReactors;
+        this.nioZeroCopyReads = nioZeroCopyReads;
+        this.outboundHighWatermark = outboundHighWatermark;
+        this.outboundLowWatermark = outboundLowWatermark;
+        this.maxConnectionsOpenedPerSec = maxConnectionsOpenedPerSec;
+        this.timeoutStreamReady = timeoutStreamReady;
+        this.nioAdaptiveBuffers = nioAdaptiveBuffers;
+        this.nioBufferSizeAdaptiveMax = nioBufferSizeAdaptiveMax;
+        this.nioReadBuffersMaxTotalBytes = nioReadBuffersMaxTotalBytes;
     }
 
     public static NetworkConfigImplBuilder builder()        { return new NetworkConfigImplBuilder(); }
@@ -64,6 +91,15 @@ public class NetworkConfigImpl extends HandlerConfig implements NetworkConfig {
     public int getNioBufferSizeUpperBound()                 { return this.nioBufferSizeUpperBound; }
     public int getNioBufferSizeUpgrade()                    { return this.nioBufferSizeUpgrade; }
     public int getMaxMessageSizeAvgInBytes()                { return this.maxMessageSizeAvgInBytes; }
+    public int getNioNumReactors()                          { return this.nioNumReactors; }
+    public boolean isNioZeroCopyReads()                     { return this.nioZeroCopyReads; }
+    public int getOutboundHighWatermark()                   { return this.outboundHighWatermark; }
+    public int getOutboundLowWatermark()                    { return this.outboundLowWatermark; }
+    public int getMaxConnectionsOpenedPerSec()              { return this.maxConnectionsOpenedPerSec; }
+    public int getTimeoutStreamReady()                      { return this.timeoutStreamReady; }
+    public boolean isNioAdaptiveBuffers()                   { return this.nioAdaptiveBuffers; }
+    public int getNioBufferSizeAdaptiveMax()                { return this.nioBufferSizeAdaptiveMax; }
+    public long getNioReadBuffersMaxTotalBytes()            { return this.nioReadBuffersMaxTotalBytes; }
 
     public NetworkConfigImplBuilder toBuilder() {
         return new NetworkConfigImplBuilder()
@@ -78,7 +114,16 @@ public class NetworkConfigImpl extends HandlerConfig implements NetworkConfig {
                 .nioBufferSizeUpperBound(this.nioBufferSizeUpperBound)
                 .nioBufferSizeUpgrade(this.nioBufferSizeUpgrade)
                 .maxMessageSizeAvgInBytes(this.maxMessageSizeAvgInBytes)
-                .blockingOnListeners(this.blockingOnListeners);
+                .blockingOnListeners(this.blockingOnListeners)
+                .nioNumReactors(this.nioNumReactors)
+                .nioZeroCopyReads(this.nioZeroCopyReads)
+                .outboundHighWatermark(this.outboundHighWatermark)
+                .outboundLowWatermark(this.outboundLowWatermark)
+                .maxConnectionsOpenedPerSec(this.maxConnectionsOpenedPerSec)
+                .timeoutStreamReady(this.timeoutStreamReady)
+                .nioAdaptiveBuffers(this.nioAdaptiveBuffers)
+                .nioBufferSizeAdaptiveMax(this.nioBufferSizeAdaptiveMax)
+                .nioReadBuffersMaxTotalBytes(this.nioReadBuffersMaxTotalBytes);
     }
 
     /**
@@ -97,6 +142,15 @@ public class NetworkConfigImpl extends HandlerConfig implements NetworkConfig {
         private int nioBufferSizeUpgrade;
         private int maxMessageSizeAvgInBytes;
         private boolean blockingOnListeners;
+        private int nioNumReactors;
+        private boolean nioZeroCopyReads;
+        private int outboundHighWatermark;
+        private int outboundLowWatermark;
+        private int maxConnectionsOpenedPerSec;
+        private int timeoutStreamReady;
+    private boolean nioAdaptiveBuffers;
+    private int nioBufferSizeAdaptiveMax;
+    private long nioReadBuffersMaxTotalBytes;
 
         NetworkConfigImplBuilder() {}
 
@@ -160,6 +214,54 @@ public class NetworkConfigImpl extends HandlerConfig implements NetworkConfig {
             return this;
         }
 
+        public NetworkConfigImpl.NetworkConfigImplBuilder nioNumReactors(int nioNumReactors) {
+            this.nioNumReactors = nioNumReactors;
+            return this;
+        }
+
+        public NetworkConfigImpl.NetworkConfigImplBuilder nioZeroCopyReads(boolean nioZeroCopyReads) {
+            this.nioZeroCopyReads = nioZeroCopyReads;
+            return this;
+        }
+
+        public NetworkConfigImpl.NetworkConfigImplBuilder outboundHighWatermark(int outboundHighWatermark) {
+            this.outboundHighWatermark = outboundHighWatermark;
+            return this;
+        }
+
+        public NetworkConfigImpl.NetworkConfigImplBuilder outboundLowWatermark(int outboundLowWatermark) {
+            this.outboundLowWatermark = outboundLowWatermark;
+            return this;
+        }
+
+        public NetworkConfigImpl.NetworkConfigImplBuilder maxConnectionsOpenedPerSec(int maxConnectionsOpenedPerSec) {
+            this.maxConnectionsOpenedPerSec = maxConnectionsOpenedPerSec;
+            return this;
+        }
+
+        public NetworkConfigImpl.NetworkConfigImplBuilder timeoutStreamReady(int timeoutStreamReady) {
+            this.timeoutStreamReady = timeoutStreamReady;
+        this.nioAdaptiveBuffers = nioAdaptiveBuffers;
+        this.nioBufferSizeAdaptiveMax = nioBufferSizeAdaptiveMax;
+        this.nioReadBuffersMaxTotalBytes = nioReadBuffersMaxTotalBytes;
+            return this;
+        }
+
+        public NetworkConfigImpl.NetworkConfigImplBuilder nioAdaptiveBuffers(boolean nioAdaptiveBuffers) {
+            this.nioAdaptiveBuffers = nioAdaptiveBuffers;
+            return this;
+        }
+
+        public NetworkConfigImpl.NetworkConfigImplBuilder nioBufferSizeAdaptiveMax(int nioBufferSizeAdaptiveMax) {
+            this.nioBufferSizeAdaptiveMax = nioBufferSizeAdaptiveMax;
+            return this;
+        }
+
+        public NetworkConfigImpl.NetworkConfigImplBuilder nioReadBuffersMaxTotalBytes(long nioReadBuffersMaxTotalBytes) {
+            this.nioReadBuffersMaxTotalBytes = nioReadBuffersMaxTotalBytes;
+            return this;
+        }
+
         public NetworkConfigImpl build() {
             return new NetworkConfigImpl(
                     port,
@@ -173,7 +275,16 @@ public class NetworkConfigImpl extends HandlerConfig implements NetworkConfig {
                     nioBufferSizeUpperBound,
                     nioBufferSizeUpgrade,
                     maxMessageSizeAvgInBytes,
-                    blockingOnListeners);
+                    blockingOnListeners,
+                    nioNumReactors,
+                    nioZeroCopyReads,
+                    outboundHighWatermark,
+                    outboundLowWatermark,
+                    maxConnectionsOpenedPerSec,
+                    timeoutStreamReady,
+                    nioAdaptiveBuffers,
+                    nioBufferSizeAdaptiveMax,
+                    nioReadBuffersMaxTotalBytes);
         }
     }
 }
\ No newline at end of file
@@ -25,6 +25,15 @@ public class NetworkDefaultConfig extends NetworkConfigImpl {
     private static final int nioBufferSizeUpgrade = 10_000_000;
     private static final int maxMessageSizeAvgInBytes = 1000; // TODO :CAREFUL
     private static final boolean blockingOnListeners = false;
+    private static final int nioNumReactors = 2;
+    private static final boolean nioZeroCopyReads = true;
+    private static final int outboundHighWatermark = 16_000_000;
+    private static final int outboundLowWatermark = 4_000_000;
+    private static final int maxConnectionsOpenedPerSec = 50;
+    private static final int timeoutStreamReady = 500;
+    private static final boolean nioAdaptiveBuffers = true;
+    private static final int nioBufferSizeAdaptiveMax = 1_048_576;
+    private static final long nioReadBuffersMaxTotalBytes = 256_000_000;
 
     /** Constructor */
     public NetworkDefaultConfig() {
@@ -40,6 +49,15 @@ public class NetworkDefaultConfig extends NetworkConfigImpl {
                 nioBufferSizeUpperBound,
                 nioBufferSizeUpgrade,
                 maxMessageSizeAvgInBytes,
-                blockingOnListeners);
+                blockingOnListeners,
+                nioNumReactors,
+                nioZeroCopyReads,
+                outboundHighWatermark,
+                outboundLowWatermark,
+                maxConnectionsOpenedPerSec,
+                timeoutStreamReady,
+                nioAdaptiveBuffers,
+                nioBufferSizeAdaptiveMax,
+                nioReadBuffersMaxTotalBytes);
     }
 }
\ No newline at end of file
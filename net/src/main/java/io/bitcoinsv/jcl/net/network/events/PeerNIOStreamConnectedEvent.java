@@ -2,7 +2,8 @@ package io.bitcoinsv.jcl.net.network.events;
 
 
 import com.google.common.base.Objects;
-import io.bitcoinsv.jcl.net.network.streams.nio.NIOStream;
+import io.bitcoinsv.jcl.net.network.streams.PeerStream;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
 
 /**
  * @author i.fernandez@nchain.com
@@ -11,12 +12,15 @@ import io.bitcoinsv.jcl.net.network.streams.nio.NIOStream;
  * An Event triggered when a Peer is Connected.
  * NOTE: This is a LOW-LEVEL Event, only meant to be used by other classes in this library, not by the client, since
  * it controls how the information flows between the Library and the remote Peer.
+ *
+ * The Stream is usually a NIOStream (connected to a Socket), but other NetworkHandlers might provide a different one,
+ * as long as its input is a PeerInputStreamEndPoint (like the in-memory Streams of the LoopbackNetworkHandler).
  */
 public final class PeerNIOStreamConnectedEvent extends P2PEvent {
-    private final NIOStream stream;
+    private final PeerStream<ByteArrayReader> stream;
 
-    public PeerNIOStreamConnectedEvent(NIOStream stream)    { this.stream = stream; }
-    public NIOStream getStream()                            { return this.stream; }
+    public PeerNIOStreamConnectedEvent(PeerStream<ByteArrayReader> stream)  { this.stream = stream; }
+    public PeerStream<ByteArrayReader> getStream()                          { return this.stream; }
 
     @Override
     public String toString() {
@@ -0,0 +1,51 @@
+package io.bitcoinsv.jcl.net.network.events;
+
+import com.google.common.base.Objects;
+import io.bitcoinsv.jcl.net.network.PeerAddress;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * An Event triggered when the "writability" of a Peer changes:
+ * - It becomes NOT writable when the bytes queued to be sent to it go above the High Watermark (it's not taking the
+ *   data as fast as we are producing it).
+ * - It becomes writable again when those bytes go below the Low Watermark.
+ *
+ * While a Peer is not writable, the handlers should stop producing non-essential data for it.
+ */
+public final class PeerWritabilityChangedEvent extends P2PEvent {
+    private final PeerAddress peerAddress;
+    private final boolean writable;
+    private final long numBytesQueued;
+
+    public PeerWritabilityChangedEvent(PeerAddress peerAddress, boolean writable, long numBytesQueued) {
+        this.peerAddress = peerAddress;
+        this.writable = writable;
+        this.numBytesQueued = numBytesQueued;
+    }
+
+    public PeerAddress getPeerAddress()     { return this.peerAddress; }
+    public boolean isWritable()             { return this.writable; }
+    public long getNumBytesQueued()         { return this.numBytesQueued; }
+
+    @Override
+    public String toString() {
+        return "Event[Peer Writability Changed]: " + peerAddress.toString() + ": "
+                + (writable ? "writable" : "NOT writable") + " (" + numBytesQueued + " bytes queued)";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!super.equals(obj)) { return false; }
+        PeerWritabilityChangedEvent other = (PeerWritabilityChangedEvent) obj;
+        return Objects.equal(this.peerAddress, other.peerAddress)
+                && Objects.equal(this.writable, other.writable)
+                && Objects.equal(this.numBytesQueued, other.numBytesQueued);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(super.hashCode(), peerAddress, writable, numBytesQueued);
+    }
+}
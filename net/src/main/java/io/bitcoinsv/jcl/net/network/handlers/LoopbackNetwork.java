@@ -0,0 +1,89 @@
+package io.bitcoinsv.jcl.net.network.handlers;
+
+import io.bitcoinsv.jcl.net.network.PeerAddress;
+import io.bitcoinsv.jcl.net.network.streams.loopback.LoopbackPipe;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * An in-memory "Network" that links several LoopbackNetworkHandlers running in the same JVM, so several P2P
+ * instances can talk to each other without using any Socket (mostly for benchmarks and testing).
+ *
+ * All the Handlers linked to the same Network live in the same "host" (the loopback address), and each one is
+ * identified by its port. The Handlers running in Server mode use the port they are given (or a free one if it's
+ * ZERO), and the ones running in Client mode always get a free one.
+ *
+ * All the connections through this Network share the same link configuration: bandwidth (ZERO for no limit),
+ * latency and size of the chunks the bytes are delivered in (see LoopbackPipe).
+ */
+public class LoopbackNetwork {
+
+    public static final int DEFAULT_CHUNK_SIZE = 65536;
+    private static final int FIRST_EPHEMERAL_PORT = 49152;
+
+    private final long bandwidthBytesPerSec;
+    private final Duration latency;
+    private final int chunkSize;
+
+    // Handlers linked to this Network, by Port:
+    private final Map<Integer, LoopbackNetworkHandler> handlers = new HashMap<>();
+    private int nextEphemeralPort = FIRST_EPHEMERAL_PORT;
+
+    /**
+     * Constructor.
+     * @param bandwidthBytesPerSec  Bandwidth of each connection (in each direction). ZERO for no limit
+     * @param latency               Latency of each connection
+     * @param chunkSize             Max size of each piece of data delivered
+     */
+    public LoopbackNetwork(long bandwidthBytesPerSec, Duration latency, int chunkSize) {
+        this.bandwidthBytesPerSec = bandwidthBytesPerSec;
+        this.latency = latency;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Constructor. No bandwidth limit, no latency */
+    public LoopbackNetwork() {
+        this(0, Duration.ZERO, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * It links the Handler to this Network, and returns the Address assigned to it.
+     * @param port  Port requested, only used in Server mode. If ZERO, a free one is assigned.
+     */
+    synchronized PeerAddress bind(LoopbackNetworkHandler handler, int port, boolean serverMode) {
+        if (!serverMode || port == 0) {
+            while (handlers.containsKey(nextEphemeralPort)) nextEphemeralPort++;
+            port = nextEphemeralPort++;
+        }
+        checkState(!handlers.containsKey(port), "Port " + port + " already in use in the Loopback Network");
+        handlers.put(port, handler);
+        return new PeerAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /** It unlinks the Handler from this Network */
+    synchronized void unbind(PeerAddress peerAddress) {
+        handlers.remove(peerAddress.getPort());
+    }
+
+    /** Returns the Handler listening at the Address given, or null if there is none */
+    synchronized LoopbackNetworkHandler lookup(PeerAddress peerAddress) {
+        return handlers.get(peerAddress.getPort());
+    }
+
+    /** It creates a new Pipe, using the link configuration of this Network */
+    LoopbackPipe newPipe(String name, long highWatermark, long lowWatermark) {
+        return new LoopbackPipe(name, bandwidthBytesPerSec, latency, chunkSize, highWatermark, lowWatermark);
+    }
+
+    public long getBandwidthBytesPerSec()   { return this.bandwidthBytesPerSec; }
+    public Duration getLatency()            { return this.latency; }
+    public int getChunkSize()               { return this.chunkSize; }
+}
@@ -0,0 +1,294 @@
+package io.bitcoinsv.jcl.net.network.handlers;
+
+import io.bitcoinsv.jcl.net.network.PeerAddress;
+import io.bitcoinsv.jcl.net.network.config.NetworkConfig;
+import io.bitcoinsv.jcl.net.network.config.NetworkConfigImpl;
+import io.bitcoinsv.jcl.net.network.events.*;
+import io.bitcoinsv.jcl.net.network.streams.StreamCloseEvent;
+import io.bitcoinsv.jcl.net.network.streams.loopback.LoopbackPipe;
+import io.bitcoinsv.jcl.net.network.streams.loopback.LoopbackStream;
+import io.bitcoinsv.jcl.net.tools.LoggerUtil;
+import io.bitcoinsv.jcl.tools.config.RuntimeConfig;
+import io.bitcoinsv.jcl.tools.events.EventBus;
+import io.bitcoinsv.jcl.tools.handlers.HandlerConfig;
+import io.bitcoinsv.jcl.tools.thread.StripedExecutor;
+import io.bitcoinsv.jcl.tools.thread.ThreadUtils;
+import io.bitcoinsv.jcl.tools.thread.TimerWheel;
+
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * Implementation of the NetworkHandler that connects to other Peers running in the same JVM, through a
+ * LoopbackNetwork, instead of using Sockets. Meant for benchmarks and testing: It takes the kernel networking out of
+ * the picture, so we can measure the throughput of the Deserializers, EventBus and Handlers in a deterministic way.
+ *
+ * - Each connection is made of 2 LoopbackPipes, one in each direction, and each end is wrapped up in a LoopbackStream,
+ *   which is published in a PeerNIOStreamConnectedEvent, same as the NIOStreams in the NetworkHandlerImpl. So the
+ *   rest of the Handlers work the same way no matter what NetworkHandler is used.
+ * - The bytes start flowing once the Stream is ready (see PeerInputStreamEndPoint), or after a timeout.
+ * - The connections are established right away (there is nothing to wait for), so there are no "in progress" or
+ *   "pending" connections here.
+ * - The bandwidth and latency of the connections are simulated by the LoopbackNetwork.
+ *
+ * NOTE: All the Handlers in a LoopbackNetwork share the same IP (the loopback address), so blacklisting one of them
+ * blacklists them all.
+ */
+public class LoopbackNetworkHandler implements NetworkHandler {
+
+    // For logging:
+    private LoggerUtil logger;
+
+    // Basic Configuration:
+    private String id;
+    private RuntimeConfig runtimeConfig;
+    private NetworkConfig config;
+    private LoopbackNetwork network;
+
+    // Local Address of this Handler. It's assigned by the LoopbackNetwork when we start:
+    private PeerAddress peerAddress;
+
+    private EventBus eventBus;
+    private boolean initialized;
+
+    private volatile boolean running;
+    private volatile boolean server_mode;
+    private volatile boolean keep_connecting = true;
+
+    // Executor for the Streams connected to the remote Peers. Each Peer is pinned to one Lane:
+    private StripedExecutor peerStreamExecutor;
+    // Timer used for the timeouts of the Streams not ready yet:
+    private TimerWheel connsTimer = new TimerWheel("JclLoopbackNetworkTimer", 50, TimeUnit.MILLISECONDS, 64);
+
+    private Map<PeerAddress, LoopbackStream> activeConns = new ConcurrentHashMap<>();
+    private Set<InetAddress> blacklist = ConcurrentHashMap.newKeySet();
+
+    // Other useful counters:
+    private AtomicLong numConnsFailed = new AtomicLong();
+    private AtomicLong numConnsTried = new AtomicLong(); // reset after calling getState()
+
+    /** Constructor */
+    public LoopbackNetworkHandler(String id, RuntimeConfig runtimeConfig, NetworkConfig netConfig,
+                                  PeerAddress localAddress, LoopbackNetwork network) {
+        this.id = id;
+        this.runtimeConfig = runtimeConfig;
+        this.config = netConfig;
+        this.peerAddress = localAddress;
+        this.network = network;
+        this.logger = new LoggerUtil(id, HANDLER_ID, this.getClass());
+        this.peerStreamExecutor = ThreadUtils.getPeerStreamExecutor(Math.max(1, runtimeConfig.getNumPeerStreamLanes()));
+    }
+
+    @Override
+    public HandlerConfig getConfig() {
+        return (NetworkConfigImpl) config;
+    }
+    @Override
+    public void useEventBus(EventBus eventBus)      { this.eventBus = eventBus; }
+    @Override
+    public void stopConnecting()                    { this.keep_connecting = false; }
+    @Override
+    public void resumeConnecting()                  { this.keep_connecting = true; }
+    @Override
+    public PeerAddress getPeerAddress()             { return this.peerAddress; }
+
+    @Override
+    public NetworkHandlerState getState() {
+        return NetworkHandlerState.builder()
+                .numActiveConns(this.activeConns.size())
+                .keep_connecting(this.keep_connecting)
+                .server_mode(this.server_mode)
+                .numConnsFailed(this.numConnsFailed.get())
+                .numConnsTried((int) this.numConnsTried.getAndSet(0))
+                .reactorsState(new ArrayList<>())
+                .streamLanesQueueDepth(Arrays.stream(this.peerStreamExecutor.getQueueDepths()).boxed().collect(Collectors.toList()))
+                .build();
+    }
+
+    @Override
+    public synchronized void init() {
+        if (initialized) return;
+        initialized = true;
+        eventBus.subscribe(DisconnectPeerRequest.class,     e -> this.disconnect(((DisconnectPeerRequest) e).getPeerAddress()));
+        eventBus.subscribe(ConnectPeerRequest.class,        e -> this.connect(((ConnectPeerRequest) e).getPeerAddres()));
+        eventBus.subscribe(ConnectPeersRequest.class,       e -> this.connect(((ConnectPeersRequest) e).getPeerAddressList()));
+        eventBus.subscribe(PeersBlacklistedEvent.class,     e -> this.blacklist(((PeersBlacklistedEvent) e).getInetAddresses().keySet()));
+        eventBus.subscribe(PeersWhitelistedEvent.class,     e -> this.blacklist.removeAll(((PeersWhitelistedEvent) e).getInetAddresses()));
+        eventBus.subscribe(ResumeConnectingRequest.class,   e -> this.resumeConnecting());
+        eventBus.subscribe(StopConnectingRequest.class,     e -> this.stopConnecting());
+        eventBus.subscribe(DisconnectPeersRequest.class,    e -> this.onDisconnectPeers((DisconnectPeersRequest) e));
+        eventBus.subscribe(BlacklistPeerRequest.class,      e -> this.blacklist(Arrays.asList(((BlacklistPeerRequest) e).getAddress())));
+    }
+
+    private void onDisconnectPeers(DisconnectPeersRequest request) {
+        if (request.getPeersToDisconnect() != null) this.disconnect(request.getPeersToDisconnect());
+        if (request.getPeersToKeep() != null) this.disconnectAllExcept(request.getPeersToKeep());
+    }
+
+    @Override
+    public void start() {
+        checkState(!running, "The Service is already Running");
+        init();
+        this.peerAddress = network.bind(this, peerAddress.getPort(), server_mode);
+        this.running = true;
+        logger.info("starting in " + (server_mode? "SERVER" : "CLIENT") + " mode, Loopback Network...");
+        eventBus.publish(new NetStartEvent(this.peerAddress));
+    }
+
+    @Override
+    public void startServer() {
+        this.server_mode = true;
+        start();
+    }
+
+    @Override
+    public void stop() {
+        logger.info("Stopping...");
+        eventBus.publish(new NetStopEvent());
+        this.keep_connecting = false;
+        network.unbind(this.peerAddress);
+        new ArrayList<>(activeConns.keySet()).forEach(p -> closeConnection(p, PeerDisconnectedEvent.DisconnectedReason.DISCONNECTED_BY_LOCAL));
+        this.running = false;
+        connsTimer.stop();
+    }
+
+    @Override
+    public void connect(PeerAddress peerAddress) {
+        connect(Arrays.asList(peerAddress));
+    }
+
+    @Override
+    public void connect(List<PeerAddress> peerAddressList) {
+        if (peerAddressList == null || !running) return;
+        for (PeerAddress peerAddress : peerAddressList) {
+            if (!canOpenMoreConnections()) break;
+            if (activeConns.containsKey(peerAddress) || blacklist.contains(peerAddress.getIp())) continue;
+            handleConnectionToOpen(peerAddress);
+        }
+    }
+
+    // Indicates if we can open/accept a new connection now, based on our limits:
+    private boolean canOpenMoreConnections() {
+        OptionalInt limitNumConns = config.getMaxSocketConnections();
+        if (!keep_connecting) return false;
+        if ((limitNumConns.isPresent()) && (activeConns.size() >= limitNumConns.getAsInt())) return false;
+        return true;
+    }
+
+    // Indicates if we accept an incoming connection from the Peer given:
+    private boolean acceptsConnectionFrom(PeerAddress remoteAddress) {
+        return running && server_mode && canOpenMoreConnections()
+                && !blacklist.contains(remoteAddress.getIp())
+                && !activeConns.containsKey(remoteAddress);
+    }
+
+    /**
+     * It opens a connection to the Peer given. Both ends of the connection are set up at the same time, so the whole
+     * process is synchronized on the LoopbackNetwork (otherwise 2 Handlers connecting to each other at the same time
+     * might get in each other's way).
+     */
+    private void handleConnectionToOpen(PeerAddress remoteAddress) {
+        numConnsTried.incrementAndGet();
+        synchronized (network) {
+            LoopbackNetworkHandler remote = network.lookup(remoteAddress);
+            if (remote == null || remote == this || !remote.acceptsConnectionFrom(this.peerAddress)) {
+                processConnectionFailed(remoteAddress, "connection refused");
+                return;
+            }
+            logger.trace(remoteAddress, "Connecting...");
+            LoopbackPipe outputPipe = network.newPipe("JclLoopback-" + this.peerAddress.getPort() + "->" + remoteAddress.getPort(),
+                    config.getOutboundHighWatermark(), config.getOutboundLowWatermark());
+            LoopbackPipe inputPipe = network.newPipe("JclLoopback-" + remoteAddress.getPort() + "->" + this.peerAddress.getPort(),
+                    remote.config.getOutboundHighWatermark(), remote.config.getOutboundLowWatermark());
+
+            LoopbackStream localStream = this.createStream(remoteAddress, outputPipe);
+            LoopbackStream remoteStream = remote.createStream(this.peerAddress, inputPipe);
+            outputPipe.connect(remoteStream.input());
+            inputPipe.connect(localStream.input());
+
+            remote.startPeerConnection(remoteStream);
+            this.startPeerConnection(localStream);
+        }
+    }
+
+    // It creates the Stream used to talk to the remote Peer given, writing into the Pipe given:
+    private LoopbackStream createStream(PeerAddress remoteAddress, LoopbackPipe outputPipe) {
+        LoopbackStream stream = new LoopbackStream(remoteAddress, peerStreamExecutor.getLane(remoteAddress), outputPipe);
+        stream.init();
+        // If the remote Peer closes the connection, our input is closed. If any Handler closes our output, it's us:
+        stream.input().onCloseListener(() -> closeConnection(remoteAddress, PeerDisconnectedEvent.DisconnectedReason.DISCONNECTED_BY_REMOTE));
+        stream.output().onCloseListener(() -> closeConnection(remoteAddress, PeerDisconnectedEvent.DisconnectedReason.DISCONNECTED_BY_LOCAL));
+        // We notify when the Peer stops accepting data (too many bytes queued), or starts accepting it again:
+        outputPipe.onWritabilityChanged(writable ->
+                eventBus.publish(new PeerWritabilityChangedEvent(remoteAddress, writable, outputPipe.getNumBytesPending())));
+        return stream;
+    }
+
+    // It registers the connection and publishes the Stream, so the rest of Handlers can use it:
+    private void startPeerConnection(LoopbackStream stream) {
+        PeerAddress remoteAddress = stream.getPeerAddress();
+        activeConns.put(remoteAddress, stream);
+        connsTimer.schedule(stream.input()::onReadyTimeout, config.getTimeoutStreamReady(), TimeUnit.MILLISECONDS);
+        logger.trace(remoteAddress, "Loopback connection established.");
+
+        eventBus.publish(new PeerConnectedEvent(remoteAddress));
+        eventBus.publish(new PeerNIOStreamConnectedEvent(stream));
+    }
+
+    private void processConnectionFailed(PeerAddress remoteAddress, String detail) {
+        logger.trace(remoteAddress, "Connection failed", detail);
+        numConnsFailed.incrementAndGet();
+        eventBus.publish(new PeerRejectedEvent(remoteAddress, PeerRejectedEvent.RejectedReason.INTERNAL_ERROR, detail));
+    }
+
+    /**
+     * It closes the connection to the Peer given, from our end. The bytes already sent are still delivered to the
+     * other end, and then its input is closed, which closes the connection on that end too.
+     */
+    private void closeConnection(PeerAddress remoteAddress, PeerDisconnectedEvent.DisconnectedReason reason) {
+        LoopbackStream stream = activeConns.remove(remoteAddress);
+        if (stream == null) return; // already closed
+        stream.output().close(new StreamCloseEvent());
+        stream.input().close(new StreamCloseEvent());
+        eventBus.publish(new PeerDisconnectedEvent(remoteAddress, reason));
+        logger.trace(remoteAddress, "Connection closed");
+    }
+
+    @Override
+    public void processDisconnectRequest(DisconnectPeerRequest request) {
+        closeConnection(request.getPeerAddress(), request.getReason());
+    }
+
+    @Override
+    public void processDisconnectRequests(List<DisconnectPeerRequest> requests) {
+        if (requests == null) return;
+        requests.forEach(this::processDisconnectRequest);
+    }
+
+    @Override
+    public void disconnectAllExcept(List<PeerAddress> peerAddresses) {
+        List<PeerAddress> peersToDisconnect = activeConns.keySet().stream()
+                .filter(p -> !peerAddresses.contains(p))
+                .collect(Collectors.toList());
+        disconnect(peersToDisconnect);
+    }
+
+    private void blacklist(Collection<InetAddress> ipAddresses) {
+        if (ipAddresses == null) return;
+        blacklist.addAll(ipAddresses);
+        List<DisconnectPeerRequest> requestsToDisconnect = activeConns.keySet().stream()
+                .filter(p -> ipAddresses.contains(p.getIp()))
+                .map(p -> new DisconnectPeerRequest(p, PeerDisconnectedEvent.DisconnectedReason.DISCONNECTED_BY_LOCAL_BLACKLIST))
+                .collect(Collectors.toList());
+        processDisconnectRequests(requestsToDisconnect);
+    }
+}
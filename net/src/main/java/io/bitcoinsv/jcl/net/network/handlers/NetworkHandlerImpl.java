@@ -11,15 +11,17 @@ import io.bitcoinsv.jcl.net.network.streams.StreamCloseEvent;
 import io.bitcoinsv.jcl.net.network.streams.nio.NIOInputStream;
 import io.bitcoinsv.jcl.net.network.streams.nio.NIOOutputStream;
 import io.bitcoinsv.jcl.net.network.streams.nio.NIOStream;
+import io.bitcoinsv.jcl.net.network.streams.nio.ReadBufferBudget;
 import io.bitcoinsv.jcl.tools.config.RuntimeConfig;
 import io.bitcoinsv.jcl.tools.events.EventBus;
 import io.bitcoinsv.jcl.tools.files.FileUtils;
 import io.bitcoinsv.jcl.tools.handlers.HandlerConfig;
 import io.bitcoinsv.jcl.net.tools.LoggerUtil;
 
+import io.bitcoinsv.jcl.tools.thread.StripedExecutor;
 import io.bitcoinsv.jcl.tools.thread.ThreadUtils;
-import io.bitcoinsv.jcl.tools.thread.TimeoutTask;
-import io.bitcoinsv.jcl.tools.thread.TimeoutTaskBuilder;
+import io.bitcoinsv.jcl.tools.thread.TimerWheel;
+import io.bitcoinsv.jcl.tools.thread.TokenBucket;
 
 import java.io.IOException;
 import java.net.*;
@@ -47,12 +49,18 @@ import static com.google.common.base.Preconditions.checkState;
  * Implementation of the NetworkHandler, based on Java-NIO (non blocking Input-Output)
  * - The class runs in a separate Thread, extending a guava Service
  * - the main loop is performed in a single Thread. This loop takes place in the "run()" method and basically
- *   loops over the Keys in our Selector, waiting for some event (a new peer connecting, new data coming, etc).
+ *   loops over the Keys in our main Selector, waiting for new connections (incoming from remote Peers or outcoming
+ *   connections being confirmed).
+ * - Once a connection is established, its Socket is handed over to one of the I/O Reactors (see NetworkReactor),
+ *   the one with the lowest load at that moment. Each Reactor runs its own Selector in its own Thread, so the
+ *   reading/writing from/to the Peers is spread across several Threads (see "NetworkConfig.getNioNumReactors()").
  * - Any time a new connection arrives, an isntance of a NIO Stream is linked to that Key, and an Event is
  *   triggered containing that Stream, that will be used to communicate with the remote Peer.
  *
  * - This class keeps different list ot keep track of the Pers to connect to or the ones to disconnect from. These
- *   lists are processed in another 2 different Threads, one each.
+ *   lists are processed in another 2 different Threads, one each. Those Threads block until there is work to do:
+ *   the Peers to connect to are throttled by a Token Bucket (see "NetworkConfig.getMaxConnectionsOpenedPerSec()"),
+ *   and the connections "in progress" expire through a Timer Wheel, instead of checking them periodically.
  *
  *
  */
@@ -75,7 +83,7 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
     class KeyConnectionAttach {
         PeerAddress peerAddress;
         NIOStream stream;
-        boolean started; // set to TRUE when we have received already some bytes from this Peer
+        NetworkReactor reactor; // The Reactor this connection is assigned to, once established
         public KeyConnectionAttach(PeerAddress peerAddress) { this.peerAddress = peerAddress;}
     }
 
@@ -85,13 +93,9 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
      */
     class InProgressConn {
         PeerAddress peerAddress;
-        long connTimestamp; // timestamp when the connection was triggered from our end
+        TimerWheel.Timeout timeout; // triggered if the remote Peer does not confirm the connection in time
         public InProgressConn(PeerAddress peerAddress) {
             this.peerAddress = peerAddress;
-            this.connTimestamp = System.currentTimeMillis();
-        }
-        public boolean hasExpired(long refTimestamp) {
-            return ((System.currentTimeMillis() - connTimestamp) > refTimestamp);
         }
     }
 
@@ -101,6 +105,9 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
     protected NetworkConfig config;
     protected Selector selector;
 
+    // I/O Reactors, each one of them handling the I/O of a subset of the connections:
+    private List<NetworkReactor> reactors = new ArrayList<>();
+
     // Main Lock, to preserve Thread safety and our mental sanity:
     private ReadWriteLock lock = new ReentrantReadWriteLock();
 
@@ -121,8 +128,16 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
 
     // An executor Service, to trigger jobs in MultiThread...
     ExecutorService jobExecutor = ThreadUtils.getCachedThreadExecutorService("JclNetworkHandler");
-    // An executor for triggering new Connections to remote Peers:
-    ExecutorService newConnsExecutor;
+    // Rate Limiter for the new Connections to remote Peers:
+    TokenBucket newConnsRateLimiter;
+    // Timer used for the timeouts of the connections (in progress, not ready yet, etc):
+    TimerWheel connsTimer = new TimerWheel("JclNetworkHandlerTimer", 50, TimeUnit.MILLISECONDS, 512);
+    // Monitor used to wait until we can open more connections (see "waitForConnectionSlot()"):
+    private final Object connSlotsMonitor = new Object();
+    // Executor for the Streams connected to the remote Peers. Each Peer is pinned to one Lane:
+    StripedExecutor peerStreamExecutor;
+    // Memory used by the Buffers the Streams read from the Sockets into (shared by all of them):
+    ReadBufferBudget readBufferBudget;
 
     // General State:
     private NetworkHandlerState state;
@@ -160,7 +175,10 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
         this.config = netConfig;
         this.peerAddress = localAddress;
         this.logger = new LoggerUtil(id, HANDLER_ID, this.getClass());
-        this.newConnsExecutor = ThreadUtils.getFixedThreadExecutorService("JclNetworkHandlerRemoteConn", netConfig.getMaxSocketConnectionsOpeningAtSameTime());
+        this.newConnsRateLimiter = new TokenBucket(Math.max(1, netConfig.getMaxConnectionsOpenedPerSec()),
+                Math.max(1, netConfig.getMaxConnectionsOpenedPerSec()));
+        this.peerStreamExecutor = ThreadUtils.getPeerStreamExecutor(Math.max(1, runtimeConfig.getNumPeerStreamLanes()));
+        this.readBufferBudget = new ReadBufferBudget(Math.max(1, netConfig.getNioReadBuffersMaxTotalBytes()));
 
     }
 
@@ -173,7 +191,7 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
     @Override
     public void stopConnecting()                    { this.keep_connecting = false; }
     @Override
-    public void resumeConnecting()                  { this.keep_connecting = true;}
+    public void resumeConnecting()                  { this.keep_connecting = true; notifyConnectionSlots();}
 
     @Override
     public NetworkHandlerState getState() {
@@ -190,6 +208,8 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
                     .numConnsFailed(this.numConnsFailed.get())
                     .numInProgressConnsExpired(this.numConnsInProgressExpired.get())
                     .numConnsTried(this.numConnsTried)
+                    .reactorsState(this.reactors.stream().map(NetworkReactor::getState).collect(Collectors.toList()))
+                    .streamLanesQueueDepth(Arrays.stream(this.peerStreamExecutor.getQueueDepths()).boxed().collect(Collectors.toList()))
                     .build();
             numConnsTried = 0; // aggregate value that is reset between calls to getState()
         } finally {
@@ -330,6 +350,12 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
             // We initialize the Handler:
             selector = SelectorProvider.provider().openSelector();
 
+            // We initialize the I/O Reactors:
+            int numReactors = Math.max(1, config.getNioNumReactors());
+            for (int i = 0; i < numReactors; i++) {
+                reactors.add(new NetworkReactor(i, logger, this::handleKey, this::onKeyError));
+            }
+
             // if we run in Server-Mode, we configure the Socket to be listening to incoming requests:
             if (server_mode) {
                 SocketAddress serverSocketAddress = new InetSocketAddress(peerAddress.getIp(), peerAddress.getPort());
@@ -423,7 +449,8 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
      */
     @Override
     public void run() {
-        logger.info("starting in " + (server_mode? "SERVER" : "CLIENT") + " mode...");
+        logger.info("starting in " + (server_mode? "SERVER" : "CLIENT") + " mode, " + reactors.size() + " I/O Reactors...");
+        reactors.forEach(NetworkReactor::start);
         startConnectionsJobs();
         try {
             while (isRunning()) {
@@ -435,6 +462,8 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
             e.printStackTrace();
         } finally {
             stopConnectionsJobs();
+            reactors.forEach(NetworkReactor::stop);
+            reactors.forEach(r -> closeAllKeys(r.getSelector()));
             closeAllKeys(selector);
         }
     }
@@ -495,12 +524,67 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
     private void startConnectionsJobs() {
         jobExecutor.submit(this::handlePendingToOpenConnections);
         jobExecutor.submit(this::handlePendingToCloseConnections);
-        jobExecutor.submit(this::handleInProgressConnections);
     }
 
     /** Stops the processing of pending Connections (running in a separate Thread) */
     private void stopConnectionsJobs() {
-        if (jobExecutor != null) jobExecutor.shutdown();
+        if (jobExecutor != null) jobExecutor.shutdownNow();
+        connsTimer.stop();
+    }
+
+    /**
+     * It removes the Peer from the "in progress" connections, cancelling its timeout. Any Thread waiting to open more
+     * connections is notified.
+     */
+    private void removeInProgressConn(PeerAddress peerAddress) {
+        InProgressConn inProgressConn = inProgressConns.remove(peerAddress);
+        if (inProgressConn != null) {
+            if (inProgressConn.timeout != null) inProgressConn.timeout.cancel();
+            notifyConnectionSlots();
+        }
+    }
+
+    /**
+     * Triggered by the Timer when a connection in progress has not been confirmed by the remote Peer in time. The
+     * connection is just removed from the "in progress" ones.
+     * NOTE: An expired connection might still confirm later on, sending a CONNECT signal to us. In that case, the
+     * connection is still accepted and inserted into the "active" conns.
+     */
+    private void onInProgressConnExpired(InProgressConn inProgressConn) {
+        try {
+            lock.writeLock().lock();
+            if (inProgressConns.remove(inProgressConn.peerAddress, inProgressConn)) {
+                logger.trace(inProgressConn.peerAddress, "In-progress connection expired");
+                numConnsInProgressExpired.incrementAndGet();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        notifyConnectionSlots();
+    }
+
+    // It wakes up the Thread waiting to open new connections, since the conditions might have changed:
+    private void notifyConnectionSlots() {
+        synchronized (connSlotsMonitor) {
+            connSlotsMonitor.notifyAll();
+        }
+    }
+
+    // Indicates if we can open a new connection now, based on our limits:
+    private boolean canOpenMoreConnections() {
+        OptionalInt limitNumConns = config.getMaxSocketConnections();
+        if (!keep_connecting) return false;
+        if (inProgressConns.size() > config.getMaxSocketConnectionsOpeningAtSameTime()) return false;
+        if ((limitNumConns.isPresent()) && (inProgressConns.size() + activeConns.size() >= limitNumConns.getAsInt())) return false;
+        return true;
+    }
+
+    // It blocks until we can open a new connection. Every change in the connections notifies the monitor, but we
+    // also check the conditions periodically, just in case:
+    private void waitForConnectionSlot() throws InterruptedException {
+        synchronized (connSlotsMonitor) {
+            while (!canOpenMoreConnections()) connSlotsMonitor.wait(1000);
+        }
     }
 
     /**
@@ -516,7 +600,7 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
 
             logger.trace(peerAddress, reason.name(), detail);
             failedConns.add(peerAddress);
-            inProgressConns.remove(peerAddress);
+            removeInProgressConn(peerAddress);
             numConnsFailed.incrementAndGet();
             blacklist(peerAddress.getIp(), PeersBlacklistedEvent.BlacklistReason.CONNECTION_REJECTED);
 
@@ -530,6 +614,7 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
     /**
      * It initializes a new connection to one Peer, creating a ByteArrayStream representing that connection and
      * triggering the callback, sending back the reference to that stream back to the client.
+     * This method is triggered by the Reactor this connection has been assigned to, once the Socket is registered in it.
      * @param key       SelectionKey related to this Socket/Channel
      */
     protected void startPeerConnection(SelectionKey key) throws IOException {
@@ -542,15 +627,33 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
             // We create the NIOStream and link it to this key (as attachment):
             NIOStream stream = new NIOStream(
                     keyAttach.peerAddress,
-                    ThreadUtils.PEER_STREAM_EXECUTOR,
+                    peerStreamExecutor.getLane(keyAttach.peerAddress),
                     this.runtimeConfig,
                     this.config,
+                    readBufferBudget,
                     key);
             stream.init();
             keyAttach.stream = stream;
 
+            // We start reading from this Peer once the Stream is ready (whoever is consuming the data is linked to
+            // it). If nobody has claimed the Stream by then, we start reading anyway after a timeout:
+            NIOInputStream input = (NIOInputStream) stream.input();
+            input.onReady(() -> {
+                if (key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                    key.selector().wakeup();
+                }
+            });
+            connsTimer.schedule(input::onReadyTimeout, config.getTimeoutStreamReady(), TimeUnit.MILLISECONDS);
+
+            // We notify when the Peer stops accepting data (too many bytes queued), or starts accepting it again:
+            PeerAddress peerAddress = keyAttach.peerAddress;
+            NIOOutputStream output = (NIOOutputStream) stream.output();
+            output.onWritabilityChanged(writable ->
+                    eventBus.publish(new PeerWritabilityChangedEvent(peerAddress, writable, output.getNumBytesToWrite())));
+
             // We add this connection to the list of active ones (not "in Progress" anymore):
-            inProgressConns.remove(keyAttach.peerAddress);
+            removeInProgressConn(keyAttach.peerAddress);
             activeConns.put(keyAttach.peerAddress, stream);
             logger.trace(keyAttach.peerAddress, "Socket connection established.");
 
@@ -558,9 +661,6 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
             eventBus.publish(new PeerConnectedEvent(keyAttach.peerAddress));
 
             eventBus.publish(new PeerNIOStreamConnectedEvent(stream));
-
-            // From now moving forward, this key is ready to READ data:
-            key.interestOps((key.interestOps() | SelectionKey.OP_READ) & ~SelectionKey.OP_CONNECT);
         } finally {
             lock.writeLock().unlock();
         }
@@ -577,25 +677,24 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
             lock.writeLock().lock();
             numConnsTried++;
             logger.trace(peerAddress, "Connecting...");
-            inProgressConns.put(peerAddress, new InProgressConn(peerAddress));
+            InProgressConn inProgressConn = new InProgressConn(peerAddress);
+            inProgressConns.put(peerAddress, inProgressConn);
+            inProgressConn.timeout = connsTimer.schedule(() -> onInProgressConnExpired(inProgressConn),
+                    config.getTimeoutSocketRemoteConfirmation().getAsInt(), TimeUnit.MILLISECONDS);
 
             SocketAddress socketAddress = new InetSocketAddress(peerAddress.getIp(), peerAddress.getPort());
             SocketChannel socketChannel = SocketChannel.open();
             socketChannel.configureBlocking(false);
 
             boolean isConnected = socketChannel.connect(socketAddress);
-            SelectionKey key = (isConnected)
-                    ? socketChannel.register(selector, SelectionKey.OP_READ)
-                    : socketChannel.register(selector, SelectionKey.OP_CONNECT);
-
-            key.attach(new KeyConnectionAttach(peerAddress));
-
 
             if (isConnected) {
                 logger.trace(peerAddress, "Connected, establishing connection...");
-                startPeerConnection(key);
+                assignToReactor(socketChannel, new KeyConnectionAttach(peerAddress));
 
             } else {
+                SelectionKey key = socketChannel.register(selector, SelectionKey.OP_CONNECT);
+                key.attach(new KeyConnectionAttach(peerAddress));
                 logger.trace(peerAddress, "Connected, waiting for remote confirmation...");
             }
             this.selector.wakeup();
@@ -610,157 +709,67 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
 
     /**
      * It handles the pending Connections to Open. For each PeerAddress, it tries to open a Socket channel. If
-     * there is a limit in the maximum number of Connections and we reach it, it does nothing.
+     * there is a limit in the maximum number of Connections and we reach it, it waits until there is room for more.
+     * This Thread blocks until there is work to do, and the pace of new connections is set by the Rate Limiter.
      */
     private void handlePendingToOpenConnections() {
         try {
-            // First loop level: This job keeps on forever...
-            while (true) {
-                // We set the limit of connections (Sockets), if any. the number of "inProgress" + "active" connections
-                // cannot be higher than this value.
-                OptionalInt limitNumConns = config.getMaxSocketConnections();
-
-                // We keep track of how many connections we are trying on each iteration...
-                int numConnectionsTried = 0;
-
-                // Second loop level: We loop over the pending Connections...
-                while (true) {
-                    // Basic checks before getting a Peer from the Pool:
-                    // If any of these checks fail, we break the loop (we don't process any more peers)
-                    if (!this.selector.isOpen()) break;
-                    if (!keep_connecting) break;
-                    if (inProgressConns.size() > config.getMaxSocketConnectionsOpeningAtSameTime()) break;
-                    if ((limitNumConns.isPresent()) && (inProgressConns.size() + activeConns.size() >= limitNumConns.getAsInt())) break;
-
-
-                    PeerAddress peerAddress = this.pendingToOpenConns.take();
-                    if (peerAddress == null) continue;
-
-                    // Basic checks after obtaining the Peer from the Pool:
-                    // If any of these checks fail, we just skip to the next Peer
-                    if (activeConns.containsKey(peerAddress)) continue;
-                    if (inProgressConns.containsKey(peerAddress)) continue;
-                    if (blacklist.contains(peerAddress.getIp())) continue;
-
-                    // We handle this connection:
-                    // In case opening the connection takes too long, we wrap it up in a TimeoutTask...
-
-                    logger.trace(peerAddress, "handling connection To open. inProgress: " + this.inProgressConns.size() + " Still pendingToOpen in Queue: " + this.pendingToOpenConns.size());
-                    TimeoutTask connectPeerTask = TimeoutTaskBuilder.newTask()
-                            .threadsHandledBy(newConnsExecutor)
-                            .execute(() -> handleConnectionToOpen(peerAddress))
-                            .waitFor(config.getTimeoutSocketConnection().getAsInt())
-                            .ifTimeoutThenExecute(() -> {
-                                        processConnectionFailed(peerAddress, PeerRejectedEvent.RejectedReason.TIMEOUT,"connection timeout");
-                                        //System.out.println("<<<<< CONNECTION TIMEOUT " + peerAddress.toString() + ", " + Thread.activeCount() + " Threads");
-                                    }
-                            )
-                            .build();
-                    connectPeerTask.execute();
-                    numConnectionsTried++;
-                    // We wait a little bit between connections:
-                    Thread.sleep(50);
-                } // while...
-
-                // In case there are NO more connections pending to Open, We wait until the Queue of Pending
-                // connection has some content, or we are allowed to keep making  connections..
-                while (pendingToOpenConns.size() == 0 || !this.keep_connecting) Thread.sleep(1000);
-
-                // A little wait between different execution mof this process:
-                Thread.sleep(1000);
-
+            while (this.selector.isOpen()) {
+                PeerAddress peerAddress = this.pendingToOpenConns.take();
+
+                // We wait until we are allowed to make more connections:
+                waitForConnectionSlot();
+                newConnsRateLimiter.acquire();
+                if (!this.selector.isOpen()) break;
+
+                // Basic checks after obtaining the Peer from the Pool:
+                // If any of these checks fail, we just skip to the next Peer
+                if (activeConns.containsKey(peerAddress)) continue;
+                if (inProgressConns.containsKey(peerAddress)) continue;
+                if (blacklist.contains(peerAddress.getIp())) continue;
+
+                logger.trace(peerAddress, "handling connection To open. inProgress: " + this.inProgressConns.size() + " Still pendingToOpen in Queue: " + this.pendingToOpenConns.size());
+                handleConnectionToOpen(peerAddress);
             } // while...
+        } catch (InterruptedException ie) {
+            // The Handler is stopping...
         } catch (Throwable th) {
             th.printStackTrace();
-            //handlerLogger.error(th, th.getMessage());
         }
-
     }
 
     /**
-     * It handles the in-progress connections. these connections are already open from our end, but we are just waiting
-     * for the remote Peer to confirm (through a CONNECT Key in the KeySelector). This method loops over all these
-     * connections and remove those ones that are expired based on our config (timeoutSocketRemoteConfirmation)
-     * NOTE: An expired and remove connection from there might still confirm later on, sending a CONNECT signal to us. In
-     * that case, the connection is still accepted and inserted into the "active" conns.
-     */
-    private void handleInProgressConnections() {
-        try {
-            // First loop level: This job keeps on forever...
-            // We keep a temporary list where we keep a reference to those In-Progress Connections that need to be removed
-            // because they have expired...
-            List<PeerAddress> inProgressConnsToRemove = new ArrayList<>();
-            while (true) {
-                // Second loop level: We loop over the InProgress Connections...
-                try {
-                    lock.writeLock().lock();
-                    for (PeerAddress peerAddress : this.inProgressConns.keySet()) {
-                        InProgressConn inProgressConn = this.inProgressConns.get(peerAddress);
-                        if (inProgressConn.hasExpired(this.config.getTimeoutSocketRemoteConfirmation().getAsInt())) {
-                            inProgressConnsToRemove.add(peerAddress);
-                        }
-                    } // for...
-                    // we remove the expired connections...
-                    if (!inProgressConnsToRemove.isEmpty()) {
-                        logger.trace("Removing " + inProgressConnsToRemove.size() + " in-progress expired connections");
-                        numConnsInProgressExpired.addAndGet(inProgressConnsToRemove.size());
-                        inProgressConnsToRemove.forEach(p -> inProgressConns.remove(p));
-                        inProgressConnsToRemove.clear();
-                    }
-                } finally {
-                    lock.writeLock().unlock();
-                }
-                Thread.sleep(2000); // avoid tight loops
-            } // while...
-        } catch (InterruptedException ie) {
-            ie.printStackTrace();
-            throw new RuntimeException(ie);
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        }
-    }
-    /**
-     * It handles the connections pending to close.
+     * It handles the connections pending to close. This Thread blocks until there is a connection to close.
      */
     private void handlePendingToCloseConnections() {
-
         try {
-            // First loop level: This job keeps on forever...
             while (true) {
-                DisconnectPeerRequest disconnectRequest;
-                while ((disconnectRequest = pendingToCloseConns.take()) != null) {
-                    PeerAddress peerAddress = disconnectRequest.getPeerAddress();
-                    logger.trace(disconnectRequest, "Processing request to Close...");
-
-                    // For each connection to closeAndClear, we check that we have already a SelectionKey for it.
-                    // If we do, we check the Key, and put back the connection into the "PendingToOpen" Pool...
-
-                    Iterator<SelectionKey> keys = selector.keys().iterator();
-                    while (keys.hasNext()) {
-                        SelectionKey key = keys.next();
-
-                        if (key.attachment() != null) {
-                            KeyConnectionAttach keyAttach = (KeyConnectionAttach) key.attachment();
-                            if (peerAddress.equals(keyAttach.peerAddress)) {
-                                logger.trace(peerAddress, "Removing Key... ");
-                                closeKey(key, disconnectRequest.getReason());
-                                // The Peer is sent back to the pool of connections to Open, so it can be reused later on
-                                // TODO: DISABLED!!!!
-                                //connect(keyAttach.peerAddress); // back to the Pool
-
-                            }
-                        }
-                    } // while...
+                DisconnectPeerRequest disconnectRequest = pendingToCloseConns.take();
+                PeerAddress peerAddress = disconnectRequest.getPeerAddress();
+                logger.trace(disconnectRequest, "Processing request to Close...");
+
+                // For each connection to closeAndClear, we check that we have already a SelectionKey for it.
+                // If we do, we check the Key, and put back the connection into the "PendingToOpen" Pool...
+
+                Iterator<SelectionKey> keys = allKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+
+                    if (key.attachment() != null) {
+                        KeyConnectionAttach keyAttach = (KeyConnectionAttach) key.attachment();
+                        if (peerAddress.equals(keyAttach.peerAddress)) {
+                            logger.trace(peerAddress, "Removing Key... ");
+                            closeKey(key, disconnectRequest.getReason());
+                            // The Peer is sent back to the pool of connections to Open, so it can be reused later on
+                            // TODO: DISABLED!!!!
+                            //connect(keyAttach.peerAddress); // back to the Pool
 
+                        }
+                    }
                 } // while...
-
-                // We wait until the Queue of Pending connection has some content...
-                while (pendingToCloseConns.size() == 0) Thread.sleep(1000);
             } // while..
         } catch (InterruptedException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
+            // The Handler is stopping...
         }
     }
 
@@ -788,14 +797,16 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
                         keyConnection.stream.input().close(new StreamCloseEvent());
                     }
                     pendingToCloseConns.remove(keyConnection.peerAddress);
-                    inProgressConns.remove(keyConnection.peerAddress);
+                    removeInProgressConn(keyConnection.peerAddress);
                     // We notify about this Peer being Disconnected:
                     eventBus.publish(new PeerDisconnectedEvent(keyConnection.peerAddress, reason));
 
                     activeConns.remove(keyConnection.peerAddress);
+                    notifyConnectionSlots();
                     logger.trace(keyConnection.peerAddress, "Connection closed");
                 }
                 //failedConns.add(keyConnection.peerAddress);
+                if (keyConnection.reactor != null) keyConnection.reactor.unregister(key);
             }
 
         } catch (Exception e) {
@@ -815,12 +826,31 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
         while (keyIterator.hasNext()) {
             SelectionKey key = keyIterator.next();
             keyIterator.remove();
-            handleKey(key);
+            try {
+                handleKey(key);
+            } catch (Exception e) {
+                onKeyError(key, e);
+            }
         }
         // We add a Delay, so more keys are accumulated on each iteration and we avoid tight loops:
         //Thread.sleep(50);
     }
 
+    /**
+     * It handles an error thrown while handling a Key: the Connection behind it is closed, so the Peer does not
+     * get stuck in a half-broken state. The Key of the Server Socket is never closed, since an error accepting one
+     * incoming connection must not stop us from accepting the following ones.
+     */
+    private void onKeyError(SelectionKey key, Throwable error) {
+        if (key.channel() instanceof ServerSocketChannel) {
+            logger.error(error, "Error accepting an incoming Connection");
+            return;
+        }
+        Object peerAddress = (key.attachment() != null) ? ((KeyConnectionAttach) key.attachment()).peerAddress : key;
+        logger.trace(peerAddress, "Error handling the Connection, closing it: " + error.getMessage());
+        closeKey(key, PeerDisconnectedEvent.DisconnectedReason.DISCONNECTED_BY_LOCAL);
+    }
+
     /**
      * It handles each selection key from the selector. This logic is encapsualted in this method, so it can be
      * override by a child class in case we don't want to habdle specific keys or handle new ones (like the
@@ -828,36 +858,30 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
      * @param key Key to handle
      */
     protected void handleKey(SelectionKey key) throws IOException {
-        try {
-            //logger.trace("Key : " + key);
-            if (!key.isValid()) {
-                handleInvalidKey(key);
-                return;
-            }
-            if (key.isConnectable()) {
-                //logger.trace( "Handling Connectable Key " + key + "...");
-                handleConnect(key);
-                return;
-            }
-            if (key.isReadable()) {
-                //logger.trace( "Handling Readable Key " + key + "...");
-                handleRead(key);
-                return;
-            }
-            if (key.isWritable()) {
-                //logger.trace( "Handling Writable Key " + key + "...");
-                handleWrite(key);
-                return;
-            }
-            if ((server_mode) && (key.isAcceptable())) {
-                //logger.trace("Handling Acceptable Key " + key + "...");
-                handleAccept(key);
-                return;
-            }
-
-        } catch (Exception e) {
-            //handlerLogger.error(e, e.getMessage());
-            //e.printStackTrace();
+        //logger.trace("Key : " + key);
+        if (!key.isValid()) {
+            handleInvalidKey(key);
+            return;
+        }
+        if (key.isConnectable()) {
+            //logger.trace( "Handling Connectable Key " + key + "...");
+            handleConnect(key);
+            return;
+        }
+        if (key.isReadable()) {
+            //logger.trace( "Handling Readable Key " + key + "...");
+            handleRead(key);
+            return;
+        }
+        if (key.isWritable()) {
+            //logger.trace( "Handling Writable Key " + key + "...");
+            handleWrite(key);
+            return;
+        }
+        if ((server_mode) && (key.isAcceptable())) {
+            //logger.trace("Handling Acceptable Key " + key + "...");
+            handleAccept(key);
+            return;
         }
     }
 
@@ -871,7 +895,7 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
 
             // Whatever happens, we remove this Peer form the "inProgress" Connections:
             if (key.attachment() != null) {
-                inProgressConns.remove(keyConnection.peerAddress);
+                removeInProgressConn(keyConnection.peerAddress);
             }
 
             // Check:
@@ -886,10 +910,12 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
                 return;
             }
 
-            // If we reach this far, we accept the connection:
+            // If we reach this far, we accept the connection. From now on this Socket is handled by one of the
+            // Reactors, so we remove it from our main Selector:
             SocketChannel socketChannel = (SocketChannel) key.channel();
             if (socketChannel.finishConnect()) {
-                startPeerConnection(key);
+                key.cancel();
+                assignToReactor(socketChannel, keyConnection);
             } else closeKey(key, PeerDisconnectedEvent.DisconnectedReason.DISCONNECTED_BY_LOCAL);
 
         } catch (ConnectException e) {
@@ -911,15 +937,11 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
         //handlerLogger.log(Level.TRACE, "read key...");
         KeyConnectionAttach keyConnection = (KeyConnectionAttach) key.attachment();
 
-        // If these bytes are the FIRST bytes coming from a Peer, we wait a bit JUST IN CASE, so we make sure that
-        // all the events related to this Peer/Stream have been populated properly...
-
-        if (!keyConnection.started) {
-            try { Thread.sleep(50);} catch (InterruptedException ie) {}
-            keyConnection.started = true;
-        }
+        // NOTE: The READ operations are only enabled for this Key once its Stream is ready (see
+        // "startPeerConnection()"), so all the events related to this Peer/Stream have been populated properly...
 
         int numBytesRead = ((NIOInputStream)keyConnection.stream.input()).readFromSocket();
+        if (keyConnection.reactor != null) keyConnection.reactor.onRead(numBytesRead);
         //logger.trace(numBytesRead + " read from " + ((NIOInputStream) keyConnection.stream.input()).getPeerAddress().toString());
         if (numBytesRead == -1) {
             logger.trace(keyConnection.peerAddress, "Connection closed by the Remote Peer.");
@@ -935,6 +957,7 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
         // We write the data to the Peer (through the Stream wrapped out around it) and we run the callbacks:
         KeyConnectionAttach keyConnection = (KeyConnectionAttach) key.attachment();
         int numBytesWrite = ((NIOOutputStream) keyConnection.stream.output()).writeToSocket();
+        if (keyConnection.reactor != null) keyConnection.reactor.onWrite(numBytesWrite);
         //logger.trace(numBytesWrite + " written to " + ((NIOOutputStream) keyConnection.stream.output()).getPeerAddress().toString());
     }
 
@@ -992,15 +1015,40 @@ public class NetworkHandlerImpl extends AbstractExecutionThreadService implement
 
         logger.trace(socket.getRemoteSocketAddress(), "accepting Connection...");
 
-        SelectionKey clientKey = channel.register(this.selector, SelectionKey.OP_READ );
         PeerAddress peerAddress = new PeerAddress(socket.getInetAddress(), socket.getPort());
-        clientKey.attach(new KeyConnectionAttach(peerAddress));
 
         // We activate the Connection straight away:
-        startPeerConnection(clientKey);
+        assignToReactor(channel, new KeyConnectionAttach(peerAddress));
 
     }
 
+    /**
+     * It assigns a connection already established to the Reactor with the lowest load. The Socket is registered in
+     * the Selector of that Reactor, and after that the connection is started (Stream created, events published, etc).
+     */
+    private void assignToReactor(SocketChannel channel, KeyConnectionAttach keyAttach) {
+        NetworkReactor reactor = reactors.stream().min(Comparator.comparingLong(NetworkReactor::getLoad)).get();
+        keyAttach.reactor = reactor;
+        logger.trace(keyAttach.peerAddress, "Assigning connection to Reactor #" + reactor.getIndex());
+        reactor.register(channel, keyAttach, key -> {
+            try {
+                startPeerConnection(key);
+            } catch (Exception e) {
+                logger.error(e, "Error starting connection");
+                closeKey(key, PeerDisconnectedEvent.DisconnectedReason.DISCONNECTED_BY_LOCAL);
+            }
+        });
+    }
+
+    /**
+     * Returns all the Keys registered, both in the main Selector and in all the Reactors
+     */
+    private List<SelectionKey> allKeys() {
+        List<SelectionKey> result = new ArrayList<>(selector.keys());
+        reactors.forEach(r -> result.addAll(r.getKeys()));
+        return result;
+    }
+
     /**
      * It closes all Selection Keys
      */
@@ -2,6 +2,9 @@ package io.bitcoinsv.jcl.net.network.handlers;
 
 import io.bitcoinsv.jcl.tools.handlers.HandlerState;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author i.fernandez@nchain.com
  * Copyright (c) 2018-2020 nChain Ltd
@@ -23,10 +26,18 @@ public final class NetworkHandlerState extends HandlerState {
 
     private int numConnsTried;
 
+    // State of each one of the I/O Reactors:
+    private final List<NetworkReactorState> reactorsState;
+
+    // Number of tasks waiting in each one of the Lanes of the Executor used by the Peer Streams:
+    private final List<Integer> streamLanesQueueDepth;
+
     NetworkHandlerState(int numActiveConns, int numInProgressConns, int numPendingToOpenConns, int numPendingToCloseConns,
                         boolean server_mode, boolean keep_connecting,
                         long numConnsFailed, long numInProgressConnsExpired,
-                        int numConnsTried) {
+                        int numConnsTried,
+                        List<NetworkReactorState> reactorsState,
+                        List<Integer> streamLanesQueueDepth) {
         this.numActiveConns = numActiveConns;
         this.numInProgressConns = numInProgressConns;
         this.numPendingToOpenConns = numPendingToOpenConns;
@@ -36,6 +47,8 @@ public final class NetworkHandlerState extends HandlerState {
         this.numConnsFailed = numConnsFailed;
         this.numInProgressConnsExpired = numInProgressConnsExpired;
         this.numConnsTried = numConnsTried;
+        this.reactorsState = (reactorsState != null) ? reactorsState : new ArrayList<>();
+        this.streamLanesQueueDepth = (streamLanesQueueDepth != null) ? streamLanesQueueDepth : new ArrayList<>();
     }
 
 
@@ -53,6 +66,9 @@ public final class NetworkHandlerState extends HandlerState {
         result.append(numInProgressConnsExpired).append(" in-progress expired, ");
         result.append(": ").append((server_mode)? "Running in Server Mode" : "Running in Client Mode");
         result.append(": ").append((keep_connecting)? "connecting": "connections stable");
+        if (!streamLanesQueueDepth.isEmpty())
+            result.append(", Stream Lanes queue depth: ").append(streamLanesQueueDepth);
+        reactorsState.forEach(r -> result.append("\n - ").append(r));
 
         return result.toString();
     }
@@ -64,6 +80,8 @@ public final class NetworkHandlerState extends HandlerState {
     public boolean isServer_mode()          { return this.server_mode; }
     public boolean isKeep_connecting()      { return this.keep_connecting; }
     public int getNumCopnnsTried()          { return this.numConnsTried; }
+    public List<NetworkReactorState> getReactorsState() { return this.reactorsState; }
+    public List<Integer> getStreamLanesQueueDepth()     { return this.streamLanesQueueDepth; }
 
     public static NetworkHandlerStateBuilder builder() {
         return new NetworkHandlerStateBuilder();
@@ -78,7 +96,9 @@ public final class NetworkHandlerState extends HandlerState {
                 .keep_connecting(this.keep_connecting)
                 .numConnsFailed(this.numConnsFailed)
                 .numInProgressConnsExpired(this.numInProgressConnsExpired)
-                .numConnsTried(this.numConnsTried);
+                .numConnsTried(this.numConnsTried)
+                .reactorsState(this.reactorsState)
+                .streamLanesQueueDepth(this.streamLanesQueueDepth);
     }
 
     /**
@@ -94,6 +114,8 @@ public final class NetworkHandlerState extends HandlerState {
         private boolean server_mode;
         private boolean keep_connecting;
         private int numConnsTried;
+        private List<NetworkReactorState> reactorsState;
+        private List<Integer> streamLanesQueueDepth;
 
         NetworkHandlerStateBuilder() {}
 
@@ -142,9 +164,19 @@ public final class NetworkHandlerState extends HandlerState {
             return this;
         }
 
+        public NetworkHandlerState.NetworkHandlerStateBuilder reactorsState(List<NetworkReactorState> reactorsState) {
+            this.reactorsState = reactorsState;
+            return this;
+        }
+
+        public NetworkHandlerState.NetworkHandlerStateBuilder streamLanesQueueDepth(List<Integer> streamLanesQueueDepth) {
+            this.streamLanesQueueDepth = streamLanesQueueDepth;
+            return this;
+        }
+
         public NetworkHandlerState build() {
             return new NetworkHandlerState(numActiveConns, numInProgressConns, numPendingToOpenConns, numPendingToCloseConns, server_mode, keep_connecting,
-                    numConnsFailed, numInProgressConnsExpired, numConnsTried);
+                    numConnsFailed, numInProgressConnsExpired, numConnsTried, reactorsState, streamLanesQueueDepth);
         }
     }
 }
@@ -0,0 +1,207 @@
+package io.bitcoinsv.jcl.net.network.handlers;
+
+import io.bitcoinsv.jcl.net.tools.LoggerUtil;
+import io.bitcoinsv.jcl.tools.thread.ThreadUtils;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * An I/O Reactor used by the NetworkHandlerImpl. Each Reactor runs its own Selector in its own Thread, and takes
+ * care of all the reading/writing from/to the Sockets registered in it. The NetworkHandler uses a pool of these,
+ * so the I/O of all the Peers is spread across several Threads instead of only one.
+ *
+ * - A SocketChannel is never registered directly from another Thread. Instead, it's put into a Queue and the
+ *   Selector is woken up, so the registration itself is always done by the Reactor Thread.
+ * - Once the Channel is registered, a callback is triggered (in the Reactor Thread), with the new Key.
+ * - The Keys handled by this Reactor are processed by the KeyHandler provided in the constructor.
+ * - If handling a Key fails, only the connection of that Key is closed (by the KeyErrorHandler), and the Reactor
+ *   keeps serving the rest of the Keys.
+ */
+class NetworkReactor {
+
+    /** Logic to handle each Key selected by the Reactor */
+    interface KeyHandler {
+        void handleKey(SelectionKey key) throws IOException;
+    }
+
+    /** Logic to close the connection of a Key whose handling has failed */
+    interface KeyErrorHandler {
+        void onKeyError(SelectionKey key, Throwable error);
+    }
+
+    /** A Channel pending to be registered in this Reactor */
+    private class PendingRegistration {
+        SocketChannel channel;
+        Object attachment;
+        Consumer<SelectionKey> onRegistered;
+        PendingRegistration(SocketChannel channel, Object attachment, Consumer<SelectionKey> onRegistered) {
+            this.channel = channel;
+            this.attachment = attachment;
+            this.onRegistered = onRegistered;
+        }
+    }
+
+    private final int index;
+    private final LoggerUtil logger;
+    private final KeyHandler keyHandler;
+    private final KeyErrorHandler keyErrorHandler;
+    private final Selector selector;
+    private final ExecutorService executor;
+    private volatile boolean running;
+
+    // Channels waiting to be registered, and Keys already registered in this Reactor:
+    private final Queue<PendingRegistration> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final Set<SelectionKey> keys = ConcurrentHashMap.newKeySet();
+
+    // Load counters:
+    private final AtomicLong numReads = new AtomicLong();
+    private final AtomicLong numBytesRead = new AtomicLong();
+    private final AtomicLong numWrites = new AtomicLong();
+    private final AtomicLong numBytesWritten = new AtomicLong();
+
+    /** Constructor */
+    NetworkReactor(int index, LoggerUtil parentLogger, KeyHandler keyHandler, KeyErrorHandler keyErrorHandler) throws IOException {
+        this.index = index;
+        this.logger = LoggerUtil.of(parentLogger, NetworkHandler.HANDLER_ID, this.getClass());
+        this.keyHandler = keyHandler;
+        this.keyErrorHandler = keyErrorHandler;
+        this.selector = SelectorProvider.provider().openSelector();
+        this.executor = ThreadUtils.getSingleThreadExecutorService("JclNetworkReactor-" + index);
+    }
+
+    /** Starts the Reactor main loop in its own Thread */
+    void start() {
+        this.running = true;
+        this.executor.submit(this::run);
+    }
+
+    /** Stops the Reactor. The Keys and the Selector must be closed afterwards */
+    void stop() {
+        this.running = false;
+        this.selector.wakeup();
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * It registers the Channel in this Reactor. The registration is performed by the Reactor Thread, and the callback
+     * is triggered once the registration is done. No operations are selected at this point: The READ operations are
+     * enabled later on, once the Stream of this connection is ready.
+     */
+    void register(SocketChannel channel, Object attachment, Consumer<SelectionKey> onRegistered) {
+        pendingRegistrations.offer(new PendingRegistration(channel, attachment, onRegistered));
+        selector.wakeup();
+    }
+
+    /** It removes the key from this Reactor. It's safe to call it more than once for the same Key */
+    void unregister(SelectionKey key) {
+        keys.remove(key);
+    }
+
+    /** Main Loop. It keeps running until the Reactor is stopped */
+    private void run() {
+        logger.trace("Reactor #" + index + " started.");
+        while (running) {
+            try {
+                selector.select();
+                processPendingRegistrations();
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    handleKey(key);
+                }
+            } catch (ClosedSelectorException cse) {
+                // The Selector has been closed while we were waiting on it, so we are done...
+                break;
+            } catch (Throwable e) {
+                logger.error(e, "Error running the Reactor #" + index);
+                if (!selector.isOpen()) break;
+            }
+        }
+        logger.trace("Reactor #" + index + " stopped.");
+    }
+
+    // It handles one Key. If it fails, only the connection of this Key is closed
+    private void handleKey(SelectionKey key) {
+        try {
+            keyHandler.handleKey(key);
+        } catch (Throwable e) {
+            logger.error(e, "Error handling a Key in Reactor #" + index + ", closing its connection");
+            try {
+                keyErrorHandler.onKeyError(key, e);
+            } catch (Throwable th) {
+                logger.error(th, "Error closing a Key in Reactor #" + index);
+            } finally {
+                unregister(key);
+            }
+        }
+    }
+
+    private void processPendingRegistrations() {
+        PendingRegistration registration;
+        while ((registration = pendingRegistrations.poll()) != null) {
+            try {
+                SelectionKey key = registration.channel.register(selector, 0, registration.attachment);
+                keys.add(key);
+                registration.onRegistered.accept(key);
+            } catch (Exception e) {
+                logger.error(e, "Error registering a Channel in Reactor #" + index);
+            }
+        }
+    }
+
+    // Counters updated by the NetworkHandler after each I/O operation:
+
+    void onRead(int numBytes) {
+        numReads.incrementAndGet();
+        if (numBytes > 0) numBytesRead.addAndGet(numBytes);
+    }
+
+    void onWrite(int numBytes) {
+        numWrites.incrementAndGet();
+        if (numBytes > 0) numBytesWritten.addAndGet(numBytes);
+    }
+
+    /**
+     * Load of this Reactor. The Reactor with the lowest load is chosen for every new connection. The Channels still
+     * pending to register are also taken into consideration, so a burst of new connections is also spread.
+     */
+    long getLoad()                  { return keys.size() + pendingRegistrations.size(); }
+
+    int getIndex()                  { return this.index; }
+    Selector getSelector()          { return this.selector; }
+    Set<SelectionKey> getKeys()     { return this.keys; }
+
+    NetworkReactorState getState() {
+        return NetworkReactorState.builder()
+                .reactorIndex(index)
+                .numConnections(keys.size())
+                .numReads(numReads.get())
+                .numBytesRead(numBytesRead.get())
+                .numWrites(numWrites.get())
+                .numBytesWritten(numBytesWritten.get())
+                .build();
+    }
+}
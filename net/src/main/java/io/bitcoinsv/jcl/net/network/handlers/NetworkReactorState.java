@@ -0,0 +1,97 @@
+package io.bitcoinsv.jcl.net.network.handlers;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * This class stores the State of one of the I/O Reactors used by the NetworkHandler. Each Reactor runs its own
+ * Selector in its own Thread, and takes care of reading/writing from/to the Sockets assigned to it. These counters
+ * give an idea of how the load is distributed between them.
+ */
+public final class NetworkReactorState {
+    private final int reactorIndex;
+    private final int numConnections;
+    private final long numReads;
+    private final long numBytesRead;
+    private final long numWrites;
+    private final long numBytesWritten;
+
+    NetworkReactorState(int reactorIndex, int numConnections, long numReads, long numBytesRead,
+                        long numWrites, long numBytesWritten) {
+        this.reactorIndex = reactorIndex;
+        this.numConnections = numConnections;
+        this.numReads = numReads;
+        this.numBytesRead = numBytesRead;
+        this.numWrites = numWrites;
+        this.numBytesWritten = numBytesWritten;
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer result = new StringBuffer();
+        result.append("Reactor #").append(reactorIndex).append(": ");
+        result.append(numConnections).append(" conns, ");
+        result.append(numReads).append(" reads (").append(numBytesRead).append(" bytes), ");
+        result.append(numWrites).append(" writes (").append(numBytesWritten).append(" bytes)");
+        return result.toString();
+    }
+
+    public int getReactorIndex()        { return this.reactorIndex; }
+    public int getNumConnections()      { return this.numConnections; }
+    public long getNumReads()           { return this.numReads; }
+    public long getNumBytesRead()       { return this.numBytesRead; }
+    public long getNumWrites()          { return this.numWrites; }
+    public long getNumBytesWritten()    { return this.numBytesWritten; }
+
+    public static NetworkReactorStateBuilder builder() {
+        return new NetworkReactorStateBuilder();
+    }
+
+    /**
+     * Builder
+     */
+    public static class NetworkReactorStateBuilder {
+        private int reactorIndex;
+        private int numConnections;
+        private long numReads;
+        private long numBytesRead;
+        private long numWrites;
+        private long numBytesWritten;
+
+        NetworkReactorStateBuilder() {}
+
+        public NetworkReactorState.NetworkReactorStateBuilder reactorIndex(int reactorIndex) {
+            this.reactorIndex = reactorIndex;
+            return this;
+        }
+
+        public NetworkReactorState.NetworkReactorStateBuilder numConnections(int numConnections) {
+            this.numConnections = numConnections;
+            return this;
+        }
+
+        public NetworkReactorState.NetworkReactorStateBuilder numReads(long numReads) {
+            this.numReads = numReads;
+            return this;
+        }
+
+        public NetworkReactorState.NetworkReactorStateBuilder numBytesRead(long numBytesRead) {
+            this.numBytesRead = numBytesRead;
+            return this;
+        }
+
+        public NetworkReactorState.NetworkReactorStateBuilder numWrites(long numWrites) {
+            this.numWrites = numWrites;
+            return this;
+        }
+
+        public NetworkReactorState.NetworkReactorStateBuilder numBytesWritten(long numBytesWritten) {
+            this.numBytesWritten = numBytesWritten;
+            return this;
+        }
+
+        public NetworkReactorState build() {
+            return new NetworkReactorState(reactorIndex, numConnections, numReads, numBytesRead, numWrites, numBytesWritten);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.bitcoinsv.jcl.net.network.streams;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A piece of data sent by an OutputStream, which also specifies the OutboundLane it must be sent through.
+ *
+ * If the "continued" flag is set, this is not a whole message but only a part of it, and more parts will follow
+ * in the same Lane. In that case the Destination (the NIOOutputStream) will NOT write data from any other Lane until
+ * the last part of the message (the one with "continued" = false) has been written, so the bytes of different
+ * messages never get mixed up.
+ *
+ * A regular StreamDataEvent is equivalent to an OutboundDataEvent in the BULK Lane, not continued.
+ */
+public class OutboundDataEvent<T> extends StreamDataEvent<T> {
+    private final OutboundLane lane;
+    private final boolean continued;
+
+    public OutboundDataEvent(T data, OutboundLane lane, boolean continued) {
+        super(data);
+        this.lane = lane;
+        this.continued = continued;
+    }
+
+    public OutboundDataEvent(T data, OutboundLane lane) {
+        this(data, lane, false);
+    }
+
+    public OutboundLane getLane()   { return this.lane; }
+    public boolean isContinued()    { return this.continued; }
+}
@@ -0,0 +1,17 @@
+package io.bitcoinsv.jcl.net.network.streams;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * The Lanes the outbound data sent to a Peer is organized into. Each Lane has its own queue, and the data in a
+ * Lane is only written to the Socket when the Lanes with higher priority are empty, so small but time-sensitive
+ * messages (like PING/PONG) never wait behind big amounts of data (like Blocks or big batches of Txs).
+ *
+ * The Lanes are defined here from the highest to the lowest priority.
+ */
+public enum OutboundLane {
+    CONTROL,    // Handshake, Ping/Pong, Reject, etc
+    INVENTORY,  // Inv, GetData, NotFound, GetHeaders, Headers, etc
+    BULK        // Txs, Blocks and any other kind of data
+}
@@ -0,0 +1,21 @@
+package io.bitcoinsv.jcl.net.network.streams;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A PeerInputStream that represents the final step in the Stream chain, that is the one physically connected to the
+ * remote Peer (like the NIOInputStream, connected to a Socket). Apart from the data, it also exposes some operations
+ * to control how that data is received:
+ *
+ * - The Buffer used to receive the data can be upgraded when we are expecting big amounts of data (like a Block),
+ *   and reset back to normal afterwards.
+ * - The data does NOT start flowing until the Stream is "ready", that is when whoever is consuming the data has linked
+ *   to it and calls "markReady()". If nobody has called "expectReady()", the Stream might decide to start on its own.
+ */
+public interface PeerInputStreamEndPoint<T> extends PeerInputStream<T> {
+    void upgradeBufferSize();
+    void resetBufferSize();
+    void expectReady();
+    void markReady();
+}
@@ -6,6 +6,7 @@ import io.bitcoinsv.jcl.tools.events.EventBus;
 
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 
@@ -36,6 +37,14 @@ import java.util.function.Consumer;
  *
  * The transformation function over the data can be executed in blocking mode or in no-blocking mode (running
  * in a different Thread), depending on the ExecutorService passed to the constructor.
+ *
+ * "Fused" mode:
+ * By default, each Stream in the chain has its own EventBus, so every piece of data that goes from one Stream to the
+ * next one is wrapped in a Task and submitted to an Executor. For small pieces of data that overhead can be bigger
+ * than the transformation itself. A Stream can be created in "fused" mode instead: in that case it's linked directly
+ * to its source, which calls its "transform" function in the same Thread it's publishing the data in, and the results
+ * are also delivered to the clients of this Stream in that same Thread. So a chain of fused Streams only hands the
+ * data over to an Executor once, at the beginning of the chain (the first Stream not fused).
  */
 public abstract class PeerInputStreamImpl<I,R> implements PeerInputStream<R> {
 
@@ -43,6 +52,13 @@ public abstract class PeerInputStreamImpl<I,R> implements PeerInputStream<R> {
     protected PeerAddress peerAddress;
     protected PeerInputStream<I> source;
 
+    // If TRUE, this Stream is fused to its source (see class description):
+    protected final boolean fused;
+
+    // Executor used to deliver the data to the Streams fused to this one, and those Streams:
+    private final ExecutorService executor;
+    private final List<PeerInputStreamImpl<R, ?>> fusedStreams = new CopyOnWriteArrayList<>();
+
     /**
      * Constructor.
      * @param executor  The transformation on the data is executed on blocking/non-blocking mode depending on this. If
@@ -52,23 +68,56 @@ public abstract class PeerInputStreamImpl<I,R> implements PeerInputStream<R> {
      *                  guaranteed.
      *
      * @param source    The input Stream that is linked to this InputStream.
+     * @param fused     If TRUE, this Stream is fused to its source, and the "executor" is ignored: The data is
+     *                  processed and delivered in the same Thread the source publishes it in.
      */
-    public PeerInputStreamImpl(PeerAddress peerAddress,ExecutorService executor, PeerInputStream<I> source) {
-        this.eventBus = EventBus.builder().executor(executor).build();
+    public PeerInputStreamImpl(PeerAddress peerAddress, ExecutorService executor, PeerInputStream<I> source, boolean fused) {
+        this.fused = fused && (source instanceof PeerInputStreamImpl);
+        this.executor = this.fused ? null : executor;
+        this.eventBus = EventBus.builder().executor(this.executor).build();
         this.peerAddress = peerAddress;
         this.source = source;
         if (source != null) linkSource(source);
     }
 
+    public PeerInputStreamImpl(PeerAddress peerAddress,ExecutorService executor, PeerInputStream<I> source) {
+        this(peerAddress, executor, source, false);
+    }
+
+    public PeerInputStreamImpl(ExecutorService executor, PeerInputStream<I> source, boolean fused) {
+        this(source.getPeerAddress(), executor, source, fused);
+    }
+
     public PeerInputStreamImpl(ExecutorService executor, PeerInputStream<I> source) {
-        this(source.getPeerAddress(), executor, source);
+        this(source.getPeerAddress(), executor, source, false);
     }
 
     protected void linkSource(PeerInputStream<I> source) {
-        source.onData(this::receiveAndTransform);
+        if (fused) ((PeerInputStreamImpl<?, I>) source).fusedStreams.add(this);
+        else source.onData(this::receiveAndTransform);
         source.onClose(event -> eventBus.publish(event));
     }
 
+    /**
+     * It sends the data to the clients of this Stream. The Streams fused to this one get it directly, the rest of
+     * them through the EventBus. Extending classes should use this method instead of publishing the data themselves.
+     */
+    protected void publishData(StreamDataEvent<R> event) {
+        if (!fusedStreams.isEmpty()) {
+            if (executor == null) deliverToFusedStreams(event);
+            else executor.execute(() -> deliverToFusedStreams(event));
+        }
+        eventBus.publish(event);
+    }
+
+    private void deliverToFusedStreams(StreamDataEvent<R> event) {
+        for (PeerInputStreamImpl<R, ?> fusedStream : fusedStreams) fusedStream.receiveAndTransform(event);
+    }
+
+    public boolean isFused() {
+        return this.fused;
+    }
+
     @Override
     public PeerAddress getPeerAddress() {
         return peerAddress;
@@ -100,7 +149,7 @@ public abstract class PeerInputStreamImpl<I,R> implements PeerInputStream<R> {
     protected synchronized void receiveAndTransform(StreamDataEvent<I> dataEvent) {
         try {
             List<StreamDataEvent<R>> dataTransformed = transform(dataEvent);
-            if (dataTransformed != null) dataTransformed.forEach(e -> eventBus.publish(e));
+            if (dataTransformed != null) dataTransformed.forEach(this::publishData);
         } catch (Throwable e) {
             eventBus.publish(new StreamErrorEvent(e));
         }
@@ -0,0 +1,99 @@
+package io.bitcoinsv.jcl.net.network.streams.loopback;
+
+import io.bitcoinsv.jcl.net.network.PeerAddress;
+import io.bitcoinsv.jcl.net.network.streams.PeerInputStreamEndPoint;
+import io.bitcoinsv.jcl.net.network.streams.PeerInputStreamImpl;
+import io.bitcoinsv.jcl.net.network.streams.StreamCloseEvent;
+import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * The final step in the Stream chain when the remote Peer runs in the same JVM (see LoopbackNetworkHandler). It's
+ * the equivalent of the NIOInputStream, but the bytes come from a LoopbackPipe instead of a Socket.
+ *
+ * Same as the NIOInputStream, the bytes do NOT flow until the Stream is "ready". The bytes received before that are
+ * kept and sent down the Stream when it becomes ready. There is no Socket Buffer here, so upgrading/resetting the
+ * Buffer size has no effect.
+ */
+public class LoopbackInputStream extends PeerInputStreamImpl<ByteArrayReader, ByteArrayReader> implements PeerInputStreamEndPoint<ByteArrayReader> {
+
+    private final List<ByteArrayReader> pendingData = new ArrayList<>();
+    private boolean ready;
+    private boolean closed;
+    // If TRUE, whoever consumes the data has promised to call "markReady()", so the ready timeout is ignored:
+    private volatile boolean readyExpected;
+
+    // Callback triggered when this Stream is closed (from any end):
+    private volatile Runnable closeListener;
+
+    public LoopbackInputStream(PeerAddress peerAddress, ExecutorService executor) {
+        super(peerAddress, executor, null);
+    }
+
+    /** Triggered by the LoopbackPipe when new bytes arrive */
+    public synchronized void receive(ByteArrayReader data) {
+        if (closed) {
+            data.closeAndClear();
+            return;
+        }
+        if (!ready) pendingData.add(data);
+        else super.publishData(new StreamDataEvent<>(data));
+    }
+
+    /** It sets the callback triggered when this Stream is closed */
+    public void onCloseListener(Runnable closeListener) {
+        this.closeListener = closeListener;
+    }
+
+    @Override
+    public synchronized void markReady() {
+        if (ready) return;
+        ready = true;
+        pendingData.forEach(data -> super.publishData(new StreamDataEvent<>(data)));
+        pendingData.clear();
+    }
+
+    @Override
+    public void expectReady() {
+        this.readyExpected = true;
+    }
+
+    /** Triggered when the time given to get ready expires. See NIOInputStream.onReadyTimeout() */
+    public void onReadyTimeout() {
+        if (!readyExpected) markReady();
+    }
+
+    public synchronized boolean isReady() {
+        return this.ready;
+    }
+
+    @Override
+    public void upgradeBufferSize() {}
+
+    @Override
+    public void resetBufferSize() {}
+
+    @Override
+    public void close(StreamCloseEvent event) {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            pendingData.forEach(ByteArrayReader::closeAndClear);
+            pendingData.clear();
+        }
+        super.close(event);
+        Runnable listener = this.closeListener;
+        if (listener != null) listener.run();
+    }
+
+    public List<StreamDataEvent<ByteArrayReader>> transform(StreamDataEvent<ByteArrayReader> dataEvent) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,90 @@
+package io.bitcoinsv.jcl.net.network.streams.loopback;
+
+import io.bitcoinsv.jcl.net.network.PeerAddress;
+import io.bitcoinsv.jcl.net.network.streams.OutboundDataEvent;
+import io.bitcoinsv.jcl.net.network.streams.OutboundLane;
+import io.bitcoinsv.jcl.net.network.streams.PeerOutputStream;
+import io.bitcoinsv.jcl.net.network.streams.PeerOutputStreamImpl;
+import io.bitcoinsv.jcl.net.network.streams.StreamCloseEvent;
+import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * The final step in the Stream chain when the remote Peer runs in the same JVM (see LoopbackNetworkHandler). It's
+ * the equivalent of the NIOOutputStream, but the bytes are written into a LoopbackPipe instead of a Socket.
+ *
+ * The bytes are written in the same order they are sent, but same as in the NIOOutputStream, the bytes of different
+ * messages never get mixed up: While a message is being sent in several parts (OutboundDataEvent "continued"), the
+ * data sent through other Lanes is held back until the last part of that message has been written.
+ */
+public class LoopbackOutputStream extends PeerOutputStreamImpl<ByteArrayReader, ByteArrayReader> implements PeerOutputStream<ByteArrayReader> {
+
+    private final LoopbackPipe pipe;
+
+    // Lane of the message being sent in several parts, if any, and the data held back until it's finished:
+    private OutboundLane openLane;
+    private final Queue<StreamDataEvent<ByteArrayReader>> heldBack = new ArrayDeque<>();
+
+    private boolean closed;
+    // Callback triggered when this Stream is closed:
+    private volatile Runnable closeListener;
+
+    public LoopbackOutputStream(PeerAddress peerAddress, LoopbackPipe pipe) {
+        super(peerAddress, null);
+        this.pipe = pipe;
+    }
+
+    /** It sets the callback triggered when this Stream is closed */
+    public void onCloseListener(Runnable closeListener) {
+        this.closeListener = closeListener;
+    }
+
+    @Override
+    public synchronized void send(StreamDataEvent<ByteArrayReader> event) {
+        if (openLane != null && getLane(event) != openLane) {
+            heldBack.offer(event);
+            return;
+        }
+        write(event);
+        // If the message is finished, we write the data held back, until another message in parts shows up:
+        while (openLane == null && !heldBack.isEmpty()) write(heldBack.poll());
+    }
+
+    private void write(StreamDataEvent<ByteArrayReader> event) {
+        boolean continued = (event instanceof OutboundDataEvent) && ((OutboundDataEvent<ByteArrayReader>) event).isContinued();
+        openLane = continued ? getLane(event) : null;
+        pipe.write(event.getData());
+    }
+
+    private OutboundLane getLane(StreamDataEvent<ByteArrayReader> event) {
+        return (event instanceof OutboundDataEvent) ? ((OutboundDataEvent<ByteArrayReader>) event).getLane() : OutboundLane.BULK;
+    }
+
+    @Override
+    public void close(StreamCloseEvent event) {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            heldBack.forEach(e -> e.getData().closeAndClear());
+            heldBack.clear();
+        }
+        pipe.close();
+        Runnable listener = this.closeListener;
+        if (listener != null) listener.run();
+    }
+
+    public List<StreamDataEvent<ByteArrayReader>> transform(StreamDataEvent<ByteArrayReader> data) {
+        throw new UnsupportedOperationException();
+    }
+
+    public LoopbackPipe getPipe() {
+        return this.pipe;
+    }
+}
@@ -0,0 +1,166 @@
+package io.bitcoinsv.jcl.net.network.streams.loopback;
+
+import io.bitcoinsv.jcl.net.network.streams.StreamCloseEvent;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayStatic;
+import io.bitcoinsv.jcl.tools.thread.ThreadUtils;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * An in-memory, one-way "link" between 2 Peers running in the same JVM. The bytes written into the Pipe are delivered
+ * to the LoopbackInputStream at the other end, in the same order, by a dedicated Thread.
+ *
+ * - The bytes are copied and split into chunks of "chunkSize" bytes, like the reads from a Socket, so the
+ *   Deserializer at the other end has to deal with partial messages in the same way.
+ * - The link can simulate a limited bandwidth and a latency: Each chunk is "transmitted" once the previous ones are
+ *   done (at "bandwidthBytesPerSec" bytes/sec), and it arrives "latency" after that. A bandwidth of ZERO means no
+ *   limit at all.
+ * - If the bytes pending to deliver go above the High Watermark, the Pipe is marked as NOT writable, and when they go
+ *   below the Low Watermark it becomes writable again. Every change is notified to the "writabilityListener", if any.
+ *
+ * When the Pipe is closed, the bytes already written are still delivered, and then the Stream at the other end is
+ * closed.
+ */
+public class LoopbackPipe {
+
+    private static final long NANOS_PER_SEC = TimeUnit.SECONDS.toNanos(1);
+
+    // A piece of data on its way to the other end. The "END_OF_STREAM" chunk carries no data:
+    private static class Chunk {
+        final ByteArrayReader data;
+        final int numBytes;
+        final long arrivalNanos;
+        Chunk(ByteArrayReader data, int numBytes, long arrivalNanos) {
+            this.data = data;
+            this.numBytes = numBytes;
+            this.arrivalNanos = arrivalNanos;
+        }
+    }
+
+    // Link Configuration:
+    private final long bandwidthBytesPerSec;
+    private final long latencyNanos;
+    private final int chunkSize;
+    private final long highWatermark;
+    private final long lowWatermark;
+
+    private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+    private final ExecutorService deliveryExecutor;
+    private LoopbackInputStream destination;
+
+    // Time when the link is free to "transmit" the next chunk (only used when the bandwidth is limited):
+    private long linkFreeNanos;
+    private boolean closed;
+
+    // Writability:
+    private final AtomicLong numBytesPending = new AtomicLong();
+    private volatile boolean writable = true;
+    private volatile Consumer<Boolean> writabilityListener;
+
+    /**
+     * Constructor.
+     * @param name                  Name of the Thread delivering the data
+     * @param bandwidthBytesPerSec  Bandwidth of the link (ZERO for no limit)
+     * @param latency               Latency of the link
+     * @param chunkSize             Max size of each piece of data delivered
+     * @param highWatermark         Bytes pending above which the Pipe becomes NOT writable
+     * @param lowWatermark          Bytes pending below which the Pipe becomes writable again
+     */
+    public LoopbackPipe(String name, long bandwidthBytesPerSec, Duration latency, int chunkSize,
+                        long highWatermark, long lowWatermark) {
+        this.bandwidthBytesPerSec = Math.max(0, bandwidthBytesPerSec);
+        this.latencyNanos = Math.max(0, latency.toNanos());
+        this.chunkSize = Math.max(1, chunkSize);
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.deliveryExecutor = ThreadUtils.getSingleThreadExecutorService(name);
+    }
+
+    /** It links the Pipe to the Stream at the other end, and starts delivering the data */
+    public void connect(LoopbackInputStream destination) {
+        this.destination = destination;
+        deliveryExecutor.submit(this::deliver);
+    }
+
+    /** It sets the callback triggered when the Pipe stops accepting data (too many bytes pending), or accepts it again */
+    public void onWritabilityChanged(Consumer<Boolean> writabilityListener) {
+        this.writabilityListener = writabilityListener;
+    }
+
+    /** It writes all the bytes in the Reader given into the Pipe. The Reader is empty after this */
+    public synchronized void write(ByteArrayReader reader) {
+        if (closed) {
+            reader.closeAndClear();
+            return;
+        }
+        while (!reader.isEmpty()) {
+            int numBytes = (int) Math.min(chunkSize, reader.size());
+            byte[] data = reader.read(numBytes);
+            enqueue(new ByteArrayReader(new ByteArrayStatic(data)), numBytes);
+        }
+        reader.closeAndClear();
+        if (writable && numBytesPending.get() > highWatermark) updateWritability(false);
+    }
+
+    /** It closes the Pipe. The bytes already written are still delivered before closing the other end */
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        enqueue(null, 0);
+    }
+
+    // It calculates when the chunk arrives at the other end, and it queues it:
+    private void enqueue(ByteArrayReader data, int numBytes) {
+        long now = System.nanoTime();
+        long transmitNanos = (bandwidthBytesPerSec > 0) ? (numBytes * NANOS_PER_SEC) / bandwidthBytesPerSec : 0;
+        linkFreeNanos = Math.max(now, linkFreeNanos) + transmitNanos;
+        numBytesPending.addAndGet(numBytes);
+        chunks.offer(new Chunk(data, numBytes, linkFreeNanos + latencyNanos));
+    }
+
+    // Main loop of the delivery Thread:
+    private void deliver() {
+        try {
+            while (true) {
+                Chunk chunk = chunks.take();
+                long nanosToWait = chunk.arrivalNanos - System.nanoTime();
+                if (nanosToWait > 0) TimeUnit.NANOSECONDS.sleep(nanosToWait);
+                if (chunk.data == null) {
+                    destination.close(new StreamCloseEvent());
+                    break;
+                }
+                destination.receive(chunk.data);
+                long pending = numBytesPending.addAndGet(-chunk.numBytes);
+                if (!writable && pending < lowWatermark) updateWritability(true);
+            }
+        } catch (InterruptedException ie) {
+            // The Pipe has been shut down...
+        } finally {
+            deliveryExecutor.shutdown();
+        }
+    }
+
+    private void updateWritability(boolean writable) {
+        this.writable = writable;
+        Consumer<Boolean> listener = this.writabilityListener;
+        if (listener != null) listener.accept(writable);
+    }
+
+    /** It stops delivering data right away, even if there is still data pending */
+    public void shutdownNow() {
+        deliveryExecutor.shutdownNow();
+    }
+
+    public boolean isWritable()         { return this.writable; }
+    public long getNumBytesPending()    { return this.numBytesPending.get(); }
+}
@@ -0,0 +1,45 @@
+package io.bitcoinsv.jcl.net.network.streams.loopback;
+
+import io.bitcoinsv.jcl.net.network.PeerAddress;
+import io.bitcoinsv.jcl.net.network.streams.PeerStreamImpl;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * The equivalent of the NIOStream when the remote Peer runs in the same JVM (see LoopbackNetworkHandler). The output
+ * writes into the LoopbackPipe given, and the input receives the bytes from the Pipe going in the opposite direction,
+ * which is linked to it by the NetworkHandler.
+ */
+public class LoopbackStream extends PeerStreamImpl<ByteArrayReader, ByteArrayReader> {
+
+    private final LoopbackPipe outputPipe;
+
+    public LoopbackStream(PeerAddress peerAddress, ExecutorService executor, LoopbackPipe outputPipe) {
+        super(peerAddress, executor, null);
+        this.outputPipe = outputPipe;
+    }
+
+    @Override
+    public LoopbackInputStream buildInputStream() {
+        return new LoopbackInputStream(peerAddress, super.executor);
+    }
+
+    @Override
+    public LoopbackOutputStream buildOutputStream() {
+        return new LoopbackOutputStream(peerAddress, outputPipe);
+    }
+
+    @Override
+    public LoopbackInputStream input() {
+        return (LoopbackInputStream) super.input();
+    }
+
+    @Override
+    public LoopbackOutputStream output() {
+        return (LoopbackOutputStream) super.output();
+    }
+}
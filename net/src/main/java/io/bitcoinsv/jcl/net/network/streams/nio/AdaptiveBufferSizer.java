@@ -0,0 +1,106 @@
+package io.bitcoinsv.jcl.net.network.streams.nio;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * It calculates the capacity of the Buffer used to read bytes from a Socket, based on the number of bytes returned
+ * by each read:
+ *
+ * - If several reads in a row fill up the Buffer, the Peer is sending data faster than we read it, so the capacity
+ *   is doubled (up to a maximum), as long as the ReadBufferBudget allows it.
+ * - If many reads in a row only use a small part of the Buffer, the capacity is halved (down to the minimum).
+ *
+ * The thresholds to grow and shrink are different (and shrinking requires many more reads), so the capacity does not
+ * keep bouncing between two sizes when the traffic is close to one of them.
+ *
+ * This class is NOT thread-safe, it's meant to be used by the Thread reading from the Socket.
+ */
+public class AdaptiveBufferSizer {
+
+    // Number of reads in a row filling up the Buffer needed to grow it:
+    public static final int GROW_AFTER_FULL_READS = 2;
+    // Number of reads in a row using a small part of the Buffer needed to shrink it:
+    public static final int SHRINK_AFTER_SMALL_READS = 32;
+    // A read is "small" if it uses less than (capacity / this value):
+    public static final int SMALL_READ_RATIO = 4;
+
+    private final int minCapacity;
+    private final int maxCapacity;
+    private final ReadBufferBudget budget;
+
+    private int capacity;
+    private int numFullReads;
+    private int numSmallReads;
+    private boolean released;
+
+    /**
+     * Constructor. The capacity starts at the minimum, which is reserved in the budget right away.
+     * @param minCapacity   Minimum capacity
+     * @param maxCapacity   Maximum capacity
+     * @param budget        Budget shared by all the Streams
+     */
+    public AdaptiveBufferSizer(int minCapacity, int maxCapacity, ReadBufferBudget budget) {
+        checkArgument(minCapacity > 0, "'minCapacity' must be > 0");
+        this.minCapacity = minCapacity;
+        this.maxCapacity = Math.max(minCapacity, maxCapacity);
+        this.budget = budget;
+        this.capacity = minCapacity;
+        this.budget.forceReserve(minCapacity);
+    }
+
+    /**
+     * It records the result of a read from the Socket.
+     * @param bytesRead         Bytes returned by the read
+     * @param bytesAvailable    Free space in the Buffer before the read
+     * @return                  TRUE if the capacity has changed
+     */
+    public boolean record(int bytesRead, int bytesAvailable) {
+        if (released || bytesRead <= 0) return false;
+        if (bytesRead >= bytesAvailable) {
+            numSmallReads = 0;
+            if (++numFullReads >= GROW_AFTER_FULL_READS) {
+                numFullReads = 0;
+                return grow();
+            }
+        } else if (bytesRead < capacity / SMALL_READ_RATIO) {
+            numFullReads = 0;
+            if (++numSmallReads >= SHRINK_AFTER_SMALL_READS) {
+                numSmallReads = 0;
+                return shrink();
+            }
+        } else {
+            numFullReads = 0;
+            numSmallReads = 0;
+        }
+        return false;
+    }
+
+    private boolean grow() {
+        int newCapacity = (int) Math.min((long) capacity * 2, maxCapacity);
+        if (newCapacity == capacity || !budget.tryReserve(newCapacity - capacity)) return false;
+        capacity = newCapacity;
+        return true;
+    }
+
+    private boolean shrink() {
+        int newCapacity = Math.max(capacity / 2, minCapacity);
+        if (newCapacity == capacity) return false;
+        budget.release(capacity - newCapacity);
+        capacity = newCapacity;
+        return true;
+    }
+
+    /** It gives back the capacity reserved to the budget. After this, the capacity does not change anymore */
+    public void release() {
+        if (released) return;
+        released = true;
+        budget.release(capacity);
+    }
+
+    public int getCapacity()    { return this.capacity; }
+    public int getMinCapacity() { return this.minCapacity; }
+    public int getMaxCapacity() { return this.maxCapacity; }
+}
@@ -2,23 +2,28 @@ package io.bitcoinsv.jcl.net.network.streams.nio;
 
 import io.bitcoinsv.jcl.net.network.PeerAddress;
 import io.bitcoinsv.jcl.net.network.config.NetworkConfig;
-import io.bitcoinsv.jcl.net.network.streams.PeerInputStream;
+import io.bitcoinsv.jcl.net.network.streams.PeerInputStreamEndPoint;
 import io.bitcoinsv.jcl.net.network.streams.PeerInputStreamImpl;
 import io.bitcoinsv.jcl.net.network.streams.StreamCloseEvent;
 import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
+import io.bitcoinsv.jcl.tools.bytes.ByteArraySegment;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayStatic;
+import io.bitcoinsv.jcl.tools.bytes.DirectBufferPool;
+import io.bitcoinsv.jcl.tools.bytes.RefCountedByteBuffer;
 import io.bitcoinsv.jcl.tools.config.RuntimeConfig;
 import io.bitcoinsv.jcl.net.tools.LoggerUtil;
 
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author i.fernandez@nchain.com
@@ -34,8 +39,23 @@ import java.util.concurrent.ExecutorService;
  * - the "readFromSocket()" method reads data directly from the sockets, wraps it up into a ByteArrayReader, and invoke
  *   the "send()" method in this class, which will send that ByteArrayReader down the Stream to any other Stream that
  *   might be connected to this Stream (that will be a DeserializerStream).
+ *
+ * The bytes are NOT read from the Socket until the Stream is "ready", that is when whoever is consuming the data
+ * (the MessageHandler) has linked to it and calls "markReady()", so no data is lost.
+ *
+ * If "adaptive" Buffers are enabled in the NetworkConfig, the capacity of the read Buffer (and the SO_RCVBUF of the
+ * Socket) is adjusted automatically based on the number of bytes returned by each read (see AdaptiveBufferSizer), within
+ * the limits of the ReadBufferBudget shared by all the Streams. An explicit upgrade ("upgradeBufferSize()") always
+ * takes precedence, and the adaptive sizing is suspended until the Buffer is reset again.
+ *
+ * If "zero-copy" reads are enabled in the NetworkConfig, the bytes are not copied after the read: the
+ * ByteArrayReader sent down the Stream wraps a Segment (a ref-counted slice) of the same Buffer the bytes have been
+ * read into, and the DeserializerStream takes ownership of it.
  */
-public class NIOInputStream extends PeerInputStreamImpl<ByteArrayReader, ByteArrayReader> implements PeerInputStream<ByteArrayReader> {
+public class NIOInputStream extends PeerInputStreamImpl<ByteArrayReader, ByteArrayReader> implements PeerInputStreamEndPoint<ByteArrayReader> {
+
+    // In zero-copy mode, when the free space in the read Buffer goes below (capacity / this value), a new one is used
+    private static final int ZERO_COPY_MIN_FREE_RATIO = 8;
 
     // Configuration:
     private RuntimeConfig runtimeConfig;
@@ -60,15 +80,32 @@ public class NIOInputStream extends PeerInputStreamImpl<ByteArrayReader, ByteArr
     // switch:
 
     private ByteBuffer readBuffer;
+    private RefCountedByteBuffer readChunk; // only used in zero-copy mode
     private boolean bufferNeedToUpgrade;
     private boolean bufferNeedToReset;
+    private boolean bufferNeedToResize;
+    private boolean bufferUpgraded;
+    private AdaptiveBufferSizer bufferSizer; // null if the adaptive sizing is disabled
     private int bufferNormalCapacity;
     private int bufferHighCapacity;
+    private boolean zeroCopyReads;
+
+    // Pool the read Buffers are taken from:
+    private final DirectBufferPool bufferPool = DirectBufferPool.getDefault();
+    private final Object readLock = new Object();
+    private boolean closed;
+
+    // Readiness of this Stream. The callback is triggered only once, the first time the Stream is ready:
+    private final AtomicBoolean ready = new AtomicBoolean();
+    private volatile Runnable readyListener;
+    // If TRUE, whoever consumes the data has promised to call "markReady()", so the ready timeout is ignored:
+    private volatile boolean readyExpected;
 
     public NIOInputStream(PeerAddress peerAddress,
                           ExecutorService executor,
                           RuntimeConfig runtimeConfig,
                           NetworkConfig networkConfig,
+                          ReadBufferBudget readBufferBudget,
                           SelectionKey key) {
         super(peerAddress, executor, null);
         this.logger = new LoggerUtil(peerAddress.toString(), this.getClass());
@@ -81,6 +118,11 @@ public class NIOInputStream extends PeerInputStreamImpl<ByteArrayReader, ByteArr
         this.bufferNormalCapacity = Math.min(Math.max(networkConfig.getMaxMessageSizeAvgInBytes(),
                 networkConfig.getNioBufferSizeLowerBound()), networkConfig.getNioBufferSizeUpperBound());
         this.bufferHighCapacity = networkConfig.getNioBufferSizeUpgrade();
+        this.zeroCopyReads = networkConfig.isNioZeroCopyReads();
+        if (networkConfig.isNioAdaptiveBuffers() && readBufferBudget != null) {
+            this.bufferSizer = new AdaptiveBufferSizer(bufferNormalCapacity,
+                    Math.min(networkConfig.getNioBufferSizeAdaptiveMax(), bufferHighCapacity), readBufferBudget);
+        }
 
         this.readBuffer = getBufferForReading();
         this.state = NIOStreamState.builder().build();
@@ -109,6 +151,11 @@ public class NIOInputStream extends PeerInputStreamImpl<ByteArrayReader, ByteArr
         bufferNeedToReset = true;
     }
 
+    // Capacity of the Buffer when it's NOT upgraded. If the adaptive sizing is enabled, it changes over time:
+    private int getNormalCapacity() {
+        return (bufferSizer != null) ? bufferSizer.getCapacity() : bufferNormalCapacity;
+    }
+
     // Returns the ByteBuffer used to read the data from the socket. Sometimes, during the lifecycle of
     // this stream, it might need to read more data than usual (like when downloading a Block), in that
     // case, this method will return a bigger buffer...
@@ -117,51 +164,147 @@ public class NIOInputStream extends PeerInputStreamImpl<ByteArrayReader, ByteArr
         ByteBuffer result = null;
         if (bufferNeedToUpgrade) {
             logger.trace("upgrading Buffer...");
-            result = ByteBuffer.allocateDirect(bufferHighCapacity);
+            result = allocateBufferForReading(bufferHighCapacity);
+            bufferUpgraded = true;
         }  else if (bufferNeedToReset) {
             logger.trace("resetting Buffer...");
-            result = ByteBuffer.allocateDirect(bufferNormalCapacity);
+            result = allocateBufferForReading(getNormalCapacity());
+            bufferUpgraded = false;
         }  else if (readBuffer == null) {
             logger.trace("creating Buffer...");
-            result = ByteBuffer.allocateDirect(bufferNormalCapacity);
+            result = allocateBufferForReading(getNormalCapacity());
+        }  else if (bufferNeedToResize && !bufferUpgraded) {
+            logger.trace("resizing Buffer to " + getNormalCapacity() + " bytes...");
+            result = allocateBufferForReading(getNormalCapacity());
+        }  else if (zeroCopyReads && readBuffer.remaining() < (readBuffer.limit() / ZERO_COPY_MIN_FREE_RATIO)) {
+            // In zero-copy mode the bytes already read are still in use down the Stream, so the Buffer is never
+            // compacted. When there is not much room left, we just move on to a brand new one:
+            result = allocateBufferForReading(readBuffer.limit());
         }  else result = this.readBuffer;
 
         this.readBuffer = result;
         bufferNeedToUpgrade = false;
         bufferNeedToReset = false;
+        bufferNeedToResize = false;
         return result;
     }
 
+    // Allocates a new Buffer from the Pool. In zero-copy mode, the Buffer is Ref-counted and we hold one reference on
+    // it, which is released when we replace it by a new one (the slices already sent down the Stream keep their own
+    // references, so it only goes back to the Pool when all of them are done). Otherwise, the previous Buffer is
+    // returned to the Pool right away, since its content has always been copied already.
+    private ByteBuffer allocateBufferForReading(int capacity) {
+        releaseBufferForReading();
+        if (!zeroCopyReads) return bufferPool.acquire(capacity);
+        readChunk = RefCountedByteBuffer.fromPool(bufferPool, capacity);
+        return readChunk.getBuffer();
+    }
+
+    private void releaseBufferForReading() {
+        if (readChunk != null) {
+            readChunk.release();
+            readChunk = null;
+        } else if (readBuffer != null) {
+            bufferPool.release(readBuffer);
+        }
+        readBuffer = null;
+    }
+
+    // It feeds the adaptive sizing with the result of the last read. If the capacity changes, the Buffer is replaced
+    // before the next read, and the SO_RCVBUF of the Socket is adjusted to the new capacity:
+    private void recordRead(int bytesRead, int bytesAvailable) {
+        if (bufferSizer == null || bufferUpgraded) return;
+        if (!bufferSizer.record(bytesRead, bytesAvailable)) return;
+        bufferNeedToResize = true;
+        try {
+            socketChannel.setOption(StandardSocketOptions.SO_RCVBUF, bufferSizer.getCapacity());
+        } catch (Exception e) {
+            logger.trace("Error adjusting SO_RCVBUF: " + e.getMessage());
+        }
+    }
+
+    /** It sets the callback triggered when this Stream is ready to receive data */
+    public void onReady(Runnable readyListener) {
+        this.readyListener = readyListener;
+    }
+
+    /**
+     * It marks this Stream as ready: All the Streams/handlers consuming the data coming out of this Stream are linked,
+     * so the data can start flowing. It can be called more than once, only the first one has effect.
+     */
+    public void markReady() {
+        if (ready.compareAndSet(false, true) && readyListener != null) readyListener.run();
+    }
+
+    /**
+     * It tells this Stream that whoever is consuming its data will call "markReady()" when everything is linked, so
+     * the Stream must wait for it even if the ready timeout expires.
+     */
+    public void expectReady() {
+        this.readyExpected = true;
+    }
+
+    /**
+     * Triggered when the time given to get ready expires. Unless a consumer has promised to mark it as ready, the Stream
+     * is marked as ready anyway, so the data starts flowing even if nobody is linked to it.
+     */
+    public void onReadyTimeout() {
+        if (!readyExpected) markReady();
+    }
+
+    public boolean isReady() {
+        return this.ready.get();
+    }
+
     public int readFromSocket() throws IOException {
         // We read data from the Buffer and connection verifications:
         try {
-            // Before using the Buffer to read data from it, we check if we need to upgrtade/reset it...
-            ByteBuffer buffer = getBufferForReading();
-            int read = this.socketChannel.read(buffer);
-            updateState(read);
-
-            //logger.debug(read + " bytes received from " +this.socketChannel.socket().getRemoteSocketAddress());
-            if (read <= 0) return read;
-
-            // We feed the StreamOperations with that data. We concert the data into a ByteArray object, and we
-            // feed our StreamOperations with it:
-            buffer.flip();
-            byte[] data = new byte[buffer.limit()];
-            buffer.get(data,0, data.length);
-            buffer.compact();
-
-            // We send this data down the Stream:
-            // This data needs to be wrapped up in a ByteArray and then in a ByteArrayReader. But when it arrives at the
-            // destination (which is a DeserializerStream), this reader will only be used to GET all its content
-            // "getFullContent()", which in turns calls the "get()" method in the ByteArray. And after that, this reader
-            // and the underlying ByteArray won't be used anymore.
-            // So we are using here an "improved" version of ByteArray which is optimized for the situation when we are
-            // mainly only interested in its "get()" method.
-
-            ByteArrayReader byteArrayReader = new ByteArrayReader(new ByteArrayStatic(data)); // Optimization
+            int read = 0;
+            ByteArrayReader byteArrayReader = null;
+
+            // The Buffer might be returned to the Pool when the Stream is closed, so reading and closing never overlap:
+            synchronized (readLock) {
+                if (closed) return -1;
+
+                // Before using the Buffer to read data from it, we check if we need to upgrtade/reset it...
+                ByteBuffer buffer = getBufferForReading();
+                int readStartPos = buffer.position();
+                int bytesAvailable = buffer.remaining();
+                read = this.socketChannel.read(buffer);
+                updateState(read);
+
+                //logger.debug(read + " bytes received from " +this.socketChannel.socket().getRemoteSocketAddress());
+                if (read <= 0) return read;
+                recordRead(read, bytesAvailable);
+
+                if (zeroCopyReads) {
+                    // Zero-copy: The bytes we've just read are sent down the Stream as a Segment of the Buffer, no
+                    // copies made. The Segment holds its own reference to the Buffer, which will be released by
+                    // whoever consumes it (the DeserializerStream), once all its bytes have been read.
+                    readChunk.retain();
+                    byteArrayReader = new ByteArrayReader(new ByteArraySegment(readChunk, readStartPos, read));
+                } else {
+                    // We feed the StreamOperations with that data. We concert the data into a ByteArray object, and
+                    // we feed our StreamOperations with it:
+                    buffer.flip();
+                    byte[] data = new byte[buffer.limit()];
+                    buffer.get(data,0, data.length);
+                    buffer.compact();
+
+                    // We send this data down the Stream:
+                    // This data needs to be wrapped up in a ByteArray and then in a ByteArrayReader. But when it
+                    // arrives at the destination (which is a DeserializerStream), this reader will only be used to
+                    // GET all its content "getFullContent()", which in turns calls the "get()" method in the
+                    // ByteArray. And after that, this reader and the underlying ByteArray won't be used anymore.
+                    // So we are using here an "improved" version of ByteArray which is optimized for the situation
+                    // when we are mainly only interested in its "get()" method.
+
+                    byteArrayReader = new ByteArrayReader(new ByteArrayStatic(data)); // Optimization
+                }
+            }
 
             logger.trace(read + " bytes received from " + peerAddress.toString());
-            super.eventBus.publish(new StreamDataEvent<>(byteArrayReader));
+            super.publishData(new StreamDataEvent<>(byteArrayReader));
             return read;
         } catch (IOException ioe) {
             this.close(new StreamCloseEvent());
@@ -173,6 +316,11 @@ public class NIOInputStream extends PeerInputStreamImpl<ByteArrayReader, ByteArr
     public void close(StreamCloseEvent event) {
         try {
             super.close(event);
+            synchronized (readLock) {
+                closed = true;
+                releaseBufferForReading();
+                if (bufferSizer != null) bufferSizer.release();
+            }
             key.cancel();
             this.socketChannel.close();
         } catch (IOException ioe) {
@@ -188,6 +336,13 @@ public class NIOInputStream extends PeerInputStreamImpl<ByteArrayReader, ByteArr
         return this.peerAddress;
     }
 
+    /** Returns the current capacity of the Buffer used to read from the Socket */
+    public int getBufferCapacity() {
+        synchronized (readLock) {
+            return (readBuffer != null) ? readBuffer.capacity() : getNormalCapacity();
+        }
+    }
+
     public NIOStreamState getState() {
         return this.state;
     }
@@ -3,11 +3,17 @@ package io.bitcoinsv.jcl.net.network.streams.nio;
 import io.bitcoinsv.jcl.net.network.PeerAddress;
 import io.bitcoinsv.jcl.net.network.config.NetworkConfig;
 
+import io.bitcoinsv.jcl.net.network.streams.OutboundDataEvent;
+import io.bitcoinsv.jcl.net.network.streams.OutboundLane;
 import io.bitcoinsv.jcl.net.network.streams.PeerOutputStream;
 import io.bitcoinsv.jcl.net.network.streams.PeerOutputStreamImpl;
 import io.bitcoinsv.jcl.net.network.streams.StreamCloseEvent;
 import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent;
+import io.bitcoinsv.jcl.tools.bytes.ByteArray;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayBuffer;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
+import io.bitcoinsv.jcl.tools.bytes.ByteBufferBacked;
+import io.bitcoinsv.jcl.tools.bytes.DirectBufferPool;
 import io.bitcoinsv.jcl.tools.config.RuntimeConfig;
 import io.bitcoinsv.jcl.net.tools.LoggerUtil;
 
@@ -18,11 +24,14 @@ import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * @author i.fernandez@nchain.com
@@ -43,6 +52,22 @@ import java.util.concurrent.ExecutorService;
  * - The "writeToSocket()" method will take the bytes we collected in the first step, and will try to
  *   write them into the Socket connected to the Remote Peer.
  *
+ * The bytes are not copied in the process: If they come in a ByteArrayBuffer (which is what the Serializer
+ * produces), its internal Buffers are detached and queued as they are, and they are written all together in a single
+ * "gathering" write, so several messages can be flushed to the Socket at once. Those Buffers are released (returned
+ * to the Pool) once they've been completely written.
+ *
+ * The only exception are small messages (pings, small INVs, etc): Queuing each one of them in its own Buffers would
+ * take several slots of a gathering write for just a few bytes, so they are copied instead into a "packing" Buffer,
+ * shared by all the consecutive small messages of the same Lane, and several of them go out as a single Buffer.
+ * The packing Buffers are Direct Buffers taken from the DirectBufferPool, and they go back to it once written.
+ *
+ * The bytes pending to write are organized in Lanes (see OutboundLane), each one with its own queue. The data of
+ * a Lane is only written when the Lanes with higher priority are empty, but we never switch from one Lane to another
+ * in the middle of a message, so the bytes of different messages never get mixed up.
+ *
+ * If the bytes pending to write go above the High Watermark, the Stream is marked as NOT writable, and when they go
+ * below the Low Watermark it becomes writable again. Every change is notified to the "writabilityListener", if any.
  */
 
 public class NIOOutputStream extends PeerOutputStreamImpl<ByteArrayReader, ByteArrayReader> implements PeerOutputStream<ByteArrayReader> {
@@ -65,8 +90,50 @@ public class NIOOutputStream extends PeerOutputStreamImpl<ByteArrayReader, ByteA
     // write 10 bytes but only 7 have been actually written. So we need to keep track of the bytes pending
     // to write:
     private long bytesToWriteRemaining = 0;
-    // Here we keep the bytes pending to be written to the Socket:
-    private Queue<ByteBuffer> buffersToWrite = new ConcurrentLinkedQueue<>();
+    // Here we keep the bytes pending to be written to the Socket, one queue for each Lane:
+    private final Map<OutboundLane, Deque<OutboundBuffer>> lanes = new EnumMap<>(OutboundLane.class);
+
+    // If the last Buffer written was NOT the end of a message, we need to keep writing from the same Lane:
+    private OutboundLane currentLane;
+    private boolean inTheMiddleOfMsg;
+
+    // Writability (High/Low Watermarks):
+    private boolean writable = true;
+    private Consumer<Boolean> writabilityListener;
+
+    // Max number of Buffers written to the Socket in a single (gathering) write:
+    private static final int MAX_BUFFERS_PER_WRITE = 64;
+
+    // Messages up to this size are copied into a packing Buffer, together with other small messages:
+    private static final int SMALL_MSG_MAX_SIZE = 1024;
+    // Capacity of each packing Buffer:
+    private static final int PACKING_BUFFER_SIZE = 16 * 1024;
+
+    // Pool the packing Buffers are taken from:
+    private final DirectBufferPool bufferPool = DirectBufferPool.getDefault();
+
+    // A Buffer pending to be written, and the ByteArray it belongs to (if any), which is cleared once it's written.
+    // If the Buffer has been taken from a Pool instead, it goes back to it once it's written:
+    private static class OutboundBuffer {
+        ByteBuffer buffer;
+        ByteArray owner;
+        DirectBufferPool pool;
+        OutboundLane lane;
+        boolean endOfMsg; // True if this is the last Buffer of a message
+        boolean packing;  // True if more small messages can still be appended to this Buffer
+        OutboundBuffer(ByteBuffer buffer, ByteArray owner, OutboundLane lane) {
+            this.buffer = buffer;
+            this.owner = owner;
+            this.lane = lane;
+        }
+        void release() {
+            if (owner != null) owner.clear();
+            if (pool != null) {
+                pool.release(buffer);
+                pool = null;
+            }
+        }
+    }
 
     public NIOOutputStream(PeerAddress peerAddress,
                            RuntimeConfig runtimeConfig,
@@ -81,6 +148,7 @@ public class NIOOutputStream extends PeerOutputStreamImpl<ByteArrayReader, ByteA
         this.key = key;
         this.socketChannel = (SocketChannel) key.channel();
 
+        for (OutboundLane lane : OutboundLane.values()) lanes.put(lane, new ArrayDeque<>());
         this.state = NIOStreamState.builder().build();
 
     }
@@ -96,25 +164,116 @@ public class NIOOutputStream extends PeerOutputStreamImpl<ByteArrayReader, ByteA
                 .build();
     }
 
+    /** It sets the callback triggered when this Stream changes from writable to NOT writable, or vice versa */
+    public void onWritabilityChanged(Consumer<Boolean> writabilityListener) {
+        this.writabilityListener = writabilityListener;
+    }
+
     public synchronized void send(StreamDataEvent<ByteArrayReader> event) {
         //logger.trace("Sending " + event.getData().size() + " bytes : " + HEX.encode(event.getData().get()));
         // We get all the data from this Reader and we add it to the buffer of ByteBuffers.
-        bytesToWriteRemaining += event.getData().size();
-
-        // The bytes to write in this event might be any size, even bigger than 2GB, so we send them in batches...
-        int BATCH_SIZE = 100_000;
         ByteArrayReader reader = event.getData();
-        while (!reader.isEmpty()) {
-            int numBytesToRead = (int) Math.min(BATCH_SIZE, reader.size());
-            buffersToWrite.offer(ByteBuffer.wrap(reader.read(numBytesToRead)));
+        bytesToWriteRemaining += reader.size();
+
+        OutboundLane lane = OutboundLane.BULK;
+        boolean continued = false;
+        if (event instanceof OutboundDataEvent) {
+            lane = ((OutboundDataEvent<ByteArrayReader>) event).getLane();
+            continued = ((OutboundDataEvent<ByteArrayReader>) event).isContinued();
+        }
+        Deque<OutboundBuffer> laneBuffers = lanes.get(lane);
+
+        // Small (and complete) messages are packed together:
+        if (!continued && reader.size() <= SMALL_MSG_MAX_SIZE) {
+            packSmallMsg(laneBuffers, lane, reader);
+            if (writable && bytesToWriteRemaining > networkConfig.getOutboundHighWatermark()) updateWritability(false);
+            notifyChannelWritable();
+            return;
         }
-        //buffersToWrite.offer(ByteBuffer.wrap(event.getData().getFullContentAndClose())); // TODO: CAREFUL
+
+        if (reader.getByteArray() instanceof ByteArrayBuffer) {
+            // We take over the Buffers of the Reader, so they are written as they are (no copies):
+            List<ByteArray> buffers = ((ByteArrayBuffer) reader.getByteArray()).detachBuffers();
+            for (ByteArray buffer : buffers) {
+                if (buffer.isEmpty()) buffer.clear();
+                else if (buffer instanceof ByteBufferBacked)
+                    laneBuffers.offer(new OutboundBuffer(((ByteBufferBacked) buffer).getReadableBuffer(), buffer, lane));
+                else {
+                    laneBuffers.offer(new OutboundBuffer(ByteBuffer.wrap(buffer.get()), null, lane));
+                    buffer.clear();
+                }
+            }
+        } else {
+            // The bytes to write in this event might be any size, even bigger than 2GB, so we send them in batches...
+            int BATCH_SIZE = 100_000;
+            while (!reader.isEmpty()) {
+                int numBytesToRead = (int) Math.min(BATCH_SIZE, reader.size());
+                laneBuffers.offer(new OutboundBuffer(ByteBuffer.wrap(reader.read(numBytesToRead)), null, lane));
+            }
+        }
+
+        // We mark the end of the message with an empty Buffer, so this works even if this event carried no bytes:
+        if (!continued) {
+            OutboundBuffer endOfMsg = new OutboundBuffer(ByteBuffer.allocate(0), null, lane);
+            endOfMsg.endOfMsg = true;
+            laneBuffers.offer(endOfMsg);
+        }
+
+        if (writable && bytesToWriteRemaining > networkConfig.getOutboundHighWatermark()) updateWritability(false);
         notifyChannelWritable();
     }
 
+    // It copies the small message given at the end of the packing Buffer of the Lane, if there is one with enough room
+    // that has not started to be written yet. Otherwise, a new packing Buffer is queued:
+    private void packSmallMsg(Deque<OutboundBuffer> laneBuffers, OutboundLane lane, ByteArrayReader reader) {
+        int msgSize = (int) reader.size();
+        OutboundBuffer packingBuffer = laneBuffers.peekLast();
+        if (packingBuffer == null
+                || !packingBuffer.packing
+                || packingBuffer.buffer.position() > 0
+                || PACKING_BUFFER_SIZE - packingBuffer.buffer.limit() < msgSize) {
+            ByteBuffer buffer = bufferPool.acquire(PACKING_BUFFER_SIZE);
+            buffer.limit(0);
+            packingBuffer = new OutboundBuffer(buffer, null, lane);
+            packingBuffer.pool = bufferPool;
+            packingBuffer.packing = true;
+            packingBuffer.endOfMsg = true; // It always ends at the end of a message
+            laneBuffers.offer(packingBuffer);
+        }
+
+        // We write after the current limit, and we move the limit forward:
+        ByteBuffer target = packingBuffer.buffer.duplicate();
+        target.limit(PACKING_BUFFER_SIZE);
+        target.position(packingBuffer.buffer.limit());
+        if (reader.getByteArray() instanceof ByteArrayBuffer) {
+            for (ByteArray buffer : ((ByteArrayBuffer) reader.getByteArray()).detachBuffers()) {
+                if (buffer instanceof ByteBufferBacked) target.put(((ByteBufferBacked) buffer).getReadableBuffer());
+                else if (!buffer.isEmpty()) target.put(buffer.get());
+                buffer.clear();
+            }
+        } else if (msgSize > 0) {
+            target.put(reader.read(msgSize));
+        }
+        packingBuffer.buffer.limit(target.position());
+    }
+
     public void close(StreamCloseEvent event) {
         logger.trace("Closing Stream...");
         key.cancel();
+        // The Buffers still pending are released:
+        synchronized (this) {
+            for (Deque<OutboundBuffer> laneBuffers : lanes.values()) {
+                OutboundBuffer pending;
+                while ((pending = laneBuffers.poll()) != null) pending.release();
+            }
+            bytesToWriteRemaining = 0;
+        }
+    }
+
+    private void updateWritability(boolean writable) {
+        this.writable = writable;
+        logger.trace("Peer " + (writable ? "writable" : "NOT writable") + ", " + bytesToWriteRemaining + " bytes queued.");
+        if (writabilityListener != null) writabilityListener.accept(writable);
     }
 
     private void notifyChannelWritable() {
@@ -133,26 +292,83 @@ public class NIOOutputStream extends PeerOutputStreamImpl<ByteArrayReader, ByteA
         // Don't bother waking up the selector here, since we're just removing an op, not adding
     }
 
+    // It returns the next Buffers to write, in order. If we are in the middle of a message, we start with the rest of
+    // it. After that (or otherwise), we take the messages of the Lane with the highest priority, and so on, but we
+    // stop if we reach the end of the data available before the end of a message.
+    private List<OutboundBuffer> nextBuffersToWrite() {
+        List<OutboundBuffer> result = new ArrayList<>();
+        Map<OutboundLane, Iterator<OutboundBuffer>> laneIterators = new EnumMap<>(OutboundLane.class);
+        for (OutboundLane lane : OutboundLane.values()) laneIterators.put(lane, lanes.get(lane).iterator());
+
+        OutboundLane lane = (inTheMiddleOfMsg) ? currentLane : null;
+        while (result.size() < MAX_BUFFERS_PER_WRITE) {
+            if (lane == null) {
+                // We are at the beginning of a message, so we pick the Lane with the highest priority:
+                for (OutboundLane candidate : OutboundLane.values())
+                    if (laneIterators.get(candidate).hasNext()) { lane = candidate; break; }
+                if (lane == null) break;
+            }
+            Iterator<OutboundBuffer> it = laneIterators.get(lane);
+            if (!it.hasNext()) break; // The rest of this message is not here yet
+            OutboundBuffer buffer = it.next();
+            result.add(buffer);
+            if (buffer.endOfMsg) lane = null;
+        }
+        return result;
+    }
 
     public synchronized int writeToSocket() throws IOException {
         int writeResult = 0;
-        Iterator<ByteBuffer> buffersToWriteIterator = buffersToWrite.iterator();
-        while (buffersToWriteIterator.hasNext()) {
-            ByteBuffer writeBuffer = buffersToWriteIterator.next();
-            int numBytesWritten = socketChannel.write(writeBuffer);
+        boolean nothingToWrite = false;
+        while (true) {
+
+            // We write as many Buffers as possible in one go (gathering write):
+            List<OutboundBuffer> buffersToWrite = nextBuffersToWrite();
+            if (buffersToWrite.isEmpty()) {
+                nothingToWrite = true;
+                break;
+            }
+            ByteBuffer[] writeBuffers = new ByteBuffer[buffersToWrite.size()];
+            for (int i = 0; i < writeBuffers.length; i++) writeBuffers[i] = buffersToWrite.get(i).buffer;
+            int numBytesWritten = (int) socketChannel.write(writeBuffers);
             updateState(numBytesWritten);
             writeResult += numBytesWritten;
             bytesToWriteRemaining -= numBytesWritten;
 
-            if (!writeBuffer.hasRemaining())  buffersToWriteIterator.remove();
-            else break;
+            // The Buffers completely written are removed and released. We keep track of where we are, in case we
+            // stop in the middle of a message:
+            boolean allWritten = true;
+            for (OutboundBuffer buffer : buffersToWrite) {
+                if (buffer.buffer.hasRemaining()) {
+                    if (buffer.buffer.position() > 0) {
+                        currentLane = buffer.lane;
+                        inTheMiddleOfMsg = true;
+                    }
+                    allWritten = false;
+                    break;
+                }
+                lanes.get(buffer.lane).poll();
+                buffer.release();
+                currentLane = buffer.lane;
+                inTheMiddleOfMsg = !buffer.endOfMsg;
+            }
+
+            // If the Socket didn't take everything, we wait for the next time it's writable. NOTE: We can NOT just
+            // check the last Buffer, since it might be an empty one (end of message), which never has bytes left:
+            if (!allWritten) break;
 
         } // while...
-        if (buffersToWrite.isEmpty()) notifyChannelNotWritable();
+        // If there is nothing we can write now (there might be some data, but waiting for the rest of a message that is
+        // not here yet), we stop listening until more data is sent:
+        if (nothingToWrite) notifyChannelNotWritable();
+        if (!writable && bytesToWriteRemaining < networkConfig.getOutboundLowWatermark()) updateWritability(true);
         //logger.debug(writeResult + " bytes sent to " + socketChannel.socket().getRemoteSocketAddress());
         return writeResult;
     }
 
+    public boolean isWritable()             { return this.writable; }
+    public long getNumBytesToWrite()        { return this.bytesToWriteRemaining; }
+
     public PeerAddress getPeerAddress() {
         return this.peerAddress;
     }
@@ -23,21 +23,23 @@ public class NIOStream extends PeerStreamImpl<ByteArrayReader, ByteArrayReader>
     private RuntimeConfig runtimeConfig;
     private NetworkConfig networkConfig;
     private PeerAddress peerAddress;
+    private ReadBufferBudget readBufferBudget;
     private SelectionKey key;
 
     public NIOStream(PeerAddress peerAddress, ExecutorService executor,
                      RuntimeConfig runtimeConfig, NetworkConfig networkConfig,
-                     SelectionKey key) {
+                     ReadBufferBudget readBufferBudget, SelectionKey key) {
         super(peerAddress, executor, null);
         this.runtimeConfig = runtimeConfig;
         this.networkConfig = networkConfig;
         this.peerAddress = peerAddress;
+        this.readBufferBudget = readBufferBudget;
         this.key = key;
     }
 
     @Override
     public NIOInputStream buildInputStream() {
-        return new NIOInputStream(peerAddress, super.executor, runtimeConfig, networkConfig, key);
+        return new NIOInputStream(peerAddress, super.executor, runtimeConfig, networkConfig, readBufferBudget, key);
     }
 
     @Override
@@ -0,0 +1,51 @@
+package io.bitcoinsv.jcl.net.network.streams.nio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * It keeps track of the memory used by the Buffers the NIOInputStreams read the bytes from the Sockets into, and puts
+ * a limit on it. It's shared by all the Streams created by the same NetworkHandler.
+ *
+ * The Streams reserve the capacity of their Buffers before using them. The capacity needed for the "normal" Buffers
+ * is always granted, but a Stream can only grow its Buffer on its own (adaptive sizing) if the total memory stays
+ * below the limit. The Buffers explicitly upgraded (like when downloading a Block) are not affected by it.
+ */
+public class ReadBufferBudget {
+
+    private final long maxBytes;
+    private final AtomicLong reservedBytes = new AtomicLong();
+
+    /** Constructor */
+    public ReadBufferBudget(long maxBytes) {
+        checkArgument(maxBytes > 0, "'maxBytes' must be > 0");
+        this.maxBytes = maxBytes;
+    }
+
+    /** It reserves the bytes given, only if the limit is not exceeded. Returns TRUE if they've been reserved */
+    public boolean tryReserve(long bytes) {
+        long current;
+        do {
+            current = reservedBytes.get();
+            if (current + bytes > maxBytes) return false;
+        } while (!reservedBytes.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    /** It reserves the bytes given, even if the limit is exceeded */
+    public void forceReserve(long bytes) {
+        reservedBytes.addAndGet(bytes);
+    }
+
+    /** It releases the bytes given, previously reserved */
+    public void release(long bytes) {
+        reservedBytes.addAndGet(-bytes);
+    }
+
+    public long getReservedBytes()  { return this.reservedBytes.get(); }
+    public long getMaxBytes()       { return this.maxBytes; }
+}
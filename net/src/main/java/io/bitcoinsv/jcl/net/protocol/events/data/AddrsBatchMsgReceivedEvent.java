@@ -0,0 +1,25 @@
+package io.bitcoinsv.jcl.net.protocol.events.data;
+
+import com.google.common.base.Objects;
+
+import java.util.List;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ */
+public final class AddrsBatchMsgReceivedEvent extends MsgReceivedBatchEvent<AddrMsgReceivedEvent> {
+    public AddrsBatchMsgReceivedEvent(List<AddrMsgReceivedEvent> events) {
+        super(events);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(super.hashCode());
+    }
+}
@@ -0,0 +1,25 @@
+package io.bitcoinsv.jcl.net.protocol.events.data;
+
+import com.google.common.base.Objects;
+
+import java.util.List;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ */
+public final class HeadersBatchMsgReceivedEvent extends MsgReceivedBatchEvent<HeadersMsgReceivedEvent> {
+    public HeadersBatchMsgReceivedEvent(List<HeadersMsgReceivedEvent> events) {
+        super(events);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(super.hashCode());
+    }
+}
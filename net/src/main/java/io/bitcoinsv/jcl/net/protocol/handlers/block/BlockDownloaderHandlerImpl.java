@@ -438,12 +438,14 @@ public class BlockDownloaderHandlerImpl extends HandlerImpl<PeerAddress, BlockPe
     // Event Handler:
     // We register the Peers that are announcing Blocks:
     public void onInvMsgReceived(InvMsgReceivedEvent event) {
-        event.getBtcMsg().getBody().getInvVectorList().stream()
-                .filter(item -> item.getType().equals(InventoryVectorMsg.VectorType.MSG_BLOCK))
-                .forEach(item -> {
-                    String blockHash = Sha256Hash.wrapReversed(item.getHashMsg().getHashBytes()).toString();
-                    blocksPendingManager.registerBlockAnnouncement(blockHash, event.getPeerAddress());
-                });
+        // Most of the entries are usually Txs, so we go through the packed entries without creating any objects:
+        event.getBtcMsg().getBody().getInventory().forEachRecord((index, typeCode, records, hashOffset) -> {
+            if (typeCode == InventoryVectorMsg.VectorType.MSG_BLOCK.getValue()) {
+                byte[] hashBytes = Arrays.copyOfRange(records, hashOffset, hashOffset + HashMsg.HASH_LENGTH);
+                String blockHash = Sha256Hash.wrapReversed(hashBytes).toString();
+                blocksPendingManager.registerBlockAnnouncement(blockHash, event.getPeerAddress());
+            }
+        });
     }
 
     // Event Handler:
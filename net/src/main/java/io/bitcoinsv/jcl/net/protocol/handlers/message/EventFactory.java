@@ -9,80 +9,119 @@ import io.bitcoinsv.jcl.net.protocol.messages.common.Message;
 import io.bitcoinsv.jcl.tools.events.Event;
 import io.bitcoinsv.jcl.net.protocol.messages.*;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author i.fernandez@nchain.com
  * Copyright (c) 2018-2020 nChain Ltd
  *
  * It creates Events to publishd to the Bus, based on the bitcoin Message we are processing.
+ *
+ * The Event to create depends on the Class of the Body of the Message. The Builder of the Event for each Class is
+ * looked up only once (the first time a Message of that Class is processed) and then cached along with the Class
+ * itself, so creating an Event does not take a chain of "instanceof" checks.
  */
 public class EventFactory {
 
-    /** It creates the Event to be published to the Bus after we process an incoming Message */
-    public static MsgReceivedEvent buildIncomingEvent(PeerAddress peerAddress, BitcoinMsg<? extends Message> btcMsg) {
-        MsgReceivedEvent result = new MsgReceivedEvent<>(peerAddress, btcMsg);
-        Message body = btcMsg.getBody();
+    /** A Builder of an Event, from the Bitcoin Message given */
+    @FunctionalInterface
+    private interface EventBuilder<E extends Event> {
+        E build(PeerAddress peerAddress, BitcoinMsg btcMsg);
+    }
+
+    // Builders of the Events for incoming/outcoming Messages, for each Class of Body. If the Class of a Body is not
+    // here, the Builder of its closest super-class is used (the Builders are checked in order):
+    private static final Map<Class<?>, EventBuilder<MsgReceivedEvent>> incomingBuilders = new LinkedHashMap<>();
+    private static final Map<Class<?>, EventBuilder<Event>> outcomingBuilders = new LinkedHashMap<>();
 
-        if (body instanceof VersionMsg)                 result = new VersionMsgReceivedEvent(peerAddress, (BitcoinMsg<VersionMsg>) btcMsg);
-        else if (body instanceof VersionAckMsg)         result = new VersionAckMsgReceivedEvent(peerAddress, (BitcoinMsg<VersionAckMsg>) btcMsg);
-        else if (body instanceof AddrMsg)               result = new AddrMsgReceivedEvent(peerAddress, (BitcoinMsg<AddrMsg>) btcMsg);
-        else if (body instanceof BlockMsg)              result = new BlockMsgReceivedEvent(peerAddress, (BitcoinMsg<BlockMsg>) btcMsg);
-        else if (body instanceof FeeFilterMsg)          result = new FeeMsgReceivedEvent(peerAddress, (BitcoinMsg<FeeFilterMsg>) btcMsg);
-        else if (body instanceof GetAddrMsg)            result = new GetAddrMsgReceivedEvent(peerAddress, (BitcoinMsg<GetAddrMsg>) btcMsg);
-        else if (body instanceof GetdataMsg)            result = new GetDataMsgReceivedEvent(peerAddress, (BitcoinMsg<GetdataMsg>) btcMsg);
-        else if (body instanceof InvMessage)            result = new InvMsgReceivedEvent(peerAddress, (BitcoinMsg<InvMessage>) btcMsg);
-        else if (body instanceof NotFoundMsg)           result = new NotFoundMsgReceivedEvent(peerAddress, (BitcoinMsg<NotFoundMsg>) btcMsg);
-        else if (body instanceof PingMsg)               result = new PingMsgReceivedEvent(peerAddress, (BitcoinMsg<PingMsg>) btcMsg);
-        else if (body instanceof PongMsg)               result = new PongMsgReceivedEvent(peerAddress, (BitcoinMsg<PongMsg>) btcMsg);
-        else if (body instanceof RejectMsg)             result = new RejectMsgReceivedEvent(peerAddress, (BitcoinMsg<RejectMsg>) btcMsg);
-        else if (body instanceof TxMsg)                 result = new TxMsgReceivedEvent(peerAddress, (BitcoinMsg<TxMsg>) btcMsg);
-        else if (body instanceof GetHeadersMsg)         result = new GetHeadersMsgReceivedEvent(peerAddress, (BitcoinMsg<GetHeadersMsg>) btcMsg);
-        else if (body instanceof SendHeadersMsg)        result = new SendHeadersMsgReceivedEvent(peerAddress, (BitcoinMsg<SendHeadersMsg>) btcMsg);
-        else if (body instanceof HeadersMsg)            result = new HeadersMsgReceivedEvent(peerAddress, (BitcoinMsg<HeadersMsg>) btcMsg);
-        else if (body instanceof MemPoolMsg)            result = new MempoolMsgReceivedEvent(peerAddress, (BitcoinMsg<MemPoolMsg>) btcMsg);
-        else if (body instanceof GetHeadersEnMsg)       result = new GetHeadersEnMsgReceivedEvent(peerAddress, (BitcoinMsg<GetHeadersEnMsg>) btcMsg);
-        else if (body instanceof PartialBlockHeaderMsg) result = new BlockHeaderDownloadedEvent(peerAddress, (BitcoinMsg<PartialBlockHeaderMsg>) btcMsg);
-        else if (body instanceof PartialBlockTXsMsg)    result = new BlockTXsDownloadedEvent(peerAddress, (BitcoinMsg<PartialBlockTXsMsg>) btcMsg);
-        else if (body instanceof PartialBlockRawTxMsg)  result = new BlockRawTXsDownloadedEvent(peerAddress, (BitcoinMsg<PartialBlockRawTxMsg>) btcMsg);
-        else if (body instanceof RawTxMsg)              result = new RawTxMsgReceivedEvent(peerAddress, (BitcoinMsg<RawTxMsg>) btcMsg);
-        else if (body instanceof RawBlockMsg)           result = new RawBlockMsgReceivedEvent(peerAddress, (BitcoinMsg<RawBlockMsg>) btcMsg);
-        else if (body instanceof CompactBlockMsg)       result = new CompactBlockMsgReceivedEvent(peerAddress, (BitcoinMsg<CompactBlockMsg>) btcMsg);
-        else if (body instanceof SendCompactBlockMsg)   result = new SendCompactBlockMsgReceivedEvent(peerAddress, (BitcoinMsg<SendCompactBlockMsg>) btcMsg);
-        else if (body instanceof GetBlockTxnMsg)        result = new GetBlockTxnMsgReceivedEvent(peerAddress, (BitcoinMsg<GetBlockTxnMsg>) btcMsg);
-        else if (body instanceof BlockTxnMsg)           result = new BlockTxnMsgReceivedEvent(peerAddress, (BitcoinMsg<BlockTxnMsg>) btcMsg);
-        else if (body instanceof RawTxMsg)              result = new RawTxMsgReceivedEvent(peerAddress, (BitcoinMsg<RawTxMsg>) btcMsg);
-        else if (body instanceof PartialBlockTxnMsg)    result = new PartialBlockTxnDownloadedEvent(peerAddress, (BitcoinMsg<PartialBlockTxnMsg>) btcMsg);
+    static {
+        incomingBuilders.put(VersionMsg.class,            VersionMsgReceivedEvent::new);
+        incomingBuilders.put(VersionAckMsg.class,         VersionAckMsgReceivedEvent::new);
+        incomingBuilders.put(AddrMsg.class,               AddrMsgReceivedEvent::new);
+        incomingBuilders.put(BlockMsg.class,              BlockMsgReceivedEvent::new);
+        incomingBuilders.put(FeeFilterMsg.class,          FeeMsgReceivedEvent::new);
+        incomingBuilders.put(GetAddrMsg.class,            GetAddrMsgReceivedEvent::new);
+        incomingBuilders.put(GetdataMsg.class,            GetDataMsgReceivedEvent::new);
+        incomingBuilders.put(InvMessage.class,            InvMsgReceivedEvent::new);
+        incomingBuilders.put(NotFoundMsg.class,           NotFoundMsgReceivedEvent::new);
+        incomingBuilders.put(PingMsg.class,               PingMsgReceivedEvent::new);
+        incomingBuilders.put(PongMsg.class,               PongMsgReceivedEvent::new);
+        incomingBuilders.put(RejectMsg.class,             RejectMsgReceivedEvent::new);
+        incomingBuilders.put(TxMsg.class,                 TxMsgReceivedEvent::new);
+        incomingBuilders.put(GetHeadersMsg.class,         GetHeadersMsgReceivedEvent::new);
+        incomingBuilders.put(SendHeadersMsg.class,        SendHeadersMsgReceivedEvent::new);
+        incomingBuilders.put(HeadersMsg.class,            HeadersMsgReceivedEvent::new);
+        incomingBuilders.put(MemPoolMsg.class,            MempoolMsgReceivedEvent::new);
+        incomingBuilders.put(GetHeadersEnMsg.class,       GetHeadersEnMsgReceivedEvent::new);
+        incomingBuilders.put(PartialBlockHeaderMsg.class, BlockHeaderDownloadedEvent::new);
+        incomingBuilders.put(PartialBlockTXsMsg.class,    BlockTXsDownloadedEvent::new);
+        incomingBuilders.put(PartialBlockRawTxMsg.class,  BlockRawTXsDownloadedEvent::new);
+        incomingBuilders.put(RawTxMsg.class,              RawTxMsgReceivedEvent::new);
+        incomingBuilders.put(TxViewMsg.class,             TxViewMsgReceivedEvent::new);
+        incomingBuilders.put(RawBlockMsg.class,           RawBlockMsgReceivedEvent::new);
+        incomingBuilders.put(CompactBlockMsg.class,       CompactBlockMsgReceivedEvent::new);
+        incomingBuilders.put(SendCompactBlockMsg.class,   SendCompactBlockMsgReceivedEvent::new);
+        incomingBuilders.put(GetBlockTxnMsg.class,        GetBlockTxnMsgReceivedEvent::new);
+        incomingBuilders.put(BlockTxnMsg.class,           BlockTxnMsgReceivedEvent::new);
+        incomingBuilders.put(PartialBlockTxnMsg.class,    PartialBlockTxnDownloadedEvent::new);
 
-        return result;
+        outcomingBuilders.put(VersionMsg.class,            VersionMsgSentEvent::new);
+        outcomingBuilders.put(VersionAckMsg.class,         VersionAckMsgSentEvent::new);
+        outcomingBuilders.put(AddrMsg.class,               AddrMsgSentEvent::new);
+        outcomingBuilders.put(BlockMsg.class,              BlockMsgSentEvent::new);
+        outcomingBuilders.put(FeeFilterMsg.class,          FeeMsgSentEvent::new);
+        outcomingBuilders.put(GetAddrMsg.class,            GetAddrMsgSentEvent::new);
+        outcomingBuilders.put(GetdataMsg.class,            GetDataMsgSentEvent::new);
+        outcomingBuilders.put(InvMessage.class,            InvMsgSentEvent::new);
+        outcomingBuilders.put(NotFoundMsg.class,           NotFoundMsgSentEvent::new);
+        outcomingBuilders.put(PingMsg.class,               PingMsgSentEvent::new);
+        outcomingBuilders.put(PongMsg.class,               PongMsgSentEvent::new);
+        outcomingBuilders.put(RejectMsg.class,             RejectMsgSentEvent::new);
+        outcomingBuilders.put(TxMsg.class,                 TxMsgSentEvent::new);
+        outcomingBuilders.put(GetHeadersMsg.class,         GetHeadersMsgSentEvent::new);
+        outcomingBuilders.put(SendHeadersMsg.class,        SendHeadersMsgSentEvent::new);
+        outcomingBuilders.put(HeadersMsg.class,            HeadersMsgSentEvent::new);
+        outcomingBuilders.put(MemPoolMsg.class,            MempoolMsgSentEvent::new);
+        outcomingBuilders.put(GetHeadersEnMsg.class,       GetHeadersEnMsgSentEvent::new);
+        outcomingBuilders.put(SendCompactBlockMsg.class,   SendCompactBlockMsgSentEvent::new);
+        outcomingBuilders.put(CompactBlockMsg.class,       CompactBlockMsgSentEvent::new);
+        outcomingBuilders.put(GetBlockTxnMsg.class,        GetBlockTxnMsgSentEvent::new);
+        outcomingBuilders.put(BlockTxnMsg.class,           BlockTxnMsgSentEvent::new);
     }
 
-    /** It creates the Event to be published to the Bus after we process an outcoming Message */
-    public static  Event buildOutcomingEvent(PeerAddress peerAddress, BitcoinMsg<? extends Message> btcMsg) {
-        Event result = new MsgReceivedEvent<>(peerAddress, btcMsg);
-        Message body = btcMsg.getBody();
+    // Builder used for each Class of Body, resolved only once per Class:
+    private static final ClassValue<EventBuilder<MsgReceivedEvent>> incomingBuildersByClass = new ClassValue<>() {
+        @Override
+        protected EventBuilder<MsgReceivedEvent> computeValue(Class<?> bodyClass) {
+            return findBuilder(incomingBuilders, bodyClass, MsgReceivedEvent::new);
+        }
+    };
 
-        if (body instanceof VersionMsg)                 result = new VersionMsgSentEvent(peerAddress, (BitcoinMsg<VersionMsg>) btcMsg);
-        else if (body instanceof VersionAckMsg)         result = new VersionAckMsgSentEvent(peerAddress, (BitcoinMsg<VersionAckMsg>) btcMsg);
-        else if (body instanceof AddrMsg)               result = new AddrMsgSentEvent(peerAddress, (BitcoinMsg<AddrMsg>) btcMsg);
-        else if (body instanceof BlockMsg)              result = new BlockMsgSentEvent(peerAddress, (BitcoinMsg<BlockMsg>) btcMsg);
-        else if (body instanceof FeeFilterMsg)          result = new FeeMsgSentEvent(peerAddress, (BitcoinMsg<FeeFilterMsg>) btcMsg);
-        else if (body instanceof GetAddrMsg)            result = new GetAddrMsgSentEvent(peerAddress, (BitcoinMsg<GetAddrMsg>) btcMsg);
-        else if (body instanceof GetdataMsg)            result = new GetDataMsgSentEvent(peerAddress, (BitcoinMsg<GetdataMsg>) btcMsg);
-        else if (body instanceof InvMessage)            result = new InvMsgSentEvent(peerAddress, (BitcoinMsg<InvMessage>) btcMsg);
-        else if (body instanceof NotFoundMsg)           result = new NotFoundMsgSentEvent(peerAddress, (BitcoinMsg<NotFoundMsg>) btcMsg);
-        else if (body instanceof PingMsg)               result = new PingMsgSentEvent(peerAddress, (BitcoinMsg<PingMsg>) btcMsg);
-        else if (body instanceof PongMsg)               result = new PongMsgSentEvent(peerAddress, (BitcoinMsg<PongMsg>) btcMsg);
-        else if (body instanceof RejectMsg)             result = new RejectMsgSentEvent(peerAddress, (BitcoinMsg<RejectMsg>) btcMsg);
-        else if (body instanceof TxMsg)                 result = new TxMsgSentEvent(peerAddress, (BitcoinMsg<TxMsg>) btcMsg);
-        else if (body instanceof GetHeadersMsg)         result = new GetHeadersMsgSentEvent(peerAddress, (BitcoinMsg<GetHeadersMsg>) btcMsg);
-        else if (body instanceof SendHeadersMsg)        result = new SendHeadersMsgSentEvent(peerAddress, (BitcoinMsg<SendHeadersMsg>) btcMsg);
-        else if (body instanceof HeadersMsg)            result = new HeadersMsgSentEvent(peerAddress, (BitcoinMsg<HeadersMsg>) btcMsg);
-        else if (body instanceof MemPoolMsg)            result = new MempoolMsgSentEvent(peerAddress, (BitcoinMsg<MemPoolMsg>) btcMsg);
-        else if (body instanceof GetHeadersEnMsg)       result = new GetHeadersEnMsgSentEvent(peerAddress, (BitcoinMsg<GetHeadersEnMsg>) btcMsg);
-        else if (body instanceof SendCompactBlockMsg)   result = new SendCompactBlockMsgSentEvent(peerAddress, (BitcoinMsg<SendCompactBlockMsg>) btcMsg);
-        else if (body instanceof CompactBlockMsg)       result = new CompactBlockMsgSentEvent(peerAddress, (BitcoinMsg<CompactBlockMsg>) btcMsg);
-        else if (body instanceof GetBlockTxnMsg)        result = new GetBlockTxnMsgSentEvent(peerAddress, (BitcoinMsg<GetBlockTxnMsg>) btcMsg);
-        else if (body instanceof BlockTxnMsg)           result = new BlockTxnMsgSentEvent(peerAddress, (BitcoinMsg<BlockTxnMsg>) btcMsg);
+    private static final ClassValue<EventBuilder<Event>> outcomingBuildersByClass = new ClassValue<>() {
+        @Override
+        protected EventBuilder<Event> computeValue(Class<?> bodyClass) {
+            return findBuilder(outcomingBuilders, bodyClass, MsgReceivedEvent::new);
+        }
+    };
 
-        return result;
+    // It returns the first Builder registered for the Class given or any of its super-classes:
+    private static <E extends Event> EventBuilder<E> findBuilder(Map<Class<?>, EventBuilder<E>> builders,
+                                                                Class<?> bodyClass,
+                                                                EventBuilder<E> defaultBuilder) {
+        for (Map.Entry<Class<?>, EventBuilder<E>> entry : builders.entrySet()) {
+            if (entry.getKey().isAssignableFrom(bodyClass)) return entry.getValue();
+        }
+        return defaultBuilder;
+    }
+
+    /** It creates the Event to be published to the Bus after we process an incoming Message */
+    public static MsgReceivedEvent buildIncomingEvent(PeerAddress peerAddress, BitcoinMsg<? extends Message> btcMsg) {
+        return incomingBuildersByClass.get(btcMsg.getBody().getClass()).build(peerAddress, btcMsg);
+    }
+
+    /** It creates the Event to be published to the Bus after we process an outcoming Message */
+    public static  Event buildOutcomingEvent(PeerAddress peerAddress, BitcoinMsg<? extends Message> btcMsg) {
+        return outcomingBuildersByClass.get(btcMsg.getBody().getClass()).build(peerAddress, btcMsg);
     }
 }
@@ -0,0 +1,170 @@
+package io.bitcoinsv.jcl.net.protocol.handlers.message;
+
+import io.bitcoinsv.jcl.net.network.PeerAddress;
+import io.bitcoinsv.jcl.net.protocol.messages.HashMsg;
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorList;
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorMsg;
+import io.bitcoinsv.jcl.tools.thread.TimerWheel;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * It keeps track of the Txs requested (GETDATA) to all the Peers, so the same Tx is only requested to one Peer at a
+ * time:
+ *
+ * - When a GETDATA is sent, the Txs already requested to another Peer (and not received yet) are removed from it.
+ *   That Peer is remembered as an "alternative" for that Tx.
+ * - When the Tx is received, it's not tracked anymore.
+ * - If the Tx is not received before the timeout (or the Peer replies with a NOTFOUND, or it disconnects), the Tx is
+ *   requested to the next alternative Peer. If there is none, the Tx is not tracked anymore (so it will be requested
+ *   again as soon as any Peer announces it).
+ *
+ * Only the Txs (MSG_TX) are tracked: other Inventory (Blocks, etc) is always requested as it is, since the
+ * components that download them have their own timeouts.
+ *
+ * The timeouts are scheduled in a TimerWheel. The GETDATAs re-requesting the Txs are handed to the callback.
+ */
+class GetDataTracker {
+
+    // A Tx requested and not received yet:
+    private static class Request {
+        final ByteBuffer key;               // Hash of the Tx (wire format)
+        final byte[] record;                // Inventory Vector, as it goes in the GETDATA
+        PeerAddress peer;                   // Peer it's currently requested to
+        final Deque<PeerAddress> alternatives = new ArrayDeque<>();
+        TimerWheel.Timeout timeout;
+
+        Request(ByteBuffer key, byte[] record, PeerAddress peer) {
+            this.key = key;
+            this.record = record;
+            this.peer = peer;
+        }
+    }
+
+    private final long timeoutNanos;
+    private final int maxAlternativePeers;
+    private final TimerWheel timer;
+
+    // Callback triggered with the Txs to request again to a Peer:
+    private final BiConsumer<PeerAddress, InventoryVectorList> reRequestHandler;
+
+    // Txs requested, by Hash:
+    private final Map<ByteBuffer, Request> requests = new HashMap<>();
+
+    /**
+     * Constructor.
+     * @param config            Configuration (timeout and max number of alternatives)
+     * @param timer             Timer used to detect the requests not fulfilled in time
+     * @param reRequestHandler  Callback triggered with the Txs to request again to a Peer
+     */
+    GetDataTracker(InventoryTrackerConfig config, TimerWheel timer, BiConsumer<PeerAddress, InventoryVectorList> reRequestHandler) {
+        this.timeoutNanos = config.getGetDataTimeout().toNanos();
+        this.maxAlternativePeers = config.getMaxAlternativePeers();
+        this.timer = timer;
+        this.reRequestHandler = reRequestHandler;
+    }
+
+    /**
+     * It registers the Inventory about to be requested to the Peer given, and returns the Inventory that must be
+     * actually requested: the same one, or a copy without the Txs already requested to other Peers.
+     */
+    public synchronized InventoryVectorList onGetData(PeerAddress peerAddress, InventoryVectorList inventory) {
+        return inventory.filter((typeCode, records, hashOffset) -> {
+            if (typeCode != InventoryVectorMsg.VectorType.MSG_TX.getValue()) return true;
+            Request request = requests.get(ByteBuffer.wrap(records, hashOffset, HashMsg.HASH_LENGTH));
+            if (request == null) {
+                int offset = hashOffset - (int) InventoryVectorMsg.VECTOR_TYPE_LENGTH;
+                byte[] record = Arrays.copyOfRange(records, offset, offset + InventoryVectorList.RECORD_LENGTH);
+                ByteBuffer key = ByteBuffer.wrap(record, (int) InventoryVectorMsg.VECTOR_TYPE_LENGTH, HashMsg.HASH_LENGTH).slice();
+                request = new Request(key, record, peerAddress);
+                requests.put(key, request);
+                scheduleTimeout(request);
+                return true;
+            }
+            // If it's requested again to the same Peer, we let it go:
+            if (request.peer.equals(peerAddress)) return true;
+            if (request.alternatives.size() < maxAlternativePeers && !request.alternatives.contains(peerAddress)) {
+                request.alternatives.add(peerAddress);
+            }
+            return false;
+        });
+    }
+
+    /** It notifies that the Tx given (Hash in wire format) has been received, so it's not tracked anymore */
+    public synchronized void onTxReceived(byte[] txHash) {
+        Request request = requests.remove(ByteBuffer.wrap(txHash));
+        if (request != null && request.timeout != null) request.timeout.cancel();
+    }
+
+    /** It notifies that the Peer given doesn't have the Inventory given (NOTFOUND) */
+    public void onNotFound(PeerAddress peerAddress, InventoryVectorList inventory) {
+        Map<PeerAddress, ByteArrayOutputStream> reRequests = new HashMap<>();
+        synchronized (this) {
+            inventory.forEachRecord((index, typeCode, records, hashOffset) -> {
+                Request request = requests.get(ByteBuffer.wrap(records, hashOffset, HashMsg.HASH_LENGTH));
+                if (request != null) {
+                    request.alternatives.remove(peerAddress);
+                    if (request.peer.equals(peerAddress)) reRequest(request, reRequests);
+                }
+            });
+        }
+        sendReRequests(reRequests);
+    }
+
+    /** It notifies that the Peer given has disconnected: the Txs requested to it are requested to other Peers */
+    public void onPeerDisconnected(PeerAddress peerAddress) {
+        Map<PeerAddress, ByteArrayOutputStream> reRequests = new HashMap<>();
+        synchronized (this) {
+            for (Request request : new ArrayList<>(requests.values())) {
+                request.alternatives.remove(peerAddress);
+                if (request.peer.equals(peerAddress)) reRequest(request, reRequests);
+            }
+        }
+        sendReRequests(reRequests);
+    }
+
+    /** Returns the number of Txs requested and not received yet */
+    public synchronized int getNumTxsInFlight() {
+        return requests.size();
+    }
+
+    private void scheduleTimeout(Request request) {
+        request.timeout = timer.schedule(() -> onTimeout(request), timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Triggered by the Timer:
+    private void onTimeout(Request request) {
+        Map<PeerAddress, ByteArrayOutputStream> reRequests = new HashMap<>();
+        synchronized (this) {
+            // The Tx might have been received (or re-requested) in the meantime:
+            if (requests.get(request.key) != request || !request.timeout.isExpired()) return;
+            reRequest(request, reRequests);
+        }
+        sendReRequests(reRequests);
+    }
+
+    // It moves the request given to the next alternative Peer, if any. Otherwise, it's not tracked anymore:
+    private void reRequest(Request request, Map<PeerAddress, ByteArrayOutputStream> reRequests) {
+        if (request.timeout != null) request.timeout.cancel();
+        PeerAddress nextPeer = request.alternatives.poll();
+        if (nextPeer == null) {
+            requests.remove(request.key);
+            return;
+        }
+        request.peer = nextPeer;
+        scheduleTimeout(request);
+        reRequests.computeIfAbsent(nextPeer, p -> new ByteArrayOutputStream()).write(request.record, 0, request.record.length);
+    }
+
+    // The callback is triggered out of the lock:
+    private void sendReRequests(Map<PeerAddress, ByteArrayOutputStream> reRequests) {
+        reRequests.forEach((peerAddress, records) -> reRequestHandler.accept(peerAddress, InventoryVectorList.wrap(records.toByteArray())));
+    }
+}
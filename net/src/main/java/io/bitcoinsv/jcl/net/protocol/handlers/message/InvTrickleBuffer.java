@@ -0,0 +1,142 @@
+package io.bitcoinsv.jcl.net.protocol.handlers.message;
+
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorList;
+import io.bitcoinsv.jcl.tools.thread.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A buffer of the Inventory Vectors pending to be announced to ONE Peer. Instead of sending one INV Message for each
+ * announcement (so announcing thousands of Txs per second means thousands of INV Messages per Peer per second), the
+ * Inventory Vectors are accumulated here, and they are sent all together in a single INV Message ("trickling"):
+ *
+ * - As soon as the buffer reaches the max number of Inventory Vectors per Message, a full Message is sent.
+ * - Otherwise, the Vectors are sent when the trickle interval expires. The interval is random (exponentially
+ *   distributed around the average configured), so the time we announce something to each Peer is different and
+ *   it's harder to find out which Peer an announcement was originated in.
+ *
+ * The Vectors are stored in wire format, one after another, in a single array (see InventoryVectorList), so the
+ * Message is built without any conversion. The timeouts are scheduled in a TimerWheel shared by all the Peers.
+ */
+class InvTrickleBuffer {
+
+    // Initial capacity of the buffer (in number of Inventory Vectors). It grows as needed, up to the max:
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxInvsPerMsg;
+    private final long avgIntervalNanos;
+    private final TimerWheel timer;
+
+    // Callback triggered with each list of Vectors ready to be sent:
+    private final Consumer<InventoryVectorList> flushHandler;
+
+    // Vectors pending, in wire format:
+    private byte[] records = new byte[0];
+    private int numInvs;
+
+    // Timeout of the next trickle, if any Vector is pending:
+    private TimerWheel.Timeout trickleTimeout;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     * @param maxInvsPerMsg     Max number of Inventory Vectors sent in one INV Message
+     * @param avgIntervalNanos  Average interval (nanosecs) between INV Messages
+     * @param timer             Timer used to send the Vectors pending when the interval expires
+     * @param flushHandler      Callback triggered with each list of Vectors ready to be sent
+     */
+    InvTrickleBuffer(int maxInvsPerMsg, long avgIntervalNanos, TimerWheel timer, Consumer<InventoryVectorList> flushHandler) {
+        this.maxInvsPerMsg = Math.max(1, Math.min(maxInvsPerMsg, InventoryVectorList.MAX_SIZE));
+        this.avgIntervalNanos = avgIntervalNanos;
+        this.timer = timer;
+        this.flushHandler = flushHandler;
+    }
+
+    /**
+     * It adds the Inventory Vectors given to the buffer. If the buffer gets full, the Vectors are handed to the
+     * callback straight away, in this same Thread.
+     */
+    public void add(InventoryVectorList inventory) {
+        List<InventoryVectorList> fullMsgs = null;
+        synchronized (this) {
+            if (closed) return;
+            byte[] newRecords = inventory.getRecords();
+            int newInvs = inventory.size();
+            int index = 0;
+            while (index < newInvs) {
+                int numToCopy = Math.min(newInvs - index, maxInvsPerMsg - numInvs);
+                ensureCapacity(numInvs + numToCopy);
+                System.arraycopy(newRecords, index * InventoryVectorList.RECORD_LENGTH,
+                        records, numInvs * InventoryVectorList.RECORD_LENGTH,
+                        numToCopy * InventoryVectorList.RECORD_LENGTH);
+                numInvs += numToCopy;
+                index += numToCopy;
+                if (numInvs == maxInvsPerMsg) {
+                    if (fullMsgs == null) fullMsgs = new ArrayList<>();
+                    fullMsgs.add(extract());
+                }
+            }
+            if (numInvs > 0 && trickleTimeout == null) {
+                trickleTimeout = timer.schedule(this::onTrickleTimeout, nextIntervalNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        // The callback is triggered out of the lock:
+        if (fullMsgs != null) fullMsgs.forEach(flushHandler);
+    }
+
+    /** Returns the number of Inventory Vectors waiting to be sent */
+    public synchronized int getNumPendingInvs() {
+        return numInvs;
+    }
+
+    /** It discards all the Vectors pending. After this, no more Vectors are accepted */
+    public synchronized void close() {
+        closed = true;
+        numInvs = 0;
+        records = new byte[0];
+        if (trickleTimeout != null) trickleTimeout.cancel();
+        trickleTimeout = null;
+    }
+
+    // Triggered by the Timer:
+    private void onTrickleTimeout() {
+        InventoryVectorList inventory = null;
+        synchronized (this) {
+            trickleTimeout = null;
+            if (!closed && numInvs > 0) inventory = extract();
+        }
+        if (inventory != null) flushHandler.accept(inventory);
+    }
+
+    // It takes all the Vectors pending out of the buffer:
+    private InventoryVectorList extract() {
+        InventoryVectorList result = InventoryVectorList.wrap(Arrays.copyOf(records, numInvs * InventoryVectorList.RECORD_LENGTH));
+        numInvs = 0;
+        if (trickleTimeout != null) trickleTimeout.cancel();
+        trickleTimeout = null;
+        return result;
+    }
+
+    private void ensureCapacity(int capacityInInvs) {
+        int currentCapacity = records.length / InventoryVectorList.RECORD_LENGTH;
+        if (currentCapacity >= capacityInInvs) return;
+        int newCapacity = Math.max(INITIAL_CAPACITY, currentCapacity);
+        while (newCapacity < capacityInInvs) newCapacity <<= 1;
+        newCapacity = Math.min(newCapacity, maxInvsPerMsg);
+        records = Arrays.copyOf(records, newCapacity * InventoryVectorList.RECORD_LENGTH);
+    }
+
+    // Next (random) interval, following an exponential distribution (a Poisson process) around the average:
+    private long nextIntervalNanos() {
+        double random = ThreadLocalRandom.current().nextDouble();
+        return (long) (-Math.log1p(-random) * avgIntervalNanos);
+    }
+}
@@ -0,0 +1,97 @@
+package io.bitcoinsv.jcl.net.protocol.handlers.message;
+
+import java.time.Duration;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * Configuration of the Inventory tracking done by the Message Handler:
+ *
+ * - The Inventory each Peer knows about (announced by it, or sent/announced to it) is remembered, so we don't
+ *   announce it to that Peer again.
+ * - The Txs requested (GETDATA) are tracked, so the same Tx is not requested to several Peers at the same time. If
+ *   the Peer does not deliver it in time, it's requested to another Peer that has announced it (see GetDataTracker).
+ */
+public class InventoryTrackerConfig {
+    private int numKnownInvsPerPeer;
+    private double knownInvsFalsePositiveRate;
+    private Duration getDataTimeout;
+    private int maxAlternativePeers;
+
+    /** Constructor */
+    private InventoryTrackerConfig(int numKnownInvsPerPeer, double knownInvsFalsePositiveRate,
+                                   Duration getDataTimeout, int maxAlternativePeers) {
+        checkArgument(numKnownInvsPerPeer > 0, "The number of Inventory Vectors remembered per Peer must be > 0");
+        checkArgument(knownInvsFalsePositiveRate > 0 && knownInvsFalsePositiveRate < 1, "The false positive rate must be between 0 and 1");
+        checkArgument(getDataTimeout != null, "You need to specify the timeout of the GETDATA requests");
+        checkArgument(maxAlternativePeers >= 0, "The max number of alternative Peers must be >= 0");
+        this.numKnownInvsPerPeer = numKnownInvsPerPeer;
+        this.knownInvsFalsePositiveRate = knownInvsFalsePositiveRate;
+        this.getDataTimeout = getDataTimeout;
+        this.maxAlternativePeers = maxAlternativePeers;
+    }
+
+    /** Number of (last) Inventory Vectors remembered for each Peer */
+    public int getNumKnownInvsPerPeer()             { return this.numKnownInvsPerPeer;}
+    /** False positive rate of the Filter of each Peer (a false positive means an announcement not sent) */
+    public double getKnownInvsFalsePositiveRate()   { return this.knownInvsFalsePositiveRate;}
+    /** Time we wait for a Tx requested before requesting it to another Peer */
+    public Duration getGetDataTimeout()             { return this.getDataTimeout;}
+    /** Max number of other Peers remembered for each Tx requested, to request it to them if needed */
+    public int getMaxAlternativePeers()             { return this.maxAlternativePeers;}
+
+    public InventoryTrackerConfigBuilder toBuilder() {
+        return new InventoryTrackerConfigBuilder()
+                .numKnownInvsPerPeer(this.numKnownInvsPerPeer)
+                .knownInvsFalsePositiveRate(this.knownInvsFalsePositiveRate)
+                .getDataTimeout(this.getDataTimeout)
+                .maxAlternativePeers(this.maxAlternativePeers);
+    }
+
+    public static InventoryTrackerConfigBuilder builder() {
+        return new InventoryTrackerConfigBuilder();
+    }
+
+    @Override
+    public String toString() {
+        return "InventoryTrackerConfig(numKnownInvsPerPeer=" + numKnownInvsPerPeer
+                + ", knownInvsFalsePositiveRate=" + knownInvsFalsePositiveRate
+                + ", getDataTimeout=" + getDataTimeout
+                + ", maxAlternativePeers=" + maxAlternativePeers + ")";
+    }
+
+    /** Builder */
+    public static class InventoryTrackerConfigBuilder {
+        private int numKnownInvsPerPeer = 50_000;                   // default
+        private double knownInvsFalsePositiveRate = 0.000001;       // default
+        private Duration getDataTimeout = Duration.ofSeconds(60);   // default
+        private int maxAlternativePeers = 8;                        // default
+
+        public InventoryTrackerConfigBuilder numKnownInvsPerPeer(int numKnownInvsPerPeer) {
+            this.numKnownInvsPerPeer = numKnownInvsPerPeer;
+            return this;
+        }
+
+        public InventoryTrackerConfigBuilder knownInvsFalsePositiveRate(double knownInvsFalsePositiveRate) {
+            this.knownInvsFalsePositiveRate = knownInvsFalsePositiveRate;
+            return this;
+        }
+
+        public InventoryTrackerConfigBuilder getDataTimeout(Duration getDataTimeout) {
+            this.getDataTimeout = getDataTimeout;
+            return this;
+        }
+
+        public InventoryTrackerConfigBuilder maxAlternativePeers(int maxAlternativePeers) {
+            this.maxAlternativePeers = maxAlternativePeers;
+            return this;
+        }
+
+        public InventoryTrackerConfig build() {
+            return new InventoryTrackerConfig(numKnownInvsPerPeer, knownInvsFalsePositiveRate, getDataTimeout, maxAlternativePeers);
+        }
+    }
+}
@@ -2,10 +2,15 @@ package io.bitcoinsv.jcl.net.protocol.handlers.message;
 
 import io.bitcoinsv.jcl.net.protocol.events.data.*;
 import io.bitcoinsv.jcl.net.protocol.events.data.*;
+import io.bitcoinsv.jcl.tools.thread.TimerWheel;
 
-import java.time.Duration;
-import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
@@ -18,6 +23,12 @@ import java.util.function.Function;
  *
  * If a MessageBatch config has been specified for any MsgType, then an instance of this class will be crated and it
  * will keep track of the events stored in it, so we can control when we can broadcast the whole Batch.
+ *
+ * The Events are added from many Threads at the same time (one per Stream Lane), so they are NOT stored in a single
+ * List protected by a lock: Each Thread adds its Events to one of several "stripes" (lock-free queues), and the
+ * number of Events and Bytes are kept in atomic counters. Only the Thread that completes a Batch takes the Events
+ * out of the stripes. The Batches that are not completed in time are flushed by a Timer Wheel shared by all the
+ * Managers, so no Thread needs to poll them.
  */
 
 class MessageBatchManager<E extends MsgReceivedEvent> {
@@ -28,64 +39,162 @@ class MessageBatchManager<E extends MsgReceivedEvent> {
 
     private static Map<Class<? extends MsgReceivedEvent>, Function<List<? extends MsgReceivedEvent>, MsgReceivedBatchEvent>> BATCH_SUPPLIERS = Map.ofEntries(
             Map.entry(TxMsgReceivedEvent.class, events -> new TxsBatchMsgReceivedEvent((List<TxMsgReceivedEvent>) events)),
-            Map.entry(RawTxMsgReceivedEvent.class, events -> new RawTxsBatchMsgReceivedEvent((List<RawTxMsgReceivedEvent>) events))
+            Map.entry(RawTxMsgReceivedEvent.class, events -> new RawTxsBatchMsgReceivedEvent((List<RawTxMsgReceivedEvent>) events)),
+            Map.entry(InvMsgReceivedEvent.class, events -> new InvsBatchMsgReceivedEvent((List<InvMsgReceivedEvent>) events)),
+            Map.entry(AddrMsgReceivedEvent.class, events -> new AddrsBatchMsgReceivedEvent((List<AddrMsgReceivedEvent>) events)),
+            Map.entry(HeadersMsgReceivedEvent.class, events -> new HeadersBatchMsgReceivedEvent((List<HeadersMsgReceivedEvent>) events))
     );
 
-    private Class<E> msgClass;
-    private MessageBatchConfig config;
-    private List<E> events = new ArrayList<>();
-    private int currentEventsSize = 0;
-    private Instant timestamp = Instant.now();
+    // Number of stripes the Events are spread over (a power of 2):
+    private static final int NUM_STRIPES = Math.min(64, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    private final Class<E> msgClass;
+    private final MessageBatchConfig config;
+    private final int maxMsgsInBatch;
+    private final long maxBatchSizeInBytes;
+    private final long maxIntervalNanos;
+
+    private final Queue<E>[] stripes;
+    private final AtomicInteger numEvents = new AtomicInteger();
+    private final AtomicLong numBytes = new AtomicLong();
+
+    // Time (System.nanoTime()) of the last Batch extracted:
+    private volatile long lastBatchNanos = System.nanoTime();
+
+    // Only one Thread at a time takes Events out of the stripes:
+    private final AtomicBoolean extracting = new AtomicBoolean();
+
+    // Timer used to flush the Batches not completed in time, and a flag indicating if a flush is already scheduled:
+    private final TimerWheel timer;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // Flag indicating if an extraction has been re-triggered, because another Thread was extracting at that moment:
+    private final AtomicBoolean retryScheduled = new AtomicBoolean();
+
+    // Callback triggered when a Batch is ready:
+    private final Consumer<MsgReceivedBatchEvent<E>> batchHandler;
 
-    /** Constructor. It assigns the MessagesBatch config */
-    public MessageBatchManager(Class<E> msgClass, MessageBatchConfig config) {
+    /**
+     * Constructor.
+     * @param msgClass      Class of the Events stored in the Batch
+     * @param config        Batch Configuration
+     * @param timer         Timer used to flush the Batches when the max interval between Batches expires
+     * @param batchHandler  Callback triggered with each Batch, when it's ready
+     */
+    @SuppressWarnings("unchecked")
+    public MessageBatchManager(Class<E> msgClass, MessageBatchConfig config, TimerWheel timer,
+                               Consumer<MsgReceivedBatchEvent<E>> batchHandler) {
         this.msgClass = msgClass;
         this.config = config;
+        this.maxMsgsInBatch = config.getMaxMsgsInBatch();
+        this.maxBatchSizeInBytes = config.getMaxBatchSizeInbytes();
+        this.maxIntervalNanos = config.getMaxIntervalBetweenBatches().toNanos();
+        this.timer = timer;
+        this.batchHandler = batchHandler;
+        this.stripes = new Queue[NUM_STRIPES];
+        for (int i = 0; i < NUM_STRIPES; i++) stripes[i] = new ConcurrentLinkedQueue<>();
     }
 
     /** It indicates if a Batch can be extracted, according to the Configuration */
-    public synchronized boolean isBatchReadyToBroadcast() {
-        if (events.isEmpty()) return false;
-
-        if (config.getMaxMsgsInBatch() != null && events.size() >= config.getMaxMsgsInBatch()) {
-            return true;
-        } else if (config.getMaxBatchSizeInbytes() != null && currentEventsSize >= config.getMaxBatchSizeInbytes()) {
-            return true;
-        } else if (config.getMaxIntervalBetweenBatches() != null && Duration.between(timestamp, Instant.now()).compareTo(config.getMaxIntervalBetweenBatches()) > 0) {
-            return true;
-        } else {
-            return false;
-        }
+    public boolean isBatchReadyToBroadcast() {
+        if (numEvents.get() <= 0) return false;
+        return numEvents.get() >= maxMsgsInBatch
+                || numBytes.get() >= maxBatchSizeInBytes
+                || isIntervalExpired();
     }
 
-    // getter
-    protected List<E> getEvents() { return this.events;}
-    // getter
-    protected Instant getTimestamp() { return this.timestamp;}
-
-    /** Adds a new Event */
-    public synchronized void addEvent(E event) {
-        this.events.add(event);
-        this.currentEventsSize += event.getBtcMsg().getLengthInBytes();
+    private boolean isIntervalExpired() {
+        return (System.nanoTime() - lastBatchNanos) > maxIntervalNanos;
     }
 
+    /** Returns the number of Events waiting to be part of a Batch */
+    public int getNumPendingEvents() { return Math.max(0, numEvents.get()); }
+
     /**
-     * It adds a new Event tot he Batch, and if the Batch is fullfilled according to the Configuration, it will return
-     * the Btch and reset it so it can be feed with new messages after this call.
+     * It adds a new Event to the Batch. If the Batch is fulfilled according to the Configuration, it is extracted and
+     * handed to the callback, so it can be fed with new messages after this call.
      */
-    public synchronized Optional<MsgReceivedBatchEvent<E>> addEventAndExtractBatch(E event) {
-        this.addEvent(event);
-        if (isBatchReadyToBroadcast()) return extractBatchAndReset();
-        else return Optional.empty();
+    public void addEvent(E event) {
+        // The counters are updated BEFORE the Event is stored, so they are never lower than the real numbers:
+        numEvents.incrementAndGet();
+        numBytes.addAndGet(event.getBtcMsg().getLengthInBytes());
+        stripes[(int) Thread.currentThread().getId() & (NUM_STRIPES - 1)].offer(event);
+
+        if (isBatchReadyToBroadcast()) {
+            extractBatches();
+        } else if (!flushScheduled.get()) {
+            scheduleFlush();
+        }
     }
 
     /** Extract a Batch and clears up the internal, making it ready for accepting new Events */
-    public synchronized Optional<MsgReceivedBatchEvent<E>> extractBatchAndReset() {
-        if (this.events.isEmpty()) return Optional.empty();
-        MsgReceivedBatchEvent result = BATCH_SUPPLIERS.get(msgClass).apply(this.events);
-        this.events = new ArrayList<>();
-        this.timestamp = Instant.now();
-        this.currentEventsSize = 0;
-        return Optional.of(result);
+    public Optional<MsgReceivedBatchEvent<E>> extractBatchAndReset() {
+        List<E> events = new ArrayList<>(Math.min(getNumPendingEvents(), maxMsgsInBatch));
+        long bytes = 0;
+        int firstStripe = (int) (lastBatchNanos & (NUM_STRIPES - 1)); // so all the stripes get the same chance
+        for (int i = 0; i < NUM_STRIPES && events.size() < maxMsgsInBatch && bytes < maxBatchSizeInBytes; i++) {
+            Queue<E> stripe = stripes[(firstStripe + i) & (NUM_STRIPES - 1)];
+            E event;
+            while (events.size() < maxMsgsInBatch && bytes < maxBatchSizeInBytes && (event = stripe.poll()) != null) {
+                events.add(event);
+                bytes += event.getBtcMsg().getLengthInBytes();
+            }
+        }
+        numEvents.addAndGet(-events.size());
+        numBytes.addAndGet(-bytes);
+        this.lastBatchNanos = System.nanoTime();
+        if (events.isEmpty()) return Optional.empty();
+        return Optional.of(BATCH_SUPPLIERS.get(msgClass).apply(events));
+    }
+
+    // It extracts all the Batches ready and hands them to the callback. If another Thread is already doing it, that
+    // Thread might finish before it sees the Events added by this one, so the extraction is re-triggered by the Timer.
+    // The Events left after extracting (not enough for a Batch yet) are flushed when the max interval expires:
+    private void extractBatches() {
+        while (isBatchReadyToBroadcast()) {
+            if (!extracting.compareAndSet(false, true)) {
+                scheduleRetry();
+                return;
+            }
+            boolean empty = false;
+            try {
+                while (!empty && isBatchReadyToBroadcast()) {
+                    Optional<MsgReceivedBatchEvent<E>> batch = extractBatchAndReset();
+                    batch.ifPresent(batchHandler);
+                    empty = batch.isEmpty();
+                }
+            } finally {
+                extracting.set(false);
+            }
+            // If the Events counted are still being added by other Threads, those Threads will extract them:
+            if (empty) break;
+        }
+        if (getNumPendingEvents() > 0) scheduleFlush();
     }
+
+    // It re-triggers the extraction in the next tick of the Timer:
+    private void scheduleRetry() {
+        if (!retryScheduled.compareAndSet(false, true)) return;
+        timer.schedule(this::onRetryTimeout, 0, TimeUnit.NANOSECONDS);
+    }
+
+    // It schedules a flush of the Batch, for the moment the max interval between Batches expires:
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) return;
+        long delayNanos = Math.max(0, maxIntervalNanos - (System.nanoTime() - lastBatchNanos));
+        timer.schedule(this::onFlushTimeout, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Triggered by the Timer:
+    private void onFlushTimeout() {
+        flushScheduled.set(false);
+        extractBatches();
+    }
+
+    // Triggered by the Timer:
+    private void onRetryTimeout() {
+        retryScheduled.set(false);
+        extractBatches();
+    }
+
+    public MessageBatchConfig getConfig() { return this.config; }
 }
@@ -5,12 +5,17 @@ package io.bitcoinsv.jcl.net.protocol.handlers.message;
 import io.bitcoinsv.jcl.net.protocol.config.ProtocolBasicConfig;
 
 
+import io.bitcoinsv.jcl.net.protocol.events.data.AddrMsgReceivedEvent;
+import io.bitcoinsv.jcl.net.protocol.events.data.HeadersMsgReceivedEvent;
+import io.bitcoinsv.jcl.net.protocol.events.data.InvMsgReceivedEvent;
 import io.bitcoinsv.jcl.net.protocol.events.data.RawTxMsgReceivedEvent;
 import io.bitcoinsv.jcl.net.protocol.events.data.TxMsgReceivedEvent;
 import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer.DeserializerConfig;
 import io.bitcoinsv.jcl.net.protocol.messages.ByteStreamMsg;
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorList;
 import io.bitcoinsv.jcl.tools.handlers.HandlerConfig;
 
+import java.time.Duration;
 import java.util.HashMap;
 
 /**
@@ -33,6 +38,12 @@ public final class MessageHandlerConfig extends HandlerConfig {
     /** If TRUE, then the TXs are read from the wire in raw format, without Deserialization */
     private boolean rawTxsEnabled = false;
 
+    /**
+     * If TRUE, then the TXs are read from the wire in raw format, and their Inputs and Outputs are only decoded on
+     * demand (see TxViewMsg). If "rawTxsEnabled" is also TRUE, this one takes precedence for the TXs.
+     */
+    private boolean txViewsEnabled = false;
+
     /**
      * A Map containing Batch Message Configurations. If for example we want to Deserialize the "RawTxMsg" messages
      * in batches, then an entry with "RawTxMsg.class" as a Key should be included here.
@@ -51,12 +62,51 @@ public final class MessageHandlerConfig extends HandlerConfig {
      */
     private boolean verifyChecksum = true; // default
 
+    /**
+     * If TRUE, the Deserializer Stream of each Peer is "fused" to the Network Stream: The bytes are deserialized and
+     * the Messages are notified in the same Thread the bytes are delivered in (the Stream Lane assigned to the Peer),
+     * without passing them through an additional Executor (see PeerInputStreamImpl).
+     *
+     * NOTE: In this mode the clients of the Deserializer Stream (like the MessageHandler) run in the Stream Lane of
+     * the Peer, so a slow client delays the reading of that Peer's bytes. Disabled by default.
+     */
+    private boolean fusedStreamPipeline = false; // default
+
+    /**
+     * If set, the INV Messages sent or broadcast are not sent straight away: Their Inventory Vectors are accumulated
+     * for each Peer, and they are sent all together in one INV Message, either when "maxInvsPerMsg" is reached or
+     * when a random interval (around this average) expires (see InvTrickleBuffer). If NULL, each INV is sent as it is.
+     */
+    private Duration invTrickleInterval;
+
+    /** Max number of Inventory Vectors in each INV Message sent, when the INVs are trickled */
+    private int maxInvsPerMsg = InventoryVectorList.MAX_SIZE; // default
+
+    /**
+     * If set, the incoming TXs and INVs already received from other Peers are dropped before they are published to
+     * the EventBus (see SeenFilter). If NULL, all of them are published.
+     */
+    private SeenFilterConfig seenFilterConfig;
+
+    /**
+     * If set, the Inventory known by each Peer is remembered, so it's not announced to it again, and the Txs requested
+     * are tracked, so they are not requested to several Peers at the same time (see InventoryTrackerConfig). If NULL,
+     * all the INVs and GETDATAs are sent as they are.
+     */
+    private InventoryTrackerConfig inventoryTrackerConfig;
+
     MessageHandlerConfig(ProtocolBasicConfig basicConfig,
                          MessagePreSerializer preSerializer,
                          DeserializerConfig deserializerConfig,
                          boolean rawTxsEnabled,
+                         boolean txViewsEnabled,
                          HashMap<Class, MessageBatchConfig> msgBatchConfigs,
-                         boolean verifyChecksum
+                         boolean verifyChecksum,
+                         boolean fusedStreamPipeline,
+                         Duration invTrickleInterval,
+                         int maxInvsPerMsg,
+                         SeenFilterConfig seenFilterConfig,
+                         InventoryTrackerConfig inventoryTrackerConfig
     ) {
         if (basicConfig != null)
             this.basicConfig = basicConfig;
@@ -66,16 +116,38 @@ public final class MessageHandlerConfig extends HandlerConfig {
         }
 
         this.rawTxsEnabled = rawTxsEnabled;
+        this.txViewsEnabled = txViewsEnabled;
         this.msgBatchConfigs = msgBatchConfigs;
         this.verifyChecksum = verifyChecksum;
+        this.fusedStreamPipeline = fusedStreamPipeline;
+        this.invTrickleInterval = invTrickleInterval;
+        this.maxInvsPerMsg = maxInvsPerMsg;
+        this.seenFilterConfig = seenFilterConfig;
+        this.inventoryTrackerConfig = inventoryTrackerConfig;
     }
 
     public ProtocolBasicConfig getBasicConfig()                     { return this.basicConfig; }
     public MessagePreSerializer getPreSerializer()                  { return this.preSerializer; }
     public DeserializerConfig getDeserializerConfig()               { return this.deserializerConfig; }
     public boolean isRawTxsEnabled()                                { return this.rawTxsEnabled; }
+    public boolean isTxViewsEnabled()                               { return this.txViewsEnabled; }
     public HashMap<Class, MessageBatchConfig> getMsgBatchConfigs()  { return this.msgBatchConfigs;}
     public boolean isVerifyChecksum()                               { return this.verifyChecksum;}
+    public boolean isFusedStreamPipeline()                          { return this.fusedStreamPipeline;}
+    public Duration getInvTrickleInterval()                         { return this.invTrickleInterval;}
+    public int getMaxInvsPerMsg()                                   { return this.maxInvsPerMsg;}
+    public boolean isInvTricklingEnabled()                          { return this.invTrickleInterval != null;}
+    public SeenFilterConfig getSeenFilterConfig()                   { return this.seenFilterConfig;}
+    public InventoryTrackerConfig getInventoryTrackerConfig()       { return this.inventoryTrackerConfig;}
+
+    /**
+     * Indicates if the Hash of the incoming TXs must be calculated while they are deserialized, since some of the
+     * features enabled need it (the SeenFilter drops the TXs by their Hash, and the Inventory tracking needs it to
+     * know that a Tx requested has arrived).
+     */
+    public boolean isTxHashesRequired() {
+        return (seenFilterConfig != null && seenFilterConfig.isFilterTxs()) || inventoryTrackerConfig != null;
+    }
 
     @Override
     public String toString() {
@@ -83,7 +155,12 @@ public final class MessageHandlerConfig extends HandlerConfig {
                 + ", preSerializer=" + this.getPreSerializer() + ", deserializerConfig="
                 + this.getDeserializerConfig()
                 + ", msgBatchConfigs=" + msgBatchConfigs
-                + ", verifyChecksum=" + this.verifyChecksum + ")";
+                + ", verifyChecksum=" + this.verifyChecksum
+                + ", fusedStreamPipeline=" + this.fusedStreamPipeline
+                + ", invTrickleInterval=" + this.invTrickleInterval
+                + ", maxInvsPerMsg=" + this.maxInvsPerMsg
+                + ", seenFilterConfig=" + this.seenFilterConfig
+                + ", inventoryTrackerConfig=" + this.inventoryTrackerConfig + ")";
     }
 
     public MessageHandlerConfigBuilder toBuilder() {
@@ -92,8 +169,14 @@ public final class MessageHandlerConfig extends HandlerConfig {
                 .preSerializer(this.preSerializer)
                 .deserializerConfig(this.deserializerConfig)
                 .rawTxsEnabled(rawTxsEnabled)
+                .txViewsEnabled(txViewsEnabled)
                 .msgBatchConfigs(this.msgBatchConfigs)
-                .verifyChecksum(this.verifyChecksum);
+                .verifyChecksum(this.verifyChecksum)
+                .fusedStreamPipeline(this.fusedStreamPipeline)
+                .invTrickleInterval(this.invTrickleInterval)
+                .maxInvsPerMsg(this.maxInvsPerMsg)
+                .seenFilterConfig(this.seenFilterConfig)
+                .inventoryTrackerConfig(this.inventoryTrackerConfig);
     }
 
     public static MessageHandlerConfigBuilder builder() {
@@ -108,8 +191,14 @@ public final class MessageHandlerConfig extends HandlerConfig {
         private MessagePreSerializer preSerializer;
         private DeserializerConfig deserializerConfig;
         private boolean rawTxsEnabled = false;
+        private boolean txViewsEnabled = false;
         private HashMap<Class, MessageBatchConfig> msgBatchConfigs = new HashMap<>();
         private boolean verifyChecksum = true; // default
+        private boolean fusedStreamPipeline = false; // default
+        private Duration invTrickleInterval;
+        private int maxInvsPerMsg = InventoryVectorList.MAX_SIZE; // default
+        private SeenFilterConfig seenFilterConfig;
+        private InventoryTrackerConfig inventoryTrackerConfig;
 
         MessageHandlerConfigBuilder() { }
 
@@ -133,6 +222,11 @@ public final class MessageHandlerConfig extends HandlerConfig {
             return this;
         }
 
+        public MessageHandlerConfig.MessageHandlerConfigBuilder txViewsEnabled(boolean txViewsEnabled) {
+            this.txViewsEnabled = txViewsEnabled;
+            return this;
+        }
+
         public MessageHandlerConfig.MessageHandlerConfigBuilder msgBatchConfigs(HashMap<Class, MessageBatchConfig> msgBatchConfigs) {
             this.msgBatchConfigs = msgBatchConfigs;
             return this;
@@ -153,6 +247,21 @@ public final class MessageHandlerConfig extends HandlerConfig {
             return this;
         }
 
+        public MessageHandlerConfig.MessageHandlerConfigBuilder setInvsBatchConfig(MessageBatchConfig batchConfig) {
+            this.msgBatchConfigs.put(InvMsgReceivedEvent.class, batchConfig);
+            return this;
+        }
+
+        public MessageHandlerConfig.MessageHandlerConfigBuilder setAddrsBatchConfig(MessageBatchConfig batchConfig) {
+            this.msgBatchConfigs.put(AddrMsgReceivedEvent.class, batchConfig);
+            return this;
+        }
+
+        public MessageHandlerConfig.MessageHandlerConfigBuilder setHeadersBatchConfig(MessageBatchConfig batchConfig) {
+            this.msgBatchConfigs.put(HeadersMsgReceivedEvent.class, batchConfig);
+            return this;
+        }
+
         public MessageHandlerConfig.MessageHandlerConfigBuilder setRawBytesBatchConfig(MessageBatchConfig batchConfig) {
             this.msgBatchConfigs.put(ByteStreamMsg.class, batchConfig);
             return this;
@@ -163,8 +272,33 @@ public final class MessageHandlerConfig extends HandlerConfig {
             return this;
         }
 
+        public MessageHandlerConfig.MessageHandlerConfigBuilder fusedStreamPipeline(boolean fusedStreamPipeline) {
+            this.fusedStreamPipeline = fusedStreamPipeline;
+            return this;
+        }
+
+        public MessageHandlerConfig.MessageHandlerConfigBuilder invTrickleInterval(Duration invTrickleInterval) {
+            this.invTrickleInterval = invTrickleInterval;
+            return this;
+        }
+
+        public MessageHandlerConfig.MessageHandlerConfigBuilder maxInvsPerMsg(int maxInvsPerMsg) {
+            this.maxInvsPerMsg = maxInvsPerMsg;
+            return this;
+        }
+
+        public MessageHandlerConfig.MessageHandlerConfigBuilder seenFilterConfig(SeenFilterConfig seenFilterConfig) {
+            this.seenFilterConfig = seenFilterConfig;
+            return this;
+        }
+
+        public MessageHandlerConfig.MessageHandlerConfigBuilder inventoryTrackerConfig(InventoryTrackerConfig inventoryTrackerConfig) {
+            this.inventoryTrackerConfig = inventoryTrackerConfig;
+            return this;
+        }
+
         public MessageHandlerConfig build() {
-            return new MessageHandlerConfig(basicConfig, preSerializer, deserializerConfig, rawTxsEnabled, msgBatchConfigs, verifyChecksum);
+            return new MessageHandlerConfig(basicConfig, preSerializer, deserializerConfig, rawTxsEnabled, txViewsEnabled, msgBatchConfigs, verifyChecksum, fusedStreamPipeline, invTrickleInterval, maxInvsPerMsg, seenFilterConfig, inventoryTrackerConfig);
         }
     }
 }
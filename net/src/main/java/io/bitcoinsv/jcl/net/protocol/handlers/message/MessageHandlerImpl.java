@@ -3,6 +3,9 @@ package io.bitcoinsv.jcl.net.protocol.handlers.message;
 
 import io.bitcoinsv.jcl.net.network.PeerAddress;
 import io.bitcoinsv.jcl.net.network.events.*;
+import io.bitcoinsv.jcl.net.network.streams.OutboundDataEvent;
+import io.bitcoinsv.jcl.net.network.streams.OutboundLane;
+import io.bitcoinsv.jcl.net.network.streams.PeerInputStreamEndPoint;
 import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent;
 import io.bitcoinsv.jcl.net.network.streams.StreamErrorEvent;
 
@@ -11,24 +14,33 @@ import io.bitcoinsv.jcl.net.protocol.events.control.*;
 import io.bitcoinsv.jcl.net.protocol.events.data.MsgReceivedBatchEvent;
 import io.bitcoinsv.jcl.net.protocol.events.data.MsgReceivedEvent;
 import io.bitcoinsv.jcl.net.protocol.messages.ByteStreamMsg;
-import io.bitcoinsv.jcl.net.protocol.messages.HeaderMsg;
+import io.bitcoinsv.jcl.net.protocol.messages.GetdataMsg;
+import io.bitcoinsv.jcl.net.protocol.messages.HashMsg;
+import io.bitcoinsv.jcl.net.protocol.messages.InvMessage;
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorList;
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorMsg;
+import io.bitcoinsv.jcl.net.protocol.messages.NotFoundMsg;
 import io.bitcoinsv.jcl.net.protocol.messages.common.*;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.MsgSerializersFactory;
 import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.MessageStream;
 import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer.Deserializer;
 import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer.DeserializerStream;
+import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.serializer.SerializerStream;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayBuffer;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
 import io.bitcoinsv.jcl.tools.config.RuntimeConfig;
 import io.bitcoinsv.jcl.tools.events.Event;
+import io.bitcoinsv.jcl.tools.filters.RollingBloomFilter;
 import io.bitcoinsv.jcl.tools.handlers.HandlerImpl;
 import io.bitcoinsv.jcl.net.tools.LoggerUtil;
 import io.bitcoinsv.jcl.tools.thread.ThreadUtils;
+import io.bitcoinsv.jcl.tools.thread.TimerWheel;
 
 import java.math.BigInteger;
-import java.time.Duration;
-import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * @author i.fernandez@nchain.com
@@ -41,6 +53,12 @@ import java.util.concurrent.ExecutorService;
  */
 public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo> implements MessageHandler {
 
+    // When streaming to a Peer that is NOT writable, we check its writability at this interval:
+    private static final long WRITABLE_CHECK_TIMEOUT_MS = 100;
+
+    // Only the Tx Inventory Vectors are trickled, the rest are sent right away:
+    private static final int MSG_TX_TYPE = InventoryVectorMsg.VectorType.MSG_TX.getValue();
+
     // For logging:
     private LoggerUtil logger;
 
@@ -58,9 +76,10 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
     // communication with the rest of the peers:
     private ExecutorService dedicateConnsExecutor;
 
-    // This executor will take care of monitoring th batches of messages that are being stored in the background
-    // adn it will push them down he pipeline if the timeout is reached.
-    private ExecutorService msgBatchesExecutor;
+    // This Timer will take care of flushing the batches of messages that are being stored in the background, pushing
+    // them down the pipeline if their max interval is reached. It's shared by all the Batches, and also by the INV
+    // Trickle Buffers of all the Peers (if INV trickling is enabled):
+    private TimerWheel msgBatchesTimer;
 
     //This executor will take care of the broadcasting of messages. If we're streaming a large block to a peer, then we don't
     //want to block other messages from being sent while we wait for the large block to be sent
@@ -70,6 +89,12 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
     // if some Messages Batch config has been specified for some MsgType, we keep track of that Batch status:
     private HashMap<Class, MessageBatchManager> msgsBatchManagers = new HashMap<>();
 
+    // If enabled, the incoming TXs and INVs already received from other Peers are dropped here:
+    private SeenFilter seenFilter;
+
+    // If the Inventory tracking is enabled, the Txs requested to all the Peers are tracked here:
+    private GetDataTracker getDataTracker;
+
     /** Constructor */
     public MessageHandlerImpl(String id, RuntimeConfig runtimeConfig, MessageHandlerConfig config) {
         super(id, runtimeConfig);
@@ -82,7 +107,11 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
         if (config.isRawTxsEnabled()) {
             MsgSerializersFactory.enableRawSerializers();
         }
-        this.msgBatchesExecutor = ThreadUtils.getSingleThreadExecutorService("JclMessageHandler-Job");
+        // In case the TxViewsEnabled is TRUE, the TXs are read as TxViews (decoded on demand) instead:
+        if (config.isTxViewsEnabled()) {
+            MsgSerializersFactory.enableViewSerializers();
+        }
+        this.msgBatchesTimer = new TimerWheel("JclMessageHandler-Batches", 20, TimeUnit.MILLISECONDS, 256);
         // The Executor responsible for the deserialization of large messages is a cached one, so Threads are created
         // as we need. For a Stream to be able to use a dedicated Thread, its "realTimeProcessingEnabled" property
         // must be set to TRUE.
@@ -92,8 +121,17 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
         broadcastExecutor = ThreadUtils.getCachedThreadExecutorService("jclBroadcaster", 4);
 
         // If some Batch Config has been specified, we instantiate the classes to keep track of their state:
-        this.config.getMsgBatchConfigs().entrySet().forEach(entry -> msgsBatchManagers.put(entry.getKey(), new MessageBatchManager(entry.getKey(), entry.getValue())));
+        this.config.getMsgBatchConfigs().entrySet().forEach(entry -> msgsBatchManagers.put(entry.getKey(),
+                new MessageBatchManager(entry.getKey(), entry.getValue(), msgBatchesTimer,
+                        batch -> publishBatchMessageToEventBus((MsgReceivedBatchEvent) batch))));
 
+        if (config.getSeenFilterConfig() != null) {
+            this.seenFilter = new SeenFilter(config.getSeenFilterConfig(), config.getBasicConfig());
+        }
+        if (config.getInventoryTrackerConfig() != null) {
+            this.getDataTracker = new GetDataTracker(config.getInventoryTrackerConfig(), msgBatchesTimer,
+                    (peerAddress, inventory) -> broadcastExecutor.submit(() -> sendGetData(peerAddress, inventory)));
+        }
     }
 
     // We register this Handler to LISTEN to these Events:
@@ -107,6 +145,7 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
         super.eventBus.subscribe(BroadcastMsgBodyRequest.class,         e -> onBroadcastReq((BroadcastMsgBodyRequest) e));
         super.eventBus.subscribe(PeerNIOStreamConnectedEvent.class,     e -> onPeerStreamConnected((PeerNIOStreamConnectedEvent) e));
         super.eventBus.subscribe(PeerDisconnectedEvent.class,           e -> onPeerDisconnected((PeerDisconnectedEvent) e));
+        super.eventBus.subscribe(PeerWritabilityChangedEvent.class,     e -> onPeerWritabilityChanged((PeerWritabilityChangedEvent) e));
         super.eventBus.subscribe(EnablePeerBigMessagesRequest.class,    e -> onEnablePeerBigMessages((EnablePeerBigMessagesRequest) e));
         super.eventBus.subscribe(DisablePeerBigMessagesRequest.class,   e -> onDisablePeerBigMessages((DisablePeerBigMessagesRequest) e));
         super.eventBus.subscribe(PeerHandshakedEvent.class,             e -> onPeerHandshaked((PeerHandshakedEvent) e));
@@ -122,12 +161,14 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
     // Event Handler:
     private void onNetStart(NetStartEvent event) {
         logger.trace("Starting...");
-        this.msgBatchesExecutor.submit(this::checkPendingBatchesToBroadcast);
     }
 
     // Event Handler:
     private void onNetStop(NetStopEvent event) {
-        this.msgBatchesExecutor.shutdownNow();
+        this.msgBatchesTimer.stop();
+        // The Events still waiting in the Batches are published:
+        msgsBatchManagers.values().forEach(batchManager -> batchManager.extractBatchAndReset()
+                .ifPresent(batch -> publishBatchMessageToEventBus((MsgReceivedBatchEvent) batch)));
         logger.trace("Stop.");
     }
 
@@ -189,37 +230,83 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
         // if a Pre-Serializer has been set, we inject it into this Stream:
         if (config.getPreSerializer() != null)
             ((DeserializerStream) msgStream.input()).setPreSerializer(config.getPreSerializer());
-
-        // We use this Stream to build a MessagePeerInfo and add it to our pool...
-        handlerInfo.put(event.getStream().getPeerAddress(), new MessagePeerInfo(msgStream));
-
-        // We publish the message to the Bus:
-        eventBus.publish(new PeerMsgReadyEvent(msgStream));
+        // The speed of the Big Messages coming from this Peer is also checked from the Timer, in case they stall:
+        ((DeserializerStream) msgStream.input()).setStallTimer(msgBatchesTimer);
+
+        // We use this Stream to build a MessagePeerInfo and add it to our pool. If INV trickling is enabled, the INVs
+        // sent to this Peer are accumulated in its own buffer...
+        InvTrickleBuffer invTrickleBuffer = (config.isInvTricklingEnabled())
+                ? new InvTrickleBuffer(config.getMaxInvsPerMsg(), config.getInvTrickleInterval().toNanos(), msgBatchesTimer,
+                        inventory -> broadcastExecutor.submit(() -> sendInventory(peerAddress, inventory)))
+                : null;
+        // ...and if the Inventory tracking is enabled, we keep track of the Inventory this Peer knows about:
+        InventoryTrackerConfig trackerConfig = config.getInventoryTrackerConfig();
+        RollingBloomFilter knownInventory = (trackerConfig != null)
+                ? new RollingBloomFilter(trackerConfig.getNumKnownInvsPerPeer(), trackerConfig.getKnownInvsFalsePositiveRate())
+                : null;
+        handlerInfo.put(event.getStream().getPeerAddress(), new MessagePeerInfo(msgStream, invTrickleBuffer, knownInventory));
+
+        // We publish the message to the Bus. Once ALL the Handlers know about this Peer, everything is linked and the
+        // bytes can start flowing from it (otherwise some Handlers might get messages from a Peer they don't know yet):
+        PeerInputStreamEndPoint<ByteArrayReader> streamInput = (PeerInputStreamEndPoint<ByteArrayReader>) event.getStream().input();
+        streamInput.expectReady();
+        eventBus.publish(new PeerMsgReadyEvent(msgStream), streamInput::markReady);
 
         logger.trace(event.getStream().getPeerAddress(), "Stream Connected");
     }
     // Event Handler:
     private void onPeerDisconnected(PeerDisconnectedEvent event) {
-        handlerInfo.remove(event.getPeerAddress());
+        MessagePeerInfo messagePeerInfo = handlerInfo.remove(event.getPeerAddress());
+        if (messagePeerInfo != null) {
+            // If we are streaming to this Peer, we wake it up so it can finish:
+            messagePeerInfo.setWritable(true);
+            // The INVs pending are not needed anymore:
+            if (messagePeerInfo.getInvTrickleBuffer() != null) messagePeerInfo.getInvTrickleBuffer().close();
+        }
+        // The Txs requested to this Peer are requested to other Peers:
+        if (getDataTracker != null) getDataTracker.onPeerDisconnected(event.getPeerAddress());
+    }
+
+    // Event Handler:
+    private void onPeerWritabilityChanged(PeerWritabilityChangedEvent event) {
+        MessagePeerInfo messagePeerInfo = handlerInfo.get(event.getPeerAddress());
+        if (messagePeerInfo != null) {
+            logger.trace(event.getPeerAddress(), (event.isWritable() ? "Writable" : "NOT Writable")
+                    + " (" + event.getNumBytesQueued() + " bytes queued)");
+            messagePeerInfo.setWritable(event.isWritable());
+        }
     }
 
     // Event Handler:
     private void onStreamMsgReceived(PeerAddress peerAddress, BitcoinMsg<?> bitcoinMsg) {
-        String msgType = bitcoinMsg.getBody().getMessageType().toUpperCase();
-        logger.trace(peerAddress, msgType.toUpperCase() + " Msg received.");
+        String msgType = bitcoinMsg.getHeader().getMsgCommand();
+        if (logger.isTraceEnabled()) logger.trace(peerAddress, msgType.toUpperCase() + " Msg received.");
 
 
         // We only broadcast the MSg to JCL if it's RIGHT...
         String validationError = findErrorInMsg(bitcoinMsg);
         if (validationError == null) {
 
+            // We keep track of the Inventory this Peer knows about, and of the Txs requested:
+            if (getDataTracker != null) trackIncomingInventory(peerAddress, bitcoinMsg);
+
+            // If the Msg (or part of it) has already been received from another Peer, it's dropped before going any
+            // further:
+            if (seenFilter != null) {
+                bitcoinMsg = seenFilter.filter(handlerInfo.get(peerAddress), bitcoinMsg);
+                if (bitcoinMsg == null) {
+                    if (logger.isTraceEnabled()) logger.trace(peerAddress, msgType.toUpperCase() + " Msg dropped (duplicated).");
+                    return;
+                }
+            }
+
             // All incoming Msgs are wrapped up in a MsgReceivedEvent:
             MsgReceivedEvent event = EventFactory.buildIncomingEvent(peerAddress, bitcoinMsg);
 
             // The broadcast method is slightly different if a BATCH is configured for this Message type:
             MessageBatchManager batchManager = this.msgsBatchManagers.get(event.getClass());
             if (batchManager != null) {
-                publishBatchMessageToEventBus(batchManager.addEventAndExtractBatch(event));
+                batchManager.addEvent(event);
             } else {
                 publishMessageToEventBus(event);
             }
@@ -286,6 +373,7 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
     public void onBroadcastMsgHandshaked(BroadcastMsgHandshakedRequest event) {
         handlerInfo.values().stream()
                 .filter(MessagePeerInfo::isHandshaked)
+                .filter(MessagePeerInfo::isWritable)
                 .forEach(p -> send(p.getStream().getPeerAddress(), event.getBtcMsg()));
     }
 
@@ -293,6 +381,7 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
     public void onBroadcastMsgBodyHandshaked(BroadcastMsgBodyHandshakedRequest event) {
         handlerInfo.values().stream()
                 .filter(MessagePeerInfo::isHandshaked)
+                .filter(MessagePeerInfo::isWritable)
                 .forEach(p -> send(p.getStream().getPeerAddress(), event.getMsgBody()));
     }
 
@@ -318,9 +407,105 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
 
     @Override
     public void send(PeerAddress peerAddress, BitcoinMsg<?> btcMessage) {
+        if (getDataTracker != null) {
+            btcMessage = trackOutgoingInventory(peerAddress, btcMessage);
+            if (btcMessage == null) return;
+        }
+        if (trickleInv(peerAddress, btcMessage)) return;
         _send(peerAddress, btcMessage);
     }
 
+    // It updates the Inventory known by the Peer, and the Txs requested, with a Msg received from it:
+    private void trackIncomingInventory(PeerAddress peerAddress, BitcoinMsg<?> bitcoinMsg) {
+        BodyMessage body = bitcoinMsg.getBody();
+        if (body instanceof InvMessage) {
+            MessagePeerInfo messagePeerInfo = handlerInfo.get(peerAddress);
+            if (messagePeerInfo == null || messagePeerInfo.getKnownInventory() == null) return;
+            RollingBloomFilter knownInventory = messagePeerInfo.getKnownInventory();
+            ((InvMessage) body).getInventory().forEachRecord((index, typeCode, records, hashOffset) ->
+                    knownInventory.add(records, hashOffset, HashMsg.HASH_LENGTH));
+        } else if (body instanceof NotFoundMsg) {
+            getDataTracker.onNotFound(peerAddress, ((NotFoundMsg) body).getInventory());
+        } else {
+            byte[] txHash = SeenFilter.txHashOf(body);
+            if (txHash != null) {
+                getDataTracker.onTxReceived(txHash);
+                markKnownBy(peerAddress, txHash);
+            }
+        }
+    }
+
+    /**
+     * It removes from the Msg given the Inventory the Peer already knows about (INV), or the Txs already requested
+     * to other Peers (GETDATA), and it updates the Inventory known by the Peer. It returns the Msg to send (the same
+     * one, or a copy with less Inventory), or NULL if there is nothing left to send.
+     */
+    private BitcoinMsg<?> trackOutgoingInventory(PeerAddress peerAddress, BitcoinMsg<?> btcMessage) {
+        BodyMessage body = btcMessage.getBody();
+        if (body instanceof InvMessage) {
+            MessagePeerInfo messagePeerInfo = handlerInfo.get(peerAddress);
+            if (messagePeerInfo == null || messagePeerInfo.getKnownInventory() == null) return btcMessage;
+            RollingBloomFilter knownInventory = messagePeerInfo.getKnownInventory();
+            InventoryVectorList inventory = ((InvMessage) body).getInventory();
+            InventoryVectorList newInventory = inventory.filter((typeCode, records, hashOffset) ->
+                    !knownInventory.addIfAbsent(records, hashOffset, HashMsg.HASH_LENGTH));
+            if (newInventory == inventory) return btcMessage;
+            if (newInventory.isEmpty()) return null;
+            InvMessage invMsg = InvMessage.builder().invVectorMsgList(newInventory).build();
+            return new BitcoinMsgBuilder<>(config.getBasicConfig(), invMsg).build();
+        }
+        if (body instanceof GetdataMsg) {
+            InventoryVectorList inventory = ((GetdataMsg) body).getInventory();
+            InventoryVectorList newInventory = getDataTracker.onGetData(peerAddress, inventory);
+            if (newInventory == inventory) return btcMessage;
+            if (newInventory.isEmpty()) return null;
+            GetdataMsg getDataMsg = GetdataMsg.builder().invVectorList(newInventory).build();
+            return new BitcoinMsgBuilder<>(config.getBasicConfig(), getDataMsg).build();
+        }
+        byte[] txHash = SeenFilter.txHashOf(body);
+        if (txHash != null) markKnownBy(peerAddress, txHash);
+        return btcMessage;
+    }
+
+    // It marks the Hash given (wire format) as known by the Peer, and returns TRUE if it was already known:
+    private boolean markKnownBy(PeerAddress peerAddress, byte[] hash) {
+        MessagePeerInfo messagePeerInfo = handlerInfo.get(peerAddress);
+        if (messagePeerInfo == null || messagePeerInfo.getKnownInventory() == null) return false;
+        return messagePeerInfo.getKnownInventory().addIfAbsent(hash, 0, hash.length);
+    }
+
+    // It sends a GETDATA re-requesting the Txs given (they are already tracked, so it's not checked again):
+    private void sendGetData(PeerAddress peerAddress, InventoryVectorList inventory) {
+        GetdataMsg getDataMsg = GetdataMsg.builder().invVectorList(inventory).build();
+        _send(peerAddress, new BitcoinMsgBuilder<>(config.getBasicConfig(), getDataMsg).build());
+    }
+
+    /**
+     * If INV trickling is enabled and the Message is an INV, its Tx Inventory Vectors are added to the Trickle Buffer
+     * of the Peer instead of being sent, and it returns TRUE. The rest of the Vectors (Blocks, etc) are not delayed,
+     * they are sent right away in their own INV. Otherwise it returns FALSE, and the Message must be sent as usual.
+     */
+    private boolean trickleInv(PeerAddress peerAddress, BitcoinMsg<?> btcMessage) {
+        if (!config.isInvTricklingEnabled() || !(btcMessage.getBody() instanceof InvMessage)) return false;
+        MessagePeerInfo messagePeerInfo = handlerInfo.get(peerAddress);
+        if (messagePeerInfo == null || messagePeerInfo.getInvTrickleBuffer() == null) return false;
+
+        InventoryVectorList inventory = ((InvMessage) btcMessage.getBody()).getInventory();
+        InventoryVectorList txsInventory = inventory.filter((typeCode, records, hashOffset) -> typeCode == MSG_TX_TYPE);
+        if (txsInventory.isEmpty()) return false;
+        if (txsInventory.size() < inventory.size()) {
+            sendInventory(peerAddress, inventory.filter((typeCode, records, hashOffset) -> typeCode != MSG_TX_TYPE));
+        }
+        messagePeerInfo.getInvTrickleBuffer().add(txsInventory);
+        return true;
+    }
+
+    // It sends an INV Message with the Inventory Vectors trickled to the Peer:
+    private void sendInventory(PeerAddress peerAddress, InventoryVectorList inventory) {
+        InvMessage invMsg = InvMessage.builder().invVectorMsgList(inventory).build();
+        _send(peerAddress, new BitcoinMsgBuilder<>(config.getBasicConfig(), invMsg).build());
+    }
+
     @Override
     public void send(PeerAddress peerAddress, BodyMessage msgBody) {
         BitcoinMsg<?> btcMsg = new BitcoinMsgBuilder<>(config.getBasicConfig(), msgBody).build();
@@ -329,31 +514,55 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
 
     private void _send(PeerAddress peerAddress, Message message){
         synchronized (peerAddress.toString().intern()) {
-            if (handlerInfo.containsKey(peerAddress)) {
-                //send the message
-                handlerInfo.get(peerAddress).getStream().output().send(new StreamDataEvent<>(message));
-
-                //we only want to perform actions such as event propagation for each message type, not each part of a message if it's broken down
-                if (message.getMessageType().equals(BitcoinMsg.MESSAGE_TYPE)) {
-                    logger.trace(peerAddress, ((BitcoinMsg) message).getBody().getMessageType() + " Msg sent.");
-
-                    // We propagate this message to the Bus, so other handlers can pick them up if they are subscribed to:
-                    // NOTE: These Events related to messages sent might not be necessary, and they add some multi-thread
-                    // pressure, so in the future they might be disabled (for noe we need them for some unit tests):
-                    Event event = EventFactory.buildOutcomingEvent(peerAddress, (BitcoinMsg<? extends Message>) message);
-                    super.eventBus.publish(event);
-
-                /*
-                // we also publish a more "general" event, valid for any outcoming message
-                super.eventBus.publish(new MsgSentEvent<>(peerAddress, btcMessage));
-                */
-
-                    // We update the state per message, not per message block:
-                    updateState(0, 1);
-                }
+            // If a Message is being streamed to this Peer, the Messages going through the same Lane must wait until
+            // it's done (the rest are not affected):
+            MessagePeerInfo messagePeerInfo = handlerInfo.get(peerAddress);
+            if (messagePeerInfo != null && messagePeerInfo.isStreaming()
+                    && SerializerStream.laneFor(message) == OutboundLane.BULK) {
+                messagePeerInfo.getMsgsDeferred().offer(message);
+                return;
+            }
+            _sendNow(peerAddress, message);
+        }
+    }
+
+    // It sends the Message to the Peer. It must be called while holding the lock of the Peer:
+    private void _sendNow(PeerAddress peerAddress, Message message) {
+        if (handlerInfo.containsKey(peerAddress)) {
+            //send the message
+            handlerInfo.get(peerAddress).getStream().output().send(new StreamDataEvent<>(message));
+
+            // If the Message was already serialized, the events are about the original Message:
+            Message sentMsg = (message.getMessageType().equals(SerializedBitcoinMsg.MESSAGE_TYPE))
+                    ? ((SerializedBitcoinMsg) message).getBitcoinMsg()
+                    : message;
 
+            //we only want to perform actions such as event propagation for each message type, not each part of a message if it's broken down
+            if (sentMsg.getMessageType().equals(BitcoinMsg.MESSAGE_TYPE)) {
+                logger.trace(peerAddress, ((BitcoinMsg) sentMsg).getBody().getMessageType() + " Msg sent.");
 
-            } else logger.trace(peerAddress, " Request to Send Msg Discarded (unknown Peer)");
+                // We propagate this message to the Bus, so other handlers can pick them up if they are subscribed to:
+                // NOTE: These Events related to messages sent might not be necessary, and they add some multi-thread
+                // pressure, so in the future they might be disabled (for noe we need them for some unit tests):
+                Event event = EventFactory.buildOutcomingEvent(peerAddress, (BitcoinMsg<? extends Message>) sentMsg);
+                super.eventBus.publish(event);
+
+            /*
+            // we also publish a more "general" event, valid for any outcoming message
+            super.eventBus.publish(new MsgSentEvent<>(peerAddress, btcMessage));
+            */
+
+                // We update the state per message, not per message block:
+                updateState(0, 1);
+            }
+
+
+        } else {
+            logger.trace(peerAddress, " Request to Send Msg Discarded (unknown Peer)");
+            // The reference this Peer was holding on the frame is not needed anymore:
+            if (message.getMessageType().equals(SerializedBitcoinMsg.MESSAGE_TYPE)) {
+                ((SerializedBitcoinMsg) message).release();
+            }
         }
     }
 
@@ -364,64 +573,149 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
      */
     @Override
     public void stream(PeerAddress peerAddress, StreamRequest streamRequest) {
-        synchronized (peerAddress.toString().intern()) {
-            logger.trace(peerAddress, "Streaming raw bytes to peer: ");
-
-            //If the initial message is greater than 4GB, then we will construct a HeaderEn message and the rest will be appended in batches.
-            ByteArrayBuffer byteArrayBuffer = new ByteArrayBuffer();
-            Iterator<byte[]> streamItr = streamRequest.getStream().iterator();
+        MessagePeerInfo messagePeerInfo = handlerInfo.get(peerAddress);
+        if (messagePeerInfo == null) {
+            logger.trace(peerAddress, " Request to Stream Msg Discarded (unknown Peer)");
+            return;
+        }
+        // Only one Message is streamed to the same Peer at a time. The lock of the Peer is NOT held for the whole
+        // streaming, only while each part is sent, so other Messages (Pings, INVs, etc) are not held up meanwhile:
+        synchronized (messagePeerInfo.getStreamLock()) {
+            try {
+                logger.trace(peerAddress, "Streaming raw bytes to peer: ");
+
+                //If the initial message is greater than 4GB, then we will construct a HeaderEn message and the rest will be appended in batches.
+                ByteArrayBuffer byteArrayBuffer = new ByteArrayBuffer();
+                Iterator<byte[]> streamItr = streamRequest.getStream().iterator();
+
+                while (streamItr.hasNext() && byteArrayBuffer.size() <= config.getBasicConfig().getThresholdSizeExtMsgs()) {
+                    byteArrayBuffer.add(streamItr.next());
+                }
+                ByteStreamMsg initialBodyMsg = new ByteStreamMsg(byteArrayBuffer);
 
-            while (streamItr.hasNext() && byteArrayBuffer.size() <= config.getBasicConfig().getThresholdSizeExtMsgs()) {
-                byteArrayBuffer.add(streamItr.next());
-            }
-            ByteStreamMsg initialBodyMsg = new ByteStreamMsg(byteArrayBuffer);
+                BitcoinMsg<ByteStreamMsg> initialMessage = new BitcoinMsgBuilder(config.getBasicConfig(), initialBodyMsg)
+                        .overrideHeaderMsgType(streamRequest.getMsgType())
+                        .overrideHeaderMsgLength(streamRequest.getLen())
+                        .build();
 
-            BitcoinMsg<ByteStreamMsg> initialMessage = new BitcoinMsgBuilder(config.getBasicConfig(), initialBodyMsg)
-                    .overrideHeaderMsgType(streamRequest.getMsgType())
-                    .overrideHeaderMsgLength(streamRequest.getLen())
-                    .build();
+                //send the initial message to the peer. All the parts go through the BULK lane, flagged as "continued" until
+                //the last one, so no other message is interleaved with them:
+                if (!sendStreamPart(peerAddress, initialMessage, streamItr.hasNext())) return;
 
-            //send the initial message to the peer
-            handlerInfo.get(peerAddress).getStream().output().send(new StreamDataEvent<>(initialMessage));
+                //if batch size isn't configured for the raw bytes class, then default to 1 GB message sizes
+                int batchSizeBytes = config.getMsgBatchConfigs().get(ByteStreamMsg.class) != null ?
+                        config.getMsgBatchConfigs().get(ByteStreamMsg.class).getMaxBatchSizeInbytes() : 1_000_000_000;
 
-            //if batch size isn't configured for the raw bytes class, then default to 1 GB message sizes
-            int batchSizeBytes = config.getMsgBatchConfigs().get(ByteStreamMsg.class) != null ?
-                    config.getMsgBatchConfigs().get(ByteStreamMsg.class).getMaxBatchSizeInbytes() : 1_000_000_000;
+                //loop the remaining stream and send in chunks of bytes
+                ByteArrayBuffer batchByteBuffer = new ByteArrayBuffer();
+                while (streamItr.hasNext()) {
+                    batchByteBuffer.add(streamItr.next());
 
-            //loop the remaining stream and send in chunks of bytes
-            ByteArrayBuffer batchByteBuffer = new ByteArrayBuffer();
-            while (streamItr.hasNext()) {
-                batchByteBuffer.add(streamItr.next());
+                    //if we've exceeded the maximum size, send it down the wire and start again
+                    if (batchByteBuffer.size() > batchSizeBytes) {
+                        ByteStreamMsg bodyMsgPart = new ByteStreamMsg(batchByteBuffer);
+                        if (!sendStreamPart(peerAddress, bodyMsgPart, streamItr.hasNext())) return;
 
-                //if we've exceeded the maximum size, send it down the wire and start again
-                if (batchByteBuffer.size() > batchSizeBytes) {
-                    ByteStreamMsg bodyMsgPart = new ByteStreamMsg(batchByteBuffer);
-                    handlerInfo.get(peerAddress).getStream().output().send(new StreamDataEvent<>(bodyMsgPart));
+                        batchByteBuffer = new ByteArrayBuffer();
+                    }
+                }
 
-                    batchByteBuffer = new ByteArrayBuffer();
+                //send the last message if there's any remaining bytes
+                if (batchByteBuffer.size() > 0) {
+                    if (!sendStreamPart(peerAddress, new ByteStreamMsg(batchByteBuffer), false)) return;
                 }
-            }
 
-            //send the last message if there's any remaining bytes
-            if (batchByteBuffer.size() > 0) {
-                handlerInfo.get(peerAddress).getStream().output().send(new StreamDataEvent<>(initialMessage));
+                logger.trace(peerAddress, streamRequest.getMsgType() + " Msg streamed to peer");
+
+                updateState(0, 1);
+            } finally {
+                endStreaming(peerAddress, messagePeerInfo);
             }
+        }
+    }
 
-            logger.trace(peerAddress, streamRequest.getMsgType() + " Msg streamed to peer");
 
-            updateState(0, 1);
+    /**
+     * It sends a part of a Message being streamed to the Peer. Before that, if the Peer is not writable (too many bytes
+     * waiting to be written), it waits until it is, without holding the lock of the Peer. It returns false if the Peer
+     * is not connected anymore.
+     */
+    private boolean sendStreamPart(PeerAddress peerAddress, Message part, boolean continued) {
+        try {
+            MessagePeerInfo messagePeerInfo = handlerInfo.get(peerAddress);
+            while (messagePeerInfo != null && !messagePeerInfo.awaitWritable(WRITABLE_CHECK_TIMEOUT_MS)) {
+                messagePeerInfo = handlerInfo.get(peerAddress);
+            }
+            synchronized (peerAddress.toString().intern()) {
+                if (messagePeerInfo == null || !handlerInfo.containsKey(peerAddress)) {
+                    logger.trace(peerAddress, "Streaming interrupted (Peer disconnected)");
+                    return false;
+                }
+                // From now on, the rest of Messages for the BULK Lane wait until the streaming is over:
+                messagePeerInfo.setStreaming(true);
+                messagePeerInfo.getStream().output().send(new OutboundDataEvent<>(part, OutboundLane.BULK, continued));
+            }
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 
+    // The streaming to the Peer is over (or interrupted): The Messages deferred meanwhile are sent now, in order:
+    private void endStreaming(PeerAddress peerAddress, MessagePeerInfo messagePeerInfo) {
+        synchronized (peerAddress.toString().intern()) {
+            messagePeerInfo.setStreaming(false);
+            Message deferredMsg;
+            while ((deferredMsg = messagePeerInfo.getMsgsDeferred().poll()) != null) _sendNow(peerAddress, deferredMsg);
+        }
+    }
 
     @Override
     public void broadcast(BitcoinMsg<?> btcMessage) {
-        handlerInfo.values().forEach(p -> broadcastExecutor.submit(() -> send(p.getStream().getPeerAddress(), btcMessage)));
+        List<PeerAddress> peers = handlerInfo.values().stream()
+                .filter(MessagePeerInfo::isWritable)
+                .map(p -> p.getStream().getPeerAddress())
+                .collect(Collectors.toList());
+
+        // If the Inventory is tracked, a Tx is not sent to the Peers that already know about it:
+        if (getDataTracker != null) {
+            byte[] txHash = SeenFilter.txHashOf(btcMessage.getBody());
+            if (txHash != null) peers.removeIf(p -> markKnownBy(p, txHash));
+        }
+        if (peers.isEmpty()) return;
+
+        // If INV trickling or the Inventory tracking are enabled, each Peer might get a different INV (or none at
+        // all), so they are sent separately:
+        if ((config.isInvTricklingEnabled() || getDataTracker != null) && btcMessage.getBody() instanceof InvMessage) {
+            peers.forEach(p -> broadcastExecutor.submit(() -> send(p, btcMessage)));
+            return;
+        }
+
+        // If the Message depends on the Peer, we serialize it separately for each one:
+        if (!SerializedBitcoinMsg.isShareable(btcMessage)) {
+            peers.forEach(p -> broadcastExecutor.submit(() -> send(p, btcMessage)));
+            return;
+        }
+
+        // Otherwise, we serialize it only once, and the same frame is sent to all of them. Each Peer holds a
+        // reference on the frame until its bytes have been written:
+        broadcastExecutor.submit(() -> {
+            SerializedBitcoinMsg serializedMsg = SerializerStream.serializeShared(config, btcMessage);
+            try {
+                peers.forEach(p -> {
+                    serializedMsg.retain();
+                    broadcastExecutor.submit(() -> _send(p, serializedMsg));
+                });
+            } finally {
+                serializedMsg.release();
+            }
+        });
     }
 
     @Override
     public void broadcast(BodyMessage msgBody) {
-        handlerInfo.values().forEach(p -> broadcastExecutor.submit(() -> send(p.getStream().getPeerAddress(), msgBody)));
+        broadcast(new BitcoinMsgBuilder<>(config.getBasicConfig(), msgBody).build());
     }
 
     // It updates the State of this Handler:
@@ -429,6 +723,7 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
         this.state = this.state.toBuilder()
                 .numMsgsIn(state.getNumMsgsIn().add(BigInteger.valueOf(addingMsgsIn)))
                 .numMsgsOut(state.getNumMsgsOut().add(BigInteger.valueOf(addingMsgsOut)))
+                .numMsgsDuplicated((seenFilter != null) ? BigInteger.valueOf(seenFilter.getNumMsgsDropped()) : BigInteger.ZERO)
                 .deserializerState(deserializer.getState())
                 .build();
     }
@@ -460,7 +755,7 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
 
         // Checks for 4GB Support:
         if (msg.getLengthInBytes() >= config.getBasicConfig().getThresholdSizeExtMsgs()) {
-            if (!msg.getHeader().getCommand().equalsIgnoreCase(HeaderMsg.EXT_COMMAND))
+            if (!msg.getHeader().isExtendedMsg())
                 return "Message Larger than 4GB but wrong Command";
             if (this.config.getBasicConfig().getProtocolVersion() < ProtocolVersion.ENABLE_EXT_MSGS.getVersion())
                 return "Message Larger than 4GB but we are running a Protocol < 70016";
@@ -476,6 +771,15 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
         return this.state;
     }
 
+    /**
+     * It returns, for each Peer currently connected, the number of Txs it has been the first one to deliver. Only
+     * available if the SeenFilter is enabled (see MessageHandlerConfig).
+     */
+    public Map<PeerAddress, Long> getNumTxsFirstSeenByPeer() {
+        return handlerInfo.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().getNumTxsFirstSeen()));
+    }
+
     // It publishes the event to the Bus and updares the State
     private void publishMessageToEventBus(MsgReceivedEvent event) {
         super.eventBus.publish(event);                                                              // we publish the specific Event
@@ -484,29 +788,8 @@ public class MessageHandlerImpl extends HandlerImpl<PeerAddress, MessagePeerInfo
     }
 
     // It publishes the Batch event to the Bus and updares the State
-    private void publishBatchMessageToEventBus(Optional<MsgReceivedBatchEvent> batchEventOpt) {
-        batchEventOpt.ifPresent(batchEvent -> {
-            super.eventBus.publish(batchEvent);                                     // we publish the specific Event
-            updateState(batchEvent.getEvents().size(), 0);            // State update
-        });
-    }
-
-    private void checkPendingBatchesToBroadcast() {
-        final Duration TIMEOUT = Duration.ofMillis(2000);
-        try {
-            while (true) {
-                // we only process those Batches that are clearly inactive:
-                msgsBatchManagers.values().stream()
-                        .forEach(batch -> {
-                            if (Duration.between(batch.getTimestamp(), Instant.now()).compareTo(TIMEOUT) > 0) {
-                                publishBatchMessageToEventBus(batch.extractBatchAndReset());
-                            }
-                });
-                Thread.sleep(TIMEOUT.toMillis());
-            }
-        } catch (InterruptedException ie) {
-            logger.error(ie.getMessage(), ie);
-            throw new RuntimeException(ie);
-        }
+    private void publishBatchMessageToEventBus(MsgReceivedBatchEvent batchEvent) {
+        super.eventBus.publish(batchEvent);                                     // we publish the specific Event
+        updateState(batchEvent.getEvents().size(), 0);            // State update
     }
 }
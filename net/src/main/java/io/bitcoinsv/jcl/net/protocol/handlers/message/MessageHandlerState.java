@@ -23,18 +23,24 @@ public final class MessageHandlerState extends HandlerState {
     private BigInteger numMsgsIn = BigInteger.ZERO;
     private BigInteger numMsgsOut = BigInteger.ZERO;
 
+    /** Number of incoming Msgs dropped because they had already been received from other Peers (see SeenFilter) */
+    private BigInteger numMsgsDuplicated = BigInteger.ZERO;
+
     /** State of the Deserializer Cache (if disabled, all value are ZERO) */
     private final DeserializerState deserializerState;
 
-    public MessageHandlerState(BigInteger numMsgsIn, BigInteger numMsgsOut, DeserializerState deserializerState) {
+    public MessageHandlerState(BigInteger numMsgsIn, BigInteger numMsgsOut, BigInteger numMsgsDuplicated,
+                               DeserializerState deserializerState) {
         if (numMsgsIn != null)  this.numMsgsIn = numMsgsIn;
         if (numMsgsOut != null) this.numMsgsOut = numMsgsOut;
+        if (numMsgsDuplicated != null) this.numMsgsDuplicated = numMsgsDuplicated;
         this.deserializerState = deserializerState;
     }
 
     @Override
     public String toString() {
         String result = "Message Handler State: " + numMsgsIn + " Msgs in, " + numMsgsOut + " Msgs out";
+        if (numMsgsDuplicated.signum() > 0) result += ", " + numMsgsDuplicated + " duplicated Msgs dropped";
         if (deserializerState == null) result += ". Deserializer Cache Stats Disabled.";
         else result += ". Deserializer Cache Stats: " + deserializerState.toString();
         return result;
@@ -42,10 +48,11 @@ public final class MessageHandlerState extends HandlerState {
 
     public BigInteger getNumMsgsIn()                { return this.numMsgsIn; }
     public BigInteger getNumMsgsOut()               { return this.numMsgsOut; }
+    public BigInteger getNumMsgsDuplicated()        { return this.numMsgsDuplicated; }
     public DeserializerState getDeserializerState() { return this.deserializerState; }
 
     public MessageHandlerStateBuilder toBuilder() {
-        return new MessageHandlerStateBuilder().numMsgsIn(this.numMsgsIn).numMsgsOut(this.numMsgsOut).deserializerState(this.deserializerState);
+        return new MessageHandlerStateBuilder().numMsgsIn(this.numMsgsIn).numMsgsOut(this.numMsgsOut).numMsgsDuplicated(this.numMsgsDuplicated).deserializerState(this.deserializerState);
     }
 
     public static MessageHandlerStateBuilder builder() {
@@ -58,6 +65,7 @@ public final class MessageHandlerState extends HandlerState {
     public static class MessageHandlerStateBuilder {
         private BigInteger numMsgsIn;
         private BigInteger numMsgsOut;
+        private BigInteger numMsgsDuplicated;
         private DeserializerState deserializerState;
 
         MessageHandlerStateBuilder() {}
@@ -72,13 +80,18 @@ public final class MessageHandlerState extends HandlerState {
             return this;
         }
 
+        public MessageHandlerState.MessageHandlerStateBuilder numMsgsDuplicated(BigInteger numMsgsDuplicated) {
+            this.numMsgsDuplicated = numMsgsDuplicated;
+            return this;
+        }
+
         public MessageHandlerState.MessageHandlerStateBuilder deserializerState(DeserializerState deserializerState) {
             this.deserializerState = deserializerState;
             return this;
         }
 
         public MessageHandlerState build() {
-            return new MessageHandlerState(numMsgsIn, numMsgsOut, deserializerState);
+            return new MessageHandlerState(numMsgsIn, numMsgsOut, numMsgsDuplicated, deserializerState);
         }
     }
 }
@@ -2,6 +2,12 @@ package io.bitcoinsv.jcl.net.protocol.handlers.message;
 
 
 import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.MessageStream;
+import io.bitcoinsv.jcl.net.protocol.messages.common.Message;
+import io.bitcoinsv.jcl.tools.filters.RollingBloomFilter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author i.fernande@nchain.com
@@ -17,13 +23,68 @@ public final class MessagePeerInfo {
     // We keep a flag, so we only send/broadcast to those Peers that are handshaked
     private boolean isHandshaked;
 
+    // If FALSE, the Peer is not consuming the data we send as fast as we produce it, so we hold off
+    // broadcasting/streaming to it until it catches up:
+    private volatile boolean writable = true;
+
+    // Held while a Message is being streamed to this Peer, so only one Message is streamed at a time:
+    private final Object streamLock = new Object();
+
+    // TRUE while a Message is being streamed to this Peer. Meanwhile, the other Messages going through the BULK Lane
+    // are kept here and sent when the streaming is over, so they don't get in the middle of it. Both are only used
+    // while holding the lock of the Peer in the MessageHandler:
+    private boolean streaming;
+    private final Deque<Message> msgsDeferred = new ArrayDeque<>();
+
+    // Inventory Vectors pending to be announced to this Peer (only if INV trickling is enabled):
+    private final InvTrickleBuffer invTrickleBuffer;
+
+    // Inventory this Peer already knows about (announced by it, or sent/announced to it). Only if the Inventory
+    // tracking is enabled:
+    private final RollingBloomFilter knownInventory;
+
+    // Number of Txs and Inventory Vectors this Peer has been the first one to deliver (only if the SeenFilter is
+    // enabled):
+    private final AtomicLong numTxsFirstSeen = new AtomicLong();
+    private final AtomicLong numInvsFirstSeen = new AtomicLong();
+
     public MessagePeerInfo(MessageStream stream) {
+        this(stream, null, null);
+    }
+
+    MessagePeerInfo(MessageStream stream, InvTrickleBuffer invTrickleBuffer, RollingBloomFilter knownInventory) {
         this.stream = stream;
+        this.invTrickleBuffer = invTrickleBuffer;
+        this.knownInventory = knownInventory;
     }
 
     public MessageStream getStream()    { return this.stream; }
     public void handshake()             { this.isHandshaked = true;}
     public boolean isHandshaked()       { return this.isHandshaked;}
+    public boolean isWritable()         { return this.writable;}
+    InvTrickleBuffer getInvTrickleBuffer() { return this.invTrickleBuffer;}
+    RollingBloomFilter getKnownInventory() { return this.knownInventory;}
+    public long getNumTxsFirstSeen()    { return this.numTxsFirstSeen.get();}
+    public long getNumInvsFirstSeen()   { return this.numInvsFirstSeen.get();}
+    void incNumTxsFirstSeen()           { this.numTxsFirstSeen.incrementAndGet();}
+    void incNumInvsFirstSeen(int numInvs) { this.numInvsFirstSeen.addAndGet(numInvs);}
+    Object getStreamLock()              { return this.streamLock;}
+    boolean isStreaming()               { return this.streaming;}
+    void setStreaming(boolean streaming) { this.streaming = streaming;}
+    Deque<Message> getMsgsDeferred()    { return this.msgsDeferred;}
+
+    public synchronized void setWritable(boolean writable) {
+        this.writable = writable;
+        if (writable) this.notifyAll();
+    }
+
+    /**
+     * It waits until the Peer is writable again, or the timeout expires. It returns the writability of the Peer.
+     */
+    public synchronized boolean awaitWritable(long timeoutMillis) throws InterruptedException {
+        if (!writable) this.wait(timeoutMillis);
+        return this.writable;
+    }
 
     @Override
     public String toString() {
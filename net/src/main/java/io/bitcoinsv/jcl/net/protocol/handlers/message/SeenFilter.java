@@ -0,0 +1,142 @@
+package io.bitcoinsv.jcl.net.protocol.handlers.message;
+
+import io.bitcoinsv.bitcoinjsv.core.Sha256Hash;
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolBasicConfig;
+import io.bitcoinsv.jcl.net.protocol.messages.*;
+import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsg;
+import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsgBuilder;
+import io.bitcoinsv.jcl.net.protocol.messages.common.BodyMessage;
+import io.bitcoinsv.jcl.tools.filters.RollingBloomFilter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A Filter that drops the incoming TXs and INVs already received from other Peers, BEFORE they are wrapped up in
+ * Events and published to the EventBus. In a deployment connected to lots of Peers, the same Tx arrives once from
+ * each one of them, so without this filter every copy is published and every subscriber has to deduplicate it again.
+ *
+ * - A TX is dropped if a Tx with the same Hash has already been received.
+ * - The Inventory Vectors of an INV are dropped if the same Hash has already been announced, or if the Tx has
+ *   already been received. If all of them are dropped, so is the INV. If only some of them, the INV is rebuilt with
+ *   the rest.
+ *
+ * The Hashes are remembered in a RollingBloomFilter, which answers most of the lookups of new Hashes without
+ * creating any object, and in an exact set of the most recent Hashes, which confirms the hits of the Bloom Filter.
+ * So a false positive of the Bloom Filter never causes a new Tx to be dropped.
+ *
+ * The Peer each Tx (or Inventory Vector) is received from first is credited for it (see MessagePeerInfo).
+ *
+ * The Hash of the TXs is needed, so when this filter is enabled the DeserializerStream calculates it while the TXs
+ * are deserialized (see MessageHandlerConfig.isTxHashesRequired()).
+ */
+class SeenFilter {
+
+    // Hashes seen recently: a Bloom Filter and an exact set of the last ones, both of them with the same capacity:
+    private static class RecentHashes {
+        private final RollingBloomFilter bloomFilter;
+        private final Map<ByteBuffer, Boolean> exactSet;
+
+        RecentHashes(SeenFilterConfig config) {
+            this.bloomFilter = new RollingBloomFilter(config.getNumElements(), config.getFalsePositiveRate());
+            this.exactSet = new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+                    return size() > config.getNumElements();
+                }
+            };
+        }
+
+        // Indicates if the Hash given (a range within the array given) has been seen. Only looked up:
+        synchronized boolean contains(byte[] bytes, int offset) {
+            return bloomFilter.mightContain(bytes, offset, HashMsg.HASH_LENGTH)
+                    && exactSet.containsKey(ByteBuffer.wrap(bytes, offset, HashMsg.HASH_LENGTH));
+        }
+
+        // It marks the Hash given (a range within the array given) as seen, and returns TRUE if it was already:
+        synchronized boolean markSeen(byte[] bytes, int offset) {
+            if (contains(bytes, offset)) return true;
+            bloomFilter.add(bytes, offset, HashMsg.HASH_LENGTH);
+            exactSet.put(ByteBuffer.wrap(Arrays.copyOfRange(bytes, offset, offset + HashMsg.HASH_LENGTH)), Boolean.TRUE);
+            return false;
+        }
+    }
+
+    private final SeenFilterConfig config;
+    private final ProtocolBasicConfig basicConfig;
+    private final RecentHashes txs;
+    private final RecentHashes invs;
+
+    // Number of Messages dropped (INVs rebuilt without some of their Vectors are not counted):
+    private final AtomicLong numMsgsDropped = new AtomicLong();
+
+    SeenFilter(SeenFilterConfig config, ProtocolBasicConfig basicConfig) {
+        this.config = config;
+        this.basicConfig = basicConfig;
+        this.txs = new RecentHashes(config);
+        this.invs = new RecentHashes(config);
+    }
+
+    /**
+     * It checks the Message received from the Peer given. It returns NULL if the Message must be dropped, or the
+     * Message to publish otherwise (the same one, or a copy without the Inventory Vectors already seen).
+     * @param peerInfo  Info of the Peer the Message comes from (if NULL, nobody is credited for the new Hashes)
+     */
+    BitcoinMsg<?> filter(MessagePeerInfo peerInfo, BitcoinMsg<?> bitcoinMsg) {
+        BodyMessage body = bitcoinMsg.getBody();
+        if (config.isFilterTxs()) {
+            byte[] txHash = txHashOf(body);
+            if (txHash != null) {
+                if (txs.markSeen(txHash, 0)) return dropped();
+                if (peerInfo != null) peerInfo.incNumTxsFirstSeen();
+                return bitcoinMsg;
+            }
+        }
+        if (config.isFilterInvs() && body instanceof InvMessage) {
+            return filterInv(peerInfo, (BitcoinMsg<InvMessage>) bitcoinMsg);
+        }
+        return bitcoinMsg;
+    }
+
+    private BitcoinMsg<?> filterInv(MessagePeerInfo peerInfo, BitcoinMsg<InvMessage> invBtcMsg) {
+        InventoryVectorList inventory = invBtcMsg.getBody().getInventory();
+
+        // We keep the Vectors not seen yet. The Vector is recorded as announced even if its Tx has already been
+        // received:
+        InventoryVectorList newInventory = inventory.filter((typeCode, records, hashOffset) -> {
+            boolean seen = invs.markSeen(records, hashOffset);
+            return !(txs.contains(records, hashOffset) || seen);
+        });
+        if (peerInfo != null && newInventory.size() > 0) peerInfo.incNumInvsFirstSeen(newInventory.size());
+
+        if (newInventory == inventory) return invBtcMsg;    // all of them are new
+        if (newInventory.isEmpty()) return dropped();       // all of them were seen
+        InvMessage newInvMsg = InvMessage.builder().invVectorMsgList(newInventory).build();
+        return new BitcoinMsgBuilder<>(basicConfig, newInvMsg).build();
+    }
+
+    // It returns the Hash of the Tx given (in wire format), or NULL if the Message is not a Tx or it has no Hash:
+    static byte[] txHashOf(BodyMessage body) {
+        Sha256Hash hash = null;
+        if (body instanceof TxMsg)              hash = ((TxMsg) body).getHash().orElse(null);
+        else if (body instanceof RawTxMsg)      hash = ((RawTxMsg) body).getHash();
+        else if (body instanceof TxViewMsg)     hash = ((TxViewMsg) body).getHash();
+        return (hash != null) ? hash.getReversedBytes() : null;
+    }
+
+    private BitcoinMsg<?> dropped() {
+        numMsgsDropped.incrementAndGet();
+        return null;
+    }
+
+    /** Returns the number of Messages dropped so far */
+    long getNumMsgsDropped() {
+        return numMsgsDropped.get();
+    }
+}
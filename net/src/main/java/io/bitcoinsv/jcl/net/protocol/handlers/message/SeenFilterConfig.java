@@ -0,0 +1,86 @@
+package io.bitcoinsv.jcl.net.protocol.handlers.message;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * Configuration of the "Seen" Filter (see SeenFilter): It specifies which incoming Messages are checked for
+ * duplicates, and how many Hashes are remembered.
+ */
+public class SeenFilterConfig {
+    private int numElements;
+    private double falsePositiveRate;
+    private boolean filterTxs;
+    private boolean filterInvs;
+
+    /** Constructor */
+    private SeenFilterConfig(int numElements, double falsePositiveRate, boolean filterTxs, boolean filterInvs) {
+        checkArgument(numElements > 0, "The number of Hashes remembered must be > 0");
+        checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1, "The false positive rate must be between 0 and 1");
+        this.numElements = numElements;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filterTxs = filterTxs;
+        this.filterInvs = filterInvs;
+    }
+
+    /** Number of (last) Hashes remembered, for Txs and for INVs */
+    public int getNumElements()             { return this.numElements;}
+    /** False positive rate of the Bloom Filters (it never causes a new Hash to be dropped) */
+    public double getFalsePositiveRate()    { return this.falsePositiveRate;}
+    /** If TRUE, the Txs already received from other Peers are dropped */
+    public boolean isFilterTxs()            { return this.filterTxs;}
+    /** If TRUE, the Inventory Vectors already announced by other Peers (or whose Txs were received) are dropped */
+    public boolean isFilterInvs()           { return this.filterInvs;}
+
+    public SeenFilterConfigBuilder toBuilder() {
+        return new SeenFilterConfigBuilder()
+                .numElements(this.numElements)
+                .falsePositiveRate(this.falsePositiveRate)
+                .filterTxs(this.filterTxs)
+                .filterInvs(this.filterInvs);
+    }
+
+    public static SeenFilterConfigBuilder builder() {
+        return new SeenFilterConfigBuilder();
+    }
+
+    @Override
+    public String toString() {
+        return "SeenFilterConfig(numElements=" + numElements + ", falsePositiveRate=" + falsePositiveRate
+                + ", filterTxs=" + filterTxs + ", filterInvs=" + filterInvs + ")";
+    }
+
+    /** Builder */
+    public static class SeenFilterConfigBuilder {
+        private int numElements = 100_000;          // default
+        private double falsePositiveRate = 0.000001; // default
+        private boolean filterTxs = true;           // default
+        private boolean filterInvs = true;          // default
+
+        public SeenFilterConfigBuilder numElements(int numElements) {
+            this.numElements = numElements;
+            return this;
+        }
+
+        public SeenFilterConfigBuilder falsePositiveRate(double falsePositiveRate) {
+            this.falsePositiveRate = falsePositiveRate;
+            return this;
+        }
+
+        public SeenFilterConfigBuilder filterTxs(boolean filterTxs) {
+            this.filterTxs = filterTxs;
+            return this;
+        }
+
+        public SeenFilterConfigBuilder filterInvs(boolean filterInvs) {
+            this.filterInvs = filterInvs;
+            return this;
+        }
+
+        public SeenFilterConfig build() {
+            return new SeenFilterConfig(numElements, falsePositiveRate, filterTxs, filterInvs);
+        }
+    }
+}
@@ -3,21 +3,28 @@ package io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
 import io.bitcoinsv.jcl.net.protocol.messages.HeaderMsg;
 import io.bitcoinsv.jcl.net.protocol.messages.common.BodyMessage;
 import io.bitcoinsv.jcl.net.protocol.messages.common.Message;
+import io.bitcoinsv.jcl.net.protocol.messages.common.MsgCommands;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.BitcoinMsgSerializerImpl;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.DeserializerContext;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.MsgSerializersFactory;
 import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.LargeMessageDeserializer;
 import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.MsgPartDeserializationErrorEvent;
 import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.MsgPartDeserializedEvent;
+import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.ResumableLargeMessageDeserializer;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReaderOptimized;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReaderRealTime;
+import io.bitcoinsv.jcl.tools.bytes.Sha256HashIncremental;
 import io.bitcoinsv.jcl.tools.config.RuntimeConfig;
 
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 
@@ -42,36 +49,61 @@ import java.util.function.Consumer;
  * NOTE: For small messages, this class uses an internal CACHE where those messages are stored and reused. This cache
  * is implemented using the GUAVA CACHE Api. The parameters to determin wether a message is 2cacheable" or not (not all
  * of them are) is determiend by the DEserialzierConfig class.
+ * Since this class is a Singleton, the same Cache is shared by the Streams of all the remote Peers, so the same
+ * Message relayed by several Peers is only deserialized once.
  *
  */
 public class Deserializer {
 
     /**
      * Key of the Items stored in the Cache for small messages.
-     * It contain several fields, but only the CHECKSUM field is used as a Key (that's why the 'Equals' and 'hasCode'
-     * only use that field). The rest of fields are needed to "deserialize" the items into the cache when they are not there
-     * (in this case "loading" an item means to deserialize it, so we need the Deserialization Context, the
-     * byteArrayReader and the Header of the Message we are about to deserialize...
+     * The Message is identified by its content: the COMMAND, the LENGTH and the full double-SHA256 of the Body (that's
+     * why the 'Equals' and 'hasCode' only use those fields), so two different messages never share the same Key. A
+     * Message deserialized with its Tx Hashes is also kept apart from the same one deserialized without them. The
+     * rest of fields are needed to "deserialize" the items into the cache when they are not there (in this case
+     * "loading" an item means to deserialize it, so we need the Deserialization Context, the byteArrayReader and the
+     * Header of the Message we are about to deserialize...
      */
     class CacheMsgKey {
         private HeaderMsg headerMsg;
         private DeserializerContext desContext;
         private ByteArrayReader reader;
+        private byte[] bodyHash;
+        private int hashCode;
 
         public CacheMsgKey(HeaderMsg headerMsg, DeserializerContext desContext, ByteArrayReader reader) {
             this.headerMsg = headerMsg;
             this.desContext = desContext;
             this.reader = reader;
+            // We hash the Body WITHOUT consuming it from the reader (unless it's been hashed already):
+            if (desContext.getBodyHash() != null) {
+                this.bodyHash = desContext.getBodyHash();
+            } else {
+                Sha256HashIncremental digest = new Sha256HashIncremental();
+                reader.digest(0, headerMsg.getMsgLength(), digest);
+                this.bodyHash = digest.hashTwice();
+            }
+            this.hashCode = Arrays.hashCode(bodyHash);
         }
 
         @Override public boolean equals(Object obj) {
-            return (obj != null) && (headerMsg.getChecksum() == (((CacheMsgKey) obj).headerMsg.getChecksum()));
+            if (!(obj instanceof CacheMsgKey)) return false;
+            CacheMsgKey other = (CacheMsgKey) obj;
+            return headerMsg.getMsgLength() == other.headerMsg.getMsgLength()
+                    && headerMsg.getMsgCommandId() == other.headerMsg.getMsgCommandId()
+                    && (headerMsg.getMsgCommandId() != MsgCommands.UNKNOWN
+                        || headerMsg.getMsgCommand().equalsIgnoreCase(other.headerMsg.getMsgCommand()))
+                    && desContext.isCalculateHashes() == other.desContext.isCalculateHashes()
+                    && Arrays.equals(bodyHash, other.bodyHash);
         }
-        @Override public int hashCode() { return Long.hashCode(headerMsg.getChecksum()); }
+        @Override public int hashCode() { return hashCode; }
     }
 
     private Cache<CacheMsgKey, BodyMessage> cache;
 
+    // Number of bytes we haven't needed to deserialize, thanks to the Cache:
+    private final LongAdder numBytesSaved = new LongAdder();
+
 
     // Object instance (Singleton) and configuration:
     private static Deserializer instance;
@@ -85,12 +117,15 @@ public class Deserializer {
         this.config = config;
 
         // Guava Cache Configuration:
-        // NOTE: The Configuration based on the totalSizeInBytes has been removed, since its not accurate (the
-        // size is measured based on the serialized version of messages, but the java classes take way more space)
+        // The Cache is bounded by the size in bytes of the messages (serialized, the java classes take more space, but
+        // both sizes are proportional). Guava does not allow for a second limit on the number of messages, so we
+        // apply it by making each message weigh at least (maxCacheSizeInBytes / maxCacheSizeInNumMsgs) bytes.
+        // The weight is never zero, since Guava never evicts those entries (only when they expire):
         CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
-
-        // Maximum Cache size based on number of messages stored:
-        cacheBuilder.maximumSize(config.getMaxCacheSizeInNumMsgs());
+        long minWeightPerMsg = Math.max(1, config.getMaxCacheSizeInBytes() / Math.max(1, config.getMaxCacheSizeInNumMsgs()));
+        cacheBuilder.maximumWeight(config.getMaxCacheSizeInBytes());
+        cacheBuilder.weigher((Weigher<CacheMsgKey, BodyMessage>) (key, msg) ->
+                (int) Math.min(Integer.MAX_VALUE, Math.max(key.headerMsg.getMsgLength(), minWeightPerMsg)));
 
         // A message gets removed after some time idle:
         cacheBuilder.expireAfterAccess(config.getCacheExpirationTime().toMillis(), TimeUnit.MILLISECONDS);
@@ -116,6 +151,15 @@ public class Deserializer {
         return BitcoinMsgSerializerImpl.getInstance().deserializeBody(key.desContext, key.headerMsg, key.reader);
     }
 
+    /**
+     * It returns TRUE if the Message with the Header given goes through the Cache: the Cache is enabled, the Message
+     * is one of the types to cache and it's not too big.
+     */
+    public boolean isCacheable(HeaderMsg headerMsg) {
+        return config.isCacheEnabled() && config.isMessageToCache(headerMsg.getMsgCommandId()) &&
+                (headerMsg.getMsgLength() < config.getCacheMaxMsgSizeInBytes());
+    }
+
     /**
      * Deserializes and returns the Next Message form the pipeline. If the incoming message is cacheable, it tries to
      * look it up from the cache, if its not there it deserializes the Message normally and adds it to the cache for
@@ -133,22 +177,22 @@ public class Deserializer {
     public BodyMessage deserialize(HeaderMsg headerMsg, DeserializerContext desContext, ByteArrayReader reader) throws Exception {
         BodyMessage result = null;
 
-        // We build the Cache-Key for this Message...
-        CacheMsgKey key = new CacheMsgKey(headerMsg, desContext, reader);
-
         // We only use the Cache if the cache is enabled AND the requested message is "cacheable"...
-        boolean isCacheable = config.isCacheEnabled() && config.getMessagesToCache().contains(headerMsg.getMsgCommand().toUpperCase()) &&
-                (headerMsg.getMsgLength() < config.getCacheMaxMsgSizeInBytes());
-
-        if (isCacheable) {
-            result = cache.getIfPresent(key);
-            if (result != null)
+        if (isCacheable(headerMsg)) {
+            // We build the Cache-Key for this Message (it might need to hash the Body, so only if it's cacheable)...
+            CacheMsgKey key = new CacheMsgKey(headerMsg, desContext, reader);
+            AtomicBoolean loaded = new AtomicBoolean();
+            result = cache.get(key, () -> {
+                loaded.set(true);
+                return deserialize(key);
+            });
+            if (!loaded.get()) {
                 // we read and discard the bytes from the pipeline...
                 reader.read((int) headerMsg.getMsgLength());
-            else
-                result = cache.get(key, () -> deserialize(key));
+                numBytesSaved.add(headerMsg.getMsgLength());
+            }
         }
-        else result = deserialize(key);
+        else result = BitcoinMsgSerializerImpl.getInstance().deserializeBody(desContext, headerMsg, reader);
 
         // we reset the Reader now that it's done... (needed by the OptimizedReader)
         if (reader instanceof ByteArrayReaderOptimized)
@@ -184,7 +228,7 @@ public class Deserializer {
         // We set up the callbacks that wil be trigger as the message is deserialized...
 
         LargeMessageDeserializer largeMsgDeserializer =  MsgSerializersFactory.getLargeMsgDeserializer(
-                headerMsg.getMsgCommand(),
+                headerMsg.getMsgCommandId(),
                 config.getMinBytesPerSecForLargeMessages());
         largeMsgDeserializer.setPartialMsgSize(config.getPartialSerializationMsgSize());
         largeMsgDeserializer.onError(onErrorHandler);
@@ -198,13 +242,42 @@ public class Deserializer {
         return result;
     }
 
+    /**
+     * It returns a Deserializer for the BIG Message given, ready to be resumed every time new bytes of its BODY
+     * arrive (see ResumableLargeMessageDeserializer), so no Thread is blocked while the rest of the Message is still
+     * coming. The parts of the message deserialized and the errors are notified through the callbacks.
+     * If there is no Resumable Deserializer for this Message, it returns null, and "deserializeLarge()" must be used.
+     *
+     * @param headerMsg                 HeaderMsg of the next Message coming in the pipeline
+     * @param desContext                Deserializer context to use on the Deserialization
+     * @param onErrorHandler            a Callback triggered when an Error happens during De-serialization
+     * @param onPartDeserializedHandler a Callback triggered when a partial part of the message is deserialized and returned
+     */
+    public ResumableLargeMessageDeserializer startLargeResumable(HeaderMsg headerMsg, DeserializerContext desContext,
+                                                               Consumer<MsgPartDeserializationErrorEvent> onErrorHandler,
+                                                               Consumer<MsgPartDeserializedEvent> onPartDeserializedHandler) {
+        LargeMessageDeserializer largeMsgDeserializer =  MsgSerializersFactory.getLargeMsgDeserializer(
+                headerMsg.getMsgCommandId(),
+                config.getMinBytesPerSecForLargeMessages());
+        if (!(largeMsgDeserializer instanceof ResumableLargeMessageDeserializer)) return null;
+
+        ResumableLargeMessageDeserializer result = (ResumableLargeMessageDeserializer) largeMsgDeserializer;
+        result.setPartialMsgSize(config.getPartialSerializationMsgSize());
+        result.onError(onErrorHandler);
+        result.onDeserialized(onPartDeserializedHandler);
+        result.start(desContext, headerMsg);
+        return result;
+    }
+
     /** It returns the current State of the Cache */
     public DeserializerState getState() {
         CacheStats cacheStats = cache.stats();
         DeserializerState result = DeserializerState.builder()
                 .numHits(cacheStats.hitCount())
+                .numMisses(cacheStats.missCount())
                 .numLoads(cacheStats.loadCount())
                 .hitRatio(cacheStats.hitRate())
+                .numBytesSaved(numBytesSaved.sum())
                 .build();
         return result;
     }
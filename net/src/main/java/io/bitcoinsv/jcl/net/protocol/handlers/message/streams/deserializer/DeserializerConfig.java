@@ -1,6 +1,7 @@
 package io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer;
 
 import io.bitcoinsv.jcl.net.protocol.messages.*;
+import io.bitcoinsv.jcl.net.protocol.messages.common.MsgCommands;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReaderRealTime;
 import io.bitcoinsv.jcl.net.protocol.messages.*;
 
@@ -38,14 +39,14 @@ public final class DeserializerConfig {
     /** If disabled, no cache is used at all */
     private boolean cacheEnabled = true;
 
-    /** Maximum Size of the Cache (in Bytes) */
-    /**
-     * THIS PARAMETER IS NO LONGER SUPPORTED BY JCL-NET.
-     * It's still here though, in case we want to re-enable it in the future.
-     */
+    /** Maximum Size of the Cache (in Bytes, measured as the size of the serialized messages) */
     private Long maxCacheSizeInBytes = 10_000_000L; // 10 MB
 
-    /** Maximum Size of the Cache (in number of Messages cached) */
+    /**
+     * Maximum Size of the Cache (in number of Messages cached). Both limits apply: Each Message weighs at least
+     * (maxCacheSizeInBytes / maxCacheSizeInNumMsgs) bytes in the Cache, so with the default values the Cache holds
+     * up to 50 Messages, and less if they are bigger than 200KB each.
+     */
     private Long maxCacheSizeInNumMsgs = 50L;
 
     /** If an Item is idle for longer than this, it gets cleared from the cache */
@@ -69,6 +70,9 @@ public final class DeserializerConfig {
     /** If the Message is NOT part of this List, then it won't be cached */
     private Set<String> messagesToCache = new HashSet<>(Arrays.asList(DEFAULT_MSGS_TO_CACHE));
 
+    // Same info as "messagesToCache", indexed by the id of each Command (see MsgCommands):
+    private final boolean[] messagesToCacheIds = new boolean[MsgCommands.MAX_COMMANDS];
+
     public DeserializerConfig(Integer bufferInitialSizeInBytes,
                               Integer minBytesPerSecForLargeMessages,
                               Boolean cacheEnabled,
@@ -89,6 +93,7 @@ public final class DeserializerConfig {
         if (generateStats != null)                  this.generateStats = generateStats;
         if (messagesToCache != null)                this.messagesToCache = messagesToCache;
         this.partialSerializationMsgSize = partialSerializationMsgSize;
+        this.messagesToCache.forEach(command -> messagesToCacheIds[MsgCommands.register(command)] = true);
     }
 
     public static DeserializerConfigBuilder builder()   { return new DeserializerConfigBuilder(); }
@@ -101,6 +106,7 @@ public final class DeserializerConfig {
     public Long getCacheMaxMsgSizeInBytes()             { return this.cacheMaxMsgSizeInBytes; }
     public boolean isGenerateStats()                    { return this.generateStats; }
     public Set<String> getMessagesToCache()             { return this.messagesToCache; }
+    public boolean isMessageToCache(int commandId)      { return commandId != MsgCommands.UNKNOWN && this.messagesToCacheIds[commandId]; }
     public int getPartialSerializationMsgSize()         { return this.partialSerializationMsgSize;}
 
     @Override
@@ -108,6 +114,7 @@ public final class DeserializerConfig {
         return "DeserializerConfig(bufferInitialSizeInBytes=" + bufferInitialSizeInBytes
                 + ",minBytesPerSecForLargeMessages=" + minBytesPerSecForLargeMessages
                 + ", maxCacheSizeInBytes=" + this.maxCacheSizeInBytes
+                + ", maxCacheSizeInNumMsgs=" + this.maxCacheSizeInNumMsgs
                 + ", maxMsgSizeInBytes=" + this.cacheMaxMsgSizeInBytes
                 + ", generateStats=" + this.generateStats
                 + ", messagesToCache=" + this.messagesToCache
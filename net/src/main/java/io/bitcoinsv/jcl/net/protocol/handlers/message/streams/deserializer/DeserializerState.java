@@ -11,26 +11,34 @@ package io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer;
 public class DeserializerState {
     private long numLoads = 0L;
     private long numHits = 0L;
+    private long numMisses = 0L;
     private double hitRatio = 0.0;
+    // Number of bytes we haven't needed to deserialize, since the messages were found in the Cache:
+    private long numBytesSaved = 0L;
 
-    DeserializerState(long numLoads, long numHits, double hitRatio) {
+    DeserializerState(long numLoads, long numHits, long numMisses, double hitRatio, long numBytesSaved) {
         this.numLoads = numLoads;
         this.numHits = numHits;
+        this.numMisses = numMisses;
         this.hitRatio = hitRatio;
+        this.numBytesSaved = numBytesSaved;
     }
 
     public static DeserializerStateBuilder builder()    { return new DeserializerStateBuilder(); }
     public long getNumLoads()                           { return this.numLoads; }
     public long getNumHits()                            { return this.numHits; }
+    public long getNumMisses()                          { return this.numMisses; }
     public double getHitRatio()                         { return this.hitRatio; }
+    public long getNumBytesSaved()                      { return this.numBytesSaved; }
 
     @Override
     public String toString() {
-        return "DeserializerState(numLoads=" + this.getNumLoads() + ", numHits=" + this.getNumHits() + ", hitRatio=" + this.getHitRatio() + ")";
+        return "DeserializerState(numLoads=" + this.getNumLoads() + ", numHits=" + this.getNumHits() + ", numMisses=" + this.getNumMisses()
+                + ", hitRatio=" + this.getHitRatio() + ", numBytesSaved=" + this.getNumBytesSaved() + ")";
     }
 
     public DeserializerStateBuilder toBuilder() {
-        return new DeserializerStateBuilder().numLoads(this.numLoads).numHits(this.numHits).hitRatio(this.hitRatio);
+        return new DeserializerStateBuilder().numLoads(this.numLoads).numHits(this.numHits).numMisses(this.numMisses).hitRatio(this.hitRatio).numBytesSaved(this.numBytesSaved);
     }
 
     /**
@@ -39,7 +47,9 @@ public class DeserializerState {
     public static class DeserializerStateBuilder {
         private long numLoads;
         private long numHits;
+        private long numMisses;
         private double hitRatio;
+        private long numBytesSaved;
 
         DeserializerStateBuilder() {}
 
@@ -53,13 +63,23 @@ public class DeserializerState {
             return this;
         }
 
+        public DeserializerState.DeserializerStateBuilder numMisses(long numMisses) {
+            this.numMisses = numMisses;
+            return this;
+        }
+
+        public DeserializerState.DeserializerStateBuilder numBytesSaved(long numBytesSaved) {
+            this.numBytesSaved = numBytesSaved;
+            return this;
+        }
+
         public DeserializerState.DeserializerStateBuilder hitRatio(double hitRatio) {
             this.hitRatio = hitRatio;
             return this;
         }
 
         public DeserializerState build() {
-            return new DeserializerState(numLoads, numHits, hitRatio);
+            return new DeserializerState(numLoads, numHits, numMisses, hitRatio, numBytesSaved);
         }
     }
 }
@@ -3,7 +3,7 @@ package io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer;
 
 import io.bitcoinsv.jcl.net.network.streams.*;
 import io.bitcoinsv.jcl.net.network.streams.*;
-import io.bitcoinsv.jcl.net.network.streams.nio.NIOInputStream;
+import io.bitcoinsv.jcl.net.network.streams.PeerInputStreamEndPoint;
 import io.bitcoinsv.jcl.net.protocol.handlers.message.MessageHandlerConfig;
 import io.bitcoinsv.jcl.net.protocol.handlers.message.MessagePreSerializer;
 import io.bitcoinsv.jcl.net.protocol.messages.HeaderMsg;
@@ -11,25 +11,29 @@ import io.bitcoinsv.jcl.net.protocol.messages.VersionMsg;
 import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsg;
 import io.bitcoinsv.jcl.net.protocol.messages.common.BodyMessage;
 import io.bitcoinsv.jcl.net.protocol.messages.common.Message;
+import io.bitcoinsv.jcl.net.protocol.messages.common.MsgCommands;
 import io.bitcoinsv.jcl.net.protocol.serialization.HeaderMsgSerializer;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.DeserializerContext;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.MsgSerializersFactory;
 import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.MsgPartDeserializationErrorEvent;
 import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.MsgPartDeserializedEvent;
+import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.ResumableLargeMessageDeserializer;
 
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayBuffer;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayConfig;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
+import io.bitcoinsv.jcl.tools.bytes.ByteArraySegment;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayWriter;
+import io.bitcoinsv.jcl.tools.bytes.Sha256HashIncremental;
 import io.bitcoinsv.jcl.tools.config.RuntimeConfig;
+import io.bitcoinsv.jcl.tools.thread.TimerWheel;
 import io.bitcoinsv.jcl.net.tools.LoggerUtil;
 
-import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -69,6 +73,10 @@ import java.util.function.Consumer;
  *   - A consequence of this is that we cannot notify the parent class about the result of the Deserialization by
  *     the result returned by the "transform" class. So instead of that, the "transform()" function" will also return
  *     NULL, and the Messages (or Errors) will be notified by the methods "processOK()" and "processError()"
+ *
+ *   If there is a Resumable Deserializer for the Big Message (see ResumableLargeMessageDeserializer), no DEDICATED
+ *   Thread is needed: The SHARED Thread deserializes as many parts of the Message as the bytes in the buffer allow,
+ *   and then it moves on. The next time we receive more bytes, the Deserialization is resumed from that point.
  */
 
 
@@ -113,6 +121,29 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
     // If this Stream is closed by the remote Peer, we activate this FLAG:
     private boolean streamClosed = false;
 
+    // The speed of a Big Message deserialized by a Resumable Deserializer is only checked after this time:
+    private static final long MIN_MILLISECS_FOR_SPEED_CHECK = 1000;
+
+    // Id of the Version Msg Command (see MsgCommands):
+    private static final int VERSION_MSG_ID = MsgCommands.register(VersionMsg.MESSAGE_TYPE);
+
+    // Deserializer of the Big Message being deserialized in the SHARED Thread, if any. It keeps the point where the
+    // Deserialization stopped, so it can be resumed when more bytes arrive:
+    private ResumableLargeMessageDeserializer largeMsgDeserializer;
+    // When the Resumable Deserialization started, and the bytes of the Msg received by then (to check the speed):
+    private long largeMsgStartMillis;
+    private long largeMsgStartBytes;
+
+    // If set, the speed of the Big Message being deserialized by a Resumable Deserializer is also checked from this
+    // Timer, so a Peer that stops sending bytes in the middle of it is detected even if no more bytes arrive:
+    private TimerWheel stallTimer;
+    private TimerWheel.Timeout stallCheck;
+
+    // Hash of the Body of the current (normal) Message. It's fed with the bytes of the Body as they arrive, so by the
+    // time the whole Body is here its Hash (needed for the checksum and the Cache) is almost done:
+    private Sha256HashIncremental bodyDigest;
+    private long bodyBytesDigested;
+
 
     /** Constructor */
     public DeserializerStream(ExecutorService eventBusExecutor,
@@ -122,7 +153,7 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
                               Deserializer deserializer,
                               ExecutorService bigMsgsDeserializersExecutor,
                               LoggerUtil parentLogger) {
-        super(eventBusExecutor, source);
+        super(eventBusExecutor, source, messageHandlerConfig.isFusedStreamPipeline());
         this.runtimeConfig = runtimeConfig;
         this.messageHandlerConfig = messageHandlerConfig;
         //this.buffer = new ByteArrayBuffer(runtimeConfig.getByteArrayMemoryConfig());
@@ -183,7 +214,7 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
         trace(isThisADedicatedThread, message.getBody().getMessageType().toUpperCase() + " Deserialized.");
         //log(isThisADedicatedThread, " Buffer After Deserialization: " + HEX.encode(new ByteArrayReader(buffer).get()));
         // We notify the parent about the new Message Deserialized and return:
-        super.eventBus.publish(new StreamDataEvent<>(message));
+        super.publishData(new StreamDataEvent<>(message));
         // We return the updated State:
         return state.toBuilder()
                 .currentBitcoinMsg(message)
@@ -204,11 +235,19 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
 
             // We feed the buffer with the incoming bytes....
             //log.trace("SHARED Thread :: " + dataEvent.getData().size() + " bytes received, " + buffer.size() + " bytes in buffer. " + Thread.activeCount() + " active Threads...");
-            buffer.add(dataEvent.getData().getFullContent());
+            // If the bytes come in a Segment (zero-copy reads), we take ownership of it instead of copying them:
+            ByteArrayReader reader = dataEvent.getData();
+            long numBytesReceived = reader.size();
+            if (reader.getByteArray() instanceof ByteArraySegment)
+                buffer.addSegment((ByteArraySegment) reader.getByteArray());
+            else buffer.add(reader.getFullContent());
+
+            // If a DEDICATED Thread is waiting for these bytes (Real-Time Deserialization), we wake it up:
+            buffer.signalBytesAdded();
 
             // We update the State with the new incoming bytes...
             state = state.toBuilder()
-                    .currentMsgBytesReceived(state.getCurrentMsgBytesReceived() + dataEvent.getData().size())
+                    .currentMsgBytesReceived(state.getCurrentMsgBytesReceived() + numBytesReceived)
                     .workToDoInBuffer(true)
                     .deserializerState(deserializer.getState())
                     .build();
@@ -248,12 +287,13 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
             //   NOT have to be there, they will be consumed as they arrive
 
             HeaderMsg headerMsg = state.getCurrentHeaderMsg();
-            DeserializerContext desContext = DeserializerContext.builder()
-                    .protocolBasicConfig(messageHandlerConfig.getBasicConfig())
-                    .maxBytesToRead(headerMsg.getMsgLength())
-                    .insideVersionMsg(headerMsg.getMsgCommand().equalsIgnoreCase(VersionMsg.MESSAGE_TYPE))
-                    .calculateChecksum( messageHandlerConfig.isVerifyChecksum())
-                    .build();
+            DeserializerContext desContext = buildBodyDeserializerContext(headerMsg);
+
+            // If the whole Body has been hashed already while it was arriving, we pass the Hash along:
+            if (!realTime && bodyDigest != null && bodyBytesDigested == headerMsg.getMsgLength()) {
+                desContext = desContext.toBuilder().bodyHash(bodyDigest.hashTwice()).build();
+            }
+            bodyDigest = null;
 
             // We instantiate a ByteArrayReader that will be used to read the bytes from the buffer during deserialization
             // NOTE: Each specific Deserializer might wrap this reader with another one, like the ByteArrayReaderOptimized
@@ -289,19 +329,7 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
 
                 Consumer<MsgPartDeserializedEvent> onPartDeserializedHandler = e -> {
                     // We are notified about a Partial Msg being deserialized. We create the BitcoinMsg and we notify it:
-                    Message partialMessage = (Message) e.getData();
-                    HeaderMsg partialMsgHeader = HeaderMsg.builder()
-                            .magic(headerMsg.getMagic())
-                            .command(partialMessage.getMessageType())
-                            .length(partialMessage.getLengthInBytes())
-                            // Checksum is ZERO for Partial Messages:
-                            .checksum(0)
-                            // the "extXXX" fields are used for Messages bigger than 4GB (after 70016), but the Partial
-                            // messages returned by the Large Serializers are smaller than that, so we set empty values
-                            .extCommand(null)
-                            .extLength(0)
-                            .build();
-                    BitcoinMsg<?> bitcoinMsg = new BitcoinMsg(partialMsgHeader, (BodyMessage) e.getData());
+                    BitcoinMsg<?> bitcoinMsg = buildPartialBitcoinMsg(headerMsg, e);
                     DeserializerStreamState stateResult = this.processOK(isThisADedicatedThread, bitcoinMsg, state);
                     stateAfterOK.set(stateResult);
                 };
@@ -362,6 +390,160 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
         }
     }
 
+    // It builds the Context used to Deserialize the BODY of the Message given
+    private DeserializerContext buildBodyDeserializerContext(HeaderMsg headerMsg) {
+        return DeserializerContext.builder()
+                .protocolBasicConfig(messageHandlerConfig.getBasicConfig())
+                .maxBytesToRead(headerMsg.getMsgLength())
+                .insideVersionMsg(headerMsg.getMsgCommandId() == VERSION_MSG_ID)
+                .calculateChecksum( messageHandlerConfig.isVerifyChecksum())
+                // The Tx Hashes are calculated from the bytes as they are read (Digest Tee), only if they are needed:
+                .calculateHashes(messageHandlerConfig.isTxHashesRequired())
+                .build();
+    }
+
+    // It builds the BitcoinMsg wrapping a Partial Msg returned by a Large Deserializer
+    private BitcoinMsg<?> buildPartialBitcoinMsg(HeaderMsg headerMsg, MsgPartDeserializedEvent event) {
+        Message partialMessage = (Message) event.getData();
+        HeaderMsg partialMsgHeader = HeaderMsg.builder()
+                .magic(headerMsg.getMagic())
+                .command(partialMessage.getMessageType())
+                .length(partialMessage.getLengthInBytes())
+                // Checksum is ZERO for Partial Messages:
+                .checksum(0)
+                // the "extXXX" fields are used for Messages bigger than 4GB (after 70016), but the Partial
+                // messages returned by the Large Serializers are smaller than that, so we set empty values
+                .extCommand(null)
+                .extLength(0)
+                .build();
+        return new BitcoinMsg(partialMsgHeader, (BodyMessage) event.getData());
+    }
+
+    /**
+     * It starts the Deserialization of the current (BIG) Message using a Resumable Deserializer, if there is one for
+     * this Message. The parts deserialized and the errors are notified by updating the global State directly, since
+     * they might come in different calls to "deserializeResumable()".
+     *
+     * @return TRUE if the Resumable Deserializer has been started, FALSE if there is none for this Message
+     */
+    private boolean startResumableDeserialization(DeserializerStreamState state) {
+        HeaderMsg headerMsg = state.getCurrentHeaderMsg();
+        this.largeMsgDeserializer = deserializer.startLargeResumable(
+                headerMsg,
+                buildBodyDeserializerContext(headerMsg),
+                e -> this.state = this.processError(false, e.getException(), this.state),
+                e -> this.state = this.processOK(false, buildPartialBitcoinMsg(headerMsg, e), this.state));
+        this.largeMsgStartMillis = System.currentTimeMillis();
+        this.largeMsgStartBytes = state.getCurrentMsgBytesReceived();
+        if (this.largeMsgDeserializer != null) scheduleStallCheck();
+        return this.largeMsgDeserializer != null;
+    }
+
+    // It schedules the next check of the speed of the Big Message being deserialized, if there is a Timer:
+    private void scheduleStallCheck() {
+        if (stallTimer == null || bigMsgsDeserializersExecutor == null) return;
+        stallCheck = stallTimer.schedule(() -> {
+            // The Timer Thread must not wait for the lock of this Stream, so the check runs somewhere else:
+            try {
+                bigMsgsDeserializersExecutor.submit(this::checkLargeMsgStalled);
+            } catch (RejectedExecutionException e) {
+                logger.trace(this.peerAddress, "Speed check of Big Message discarded (Executor shut down)");
+            }
+        }, MIN_MILLISECS_FOR_SPEED_CHECK, TimeUnit.MILLISECONDS);
+    }
+
+    // It cancels the check of the speed of the Big Message, which is not being deserialized anymore:
+    private void cancelStallCheck() {
+        if (stallCheck != null) stallCheck.cancel();
+        stallCheck = null;
+    }
+
+    // Triggered by the Timer: If the Big Message is still being deserialized but its bytes are coming too slowly (or
+    // not coming at all), the Stream is marked as corrupted and its bytes discarded. Otherwise, it's checked again later:
+    private synchronized void checkLargeMsgStalled() {
+        if (largeMsgDeserializer == null || streamClosed || state.getProcessState().isCorrupted()) return;
+        String slowMsgError = checkLargeMsgSpeed(state);
+        if (slowMsgError == null) {
+            scheduleStallCheck();
+            return;
+        }
+        largeMsgDeserializer = null;
+        stallCheck = null;
+        this.state = processError(false, new RuntimeException(slowMsgError), state);
+        buffer.clear();
+    }
+
+    // It returns an error if the bytes of the Big Message are coming too slowly, or null if the speed is fine:
+    private String checkLargeMsgSpeed(DeserializerStreamState state) {
+        long minSpeedBytesPerSec = deserializer.getConfig().getMinBytesPerSecForLargeMessages();
+        long millisecsElapsed = System.currentTimeMillis() - largeMsgStartMillis;
+        long bytesReceived = state.getCurrentMsgBytesReceived() - largeMsgStartBytes;
+        if (millisecsElapsed >= MIN_MILLISECS_FOR_SPEED_CHECK && (bytesReceived * 1000 / millisecsElapsed) < minSpeedBytesPerSec) {
+            return "Big Message received too slowly: " + bytesReceived + " bytes in " + millisecsElapsed
+                    + " millisecs, minSpeed = " + minSpeedBytesPerSec + " bytes/sec";
+        }
+        return null;
+    }
+
+    /**
+     * This method is called when the next Bytes in the buffer belong to the BODY of a BIG message which is being
+     * deserialized by a Resumable Deserializer. It deserializes as many parts as the bytes in the buffer allow, and
+     * it returns without waiting for the rest: The Deserialization will be resumed when more bytes arrive.
+     *
+     * @param state                  Current State of this class
+     * @param buffer                 our Buffer of bytes
+     * @return                       the state of this class, updated.
+     */
+    private DeserializerStreamState deserializeResumable(DeserializerStreamState state, ByteArrayBuffer buffer) {
+        // The parts deserialized update the global State, so we make sure it's up to date before:
+        this.state = state;
+        boolean finished = largeMsgDeserializer.resume(new ByteArrayReader(buffer));
+        DeserializerStreamState result = this.state;
+
+        if (result.getProcessState().isCorrupted()) {
+            largeMsgDeserializer = null;
+            cancelStallCheck();
+            return result;
+        }
+        if (!finished) {
+            // Same as in Real-Time Deserialization, the bytes must keep coming at a minimum speed. This is also
+            // checked from the Timer (if any), in case the bytes stop coming altogether:
+            String slowMsgError = checkLargeMsgSpeed(result);
+            if (slowMsgError != null) {
+                largeMsgDeserializer = null;
+                cancelStallCheck();
+                return processError(false, new RuntimeException(slowMsgError), result);
+            }
+            trace(false, "Seeking Body for " + result.getCurrentHeaderMsg().getMsgCommand().toUpperCase() + " :: waiting for more bytes to resume...");
+            return result.toBuilder().workToDoInBuffer(false).build();
+        }
+
+        // The Message is done, so the counter of bytes belonging to the next MSg is reset...
+        largeMsgDeserializer = null;
+        cancelStallCheck();
+        return result.toBuilder()
+                .processState(DeserializerStreamState.ProcessingBytesState.SEEKING_HEAD)
+                .currentMsgBytesReceived(0)
+                .workToDoInBuffer(buffer.size() > 0)
+                .build();
+    }
+
+    /**
+     * It feeds the Hash of the Body of the current Message with the bytes of the Body received since the last call,
+     * straight from the buffer (no copy is made), and without consuming them.
+     */
+    private void updateBodyHash(long bodySize, ByteArrayBuffer buffer) {
+        if (bodyDigest == null) {
+            bodyDigest = new Sha256HashIncremental();
+            bodyBytesDigested = 0;
+        }
+        long bytesToDigest = Math.min(buffer.size(), bodySize) - bodyBytesDigested;
+        if (bytesToDigest > 0) {
+            buffer.digest(bodyBytesDigested, bytesToDigest, bodyDigest);
+            bodyBytesDigested += bytesToDigest;
+        }
+    }
+
     // It check is the content of the buffer contains a complete header.
     // The length of a Header might be different depending on whether its a REGULAR header (24 bytes) or an
     // EXTENDED one (44 bytes). And the type of the header depends on the COMMAND field
@@ -372,11 +554,8 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
         if (buffer.size() >= HeaderMsg.MESSAGE_LENGTH_EXT) {
             result = true;
         } else if (buffer.size() >= 16){ // at least we have the first 2 fields: magic(4) + command(12)
-            try {
-                byte[] commandBytes = Arrays.copyOfRange(buffer.get(16), 4, 15);
-                String command = new String(commandBytes, "UTF-8");
-                result = (!command.equalsIgnoreCase(HeaderMsg.EXT_COMMAND) && (buffer.size() >= HeaderMsg.MESSAGE_LENGTH));
-            } catch (UnsupportedEncodingException e) { throw new RuntimeException(e); }
+            int commandId = MsgCommands.idOf(buffer.get(16), 4);
+            result = (commandId != HeaderMsg.EXT_COMMAND_ID && (buffer.size() >= HeaderMsg.MESSAGE_LENGTH));
         }
         return result;
     }
@@ -416,7 +595,7 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
             // Now we need to figure out if this incoming Message is one we need to Deserialize, or just Ignore, and that
             // depends on whether we have a Serializer Implementation for it...
             boolean doWeNeedRealTimeProcessing = headerMsg.getMsgLength() >= runtimeConfig.getMsgSizeInBytesForRealTimeProcessing();
-            boolean ignoreMsg = !MsgSerializersFactory.hasSerializerFor(headerMsg.getMsgCommand(), doWeNeedRealTimeProcessing);
+            boolean ignoreMsg = !MsgSerializersFactory.hasSerializerFor(headerMsg.getMsgCommandId(), doWeNeedRealTimeProcessing);
 
             // The Header has been processed. After the HEAD a BODY must ALWAYS come, so there is still work todo...
             boolean stillWorkToDoInBuffer = true;
@@ -426,6 +605,9 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
                     buffer.updateConfig(new ByteArrayConfig(ByteArrayConfig.ARRAY_SIZE_BIG));
             else    buffer.updateConfig(new ByteArrayConfig(ByteArrayConfig.ARRAY_SIZE_NORMAL));
 
+            // A new Body is coming, so we discard the Hash of the previous one (if it was not used):
+            bodyDigest = null;
+
             // We update the State:
             result.currentHeaderMsg(headerMsg)
                     .processState((ignoreMsg)
@@ -462,8 +644,9 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
 
         // We are Seeking a Body: We have different Scenarios:
         // - The Message is "small/normal": We wait until we have all the bytes from its body before Deserializing:
-        // - The Message is "big": The ony way to process a "Big" Message is by using "Real-Time" Deserialization. So we
-        //   apply this logic:
+        // - The Message is "big": If there is a Resumable Deserializer for it, we deserialize as much as we can in
+        //   this Thread and resume it when more bytes arrive. Otherwise, the only way to process a "Big" Message is by
+        //   using "Real-Time" Deserialization. So we apply this logic:
         //      - If we are in the SHARED Thread, then we launch a DEDICATED Thread, which will take care of processing
         //        the bytes. Right after that we finish, and this SHARED Thread will do nothing in the future but only
         //        receiving new bytes and feeding them into the buffer.
@@ -472,7 +655,7 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
         // The following variables will control what to do next:
 
         HeaderMsg currentHeaderMsg              = state.getCurrentHeaderMsg();
-        String msgType                          = currentHeaderMsg.getMsgCommand().toUpperCase();
+        String msgType                          = currentHeaderMsg.getMsgCommand();
         long bodySize                           = currentHeaderMsg.getMsgLength();
         long bufferSize                         = buffer.size();
         boolean isABigMessage                   = (bodySize > runtimeConfig.getMsgSizeInBytesForRealTimeProcessing());
@@ -492,6 +675,11 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
         }
 
         if (!isABigMessage) {
+            // We hash the bytes of the Body received so far, so we don't need to go over all of them at the end. The
+            // Hash is only needed to verify the checksum or to look the Message up in the Cache:
+            if (messageHandlerConfig.isVerifyChecksum() || deserializer.isCacheable(currentHeaderMsg)) {
+                updateBodyHash(bodySize, buffer);
+            }
             if (allBytesMessageReceived) {
                 trace(isThisADedicatedThread,  "Seeking Body for " + msgType + " :: Deserializing " + currentHeaderMsg.getMsgCommand() + "...");
                 result = deserialize(isThisADedicatedThread,false, state, buffer).toBuilder();
@@ -501,7 +689,12 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
                 result.workToDoInBuffer(buffer.size() >= currentHeaderMsg.getMsgLength());
             }
         } else {
-            if (isThisADedicatedThread) {
+            if (!isThisADedicatedThread && (largeMsgDeserializer != null || startResumableDeserialization(state))) {
+                // We deserialize what we can right here, and we'll resume when more bytes arrive:
+                trace(isThisADedicatedThread,  "Seeking Body for " + msgType + " :: Deserializing " + currentHeaderMsg.getMsgCommand() + " (resumable)...");
+                result = deserializeResumable(state, buffer).toBuilder();
+
+            } else if (isThisADedicatedThread) {
                 trace(isThisADedicatedThread,  "Seeking Body for " + msgType + " :: Deserializing " + currentHeaderMsg.getMsgCommand() + " in REAL-TIME...");
                 result = deserialize(isThisADedicatedThread, true, state, buffer).toBuilder();
 
@@ -605,12 +798,12 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
 
     public void upgradeBufferSize() {
         this.realTimeProcessingEnabled = true;
-        ((NIOInputStream) super.source).upgradeBufferSize();
+        ((PeerInputStreamEndPoint<ByteArrayReader>) super.source).upgradeBufferSize();
     }
 
     public void resetBufferSize() {
         this.realTimeProcessingEnabled = false;
-        ((NIOInputStream) super.source).resetBufferSize();
+        ((PeerInputStreamEndPoint<ByteArrayReader>) super.source).resetBufferSize();
     }
 
     // for convenience...
@@ -630,4 +823,8 @@ public class DeserializerStream extends PeerInputStreamImpl<ByteArrayReader, Mes
     public void setPreSerializer(MessagePreSerializer preSerializer) {
         this.preSerializer = preSerializer;
     }
+
+    public void setStallTimer(TimerWheel stallTimer) {
+        this.stallTimer = stallTimer;
+    }
 }
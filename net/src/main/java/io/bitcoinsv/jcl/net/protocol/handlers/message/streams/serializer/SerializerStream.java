@@ -2,14 +2,21 @@ package io.bitcoinsv.jcl.net.protocol.handlers.message.streams.serializer;
 
 import io.bitcoinsv.jcl.net.network.PeerAddress;
 
+import io.bitcoinsv.jcl.net.network.streams.OutboundDataEvent;
+import io.bitcoinsv.jcl.net.network.streams.OutboundLane;
 import io.bitcoinsv.jcl.net.network.streams.PeerOutputStream;
 import io.bitcoinsv.jcl.net.network.streams.PeerOutputStreamImpl;
 import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent;
 import io.bitcoinsv.jcl.net.protocol.handlers.message.MessageHandlerConfig;
-import io.bitcoinsv.jcl.net.protocol.messages.VersionMsg;
+import io.bitcoinsv.jcl.net.protocol.messages.*;
 import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsg;
 import io.bitcoinsv.jcl.net.protocol.messages.common.Message;
+import io.bitcoinsv.jcl.net.protocol.messages.common.SerializedBitcoinMsg;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.*;
+import io.bitcoinsv.jcl.tools.bytes.ByteArray;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayBuffer;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayConfig;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayNIO;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
 import io.bitcoinsv.jcl.net.tools.LoggerUtil;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayWriter;
@@ -17,8 +24,11 @@ import io.bitcoinsv.jcl.tools.bytes.ByteArrayWriter;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
  * @author m.fletcher@nchain.com
  * @autor i.fernandez@nchain.com
@@ -30,10 +40,26 @@ import java.util.concurrent.ExecutorService;
  *
  * The "transform()" function is the main entry point. This function will carry out the transformation. The result
  * returned by this function will be taken by the parent class and sent to the destination of this class.
+ *
+ * The bytes are sent down the Stream tagged with the OutboundLane they must go through, based on the Message type,
+ * so time-sensitive messages are not delayed by big ones.
+ *
+ * Messages already serialized (SerializedBitcoinMsg, used when Broadcasting) are not serialized again: their frame
+ * is sent as it is.
  */
 
 public class SerializerStream extends PeerOutputStreamImpl<Message, ByteArrayReader> {
 
+    // Messages sent through the CONTROL and INVENTORY Lanes. The rest go through the BULK Lane:
+    private static final Set<String> CONTROL_MSGS = Set.of(
+            VersionMsg.MESSAGE_TYPE, VersionAckMsg.MESSAGE_TYPE, PingMsg.MESSAGE_TYPE, PongMsg.MESSAGE_TYPE,
+            RejectMsg.MESSAGE_TYPE, SendHeadersMsg.MESSAGE_TYPE, SendCompactBlockMsg.MESSAGE_TYPE,
+            FeeFilterMsg.MESSAGE_TYPE, GetAddrMsg.MESSAGE_TYPE);
+    private static final Set<String> INVENTORY_MSGS = Set.of(
+            InvMessage.MESSAGE_TYPE, GetdataMsg.MESSAGE_TYPE, NotFoundMsg.MESSAGE_TYPE, GetHeadersMsg.MESSAGE_TYPE,
+            GetHeadersEnMsg.MESSAGE_TYPE, GetBlocksMsg.MESSAGE_TYPE, HeadersMsg.MESSAGE_TYPE, HeadersEnMsg.MESSAGE_TYPE,
+            MemPoolMsg.MESSAGE_TYPE, AddrMsg.MESSAGE_TYPE, GetBlockTxnMsg.MESSAGE_TYPE);
+
     // Protocol Configuration
     private MessageHandlerConfig messageConfig;
 
@@ -69,30 +95,91 @@ public class SerializerStream extends PeerOutputStreamImpl<Message, ByteArrayRea
     public List<StreamDataEvent<ByteArrayReader>> transform(StreamDataEvent<Message> data) {
         logger.trace(this.peerAddress, "Serializing " + data.getData().getMessageType().toUpperCase() + " Message...");
 
-        SerializerContext serializerContext = SerializerContext.builder()
-                .protocolBasicConfig(messageConfig.getBasicConfig())
-                .insideVersionMsg(data.getData().equals(VersionMsg.MESSAGE_TYPE))
-                .build();
+        // The Lane the bytes are sent through is either specified in the event or based on the type of Message:
+        OutboundLane lane = (data instanceof OutboundDataEvent)
+                ? ((OutboundDataEvent<Message>) data).getLane()
+                : laneFor(data.getData());
+        boolean continued = (data instanceof OutboundDataEvent) && ((OutboundDataEvent<Message>) data).isContinued();
 
         List<StreamDataEvent<ByteArrayReader>> result;
-        if(data.getData().getMessageType().equals(BitcoinMsg.MESSAGE_TYPE)) {
+        if (data.getData().getMessageType().equals(SerializedBitcoinMsg.MESSAGE_TYPE)) {
+            // Already serialized: We just take a Reader over its bytes:
+            result = Arrays.asList(new OutboundDataEvent<>(((SerializedBitcoinMsg) data.getData()).newReader(), lane, continued));
+        } else if(data.getData().getMessageType().equals(BitcoinMsg.MESSAGE_TYPE)) {
             BitcoinMsg<?> bitcoinMsg = (BitcoinMsg<?>) data.getData();
-            result = Arrays.asList(new StreamDataEvent<>(
+            result = Arrays.asList(new OutboundDataEvent<>(
                     BitcoinMsgSerializerImpl.getInstance().serialize(
-                            serializerContext,
+                            serializerContextFor(messageConfig, data.getData()),
                             bitcoinMsg
-                    )));
+                    ), lane, continued));
         } else {
+            SerializerContext serializerContext = serializerContextFor(messageConfig, data.getData());
             MessageSerializer serializer = MsgSerializersFactory.getSerializer(data.getData().getMessageType());
             ByteArrayWriter writer = new ByteArrayWriter();
 
             serializer.serialize(serializerContext, data.getData(), writer);
-            result = Arrays.asList(new StreamDataEvent<>(writer.reader()));
+            result = Arrays.asList(new OutboundDataEvent<>(writer.reader(), lane, continued));
         }
 
         return result;
     }
 
+    /**
+     * It returns a new Serializer Context for the Message given. A new one is needed for each Message, since the
+     * Serializers might change it (see VersionMsgSerializer).
+     */
+    public static SerializerContext serializerContextFor(MessageHandlerConfig messageConfig, Message message) {
+        boolean insideVersionMsg = message.getMessageType().equals(BitcoinMsg.MESSAGE_TYPE)
+                && ((BitcoinMsg<?>) message).getBody().getMessageType().equalsIgnoreCase(VersionMsg.MESSAGE_TYPE);
+        return SerializerContext.builder()
+                .protocolBasicConfig(messageConfig.getBasicConfig())
+                .insideVersionMsg(insideVersionMsg)
+                .build();
+    }
+
+    /**
+     * It serializes a Bitcoin Message ONCE, so the result can be sent to several Peers without serializing it again
+     * for each one of them. The Message must be "shareable" (see SerializedBitcoinMsg.isShareable()).
+     *
+     * The Message is serialized straight into a single (pooled) Direct Buffer big enough for all of it, and that
+     * Buffer becomes the frame, so the bytes are not copied afterwards.
+     */
+    public static SerializedBitcoinMsg serializeShared(MessageHandlerConfig messageConfig, BitcoinMsg<?> bitcoinMsg) {
+        checkArgument(SerializedBitcoinMsg.isShareable(bitcoinMsg), "This Message can not be serialized into a shared frame");
+        // Safe cast: the frame length of a shareable Message is never over MAX_FRAME_LENGTH:
+        int frameLength = (int) SerializedBitcoinMsg.frameLengthOf(bitcoinMsg);
+        ByteArrayWriter writer = new ByteArrayWriter(new ByteArrayConfig(Math.max(frameLength, 1)));
+        BitcoinMsgSerializerImpl.getInstance().serialize(serializerContextFor(messageConfig, bitcoinMsg), bitcoinMsg, writer);
+
+        List<ByteArray> buffers = ((ByteArrayBuffer) writer.reader().getByteArray()).detachBuffers();
+        if (buffers.size() == 1 && buffers.get(0) instanceof ByteArrayNIO && buffers.get(0).size() == frameLength) {
+            return new SerializedBitcoinMsg(bitcoinMsg, ((ByteArrayNIO) buffers.get(0)).detach(), frameLength);
+        }
+
+        // The length expected was wrong, so the bytes did not fit in a single Buffer. We copy them instead:
+        ByteArrayWriter copy = new ByteArrayWriter();
+        for (ByteArray buffer : buffers) {
+            copy.write(buffer.get());
+            buffer.clear();
+        }
+        return SerializedBitcoinMsg.of(bitcoinMsg, copy.reader().getFullContentAndClose());
+    }
+
+    /**
+     * It returns the Lane a Message is sent through: Control Messages (handshake, Ping/Pong, etc) go first, then
+     * Inventory related Messages, and the rest (Txs, Blocks, etc) go last.
+     */
+    public static OutboundLane laneFor(Message message) {
+        if (message.getMessageType().equals(SerializedBitcoinMsg.MESSAGE_TYPE)) {
+            return laneFor(((SerializedBitcoinMsg) message).getBitcoinMsg());
+        }
+        if (!message.getMessageType().equals(BitcoinMsg.MESSAGE_TYPE)) return OutboundLane.BULK;
+        String msgType = ((BitcoinMsg<?>) message).getBody().getMessageType();
+        if (CONTROL_MSGS.contains(msgType)) return OutboundLane.CONTROL;
+        if (INVENTORY_MSGS.contains(msgType)) return OutboundLane.INVENTORY;
+        return OutboundLane.BULK;
+    }
+
     /**
      * An outputStream is connected to another OutpusTream, which is usually referred to as "destination". This
      * "destination" in turn might be another OututStream, so we might have a chain of outputStream linked together.
@@ -0,0 +1,235 @@
+package io.bitcoinsv.jcl.net.protocol.messages;
+
+import com.google.common.base.Preconditions;
+import io.bitcoinsv.bitcoinjsv.bitcoin.api.base.AbstractBlock;
+import io.bitcoinsv.bitcoinjsv.bitcoin.api.base.HeaderReadOnly;
+import io.bitcoinsv.bitcoinjsv.bitcoin.bean.base.HeaderBean;
+import io.bitcoinsv.bitcoinjsv.core.Sha256Hash;
+import io.bitcoinsv.bitcoinjsv.core.Utils;
+import io.bitcoinsv.jcl.tools.bytes.Sha256HashIncremental;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.IntStream;
+
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A packed list of Block Headers, as used by the "headers" message. Instead of keeping one BlockHeaderMsg (and its
+ * HashMsgs, VarIntMsg, etc) per Header, all the Headers are stored in one single byte array, one after another, in
+ * the same format they have over the wire (80 bytes each, up to the "nonce" field). The "transactionCount" field of
+ * each Header is stored apart.
+ *
+ * The Hashes of the Blocks are NOT calculated when the list is created: They are all calculated at once the first
+ * time any of them is needed, in one single pass over the array (in parallel, if the list is big enough).
+ *
+ * For compatibility, this class is also a List of BlockHeaderMsg: each BlockHeaderMsg is only created when it's
+ * requested (by "get()" or when iterating over the List), and it's not stored. If the Headers are going to be
+ * stored, "toBeans()" converts them straight into the format the BlockStore expects, without creating the
+ * BlockHeaderMsg objects.
+ *
+ * This class is immutable (the Hashes are calculated only once, and they always have the same value).
+ */
+public final class BlockHeaderList extends AbstractList<BlockHeaderMsg> implements RandomAccess, Serializable {
+
+    // Length of each Header (up to the "nonce" field, included):
+    public static final int HEADER_LENGTH = 80;
+
+    // If the list has at least this number of Headers, the Hashes are calculated in parallel:
+    public static final int PARALLEL_HASHING_THRESHOLD = 500;
+
+    // Position of each field within the Header:
+    private static final int VERSION_OFFSET     = 0;
+    private static final int PREV_HASH_OFFSET   = 4;
+    private static final int MERKLE_ROOT_OFFSET = PREV_HASH_OFFSET + HashMsg.HASH_LENGTH;
+    private static final int TIMESTAMP_OFFSET   = MERKLE_ROOT_OFFSET + HashMsg.HASH_LENGTH;
+    private static final int DIFFICULTY_OFFSET  = TIMESTAMP_OFFSET + 4;
+    private static final int NONCE_OFFSET       = DIFFICULTY_OFFSET + 4;
+
+    private final byte[] headers;
+    private final long[] transactionCounts;
+    private final long serializedLength;
+
+    // Hashes of all the Headers, one after another (NOT reversed), calculated on demand:
+    private transient volatile byte[] hashes;
+
+    private BlockHeaderList(byte[] headers, long[] transactionCounts, byte[] hashes) {
+        Preconditions.checkArgument(headers.length == transactionCounts.length * HEADER_LENGTH,
+                "Wrong Headers length: " + headers.length + " bytes for " + transactionCounts.length + " Headers");
+        this.headers = headers;
+        this.transactionCounts = transactionCounts;
+        this.hashes = hashes;
+        long length = headers.length;
+        for (long txCount : transactionCounts) {
+            length += (txCount == 0) ? 1 : VarIntMsg.builder().value(txCount).build().getLengthInBytes();
+        }
+        this.serializedLength = length;
+    }
+
+    /**
+     * It returns a List backed by the Headers given, which must be in wire format (80 bytes each). The arrays are NOT
+     * copied, so they must not be modified afterwards.
+     */
+    public static BlockHeaderList wrap(byte[] headers, long[] transactionCounts) {
+        return new BlockHeaderList(headers, transactionCounts, null);
+    }
+
+    /** It returns a packed version of the List given. If it's already packed, it's returned as it is. */
+    public static BlockHeaderList of(List<BlockHeaderMsg> blockHeaderMsgList) {
+        if (blockHeaderMsgList instanceof BlockHeaderList) return (BlockHeaderList) blockHeaderMsgList;
+        int numHeaders = blockHeaderMsgList.size();
+        byte[] headers = new byte[numHeaders * HEADER_LENGTH];
+        long[] transactionCounts = new long[numHeaders];
+
+        // If all the Headers come with their Hash, we keep them:
+        byte[] hashes = new byte[numHeaders * HashMsg.HASH_LENGTH];
+        boolean allHashesKnown = true;
+
+        for (int i = 0; i < numHeaders; i++) {
+            BlockHeaderMsg header = blockHeaderMsgList.get(i);
+            int offset = i * HEADER_LENGTH;
+            Utils.uint32ToByteArrayLE(header.getVersion(), headers, offset + VERSION_OFFSET);
+            System.arraycopy(header.getPrevBlockHash().getHashBytes(), 0, headers, offset + PREV_HASH_OFFSET, HashMsg.HASH_LENGTH);
+            System.arraycopy(header.getMerkleRoot().getHashBytes(), 0, headers, offset + MERKLE_ROOT_OFFSET, HashMsg.HASH_LENGTH);
+            Utils.uint32ToByteArrayLE(header.getCreationTimestamp(), headers, offset + TIMESTAMP_OFFSET);
+            Utils.uint32ToByteArrayLE(header.getDifficultyTarget(), headers, offset + DIFFICULTY_OFFSET);
+            Utils.uint32ToByteArrayLE(header.getNonce(), headers, offset + NONCE_OFFSET);
+            transactionCounts[i] = header.getTransactionCount().getValue();
+
+            if (header.getHash() == null) allHashesKnown = false;
+            else if (allHashesKnown) System.arraycopy(header.getHash().getReversedBytes(), 0, hashes, i * HashMsg.HASH_LENGTH, HashMsg.HASH_LENGTH);
+        }
+        return new BlockHeaderList(headers, transactionCounts, (allHashesKnown) ? hashes : null);
+    }
+
+    // It calculates the Hash of the Header given, and stores it (NOT reversed) in the array given:
+    private void calculateHash(int index, byte[] result) {
+        Sha256HashIncremental digest = new Sha256HashIncremental();
+        digest.add(headers, index * HEADER_LENGTH, HEADER_LENGTH);
+        System.arraycopy(digest.hashTwice(), 0, result, index * HashMsg.HASH_LENGTH, HashMsg.HASH_LENGTH);
+    }
+
+    // It returns the Hashes of all the Headers, calculating them the first time:
+    private byte[] getHashes() {
+        byte[] result = this.hashes;
+        if (result == null) {
+            byte[] newHashes = new byte[size() * HashMsg.HASH_LENGTH];
+            IntStream indexes = IntStream.range(0, size());
+            if (size() >= PARALLEL_HASHING_THRESHOLD) indexes = indexes.parallel();
+            indexes.forEach(i -> calculateHash(i, newHashes));
+            result = newHashes;
+            this.hashes = result;
+        }
+        return result;
+    }
+
+    /** It calculates the Hashes of all the Headers, if they have not been calculated yet */
+    public BlockHeaderList calculateHashes() {
+        getHashes();
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return transactionCounts.length;
+    }
+
+    /** It returns the number of bytes these Headers take once serialized (without including the "count" field) */
+    public long getSerializedLength() {
+        return serializedLength;
+    }
+
+    /** It returns the Hash of the Header given, in human-readable format (reversed) */
+    public Sha256Hash getHash(int index) {
+        Preconditions.checkElementIndex(index, size());
+        int offset = index * HashMsg.HASH_LENGTH;
+        return Sha256Hash.wrapReversed(Arrays.copyOfRange(getHashes(), offset, offset + HashMsg.HASH_LENGTH));
+    }
+
+    public long getVersion(int index)               { return readUint32(index, VERSION_OFFSET); }
+    public long getCreationTimestamp(int index)     { return readUint32(index, TIMESTAMP_OFFSET); }
+    public long getDifficultyTarget(int index)      { return readUint32(index, DIFFICULTY_OFFSET); }
+    public long getNonce(int index)                 { return readUint32(index, NONCE_OFFSET); }
+    public long getTransactionCount(int index)      { return transactionCounts[index]; }
+    public byte[] getPrevBlockHash(int index)       { return readHash(index, PREV_HASH_OFFSET); }
+    public byte[] getMerkleRoot(int index)          { return readHash(index, MERKLE_ROOT_OFFSET); }
+
+    private long readUint32(int index, int fieldOffset) {
+        Preconditions.checkElementIndex(index, size());
+        return Utils.readUint32(headers, index * HEADER_LENGTH + fieldOffset);
+    }
+
+    private byte[] readHash(int index, int fieldOffset) {
+        Preconditions.checkElementIndex(index, size());
+        int offset = index * HEADER_LENGTH + fieldOffset;
+        return Arrays.copyOfRange(headers, offset, offset + HashMsg.HASH_LENGTH);
+    }
+
+    /**
+     * It returns the internal storage of the Headers, in wire format (80 bytes each, without the "transactionCount"
+     * field). It's meant to be used by the Serializers, and it must NOT be modified.
+     */
+    public byte[] getHeaders() {
+        return this.headers;
+    }
+
+    /** It returns the Header given, converted into a Domain Class (as the BlockStore expects) */
+    public HeaderReadOnly toBean(int index) {
+        HeaderBean result = new HeaderBean((AbstractBlock) null);
+        result.setTime(getCreationTimestamp(index));
+        result.setDifficultyTarget(getDifficultyTarget(index));
+        result.setNonce(getNonce(index));
+        result.setPrevBlockHash(Sha256Hash.wrapReversed(getPrevBlockHash(index)));
+        result.setVersion(getVersion(index));
+        result.setMerkleRoot(Sha256Hash.wrapReversed(getMerkleRoot(index)));
+        result.setHash(getHash(index));
+        return result;
+    }
+
+    /**
+     * It returns all the Headers converted into Domain Classes, ready to be saved by the BlockStore. The Hashes are
+     * all calculated at once before the conversion.
+     */
+    public List<HeaderReadOnly> toBeans() {
+        calculateHashes();
+        List<HeaderReadOnly> result = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) result.add(toBean(i));
+        return result;
+    }
+
+    /** It returns the Header given as a BlockHeaderMsg. A new instance is created each time */
+    @Override
+    public BlockHeaderMsg get(int index) {
+        return BlockHeaderMsg.builder()
+                .hash(getHash(index))
+                .version(getVersion(index))
+                .prevBlockHash(HashMsg.builder().hash(getPrevBlockHash(index)).build())
+                .merkleRoot(HashMsg.builder().hash(getMerkleRoot(index)).build())
+                .creationTimestamp(getCreationTimestamp(index))
+                .difficultyTarget(getDifficultyTarget(index))
+                .nonce(getNonce(index))
+                .transactionCount(getTransactionCount(index))
+                .build();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof BlockHeaderList) {
+            BlockHeaderList other = (BlockHeaderList) obj;
+            return Arrays.equals(this.headers, other.headers)
+                    && Arrays.equals(this.transactionCounts, other.transactionCounts);
+        }
+        return super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -2,7 +2,6 @@ package io.bitcoinsv.jcl.net.protocol.messages;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableList;
 import io.bitcoinsv.jcl.net.protocol.messages.common.BodyMessage;
 
 import java.io.Serializable;
@@ -23,6 +22,8 @@ import java.util.List;
  *
  * - field: "inv_vect[]" (36*count) array of inventory vectors
  *   Inventory vectors.
+ *
+ * The Inventory vectors are stored packed (see InventoryVectorList).
  */
 public final class GetdataMsg extends BodyMessage implements Serializable {
     private static final long MAX_ADDRESSES = 50000;
@@ -30,7 +31,7 @@ public final class GetdataMsg extends BodyMessage implements Serializable {
 
     private final VarIntMsg count;
 
-    private final ImmutableList<InventoryVectorMsg> invVectorList;
+    private final InventoryVectorList invVectorList;
 
     /**
      * Creates the InvMessage Object.Use the corresponding byteArray to create the instance.
@@ -38,7 +39,7 @@ public final class GetdataMsg extends BodyMessage implements Serializable {
     protected GetdataMsg(List<InventoryVectorMsg> invVectorList,
                          byte[] extraBytes, long checksum) {
         super(extraBytes, checksum);
-        this.invVectorList = ImmutableList.copyOf(invVectorList);
+        this.invVectorList = InventoryVectorList.of(invVectorList);
         //count value is calculated from the inv vector list
         long count =  this.invVectorList.size();
         this.count =  VarIntMsg.builder().value(count).build();
@@ -47,11 +48,7 @@ public final class GetdataMsg extends BodyMessage implements Serializable {
 
     @Override
     protected long calculateLength() {
-        long length  = count.getLengthInBytes();
-        for (InventoryVectorMsg invMsg : invVectorList) {
-            length += invMsg.getLengthInBytes();
-        }
-        return length;
+        return count.getLengthInBytes() + invVectorList.getRecords().length;
     }
 
     @Override
@@ -62,7 +59,8 @@ public final class GetdataMsg extends BodyMessage implements Serializable {
     @Override
     public String getMessageType()                              { return MESSAGE_TYPE; }
     public VarIntMsg getCount()                                 { return this.count; }
-    public ImmutableList<InventoryVectorMsg> getInvVectorList() { return this.invVectorList; }
+    public List<InventoryVectorMsg> getInvVectorList()          { return this.invVectorList; }
+    public InventoryVectorList getInventory()                   { return this.invVectorList; }
 
     @Override
     public String toString() {
@@ -2,6 +2,7 @@ package io.bitcoinsv.jcl.net.protocol.messages;
 
 import com.google.common.base.Objects;
 import io.bitcoinsv.jcl.net.protocol.messages.common.Message;
+import io.bitcoinsv.jcl.net.protocol.messages.common.MsgCommands;
 
 import java.io.Serializable;
 
@@ -54,6 +55,9 @@ public final class HeaderMsg extends Message implements Serializable {
     public static final long MESSAGE_LENGTH = 24;           // for protocol < 70016:
     public static final long MESSAGE_LENGTH_EXT = 44;       // for protocol >= 70016 (support for >6GB messages)
 
+    // Position of the "checksum" field within the serialized Header (after magic, command and length):
+    public static final long CHECKSUM_OFFSET = 20;
+
     private final long magic;
     private final String command;
     private final long length;
@@ -61,25 +65,33 @@ public final class HeaderMsg extends Message implements Serializable {
 
     // Extra-fields to support >6GB messages (only for protocol >= 70016):
     public static final String EXT_COMMAND = "extmsg"; // value in "command" field for extended messages
+    public static final int EXT_COMMAND_ID = MsgCommands.register(EXT_COMMAND);
     public static final long EXT_LENGTH = 0xFFFFFFFF;
     private final String extCommand;
     private final long extLength;
 
+    // Ids of the "command" and "extCommand" fields (see MsgCommands). If the Header comes from the wire, they've
+    // been already resolved by the Deserializer, otherwise they are resolved here, only once:
+    private final int commandId;
+    private final int extCommandId;
+
     // Constructor. to create instance  of this class, use the Builder
-    protected HeaderMsg(long magic, String command,
+    protected HeaderMsg(long magic, String command, Integer commandId,
                         long length, long checksum,
-                        String extCommand, long extLength) {
+                        String extCommand, Integer extCommandId, long extLength) {
         this.magic = magic;
         this.command = command;
+        this.commandId = (commandId != null) ? commandId : MsgCommands.idOf(command);
         this.length = length;
         this.checksum = checksum;
         this.extCommand = extCommand;
+        this.extCommandId = (extCommandId != null) ? extCommandId : MsgCommands.idOf(extCommand);
         this.extLength = extLength;
         init();
     }
 
     public long calculateLength() {
-        long lengthInBytes  = (this.command.equalsIgnoreCase(EXT_COMMAND)) ? MESSAGE_LENGTH_EXT : MESSAGE_LENGTH;
+        long lengthInBytes  = (isExtendedMsg()) ? MESSAGE_LENGTH_EXT : MESSAGE_LENGTH;
         return lengthInBytes;
     }
 
@@ -95,21 +107,27 @@ public final class HeaderMsg extends Message implements Serializable {
     public long getExtLength()      { return this.extLength;}
 
     // Convenience:
-    public boolean isExtendedMsg() { return command.equalsIgnoreCase(EXT_COMMAND);}
+    public boolean isExtendedMsg() { return commandId == EXT_COMMAND_ID;}
 
     /**
      * It returns the type of message, which has been historically stored in the "command" field of the header.
      * After 70016, the type of the message might be stored in the "command" of "extCommand" field depending on its
      * size, this method retrieves its value in any case.
      */
-    public String getMsgCommand() { return (command.equalsIgnoreCase(EXT_COMMAND)) ? extCommand : command;}
+    public String getMsgCommand() { return (isExtendedMsg()) ? extCommand : command;}
+
+    /**
+     * It returns the id of the type of message (see MsgCommands), or MsgCommands.UNKNOWN if the type of message was
+     * not registered when this Header was created.
+     */
+    public int getMsgCommandId() { return (isExtendedMsg()) ? extCommandId : commandId;}
 
     /**
      * It returns the length of the payload, which has been historically stored in the "length" field of the header.
      * After 70016, the length might be stored in the "length" of "extLength" field depending on its
      * size, this method retrieves its value in any case.
      */
-    public long getMsgLength() { return (command.equalsIgnoreCase(EXT_COMMAND)) ? extLength : length;}
+    public long getMsgLength() { return (isExtendedMsg()) ? extLength : length;}
 
     @Override
     public String toString() {
@@ -141,10 +159,10 @@ public final class HeaderMsg extends Message implements Serializable {
     public HeaderMsgBuilder toBuilder() {
         return new HeaderMsgBuilder()
                     .magic(this.magic)
-                    .command(this.command)
+                    .command(this.command, this.commandId)
                     .length(this.length)
                     .checksum(this.checksum)
-                    .extCommand(this.extCommand)
+                    .extCommand(this.extCommand, this.extCommandId)
                     .extLength(this.extLength);
     }
 
@@ -154,9 +172,11 @@ public final class HeaderMsg extends Message implements Serializable {
     public static class HeaderMsgBuilder {
         private long magic;
         private String command;
+        private Integer commandId;
         private long length;
         private long checksum;
         private String extCommand;
+        private Integer extCommandId;
         private long extLength;
 
         public HeaderMsgBuilder() {}
@@ -168,6 +188,14 @@ public final class HeaderMsg extends Message implements Serializable {
 
         public HeaderMsg.HeaderMsgBuilder command(String command) {
             this.command = command;
+            this.commandId = null;
+            return this;
+        }
+
+        /** The Command and its id (see MsgCommands), if it's been resolved already */
+        public HeaderMsg.HeaderMsgBuilder command(String command, int commandId) {
+            this.command = command;
+            this.commandId = commandId;
             return this;
         }
 
@@ -183,6 +211,14 @@ public final class HeaderMsg extends Message implements Serializable {
 
         public HeaderMsg.HeaderMsgBuilder extCommand(String extCommand) {
             this.extCommand = extCommand;
+            this.extCommandId = null;
+            return this;
+        }
+
+        /** The extended Command and its id (see MsgCommands), if it's been resolved already */
+        public HeaderMsg.HeaderMsgBuilder extCommand(String extCommand, int extCommandId) {
+            this.extCommand = extCommand;
+            this.extCommandId = extCommandId;
             return this;
         }
 
@@ -192,7 +228,7 @@ public final class HeaderMsg extends Message implements Serializable {
         }
 
         public HeaderMsg build() {
-            return new HeaderMsg(magic, command, length, checksum, extCommand, extLength);
+            return new HeaderMsg(magic, command, commandId, length, checksum, extCommand, extCommandId, extLength);
         }
     }
 }
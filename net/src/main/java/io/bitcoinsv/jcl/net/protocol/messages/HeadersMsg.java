@@ -6,7 +6,6 @@ import io.bitcoinsv.jcl.net.protocol.messages.common.BodyMessage;
 
 import java.io.Serializable;
 import java.util.List;
-import java.util.stream.Collectors;
 
 
 /**
@@ -23,14 +22,16 @@ import java.util.stream.Collectors;
  * - field: "block_header" (81+ * MAX_ADDRESS bytes) block_header[]
  *   Array of header messages.
  *
+ * The Headers are stored packed (see BlockHeaderList).
  */
 public final class HeadersMsg extends BodyMessage implements Serializable {
-    private static final long MAX_ADDRESSES = 2000;
+    public static final int MAX_HEADERS = 2000;
+    private static final long MAX_ADDRESSES = MAX_HEADERS;
     public static final String MESSAGE_TYPE = "headers";
 
     private final VarIntMsg count;
 
-    private final List<BlockHeaderMsg> blockHeaderMsgList;
+    private final BlockHeaderList blockHeaderMsgList;
 
     /**
      * Creates the HeadersMsg Object. Use the corresponding byteArray to create the instance.
@@ -40,14 +41,14 @@ public final class HeadersMsg extends BodyMessage implements Serializable {
     protected HeadersMsg(List<BlockHeaderMsg> blockHeaderMsgList,
                          byte[] extraBytes, long checksum) {
         super(extraBytes, checksum);
-        this.blockHeaderMsgList = blockHeaderMsgList.stream().collect(Collectors.toUnmodifiableList());
+        this.blockHeaderMsgList = BlockHeaderList.of(blockHeaderMsgList);
         this.count = VarIntMsg.builder().value(blockHeaderMsgList.size()).build();
         init();
     }
 
     @Override
     protected long calculateLength() {
-        long length = count.getLengthInBytes() + blockHeaderMsgList.stream().mapToLong(h -> h.getLengthInBytes()).sum();
+        long length = count.getLengthInBytes() + blockHeaderMsgList.getSerializedLength();
         return length;
     }
 
@@ -61,6 +62,7 @@ public final class HeadersMsg extends BodyMessage implements Serializable {
     public String getMessageType()                      { return MESSAGE_TYPE; }
     public VarIntMsg getCount()                         { return this.count; }
     public List<BlockHeaderMsg> getBlockHeaderMsgList() { return this.blockHeaderMsgList; }
+    public BlockHeaderList getBlockHeaders()            { return this.blockHeaderMsgList; }
 
     @Override
     public int hashCode() {
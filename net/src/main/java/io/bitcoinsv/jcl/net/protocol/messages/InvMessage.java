@@ -6,7 +6,6 @@ import io.bitcoinsv.jcl.net.protocol.messages.common.BodyMessage;
 
 import java.io.Serializable;
 import java.util.List;
-import java.util.stream.Collectors;
 
 
 /**
@@ -23,6 +22,7 @@ import java.util.stream.Collectors;
  * - field: "inv_vect[]" (36*count) array of inventory vectors
  *   Inventory vectors.
  *
+ * The Inventory vectors are stored packed (see InventoryVectorList).
  */
 public final class InvMessage extends BodyMessage implements Serializable {
     private static final long MAX_ADDRESSES = 50000;
@@ -30,7 +30,7 @@ public final class InvMessage extends BodyMessage implements Serializable {
 
     private VarIntMsg count;
 
-    private List<InventoryVectorMsg> invVectorList;
+    private InventoryVectorList invVectorList;
 
     /**
      * Creates the InvMessage Object.Use the corresponding byteArray to create the instance.
@@ -38,7 +38,7 @@ public final class InvMessage extends BodyMessage implements Serializable {
     protected InvMessage(List<InventoryVectorMsg> invVectorMsgList,
                          byte[] extraBytes, long checksum) {
         super(extraBytes, checksum);
-        this.invVectorList = invVectorMsgList.stream().collect(Collectors.toUnmodifiableList());
+        this.invVectorList = InventoryVectorList.of(invVectorMsgList);
         this.count = VarIntMsg.builder().value(invVectorMsgList.size()).build();
         init();
     }
@@ -59,6 +59,7 @@ public final class InvMessage extends BodyMessage implements Serializable {
     public String getMessageType()                      { return MESSAGE_TYPE; }
     public VarIntMsg getCount()                         { return this.count; }
     public List<InventoryVectorMsg> getInvVectorList()  { return this.invVectorList; }
+    public InventoryVectorList getInventory()           { return this.invVectorList; }
 
     @Override
     public int hashCode() {
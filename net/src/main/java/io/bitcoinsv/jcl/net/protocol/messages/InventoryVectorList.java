@@ -0,0 +1,195 @@
+package io.bitcoinsv.jcl.net.protocol.messages;
+
+import com.google.common.base.Preconditions;
+import io.bitcoinsv.bitcoinjsv.core.Utils;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A packed list of Inventory Vectors, as used by the "inv", "getdata" and "notfound" messages. Instead of keeping
+ * one InventoryVectorMsg (and its HashMsg and byte[]) per entry, all the entries are stored in one single byte
+ * array, one record after another, in the same format they have over the wire:
+ *
+ *  - field: "type" (4 bytes) uint32, little endian
+ *  - field: "hash" (32 bytes)
+ *
+ * So an INV with 50.000 entries takes only one array, instead of more than 150.000 objects.
+ *
+ * The entries can be iterated over and looked up without creating any object (see "getTypeCode()",
+ * "hashEquals()", "indexOf()" and "forEachRecord()"). For compatibility, this class is also a List of
+ * InventoryVectorMsg: each InventoryVectorMsg is only created when it's requested (by "get()" or when iterating
+ * over the List), and it's not stored.
+ *
+ * This class is immutable.
+ */
+public final class InventoryVectorList extends AbstractList<InventoryVectorMsg> implements RandomAccess, Serializable {
+
+    // Length of each record:
+    public static final int RECORD_LENGTH = (int) InventoryVectorMsg.VECTOR_TYPE_LENGTH + HashMsg.HASH_LENGTH;
+
+    // Max number of entries allowed in one message:
+    public static final int MAX_SIZE = 50_000;
+
+    public static final InventoryVectorList EMPTY = new InventoryVectorList(new byte[0]);
+
+    private final byte[] records;
+
+    /**
+     * Callback used to go through the entries without creating any object. The "records" array given is the
+     * internal storage of this List, so it must NOT be modified.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(int index, int typeCode, byte[] records, int hashOffset);
+    }
+
+    /**
+     * Condition checked on each entry, without creating any object (see "filter()"). The "records" array given is the
+     * internal storage of this List, so it must NOT be modified.
+     */
+    @FunctionalInterface
+    public interface RecordPredicate {
+        boolean test(int typeCode, byte[] records, int hashOffset);
+    }
+
+    private InventoryVectorList(byte[] records) {
+        this.records = records;
+    }
+
+    /**
+     * It returns a List backed by the records given, which must be in wire format. The array is NOT copied, so
+     * it must not be modified afterwards.
+     */
+    public static InventoryVectorList wrap(byte[] records) {
+        Preconditions.checkArgument(records.length % RECORD_LENGTH == 0,
+                "Wrong Inventory length: " + records.length + " is not a multiple of " + RECORD_LENGTH);
+        return (records.length == 0) ? EMPTY : new InventoryVectorList(records);
+    }
+
+    /** It returns a packed version of the List given. If it's already packed, it's returned as it is. */
+    public static InventoryVectorList of(List<InventoryVectorMsg> invVectorList) {
+        if (invVectorList instanceof InventoryVectorList) return (InventoryVectorList) invVectorList;
+        byte[] records = new byte[invVectorList.size() * RECORD_LENGTH];
+        int offset = 0;
+        for (InventoryVectorMsg invVector : invVectorList) {
+            Utils.uint32ToByteArrayLE(invVector.getType().getValue(), records, offset);
+            System.arraycopy(invVector.getHashMsg().getHashBytes(), 0, records, offset + (int) InventoryVectorMsg.VECTOR_TYPE_LENGTH, HashMsg.HASH_LENGTH);
+            offset += RECORD_LENGTH;
+        }
+        return wrap(records);
+    }
+
+    // Position of the Hash of the entry given:
+    private int hashOffset(int index) {
+        return index * RECORD_LENGTH + (int) InventoryVectorMsg.VECTOR_TYPE_LENGTH;
+    }
+
+    @Override
+    public int size() {
+        return records.length / RECORD_LENGTH;
+    }
+
+    /** It returns the raw "type" field of the entry given */
+    public int getTypeCode(int index) {
+        Preconditions.checkElementIndex(index, size());
+        return (int) Utils.readUint32(records, index * RECORD_LENGTH);
+    }
+
+    public InventoryVectorMsg.VectorType getType(int index) {
+        return InventoryVectorMsg.VectorType.fromCode(getTypeCode(index));
+    }
+
+    /** It returns a copy of the Hash of the entry given */
+    public byte[] getHash(int index) {
+        Preconditions.checkElementIndex(index, size());
+        int offset = hashOffset(index);
+        return Arrays.copyOfRange(records, offset, offset + HashMsg.HASH_LENGTH);
+    }
+
+    /** Indicates if the Hash of the entry given is the one given, without copying it */
+    public boolean hashEquals(int index, byte[] hash) {
+        Preconditions.checkElementIndex(index, size());
+        int offset = hashOffset(index);
+        return Arrays.equals(records, offset, offset + HashMsg.HASH_LENGTH, hash, 0, hash.length);
+    }
+
+    /** It returns the position of the first entry with the type and Hash given, or -1 if there is none */
+    public int indexOf(InventoryVectorMsg.VectorType type, byte[] hash) {
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            if (hashEquals(i, hash) && getTypeCode(i) == type.getValue()) return i;
+        }
+        return -1;
+    }
+
+    /** It goes through all the entries, in order, without creating any object */
+    public void forEachRecord(RecordConsumer consumer) {
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            consumer.accept(i, (int) Utils.readUint32(records, i * RECORD_LENGTH), records, hashOffset(i));
+        }
+    }
+
+    /**
+     * It returns a List with only the entries that match the condition given, in the same order. The condition is
+     * checked exactly once per entry, in order, so it can have side effects. If all the entries match, this same List
+     * is returned (nothing is copied).
+     */
+    public InventoryVectorList filter(RecordPredicate predicate) {
+        int size = size();
+        byte[] result = null;
+        int resultLength = 0;
+        for (int i = 0; i < size; i++) {
+            int offset = i * RECORD_LENGTH;
+            boolean keep = predicate.test((int) Utils.readUint32(records, offset), records, hashOffset(i));
+            if (!keep && result == null) {
+                // First entry left out: From now on, the entries kept are copied:
+                result = new byte[records.length - RECORD_LENGTH];
+                System.arraycopy(records, 0, result, 0, offset);
+                resultLength = offset;
+            } else if (keep && result != null) {
+                System.arraycopy(records, offset, result, resultLength, RECORD_LENGTH);
+                resultLength += RECORD_LENGTH;
+            }
+        }
+        return (result == null) ? this : wrap(Arrays.copyOf(result, resultLength));
+    }
+
+    /**
+     * It returns the internal storage of this List, in wire format. It's meant to be used by the Serializers, and
+     * it must NOT be modified.
+     */
+    public byte[] getRecords() {
+        return this.records;
+    }
+
+    /** It returns the entry given as an InventoryVectorMsg. A new instance is created each time */
+    @Override
+    public InventoryVectorMsg get(int index) {
+        return InventoryVectorMsg.builder()
+                .type(getType(index))
+                .hashMsg(HashMsg.builder().hash(getHash(index)).build())
+                .build();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof InventoryVectorList) {
+            return Arrays.equals(this.records, ((InventoryVectorList) obj).records);
+        }
+        return super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
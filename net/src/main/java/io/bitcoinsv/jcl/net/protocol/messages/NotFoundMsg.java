@@ -6,13 +6,14 @@ import io.bitcoinsv.jcl.net.protocol.messages.common.BodyMessage;
 
 import java.io.Serializable;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * @author m.jose@nchain.com
  * Copyright (c) 2018-2020 nChain Ltd
  *
  * notfound is a response to a getdata, sent if any requested data items could not be relayed.
+ *
+ * The Inventory vectors are stored packed (see InventoryVectorList).
  */
 public final class NotFoundMsg extends BodyMessage implements Serializable {
 
@@ -20,7 +21,7 @@ public final class NotFoundMsg extends BodyMessage implements Serializable {
     private static final long MAX_ADDRESSES = 50000;
 
     private final VarIntMsg count;
-    private final List<InventoryVectorMsg> invVectorList;
+    private final InventoryVectorList invVectorList;
 
 
     /**
@@ -30,7 +31,7 @@ public final class NotFoundMsg extends BodyMessage implements Serializable {
                           byte[] extraBytes, long checksum) {
         super(extraBytes, checksum);
         this.count = count;
-        this.invVectorList = invVectorMsgList.stream().collect(Collectors.toUnmodifiableList());
+        this.invVectorList = InventoryVectorList.of(invVectorMsgList);
         init();
     }
 
@@ -50,6 +51,7 @@ public final class NotFoundMsg extends BodyMessage implements Serializable {
     public String getMessageType()                      { return MESSAGE_TYPE; }
     public VarIntMsg getCount()                         { return this.count; }
     public List<InventoryVectorMsg> getInvVectorList()  { return this.invVectorList; }
+    public InventoryVectorList getInventory()           { return this.invVectorList; }
 
     @Override
     public String toString() {
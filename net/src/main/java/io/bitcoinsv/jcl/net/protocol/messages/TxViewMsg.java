@@ -0,0 +1,281 @@
+package io.bitcoinsv.jcl.net.protocol.messages;
+
+
+import com.google.common.base.Objects;
+import io.bitcoinsv.bitcoinjsv.core.Sha256Hash;
+import io.bitcoinsv.bitcoinjsv.core.Utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A TxView is a Message containing a Tx in Raw format (like the RawTxMsg), that can also be read as a regular Tx
+ * without deserializing it completely: The first time we access its Inputs or Outputs, the positions of all of them
+ * within the raw content are calculated and stored in an Index, and from that moment on each Input or Output is
+ * only decoded when it's requested. The fields that don't need the Index (version, hash) are read directly from the
+ * content.
+ *
+ * This is useful when we only need a few pieces of the Tx (its hash and some outputs, for instance), since we save
+ * the creation of all the TxInputMsg, TxOutputMsg, etc, objects that a full Deserialization involves. If we need
+ * the whole Tx, we can convert it into a TxMsg by calling "toTxMsg()".
+ *
+ * Structure of the Message: Same as TxMsg.
+ */
+public final class TxViewMsg extends RawMsg implements Serializable {
+
+    public static final String MESSAGE_TYPE = "tx";
+
+    // Fixed-size fields of the Tx:
+    private static final int VERSION_LENGTH     = 4;
+    private static final int OUTPOINT_LENGTH    = HashMsg.HASH_LENGTH + 4;
+    private static final int SEQUENCE_LENGTH    = 4;
+    private static final int VALUE_LENGTH       = 8;
+    private static final int LOCKTIME_LENGTH    = 4;
+
+    // Tx Hash in readable format (reversed). Calculated on demand:
+    private Sha256Hash hash;
+
+    // Positions of the Inputs and Outputs within the content. Calculated on demand:
+    private transient volatile TxIndex index;
+
+    /**
+     * Positions of the Inputs and Outputs within the content. Each array contains one more element than the number
+     * of Inputs/Outputs, so the position where each one ends is always the position where the next one starts.
+     */
+    private static class TxIndex {
+        private final int[] inputOffsets;
+        private final int[] outputOffsets;
+
+        TxIndex(int[] inputOffsets, int[] outputOffsets) {
+            this.inputOffsets = inputOffsets;
+            this.outputOffsets = outputOffsets;
+        }
+    }
+
+    public TxViewMsg(byte[] content, Sha256Hash hash, byte[] extraBytes, long checksum) {
+        super(content, extraBytes, checksum);
+        this.hash = hash;
+        init();
+    }
+
+    public TxViewMsg(byte[] content, long checksum) {
+        this(content, null, Utils.EMPTY_BYTE_ARRAY, checksum);
+    }
+
+    // It reads a VarInt from the content, at the position given:
+    private long readVarInt(int offset) {
+        int first = content[offset] & 0xFF;
+        if (first < 0xFD) return first;
+        if (first == 0xFD) return Utils.readUint16(content, offset + 1);
+        if (first == 0xFE) return Utils.readUint32(content, offset + 1);
+        return Utils.readInt64(content, offset + 1);
+    }
+
+    // It returns the length of the VarInt at the position given:
+    private int varIntLength(int offset) {
+        int first = content[offset] & 0xFF;
+        return (first < 0xFD) ? 1 : (first == 0xFD) ? 3 : (first == 0xFE) ? 5 : 9;
+    }
+
+    // It reads a VarInt used as the number of items or bytes that come after it, checking it makes sense:
+    private int readLength(int offset) {
+        long value = readVarInt(offset);
+        if (value < 0 || value > content.length) {
+            throw new IllegalStateException("Malformed Tx: wrong length (" + value + ") at position " + offset);
+        }
+        return (int) value;
+    }
+
+    // It goes through the whole content once and calculates the position of each Input and Output:
+    private TxIndex buildIndex() {
+        try {
+            int offset = VERSION_LENGTH;
+
+            int numInputs = readLength(offset);
+            offset += varIntLength(offset);
+            int[] inputOffsets = new int[numInputs + 1];
+            for (int i = 0; i < numInputs; i++) {
+                inputOffsets[i] = offset;
+                offset += OUTPOINT_LENGTH;
+                int scriptLength = readLength(offset);
+                offset += varIntLength(offset) + scriptLength + SEQUENCE_LENGTH;
+            }
+            inputOffsets[numInputs] = offset;
+
+            int numOutputs = readLength(offset);
+            offset += varIntLength(offset);
+            int[] outputOffsets = new int[numOutputs + 1];
+            for (int i = 0; i < numOutputs; i++) {
+                outputOffsets[i] = offset;
+                offset += VALUE_LENGTH;
+                int scriptLength = readLength(offset);
+                offset += varIntLength(offset) + scriptLength;
+            }
+            outputOffsets[numOutputs] = offset;
+
+            if (offset + LOCKTIME_LENGTH != content.length) {
+                throw new IllegalStateException("Malformed Tx: " + content.length + " bytes, expected " + (offset + LOCKTIME_LENGTH));
+            }
+            return new TxIndex(inputOffsets, outputOffsets);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalStateException("Malformed Tx: not enough bytes", e);
+        }
+    }
+
+    // It returns the Index, building it the first time:
+    private TxIndex getIndex() {
+        TxIndex result = this.index;
+        if (result == null) {
+            result = buildIndex();
+            this.index = result;
+        }
+        return result;
+    }
+
+    // Calculate the Hash...
+    private void calculateHash() {
+        this.hash = Sha256Hash.wrapReversed(Sha256Hash.hashTwice(content));
+    }
+
+    @Override
+    public String getMessageType() { return MESSAGE_TYPE; }
+
+    @Override
+    protected long calculateLength() {
+        return super.content.length;
+    }
+
+    @Override
+    protected void validateMessage() {}
+
+    public Sha256Hash getHash() {
+        if (this.hash == null) {
+            calculateHash();
+        }
+        return this.hash;
+    }
+
+    public long getVersion()        { return Utils.readUint32(content, 0); }
+    public int getInputCount()      { return getIndex().inputOffsets.length - 1; }
+    public int getOutputCount()     { return getIndex().outputOffsets.length - 1; }
+    public long getLockTime()       { return Utils.readUint32(content, content.length - LOCKTIME_LENGTH); }
+
+    /** It decodes and returns the Input given */
+    public TxInputMsg getInput(int inputIndex) {
+        int offset = getIndex().inputOffsets[inputIndex];
+        HashMsg prevTxHash = HashMsg.builder().hash(Arrays.copyOfRange(content, offset, offset + HashMsg.HASH_LENGTH)).build();
+        long prevTxIndex = Utils.readUint32(content, offset + HashMsg.HASH_LENGTH);
+        offset += OUTPOINT_LENGTH;
+        int scriptLength = (int) readVarInt(offset);
+        offset += varIntLength(offset);
+        byte[] script = Arrays.copyOfRange(content, offset, offset + scriptLength);
+        long sequence = Utils.readUint32(content, offset + scriptLength);
+        return TxInputMsg.builder()
+                .pre_outpoint(TxOutPointMsg.builder().hash(prevTxHash).index(prevTxIndex).build())
+                .signature_script(script)
+                .sequence(sequence)
+                .build();
+    }
+
+    /** It returns the Value of the Output given, without decoding the rest of it */
+    public long getOutputValue(int outputIndex) {
+        return Utils.readInt64(content, getIndex().outputOffsets[outputIndex]);
+    }
+
+    /** It decodes and returns the Output given */
+    public TxOutputMsg getOutput(int outputIndex) {
+        int offset = getIndex().outputOffsets[outputIndex];
+        long value = Utils.readInt64(content, offset);
+        offset += VALUE_LENGTH;
+        int scriptLength = (int) readVarInt(offset);
+        offset += varIntLength(offset);
+        byte[] script = Arrays.copyOfRange(content, offset, offset + scriptLength);
+        return TxOutputMsg.builder().txValue(value).pk_script(script).build();
+    }
+
+    /** It decodes and returns all the Inputs */
+    public List<TxInputMsg> getInputs() {
+        int numInputs = getInputCount();
+        List<TxInputMsg> result = new ArrayList<>(numInputs);
+        for (int i = 0; i < numInputs; i++) result.add(getInput(i));
+        return result;
+    }
+
+    /** It decodes and returns all the Outputs */
+    public List<TxOutputMsg> getOutputs() {
+        int numOutputs = getOutputCount();
+        List<TxOutputMsg> result = new ArrayList<>(numOutputs);
+        for (int i = 0; i < numOutputs; i++) result.add(getOutput(i));
+        return result;
+    }
+
+    /** It decodes the whole Tx and returns it as a regular TxMsg (including its Hash) */
+    public TxMsg toTxMsg() {
+        return new TxMsg.TxMsgBuilder(super.extraBytes, super.checksum)
+                .hash(Optional.of(getHash()))
+                .version(getVersion())
+                .tx_in(getInputs())
+                .tx_out(getOutputs())
+                .lockTime(getLockTime())
+                .build();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(super.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!super.equals(obj))           { return false; }
+        if (obj.getClass() != getClass()) { return false; }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "TxViewMsg(hash=" + this.hash + ")";
+    }
+
+    @Override
+    public TxViewMsgBuilder toBuilder() {
+        return new TxViewMsgBuilder(super.extraBytes, super.checksum)
+                    .content(this.content)
+                    .hash(this.hash);
+    }
+
+    public static TxViewMsgBuilder builder() {
+        return new TxViewMsgBuilder();
+    }
+
+    /**
+     * Builder
+     */
+    public static class TxViewMsgBuilder extends BodyMessageBuilder {
+        private byte[] content;
+        private Sha256Hash hash;
+
+        public TxViewMsgBuilder() {}
+        public TxViewMsgBuilder(byte[] extraBytes, long checksum) { super(extraBytes, checksum);}
+        public TxViewMsgBuilder content(byte[] content) {
+            this.content = content;
+            return this;
+        }
+
+        public TxViewMsgBuilder hash(Sha256Hash hash) {
+            this.hash = hash;
+            return this;
+        }
+
+        public TxViewMsg build() {
+            return new TxViewMsg(content, hash, super.extraBytes, super.checksum);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.bitcoinsv.jcl.net.protocol.messages.common;
+
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A registry of all the Message Commands (Message Types) known, each one of them identified by a compact integer
+ * id. The id of a Message is resolved only once, when its Header is deserialized, and from that moment on all the
+ * lookups that depend on the type of Message (Serializers, Cache, etc) are done by indexing arrays with it, instead of
+ * comparing or hashing Strings.
+ *
+ * The Commands are case-insensitive ("TX" and "tx" get the same id). The Commands that fit into the "command" field
+ * of a Header (12 bytes) can also be resolved straight from the raw bytes of the Header, without creating any String
+ * (see "idOf(byte[], int)").
+ *
+ * Ids are assigned in order of registration, starting at 0, and they never change.
+ */
+public final class MsgCommands {
+
+    /** Id returned for those Commands that have not been registered */
+    public static final int UNKNOWN = -1;
+
+    /** Max number of Commands that can be registered */
+    public static final int MAX_COMMANDS = 256;
+
+    // Length of the "command" field within the Header:
+    public static final int COMMAND_LENGTH = 12;
+
+    // Name of each Command, in lower case (the way they go over the wire):
+    private static final String[] names = new String[MAX_COMMANDS];
+
+    // Raw bytes of each Command (lower case, NULL padded), packed into 2 numbers: the first 8 bytes and the last 4:
+    private static final long[] keysLow = new long[MAX_COMMANDS];
+    private static final int[] keysHigh = new int[MAX_COMMANDS];
+
+    // Indicates if the Command can be resolved from the raw bytes (only if it fits into the "command" field):
+    private static final boolean[] wireCommands = new boolean[MAX_COMMANDS];
+
+    // Number of Commands registered:
+    private static volatile int numCommands = 0;
+
+    private MsgCommands() {}
+
+    /**
+     * It registers the Command given, and returns its id. If the Command is already registered, its current id is
+     * returned.
+     */
+    public static synchronized int register(String command) {
+        int result = idOf(command);
+        if (result != UNKNOWN) return result;
+        if (numCommands == MAX_COMMANDS)
+            throw new IllegalStateException("Max number of Message Commands reached (" + MAX_COMMANDS + ")");
+
+        result = numCommands;
+        String name = command.toLowerCase();
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        names[result] = name;
+        if (bytes.length <= COMMAND_LENGTH) {
+            byte[] paddedBytes = new byte[COMMAND_LENGTH];
+            System.arraycopy(bytes, 0, paddedBytes, 0, bytes.length);
+            keysLow[result] = keyLow(paddedBytes, 0);
+            keysHigh[result] = keyHigh(paddedBytes, 0);
+            wireCommands[result] = true;
+        }
+        numCommands = result + 1; // volatile write: the arrays are published after this
+        return result;
+    }
+
+    /** It returns the id of the Command given (case-insensitive), or UNKNOWN if it's not registered */
+    public static int idOf(String command) {
+        if (command == null) return UNKNOWN;
+        int count = numCommands;
+        // Commands coming from the wire are usually the same instances registered here:
+        for (int i = 0; i < count; i++) {
+            if (names[i] == command) return i;
+        }
+        for (int i = 0; i < count; i++) {
+            if (names[i].equalsIgnoreCase(command)) return i;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * It returns the id of the Command stored in the raw bytes given (a "command" field of a Header: 12 bytes, NULL
+     * padded), or UNKNOWN if it's not registered. No String is created.
+     */
+    public static int idOf(byte[] bytes, int offset) {
+        long low = toLowerCase(keyLow(bytes, offset));
+        int high = (int) toLowerCase(keyHigh(bytes, offset) & 0xFFFFFFFFL);
+        int count = numCommands;
+        for (int i = 0; i < count; i++) {
+            if (wireCommands[i] && keysLow[i] == low && keysHigh[i] == high) return i;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * It returns the Command stored in the raw bytes given, as a String. If the Command is registered and it's in
+     * lower case (as it's always the case over the wire), the same String instance is returned every time. Otherwise,
+     * a new String is created (trimmed).
+     */
+    public static String commandOf(byte[] bytes, int offset, int id) {
+        if (id != UNKNOWN && keysLow[id] == keyLow(bytes, offset) && keysHigh[id] == keyHigh(bytes, offset)) {
+            return names[id];
+        }
+        return new String(bytes, offset, COMMAND_LENGTH, StandardCharsets.UTF_8).trim();
+    }
+
+    /** It returns the Command (in lower case) with the id given */
+    public static String nameOf(int id) {
+        return (id >= 0 && id < numCommands) ? names[id] : null;
+    }
+
+    /** It returns the number of Commands registered. All the ids are lower than this number */
+    public static int size() {
+        return numCommands;
+    }
+
+    // It packs the first 8 bytes of the Command, in Big Endian order:
+    private static long keyLow(byte[] bytes, int offset) {
+        long result = 0;
+        for (int i = 0; i < 8; i++) result = (result << 8) | (bytes[offset + i] & 0xFF);
+        return result;
+    }
+
+    // It packs the last 4 bytes of the Command, in Big Endian order:
+    private static int keyHigh(byte[] bytes, int offset) {
+        int result = 0;
+        for (int i = 8; i < COMMAND_LENGTH; i++) result = (result << 8) | (bytes[offset + i] & 0xFF);
+        return result;
+    }
+
+    // It converts all the ASCII upper-case letters packed in the number given into lower case:
+    private static long toLowerCase(long key) {
+        long result = key;
+        for (int shift = 0; shift < 64; shift += 8) {
+            long b = (key >>> shift) & 0xFF;
+            if (b >= 'A' && b <= 'Z') result |= (0x20L << shift);
+        }
+        return result;
+    }
+}
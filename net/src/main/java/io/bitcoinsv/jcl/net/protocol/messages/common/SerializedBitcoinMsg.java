@@ -0,0 +1,115 @@
+package io.bitcoinsv.jcl.net.protocol.messages.common;
+
+import io.bitcoinsv.jcl.net.protocol.messages.VersionMsg;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayBuffer;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
+import io.bitcoinsv.jcl.tools.bytes.ByteArraySegment;
+import io.bitcoinsv.jcl.tools.bytes.RefCountedByteBuffer;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A Bitcoin Message that has already been serialized: It contains the original BitcoinMsg and a "frame" with its
+ * bytes (Header, Body and extra bytes), ready to be written over the wire.
+ *
+ * This is used when the same Message is Broadcast to several Peers: The Message is serialized (and its checksum
+ * calculated) only once, and the same frame is handed to all the Peers. The frame is read-only and reference-
+ * counted: Each Peer it's sent to holds one reference on it (see "retain()"), and gets its own Reader over the
+ * frame without copying it (see "newReader()"). The reference is released once the bytes have been written
+ * to the Peer.
+ *
+ * The counter starts at 1, which is the reference held by whoever has created this instance.
+ */
+public final class SerializedBitcoinMsg extends Message {
+
+    public static final String MESSAGE_TYPE = "serializedbitcoinmsg";
+
+    /** Maximum number of bytes of a frame: Its length must fit into an int (it's a ByteBuffer) */
+    public static final long MAX_FRAME_LENGTH = Integer.MAX_VALUE;
+
+    private final BitcoinMsg<?> bitcoinMsg;
+    private final RefCountedByteBuffer frame;
+    private final int frameLength; // The frame might be bigger than the bytes it contains (if it comes from a Pool)
+
+    /** Constructor. It takes over the reference of the frame given, which contains "frameLength" bytes */
+    public SerializedBitcoinMsg(BitcoinMsg<?> bitcoinMsg, RefCountedByteBuffer frame, int frameLength) {
+        this.bitcoinMsg = bitcoinMsg;
+        this.frame = frame;
+        this.frameLength = frameLength;
+        init();
+    }
+
+    /** Constructor. It takes over the reference of the frame given, which is full of bytes */
+    public SerializedBitcoinMsg(BitcoinMsg<?> bitcoinMsg, RefCountedByteBuffer frame) {
+        this(bitcoinMsg, frame, frame.capacity());
+    }
+
+    /** It creates a new instance, copying the serialized bytes given into a (Direct) frame */
+    public static SerializedBitcoinMsg of(BitcoinMsg<?> bitcoinMsg, byte[] bytes) {
+        RefCountedByteBuffer frame = RefCountedByteBuffer.allocateDirect(bytes.length);
+        ByteBuffer buffer = frame.getBuffer();
+        buffer.put(bytes);
+        buffer.flip();
+        return new SerializedBitcoinMsg(bitcoinMsg, frame);
+    }
+
+    /**
+     * Indicates if a Bitcoin Message can be serialized once and shared by several Peers. Version Messages depend on
+     * the Peer they are sent to (and their serialization depends on the Serializer Context), and Messages too big
+     * to fit into a single frame (see MAX_FRAME_LENGTH) are serialized separately for each Peer instead. Note that
+     * a regular (not extended) Message can still be up to 4GB long, so the Header alone is not enough to tell.
+     */
+    public static boolean isShareable(BitcoinMsg<?> bitcoinMsg) {
+        return !bitcoinMsg.getBody().getMessageType().equalsIgnoreCase(VersionMsg.MESSAGE_TYPE)
+                && !bitcoinMsg.getHeader().isExtendedMsg()
+                && frameLengthOf(bitcoinMsg) <= MAX_FRAME_LENGTH;
+    }
+
+    /** Returns the number of bytes of the frame of a Bitcoin Message: Header, Body and extra bytes */
+    public static long frameLengthOf(BitcoinMsg<?> bitcoinMsg) {
+        return bitcoinMsg.getLengthInBytes() + bitcoinMsg.getBody().getExtraBytes().length;
+    }
+
+    @Override
+    public String getMessageType() { return MESSAGE_TYPE; }
+
+    @Override
+    protected long calculateLength() {
+        return frameLength;
+    }
+
+    @Override
+    protected void validateMessage() {}
+
+    public BitcoinMsg<?> getBitcoinMsg() { return this.bitcoinMsg; }
+
+    /** Increases the Reference counter. It must be called once for each Peer the frame is sent to */
+    public SerializedBitcoinMsg retain() {
+        frame.retain();
+        return this;
+    }
+
+    /** Decreases the Reference counter */
+    public void release() {
+        frame.release();
+    }
+
+    /**
+     * It returns a new Reader over the bytes of the frame, without copying them. The Reader takes over one of the
+     * references of the frame, which is released once all its bytes have been consumed (or when it's cleared).
+     */
+    public ByteArrayReader newReader() {
+        ByteArrayBuffer buffer = new ByteArrayBuffer();
+        buffer.addSegment(new ByteArraySegment(frame, 0, frameLength));
+        return new ByteArrayReader(buffer);
+    }
+
+    @Override
+    public String toString() {
+        return "SerializedBitcoinMsg(bitcoinMsg=" + this.bitcoinMsg + ", length=" + this.lengthInBytes + ")";
+    }
+}
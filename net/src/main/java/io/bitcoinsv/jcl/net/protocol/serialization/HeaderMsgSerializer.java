@@ -2,8 +2,10 @@ package io.bitcoinsv.jcl.net.protocol.serialization;
 
 import io.bitcoinsv.jcl.net.protocol.serialization.common.DeserializerContext;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.MessageSerializer;
+import io.bitcoinsv.jcl.net.protocol.serialization.common.MsgSerializersFactory;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.SerializerContext;
 import io.bitcoinsv.jcl.net.protocol.messages.HeaderMsg;
+import io.bitcoinsv.jcl.net.protocol.messages.common.MsgCommands;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayWriter;
 
@@ -17,6 +19,12 @@ public class HeaderMsgSerializer implements MessageSerializer<HeaderMsg> {
 
     private static HeaderMsgSerializer instance;
 
+    // The ids of the Commands are resolved only once, when the Header is deserialized, so all the Commands known must
+    // be registered by then (they are registered along with their Serializers):
+    static {
+        MsgSerializersFactory.getSerializer(HeaderMsg.MESSAGE_TYPE);
+    }
+
     // Constructor
     private HeaderMsgSerializer() { }
 
@@ -33,20 +41,26 @@ public class HeaderMsgSerializer implements MessageSerializer<HeaderMsg> {
     @Override
     public HeaderMsg deserialize(DeserializerContext context, ByteArrayReader byteReader) {
         long  magic = byteReader.readUint32();
-        String command = byteReader.readString(12, "UTF-8");
+
+        // The Command is resolved from the raw bytes. If it's a known one, no String is created:
+        byte[] commandBytes = byteReader.read(MsgCommands.COMMAND_LENGTH);
+        int commandId = MsgCommands.idOf(commandBytes, 0);
+        String command = MsgCommands.commandOf(commandBytes, 0, commandId);
 
         // We read the values present in any header:
         HeaderMsg.HeaderMsgBuilder headerBuilder = HeaderMsg.builder();
         headerBuilder.magic(magic);
-        headerBuilder.command(command);
+        headerBuilder.command(command, commandId);
         headerBuilder.length(byteReader.readUint32());
         headerBuilder.checksum(byteReader.readUint32());
 
         // Messages bigger than 4GB use an special command, and extra fields are used:
-        if (command.equalsIgnoreCase(HeaderMsg.EXT_COMMAND)) {
-            String extCommand = byteReader.readString(12, "UTF-8");
+        if (commandId == HeaderMsg.EXT_COMMAND_ID) {
+            byte[] extCommandBytes = byteReader.read(MsgCommands.COMMAND_LENGTH);
+            int extCommandId = MsgCommands.idOf(extCommandBytes, 0);
+            String extCommand = MsgCommands.commandOf(extCommandBytes, 0, extCommandId);
             long extLength = byteReader.readUint64();
-            headerBuilder.extCommand(extCommand);
+            headerBuilder.extCommand(extCommand, extCommandId);
             headerBuilder.extLength(extLength);
         }
 
@@ -64,7 +78,7 @@ public class HeaderMsgSerializer implements MessageSerializer<HeaderMsg> {
         byteWriter.writeUint32LE(message.getChecksum());
 
         // Messages bigger than 4GB use an special command, and extra fields are used:
-        if (message.getCommand().equalsIgnoreCase(HeaderMsg.EXT_COMMAND)) {
+        if (message.isExtendedMsg()) {
             byteWriter.writeStr(message.getExtCommand(), 12);
             byteWriter.writeUint64LE(message.getExtLength());
         }
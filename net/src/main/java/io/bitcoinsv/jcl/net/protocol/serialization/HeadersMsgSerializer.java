@@ -1,6 +1,8 @@
 package io.bitcoinsv.jcl.net.protocol.serialization;
 
 
+import com.google.common.base.Preconditions;
+import io.bitcoinsv.jcl.net.protocol.messages.BlockHeaderList;
 import io.bitcoinsv.jcl.net.protocol.messages.BlockHeaderMsg;
 import io.bitcoinsv.jcl.net.protocol.messages.HeadersMsg;
 import io.bitcoinsv.jcl.net.protocol.messages.VarIntMsg;
@@ -10,7 +12,7 @@ import io.bitcoinsv.jcl.net.protocol.serialization.common.SerializerContext;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayWriter;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -48,24 +50,28 @@ public class HeadersMsgSerializer implements MessageSerializer<HeadersMsg> {
     }
 
     /**
-     * Deserialize blockHeadersMsg list
+     * Deserialize blockHeadersMsg list. The Headers are stored packed, in the same format they have in the wire (see
+     * BlockHeaderList), and their Hashes are NOT calculated here, but later on and all at once, when needed.
      *
      * @param context
      * @param byteReader
      * @return
      */
-    protected List<BlockHeaderMsg> deserializeList(DeserializerContext context, ByteArrayReader byteReader) {
+    protected BlockHeaderList deserializeList(DeserializerContext context, ByteArrayReader byteReader) {
         VarIntMsg count = VarIntMsgSerializer.getInstance().deserialize(context, byteReader);
-        BlockHeaderMsg blockHeaderMsg;
-        List<BlockHeaderMsg> blockHeaderMsgs = new ArrayList<>();
+        Preconditions.checkArgument(count.getValue() >= 0 && count.getValue() <= HeadersMsg.MAX_HEADERS,
+                "Headers message exceeds maximum size: " + count.getValue() + " Headers");
+        int numHeaders = (int) count.getValue();
 
-        var blockHeaderMsgSerializer = BlockHeaderMsgSerializer.getInstance();
-        for (int i = 0; i < count.getValue(); i++) {
-            blockHeaderMsg = blockHeaderMsgSerializer.deserialize(context, byteReader);
-            blockHeaderMsgs.add(blockHeaderMsg);
+        byte[] headers = new byte[numHeaders * BlockHeaderList.HEADER_LENGTH];
+        long[] transactionCounts = new long[numHeaders];
+        var varIntMsgSerializer = VarIntMsgSerializer.getInstance();
+        for (int i = 0; i < numHeaders; i++) {
+            System.arraycopy(byteReader.read(BlockHeaderList.HEADER_LENGTH), 0, headers, i * BlockHeaderList.HEADER_LENGTH, BlockHeaderList.HEADER_LENGTH);
+            transactionCounts[i] = varIntMsgSerializer.deserialize(context, byteReader).getValue();
         }
 
-        return blockHeaderMsgs;
+        return BlockHeaderList.wrap(headers, transactionCounts);
     }
 
     @Override
@@ -83,6 +89,16 @@ public class HeadersMsgSerializer implements MessageSerializer<HeadersMsg> {
      * @param byteWriter
      */
     protected void serializeList(SerializerContext context, List<BlockHeaderMsg> blockHeaderMsgList, ByteArrayWriter byteWriter) {
+        // If the list is packed, the Headers are already in wire format:
+        if (blockHeaderMsgList instanceof BlockHeaderList) {
+            BlockHeaderList blockHeaders = (BlockHeaderList) blockHeaderMsgList;
+            byte[] headers = blockHeaders.getHeaders();
+            for (int i = 0; i < blockHeaders.size(); i++) {
+                byteWriter.write(Arrays.copyOfRange(headers, i * BlockHeaderList.HEADER_LENGTH, (i + 1) * BlockHeaderList.HEADER_LENGTH));
+                VarIntMsgSerializer.getInstance().serialize(context, VarIntMsg.builder().value(blockHeaders.getTransactionCount(i)).build(), byteWriter);
+            }
+            return;
+        }
         for (var blockHeaderMsg : blockHeaderMsgList) {
             BlockHeaderMsgSerializer.getInstance().serialize(context, blockHeaderMsg, byteWriter);
         }
@@ -1,7 +1,10 @@
 package io.bitcoinsv.jcl.net.protocol.serialization;
 
+import com.google.common.base.Preconditions;
 import io.bitcoinsv.jcl.net.protocol.messages.InvMessage;
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorList;
 import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorMsg;
+import io.bitcoinsv.jcl.net.protocol.messages.VarIntMsg;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.DeserializerContext;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.MessageSerializer;
 import io.bitcoinsv.jcl.net.protocol.serialization.common.SerializerContext;
@@ -45,15 +48,18 @@ public class InvMsgSerializer implements MessageSerializer<InvMessage> {
     }
 
     /**
-     * Deserialize InventoryVectorMsg list
+     * Deserialize InventoryVectorMsg list. All the entries are read in one go, and stored packed, in the same
+     * format they have in the wire (see InventoryVectorList).
      *
      * @param context
      * @param byteReader
      * @return
      */
-    protected List<InventoryVectorMsg> deserializeList(DeserializerContext context, ByteArrayReader byteReader) {
-        InventoryVectorMsgSerializer invVector = InventoryVectorMsgSerializer.getInstance();
-        return invVector.getInventoryVectorMsgs(context, byteReader);
+    protected InventoryVectorList deserializeList(DeserializerContext context, ByteArrayReader byteReader) {
+        VarIntMsg count = VarIntMsgSerializer.getInstance().deserialize(context, byteReader);
+        Preconditions.checkArgument(count.getValue() >= 0 && count.getValue() <= InventoryVectorList.MAX_SIZE,
+                "Inventory too large: " + count.getValue() + " entries");
+        return InventoryVectorList.wrap(byteReader.read((int) count.getValue() * InventoryVectorList.RECORD_LENGTH));
     }
 
     @Override
@@ -72,6 +78,11 @@ public class InvMsgSerializer implements MessageSerializer<InvMessage> {
      */
     protected void serializeList(SerializerContext context, List<InventoryVectorMsg> inventoryVectorMsgList,
                                  ByteArrayWriter byteWriter) {
+        // If the list is packed, its content is already in wire format:
+        if (inventoryVectorMsgList instanceof InventoryVectorList) {
+            byteWriter.write(((InventoryVectorList) inventoryVectorMsgList).getRecords());
+            return;
+        }
         for (InventoryVectorMsg inventoryVectorMsg : inventoryVectorMsgList) {
             InventoryVectorMsgSerializer.getInstance().serialize(context, inventoryVectorMsg, byteWriter);
         }
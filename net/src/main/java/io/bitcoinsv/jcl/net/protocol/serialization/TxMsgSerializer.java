@@ -40,10 +40,14 @@ public class TxMsgSerializer implements MessageSerializer<TxMsg> {
         return instance;
     }
 
-    // TODO: CHECK PERFORMANCE WHEN CALCULATING THE HASH!!!!!!!!
     @Override
     public TxMsg deserialize(DeserializerContext context, ByteArrayReader byteReader) {
 
+        // If we need the Hash, we hash the bytes of the Tx at the same time we read them, so we don't need to
+        // serialize the Tx again afterwards:
+        boolean calculateHash = context.isCalculateHashes();
+        if (calculateHash) byteReader.startDigestTee();
+
         // We deserialize the Tx the usual way...
         long version = byteReader.readUint32();
         VarIntMsg txInCount = varIntMsgSerializer.deserialize(context, byteReader);
@@ -70,21 +74,10 @@ public class TxMsgSerializer implements MessageSerializer<TxMsg> {
                 .lockTime(locktime);
 
         // We only calculate the Hash if it is specified.
-        if (context.isCalculateHashes()) {
-            // To calculate the TX Hash, we need to Serialize the TX itself...
-            SerializerContext serializerContext = SerializerContext.builder()
-                    .protocolBasicConfig(context.getProtocolBasicConfig())
-                    .insideVersionMsg(context.isInsideVersionMsg())
-                    .build();
-            ByteArrayWriter writer = new ByteArrayWriter();
-
-            TxMsg tx = txBuilder.build();
-            serialize(serializerContext, tx, writer);
-
-            byte[] txBytes = writer.reader().getFullContentAndClose();
+        if (calculateHash) {
             // Since this Hash is stored in a Field that is NOT part of the real message and
             // its only a convenience field, we are storing it in the human-readable way (reversed)
-            Sha256Hash txHash = Sha256Hash.wrapReversed(Sha256Hash.twiceOf(txBytes).getBytes());
+            Sha256Hash txHash = Sha256Hash.wrapReversed(byteReader.stopDigestTee());
             txBuilder.hash(Optional.of(txHash));
         } else txBuilder.hash(Optional.empty());
 
@@ -0,0 +1,32 @@
+package io.bitcoinsv.jcl.net.protocol.serialization;
+
+
+import io.bitcoinsv.jcl.net.protocol.messages.TxViewMsg;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A Serializer for instance of {@Link TxViewMsg} messages. The content is read as it is, the Inputs and Outputs
+ * are only decoded later on, when they are requested from the message.
+ */
+public class TxViewMsgSerializer extends RawMsgSerializer<TxViewMsg> {
+    private static TxViewMsgSerializer instance;
+
+    private TxViewMsgSerializer() {}
+
+    public static TxViewMsgSerializer getInstance(){
+        if(instance == null) {
+            synchronized (TxViewMsgSerializer.class) {
+                instance = new TxViewMsgSerializer();
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public TxViewMsg buildRawMsg(byte[] content) {
+        return new TxViewMsg(content, 0); // checksum ZERO
+    }
+
+}
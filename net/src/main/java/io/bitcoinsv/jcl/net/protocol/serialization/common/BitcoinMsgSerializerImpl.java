@@ -12,7 +12,6 @@ import io.bitcoinsv.jcl.tools.bytes.ByteArrayConfig;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayWriter;
 import io.bitcoinsv.jcl.tools.bytes.Sha256HashIncremental;
-import io.bitcoinsv.bitcoinjsv.core.Sha256Hash;
 import io.bitcoinsv.bitcoinjsv.core.Utils;
 
 /**
@@ -53,11 +52,17 @@ public class BitcoinMsgSerializerImpl implements BitcoinMsgSerializer {
         // We check if the checksum of the BODY needs to be calculated first. A checksum needs to be calculated if:
         // - The context says so AND:
         // - The message is NOT "extended" (extended msgs were introduced in 70016) AND:
+        // If the Hash of the Body has been calculated already (while the bytes were arriving), we take it from there.
         boolean needToCalculateChecksum = context.isCalculateChecksum() && !headerMsg.isExtendedMsg();
-        long checksum = needToCalculateChecksum ? calculateChecksum(byteReader, headerMsg.getMsgLength()) : 0;
+        long checksum = 0;
+        if (needToCalculateChecksum) {
+            checksum = (context.getBodyHash() != null)
+                    ? Utils.readUint32(context.getBodyHash(), 0)
+                    : calculateChecksum(byteReader, headerMsg.getMsgLength());
+        }
 
         // We deserialize the Body:
-        MessageSerializer<M> bodySerializer = getBodySerializer(headerMsg.getMsgCommand());
+        MessageSerializer<M> bodySerializer = getBodySerializer(headerMsg.getMsgCommandId());
         M bodyMsg = bodySerializer.deserialize(context, byteReader);
 
         // We inject the checksum if needed:
@@ -78,24 +83,13 @@ public class BitcoinMsgSerializerImpl implements BitcoinMsgSerializer {
 
     @Override
     public long calculateChecksum(ByteArrayReader byteReader, long numBytes) {
-        final int MAX_BYTES_TO_READ = 2_000_000_000; // 2GB
 
         // In case the message is empty:
         if (numBytes == 0) { return CHECKSUM_EMPTY_MSG;}
 
-        // Optimization: (message <= 2GB)
-        if (numBytes <= MAX_BYTES_TO_READ) {
-            return Utils.readUint32(Sha256Hash.hashTwice(byteReader.get((int)numBytes)), 0);
-        }
-
-        // For the rest of messages >= 2GB:
+        // The bytes are fed into the Hash straight from the Reader, without copying them into a new array:
         Sha256HashIncremental shaIncremental = new Sha256HashIncremental();
-        long numBytesRead = 0;
-        while (numBytesRead < numBytes) {
-            int numBytesToRead = (int) Math.min(MAX_BYTES_TO_READ, (numBytes - numBytesRead));
-            shaIncremental.add(byteReader.get(numBytesRead, numBytesToRead));
-            numBytesRead += numBytesToRead;
-        }
+        byteReader.digest(0, numBytes, shaIncremental);
         return Utils.readUint32(shaIncremental.hashTwice(), 0);
     }
 
@@ -134,49 +128,49 @@ public class BitcoinMsgSerializerImpl implements BitcoinMsgSerializer {
 
     @Override
     public <M extends BodyMessage> ByteArrayReader serialize(SerializerContext context, BitcoinMsg<M> bitcoinMessage) {
+        // NOTE: If the Message is BIG, we configure the ByteArrayWriter accordingly for the sake of performance.
+        // For now this is hardcoded here, bu tin the future we¡ll define a proper "SerializerConfig" or a similar
+        // approach.
+        boolean IS_BIG_MSG = (bitcoinMessage.getHeader().getMsgLength() >= 10_000_000); // 10 MB
+        ByteArrayConfig byteArrayConfig = new ByteArrayConfig((IS_BIG_MSG) ? ByteArrayConfig.ARRAY_SIZE_BIG : ByteArrayConfig.ARRAY_SIZE_NORMAL);
+        ByteArrayWriter finalWriter = new ByteArrayWriter(byteArrayConfig);
+        serialize(context, bitcoinMessage, finalWriter);
+        return finalWriter.reader();
+    }
+
+    /**
+     * It serializes the whole Bitcoin Message (Header + Body + extra bytes) into the Writer given. This is useful when
+     * the caller needs some control over the memory the bytes are written into.
+     */
+    public <M extends BodyMessage> void serialize(SerializerContext context, BitcoinMsg<M> bitcoinMessage, ByteArrayWriter finalWriter) {
 
         // Some Notes about Deserialization:
         // If the message is >=4GB, the checksum must NOT be calculated. We just Serialize the message as it is
         // If the message is <4GB, then we need to calculate and populate the CHECKSUM in the HEADER of
-        // the message, so we need to:
-        //  1 - Serialize the Message BODY
-        //  2 - Calculate the checksum and put that value into the message Header
-        //  3 - Serialize both (header and Body)
+        // the message. We do it in one single pass, over the same Writer:
+        //  1 - Serialize the Header, with the checksum it has now (it's only a placeholder)
+        //  2 - Serialize the Message BODY right after it, hashing the bytes as they are written
+        //  3 - Overwrite the checksum in the Header with the right value
 
         // Original Header:
         HeaderMsg header = bitcoinMessage.getHeader();
 
-        // Writer use for final deserialization:
-        // NOTE: If the Message is BIG, we configure the ByteArrayWriter accordingly for the sake of performance.
-        // For now this is hardcoded here, bu tin the future we¡ll define a proper "SerializerConfig" or a similar
-        // approach.
-        boolean IS_BIG_MSG = (header.getMsgLength() >= 10_000_000); // 10 MB
-        ByteArrayConfig byteArrayConfig = new ByteArrayConfig((IS_BIG_MSG) ? ByteArrayConfig.ARRAY_SIZE_BIG : ByteArrayConfig.ARRAY_SIZE_NORMAL);
-        ByteArrayWriter finalWriter = new ByteArrayWriter(byteArrayConfig);
-
         if (header.isExtendedMsg()) {
             // We serialize the Header and the BODY as they are, without any changes...
             HeaderMsgSerializer.getInstance().serialize(context, header, finalWriter);
             getBodySerializer(bitcoinMessage.getBody().getMessageType()).serialize(context, bitcoinMessage.getBody(), finalWriter);
         } else {
-            // We Serialize the Body:
-            ByteArrayWriter bodyByteWriter = new ByteArrayWriter();
-            getBodySerializer(bitcoinMessage.getBody().getMessageType()).serialize(context, bitcoinMessage.getBody(), bodyByteWriter);
-            ByteArrayReader bodyByteReader = bodyByteWriter.reader(); // BODY Content
-
-            if (context.isCalculateChecksum()) {
-                // We calculate the checksum and inject it back into the header:
-                long checksum = calculateChecksum(bodyByteReader, header.getMsgLength());
-                header = header.toBuilder().checksum(checksum).build();
-            }
-
             // We serialize the HEADER:
             HeaderMsgSerializer.getInstance().serialize(context, header, finalWriter);
 
-            // We serialize the BODY:
-            final int SIZE_2GB = 2_000_000_000;
-            while (!bodyByteReader.isEmpty()) {
-                finalWriter.write(bodyByteReader.read((int) Math.min(SIZE_2GB, bodyByteReader.size())));
+            // We serialize the BODY, calculating the checksum at the same time if needed:
+            if (context.isCalculateChecksum()) { finalWriter.startDigestTee(); }
+            getBodySerializer(bitcoinMessage.getBody().getMessageType()).serialize(context, bitcoinMessage.getBody(), finalWriter);
+
+            if (context.isCalculateChecksum()) {
+                // We inject the checksum back into the header:
+                long checksum = Utils.readUint32(finalWriter.stopDigestTee(), 0);
+                finalWriter.overwriteUint32LE(HeaderMsg.CHECKSUM_OFFSET, checksum);
             }
         }
 
@@ -184,12 +178,14 @@ public class BitcoinMsgSerializerImpl implements BitcoinMsgSerializer {
         if (bitcoinMessage.getBody().getExtraBytes().length > 0) {
             finalWriter.write(bitcoinMessage.getBody().getExtraBytes());
         }
-
-        return finalWriter.reader();
     }
 
     protected <M extends Message> MessageSerializer<M> getBodySerializer(String msgType) {
         return MsgSerializersFactory.getSerializer(msgType);
     }
 
+    protected <M extends Message> MessageSerializer<M> getBodySerializer(int msgCommandId) {
+        return MsgSerializersFactory.getSerializer(msgCommandId);
+    }
+
 }
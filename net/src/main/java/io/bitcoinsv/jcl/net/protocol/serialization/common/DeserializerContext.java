@@ -41,18 +41,33 @@ public final class DeserializerContext {
     // If its FALSE, checksum is NOT calculated in any case
     private boolean calculateChecksum;
 
+    // If specified, this is the double-SHA256 of the whole Body, already calculated while its bytes were arriving
+    // (see DeserializerStream), so the Deserializer does not need to go over the bytes again to get the checksum.
+    private byte[] bodyHash;
+
     public DeserializerContext(boolean calculateHashes,
                                ProtocolBasicConfig protocolBasicConfig,
                                boolean insideVersionMsg,
                                Long maxBytesToRead,
                                Integer batchSize,
-                               boolean calculateChecksum) {
+                               boolean calculateChecksum,
+                               byte[] bodyHash) {
         this.calculateHashes = calculateHashes;
         this.protocolBasicConfig = protocolBasicConfig;
         this.insideVersionMsg = insideVersionMsg;
         this.maxBytesToRead = maxBytesToRead;
         this.batchSize = batchSize;
         this.calculateChecksum = calculateChecksum;
+        this.bodyHash = bodyHash;
+    }
+
+    public DeserializerContext(boolean calculateHashes,
+                               ProtocolBasicConfig protocolBasicConfig,
+                               boolean insideVersionMsg,
+                               Long maxBytesToRead,
+                               Integer batchSize,
+                               boolean calculateChecksum) {
+        this(calculateHashes, protocolBasicConfig, insideVersionMsg, maxBytesToRead, batchSize, calculateChecksum, null);
     }
 
     public boolean isCalculateHashes()                                          { return this.calculateHashes; }
@@ -61,6 +76,7 @@ public final class DeserializerContext {
     public Long getMaxBytesToRead()                                             { return this.maxBytesToRead; }
     public Integer getBatchSize()                                               { return this.batchSize; }
     public boolean isCalculateChecksum()                                        { return this.calculateChecksum;}
+    public byte[] getBodyHash()                                                 { return this.bodyHash;}
 
     public void setCalculateHashes(boolean calculateHashes)                     { this.calculateHashes = calculateHashes; }
     public void setProtocolBasicConfig(ProtocolBasicConfig protocolBasicConfig) { this.protocolBasicConfig = protocolBasicConfig; }
@@ -74,7 +90,8 @@ public final class DeserializerContext {
                 .protocolBasicConfig(this.protocolBasicConfig)
                 .insideVersionMsg(this.insideVersionMsg)
                 .maxBytesToRead(this.maxBytesToRead)
-                .calculateChecksum(this.calculateChecksum);
+                .calculateChecksum(this.calculateChecksum)
+                .bodyHash(this.bodyHash);
     }
 
     public static DeserializerContextBuilder builder() {
@@ -91,6 +108,7 @@ public final class DeserializerContext {
         private Long maxBytesToRead;
         private Integer batchSize;
         private boolean calculateChecksum = true;
+        private byte[] bodyHash;
 
         DeserializerContextBuilder() { }
 
@@ -124,8 +142,13 @@ public final class DeserializerContext {
             return this;
         }
 
+        public DeserializerContext.DeserializerContextBuilder bodyHash(byte[] bodyHash) {
+            this.bodyHash = bodyHash;
+            return this;
+        }
+
         public DeserializerContext build() {
-            return new DeserializerContext(calculateHashes, protocolBasicConfig, insideVersionMsg, maxBytesToRead, batchSize, calculateChecksum);
+            return new DeserializerContext(calculateHashes, protocolBasicConfig, insideVersionMsg, maxBytesToRead, batchSize, calculateChecksum, bodyHash);
         }
     }
 }
@@ -2,6 +2,7 @@ package io.bitcoinsv.jcl.net.protocol.serialization.common;
 
 
 import io.bitcoinsv.jcl.net.protocol.messages.*;
+import io.bitcoinsv.jcl.net.protocol.messages.common.MsgCommands;
 import io.bitcoinsv.jcl.net.protocol.serialization.*;
 import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.BigBlockDeserializer;
 import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.RawBigBlockDeserializer;
@@ -25,72 +26,93 @@ public class MsgSerializersFactory {
 
     private static Logger logger = LoggerFactory.getLogger(MsgSerializersFactory.class);
 
-    // Regular Message Serializers:
-    private static final Map<String, MessageSerializer> serializers = new HashMap<>();
+    // Regular Message Serializers, indexed by the id of their Command (see MsgCommands):
+    private static final MessageSerializer[] serializers = new MessageSerializer[MsgCommands.MAX_COMMANDS];
 
     // Raw Message Serializers:
     private static final Map<String, MessageSerializer> rawSerializers = new HashMap<>();
 
+    // View Message Serializers (messages read in raw format, but decoded on demand):
+    private static final Map<String, MessageSerializer> viewSerializers = new HashMap<>();
+
     // Indicates if some Serializer have benn overwritten with their RAW Versions:
     private static boolean RAW_SERIALIZERS_ENABLED = false;
 
+    // Ids of the Messages that can be deserialized by a Large Message Deserializer:
+    private static final int BLOCK_ID = MsgCommands.register(BlockMsg.MESSAGE_TYPE);
+    private static final int BLOCK_TXN_ID = MsgCommands.register(BlockTxnMsg.MESSAGE_TYPE);
+
     static {
 
         // We register the message Serializers:
         // Only COMPLETE Message Serializers need to be registered here, but no harm in registering all
         // of them though
 
-        serializers.put(HeaderMsg.MESSAGE_TYPE.toUpperCase(), HeaderMsgSerializer.getInstance());
-        serializers.put(NetAddressMsg.MESSAGE_TYPE.toUpperCase(), NetAddressMsgSerializer.getInstance());
-        serializers.put(VarIntMsg.MESSAGE_TYPE.toUpperCase(), VarIntMsgSerializer.getInstance());
-        serializers.put(VarStrMsg.MESSAGE_TYPE.toUpperCase(), VarStrMsgSerializer.getinstance());
-        serializers.put(VersionAckMsg.MESSAGE_TYPE.toUpperCase(), VersionAckMsgSerializer.getInstance());
-        serializers.put(VersionMsg.MESSAGE_TYPE.toUpperCase(), VersionMsgSerializer.getInstance());
-        serializers.put(RejectMsg.MESSAGE_TYPE.toUpperCase(), RejectMsgSerializer.getInstance());
-        serializers.put(PingMsg.MESSAGE_TYPE.toUpperCase(), PingMsgSerializer.getInstance());
-        serializers.put(PongMsg.MESSAGE_TYPE.toUpperCase(), PongMsgSerializer.getInstance());
-        serializers.put(GetAddrMsg.MESSAGE_TYPE.toUpperCase(), GetAddrMsgSerializer.getInstance());
-        serializers.put(AddrMsg.MESSAGE_TYPE.toUpperCase(), AddrMsgSerialzer.getInstance());
-        serializers.put(InventoryVectorMsg.MESSAGE_TYPE.toUpperCase(), InventoryVectorMsgSerializer.getInstance());
-        serializers.put(InvMessage.MESSAGE_TYPE.toUpperCase(), InvMsgSerializer.getInstance());
-        serializers.put(GetdataMsg.MESSAGE_TYPE.toUpperCase(), GetdataMsgSerializer.getInstance());
-        serializers.put(NotFoundMsg.MESSAGE_TYPE.toUpperCase(), NotFoundMsgSerilaizer.getInstance());
-        serializers.put(GetBlocksMsg.MESSAGE_TYPE.toUpperCase(), GetblocksMsgSerializer.getInstance());
-        serializers.put(GetHeadersMsg.MESSAGE_TYPE.toUpperCase(), GetHeadersMsgSerializer.getInstance());
-        serializers.put(BaseGetDataAndHeaderMsg.MESSAGE_TYPE.toUpperCase(), BaseGetDataAndHeaderMsgSerializer.getInstance());
-        serializers.put(TxOutPointMsg.MESSAGE_TYPE.toUpperCase(), TxOutPointMsgSerializer.getInstance());
-        serializers.put(TxInputMsg.MESSAGE_TYPE.toUpperCase(), TxInputMsgSerializer.getInstance());
-        serializers.put(TxMsg.MESSAGE_TYPE.toUpperCase(), TxMsgSerializer.getInstance());
-        serializers.put(BlockMsg.MESSAGE_TYPE.toUpperCase(), BlockMsgSerializer.getInstance());
-        serializers.put(CompactBlockHeaderMsg.MESSAGE_TYPE.toUpperCase(), CompactBlockHeaderMsgSerializer.getInstance());
-        serializers.put(BlockHeaderMsg.MESSAGE_TYPE.toUpperCase(), BlockHeaderMsgSerializer.getInstance());
-        serializers.put(FeeFilterMsg.MESSAGE_TYPE.toUpperCase(), FeeFilterMsgSerializer.getInstance());
-        serializers.put(HeadersMsg.MESSAGE_TYPE.toUpperCase(), HeadersMsgSerializer.getInstance());
-        serializers.put(MemPoolMsg.MESSAGE_TYPE.toUpperCase(), MemPoolMsgSerializer.getInstance());
-        serializers.put(SendHeadersMsg.MESSAGE_TYPE.toUpperCase(), SendHeadersMsgSerializer.getInstance());
-        serializers.put(GetHeadersEnMsg.MESSAGE_TYPE.toUpperCase(), GetHeadersEnMsgSerializer.getInstance());
-        serializers.put(BlockHeaderEnMsg.MESSAGE_TYPE.toUpperCase(), BlockHeaderEnMsgSerializer.getInstance());
-        serializers.put(HeadersEnMsg.MESSAGE_TYPE.toUpperCase(), HeadersEnMsgSerializer.getInstance());
-        serializers.put(PrefilledTxMsg.MESSAGE_TYPE.toUpperCase(), PrefilledTxMsgSerializer.getInstance());
-        serializers.put(CompactBlockMsg.MESSAGE_TYPE.toUpperCase(), CompactBlockMsgSerializer.getInstance());
-        serializers.put(SendCompactBlockMsg.MESSAGE_TYPE.toUpperCase(), SendCompactBlockMsgSerializer.getInstance());
-        serializers.put(GetBlockTxnMsg.MESSAGE_TYPE.toUpperCase(), GetBlockTxnMsgSerializer.getInstance());
-        serializers.put(BlockTxnMsg.MESSAGE_TYPE.toUpperCase(), BlockTxnMsgSerializer.getInstance());
-        serializers.put(DsDetectedMsg.MESSAGE_TYPE.toUpperCase(), DsDetectedMsgSerializer.getInstance());
-        serializers.put(ByteStreamMsg.MESSAGE_TYPE.toUpperCase(), ByteStreamMsgSerializer.getInstance());
-
-        rawSerializers.put(RawTxMsg.MESSAGE_TYPE.toUpperCase(), RawTxMsgSerializer.getInstance());
-        rawSerializers.put(RawBlockMsg.MESSAGE_TYPE.toUpperCase(), RawBlockMsgSerializer.getInstance());
+        register(HeaderMsg.MESSAGE_TYPE, HeaderMsgSerializer.getInstance());
+        register(NetAddressMsg.MESSAGE_TYPE, NetAddressMsgSerializer.getInstance());
+        register(VarIntMsg.MESSAGE_TYPE, VarIntMsgSerializer.getInstance());
+        register(VarStrMsg.MESSAGE_TYPE, VarStrMsgSerializer.getinstance());
+        register(VersionAckMsg.MESSAGE_TYPE, VersionAckMsgSerializer.getInstance());
+        register(VersionMsg.MESSAGE_TYPE, VersionMsgSerializer.getInstance());
+        register(RejectMsg.MESSAGE_TYPE, RejectMsgSerializer.getInstance());
+        register(PingMsg.MESSAGE_TYPE, PingMsgSerializer.getInstance());
+        register(PongMsg.MESSAGE_TYPE, PongMsgSerializer.getInstance());
+        register(GetAddrMsg.MESSAGE_TYPE, GetAddrMsgSerializer.getInstance());
+        register(AddrMsg.MESSAGE_TYPE, AddrMsgSerialzer.getInstance());
+        register(InventoryVectorMsg.MESSAGE_TYPE, InventoryVectorMsgSerializer.getInstance());
+        register(InvMessage.MESSAGE_TYPE, InvMsgSerializer.getInstance());
+        register(GetdataMsg.MESSAGE_TYPE, GetdataMsgSerializer.getInstance());
+        register(NotFoundMsg.MESSAGE_TYPE, NotFoundMsgSerilaizer.getInstance());
+        register(GetBlocksMsg.MESSAGE_TYPE, GetblocksMsgSerializer.getInstance());
+        register(GetHeadersMsg.MESSAGE_TYPE, GetHeadersMsgSerializer.getInstance());
+        register(BaseGetDataAndHeaderMsg.MESSAGE_TYPE, BaseGetDataAndHeaderMsgSerializer.getInstance());
+        register(TxOutPointMsg.MESSAGE_TYPE, TxOutPointMsgSerializer.getInstance());
+        register(TxInputMsg.MESSAGE_TYPE, TxInputMsgSerializer.getInstance());
+        register(TxMsg.MESSAGE_TYPE, TxMsgSerializer.getInstance());
+        register(BlockMsg.MESSAGE_TYPE, BlockMsgSerializer.getInstance());
+        register(CompactBlockHeaderMsg.MESSAGE_TYPE, CompactBlockHeaderMsgSerializer.getInstance());
+        register(BlockHeaderMsg.MESSAGE_TYPE, BlockHeaderMsgSerializer.getInstance());
+        register(FeeFilterMsg.MESSAGE_TYPE, FeeFilterMsgSerializer.getInstance());
+        register(HeadersMsg.MESSAGE_TYPE, HeadersMsgSerializer.getInstance());
+        register(MemPoolMsg.MESSAGE_TYPE, MemPoolMsgSerializer.getInstance());
+        register(SendHeadersMsg.MESSAGE_TYPE, SendHeadersMsgSerializer.getInstance());
+        register(GetHeadersEnMsg.MESSAGE_TYPE, GetHeadersEnMsgSerializer.getInstance());
+        register(BlockHeaderEnMsg.MESSAGE_TYPE, BlockHeaderEnMsgSerializer.getInstance());
+        register(HeadersEnMsg.MESSAGE_TYPE, HeadersEnMsgSerializer.getInstance());
+        register(PrefilledTxMsg.MESSAGE_TYPE, PrefilledTxMsgSerializer.getInstance());
+        register(CompactBlockMsg.MESSAGE_TYPE, CompactBlockMsgSerializer.getInstance());
+        register(SendCompactBlockMsg.MESSAGE_TYPE, SendCompactBlockMsgSerializer.getInstance());
+        register(GetBlockTxnMsg.MESSAGE_TYPE, GetBlockTxnMsgSerializer.getInstance());
+        register(BlockTxnMsg.MESSAGE_TYPE, BlockTxnMsgSerializer.getInstance());
+        register(DsDetectedMsg.MESSAGE_TYPE, DsDetectedMsgSerializer.getInstance());
+        register(ByteStreamMsg.MESSAGE_TYPE, ByteStreamMsgSerializer.getInstance());
+
+        rawSerializers.put(RawTxMsg.MESSAGE_TYPE, RawTxMsgSerializer.getInstance());
+        rawSerializers.put(RawBlockMsg.MESSAGE_TYPE, RawBlockMsgSerializer.getInstance());
+
+        viewSerializers.put(TxViewMsg.MESSAGE_TYPE, TxViewMsgSerializer.getInstance());
     }
 
     private MsgSerializersFactory() {
     }
 
+    // It registers the Serializer given, for the Command given:
+    private static void register(String command, MessageSerializer serializer) {
+        serializers[MsgCommands.register(command)] = serializer;
+    }
+
     /**
      * Returns a Serializer of the message specify by its COMMAND
      */
     public static MessageSerializer getSerializer(String command) {
-        return serializers.get(command.toUpperCase());
+        return getSerializer(MsgCommands.idOf(command));
+    }
+
+    /**
+     * Returns a Serializer of the message specify by the id of its COMMAND (see MsgCommands)
+     */
+    public static MessageSerializer getSerializer(int commandId) {
+        return (commandId == MsgCommands.UNKNOWN) ? null : serializers[commandId];
     }
 
     /**
@@ -98,7 +120,16 @@ public class MsgSerializersFactory {
      */
     public static void enableRawSerializers() {
         RAW_SERIALIZERS_ENABLED = true;
-        rawSerializers.entrySet().forEach(entry -> serializers.put(entry.getKey(), entry.getValue()));
+        rawSerializers.entrySet().forEach(entry -> register(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * We overwrite regular Serializers with their View versions: the messages are read in raw format, and their
+     * fields are only decoded when they are requested (see TxViewMsg). This takes precedence over the RAW versions
+     * for the same messages.
+     */
+    public static void enableViewSerializers() {
+        viewSerializers.entrySet().forEach(entry -> register(entry.getKey(), entry.getValue()));
     }
 
     /**
@@ -110,6 +141,15 @@ public class MsgSerializersFactory {
      * @param command Message Type to Deserialize
      */
     public static LargeMessageDeserializer getLargeMsgDeserializer(String command, int minBytesPerSec) {
+        return getLargeMsgDeserializer(MsgCommands.idOf(command), minBytesPerSec);
+    }
+
+    /**
+     * It returns an instance of a Deserializer for Large Messages (see "getLargeMsgDeserializer(String, int)")
+     *
+     * @param commandId Id of the Message Type to Deserialize (see MsgCommands)
+     */
+    public static LargeMessageDeserializer getLargeMsgDeserializer(int commandId, int minBytesPerSec) {
         LargeMessageDeserializer result = null;
 
         // We need to instantiate each Serializer manually, based on the COMMAND and whether the RAW versions of
@@ -118,9 +158,9 @@ public class MsgSerializersFactory {
         // will be triggered in this same Thread ina blocking way, but that's all right since the LargeDeserializers
         // are already running in their own Thread.
 
-        if (command.equalsIgnoreCase(BlockMsg.MESSAGE_TYPE)) {
+        if (commandId == BLOCK_ID) {
             result = (RAW_SERIALIZERS_ENABLED) ? new RawBigBlockDeserializer() : new BigBlockDeserializer();
-        } else if (command.equalsIgnoreCase(BlockTxnMsg.MESSAGE_TYPE)) {
+        } else if (commandId == BLOCK_TXN_ID) {
             result = new BigBlockTxnDeserializer();
         }
 
@@ -135,7 +175,16 @@ public class MsgSerializersFactory {
      * Indicates if there is a Serializer register for this Message.
      */
     public static boolean hasSerializerFor(String command, boolean onlyForLargeMessages) {
-        boolean result = (!onlyForLargeMessages) ? serializers.containsKey(command.toUpperCase()) : (getLargeMsgDeserializer(command, 0) != null);
+        return hasSerializerFor(MsgCommands.idOf(command), onlyForLargeMessages);
+    }
+
+    /**
+     * Indicates if there is a Serializer register for the Message with the Command id given (see MsgCommands).
+     */
+    public static boolean hasSerializerFor(int commandId, boolean onlyForLargeMessages) {
+        boolean result = (!onlyForLargeMessages)
+                ? getSerializer(commandId) != null
+                : (commandId == BLOCK_ID || commandId == BLOCK_TXN_ID);
         return result;
     }
 }
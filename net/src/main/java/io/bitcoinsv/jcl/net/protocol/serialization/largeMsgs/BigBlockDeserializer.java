@@ -24,8 +24,11 @@ import java.util.concurrent.ExecutorService;
  * behaviour consists of deserializing "small" parts of the Block and notify them using the convenience methods
  * "notify" provided by the parent Class. Those notifications will trigger callbacks that previously must have been
  * fed by the client of this class.
+ *
+ * The Deserialization can be run in one go ("deserializeBody()"), or it can be resumed several times as the bytes
+ * arrive ("start()" + "resume()"). The Batches notified are the same in both cases.
  */
-public class BigBlockDeserializer extends LargeMessageDeserializerImpl {
+public class BigBlockDeserializer extends LargeMessageDeserializerImpl implements ResumableLargeMessageDeserializer {
 
     private static final Logger log = org.slf4j.LoggerFactory.getLogger(BigBlockDeserializer.class);
 
@@ -33,6 +36,19 @@ public class BigBlockDeserializer extends LargeMessageDeserializerImpl {
     // deserialize each set of TXs:
     private BlockHeaderMsg blockHeader;
 
+    // Cursor of the Deserialization, so it can be resumed when more bytes arrive:
+    private DeserializerContext context;
+    private HeaderMsg headerMsg;
+    private long numTxs;
+    private long numTxsDeserialized;
+    private long txsBytesRemaining;
+
+    // Batch of Txs being populated, its size, and its order within the Block:
+    private List<TxMsg> txList = new ArrayList<>();
+    private int currentBatchSize = 0;
+    private long txsOrderNumber = 0;
+    private Instant deserializingTime;
+
     /** Constructor */
     public BigBlockDeserializer(ExecutorService executor) {
         super(executor); }
@@ -43,66 +59,107 @@ public class BigBlockDeserializer extends LargeMessageDeserializerImpl {
     @Override
     public void deserializeBody(DeserializerContext context, HeaderMsg headerMsg, ByteArrayReader byteReader) {
         try {
-            // Sanity Check:
-            Preconditions.checkState(super.partialMsgSize != null, "The Size of partial Msgs must be defined before using a Large Deserializer");
-
             // We first deserialize the Block Header:
-            log.trace("Deserializing the Block Header...");
-            blockHeader = BlockHeaderMsgSerializer.getInstance().deserialize(context, byteReader);
-            PartialBlockHeaderMsg partialBlockHeader = PartialBlockHeaderMsg.builder()
-                    .headerMsg(headerMsg)
-                    .blockHeader(blockHeader)
-                    .txsSizeInBytes(context.getMaxBytesToRead() - blockHeader.getLengthInBytes())
-                    .blockTxsFormat(PartialBlockHeaderMsg.BlockTxsFormat.DESERIALIZED)
-                    .build();
-            notifyDeserialization(partialBlockHeader);
+            start(context, headerMsg);
+            deserializeBlockHeader(byteReader);
 
             // Now we Deserialize the Txs, in batches..
             log.trace("Deserializing TXs...");
-            long numTxs = blockHeader.getTransactionCount().getValue();
-            List<TxMsg> txList = new ArrayList<>();
-
-            // Order of each batch of Txs within the Block
-            long txsOrderNumber = 0;
-
-            // We keep track of some values:
-            int currentBatchSize = 0;
-            Instant deserializingTime = Instant.now();
-
-            for (int i = 0; i < numTxs; i++) {
-                TxMsg txMsg = TxMsgSerializer.getInstance().deserialize(context, byteReader);
-                currentBatchSize += txMsg.getLengthInBytes();
-                txList.add(txMsg);
-                if (i > 0 && currentBatchSize > super.partialMsgSize) {
-                    // We notify about a new Batch of TX Deserialized...
-                    log.trace("Batch of " + txList.size() + " Txs deserialized :: "
-                            + currentBatchSize + " bytes, "
-                            + Duration.between(deserializingTime, Instant.now()).toMillis() + " milissecs...");
-                    PartialBlockTXsMsg partialBlockTXs = PartialBlockTXsMsg.builder()
-                            .blockHeader(blockHeader)
-                            .txs(txList)
-                            .txsOrdersNumber(txsOrderNumber)
-                            .build();
-                    txList = new ArrayList<>();
-                    notifyDeserialization(partialBlockTXs);
-
-                    // We reset the counters...
-                    currentBatchSize = 0;
-                    deserializingTime = Instant.now();
-                    txsOrderNumber++;
-                }
-            } // for...
+            while (numTxsDeserialized < numTxs) {
+                deserializeNextTx(byteReader);
+            }
             // In case we still have some TXs without being notified, we do it now...
-            if (txList.size() > 0)
-                notifyDeserialization(PartialBlockTXsMsg.builder()
-                        .blockHeader(blockHeader)
-                        .txs(txList)
-                        .txsOrdersNumber(txsOrderNumber)
-                        .build());
+            flushBatch();
 
         } catch (Exception e) {
             e.printStackTrace();
             notifyError(e);
         }
     }
+
+    @Override
+    public void start(DeserializerContext context, HeaderMsg headerMsg) {
+        // Sanity Check:
+        Preconditions.checkState(super.partialMsgSize != null, "The Size of partial Msgs must be defined before using a Large Deserializer");
+        this.context = context;
+        this.headerMsg = headerMsg;
+        this.blockHeader = null;
+        this.numTxs = 0;
+        this.numTxsDeserialized = 0;
+        this.txsBytesRemaining = 0;
+        this.txList = new ArrayList<>();
+        this.currentBatchSize = 0;
+        this.txsOrderNumber = 0;
+        this.deserializingTime = Instant.now();
+    }
+
+    @Override
+    public boolean resume(ByteArrayReader byteReader) {
+        try {
+            // The Block Header is only deserialized once we have all its bytes:
+            if (blockHeader == null) {
+                if (!isVarIntAvailable(byteReader, BLOCK_HEADER_SIMPLE_LENGTH)) return false;
+                deserializeBlockHeader(byteReader);
+            }
+
+            // And we deserialize as many complete Txs as we have in the Reader:
+            while (numTxsDeserialized < numTxs) {
+                if (getNextTxLengthIfAvailable(byteReader, txsBytesRemaining) < 0) return false;
+                deserializeNextTx(byteReader);
+            }
+
+            // In case we still have some TXs without being notified, we do it now...
+            flushBatch();
+        } catch (Exception e) {
+            notifyError(e);
+        }
+        return true;
+    }
+
+    // It deserializes the Block Header and notifies it
+    private void deserializeBlockHeader(ByteArrayReader byteReader) {
+        log.trace("Deserializing the Block Header...");
+        blockHeader = BlockHeaderMsgSerializer.getInstance().deserialize(context, byteReader);
+        numTxs = blockHeader.getTransactionCount().getValue();
+        txsBytesRemaining = context.getMaxBytesToRead() - blockHeader.getLengthInBytes();
+        PartialBlockHeaderMsg partialBlockHeader = PartialBlockHeaderMsg.builder()
+                .headerMsg(headerMsg)
+                .blockHeader(blockHeader)
+                .txsSizeInBytes(txsBytesRemaining)
+                .blockTxsFormat(PartialBlockHeaderMsg.BlockTxsFormat.DESERIALIZED)
+                .build();
+        notifyDeserialization(partialBlockHeader);
+    }
+
+    // It deserializes the next Tx and adds it to the current batch, which is notified if it's full
+    private void deserializeNextTx(ByteArrayReader byteReader) {
+        TxMsg txMsg = TxMsgSerializer.getInstance().deserialize(context, byteReader);
+        currentBatchSize += txMsg.getLengthInBytes();
+        txsBytesRemaining -= txMsg.getLengthInBytes();
+        txList.add(txMsg);
+        if (numTxsDeserialized > 0 && currentBatchSize > super.partialMsgSize) {
+            // We notify about a new Batch of TX Deserialized...
+            log.trace("Batch of " + txList.size() + " Txs deserialized :: "
+                    + currentBatchSize + " bytes, "
+                    + Duration.between(deserializingTime, Instant.now()).toMillis() + " milissecs...");
+            flushBatch();
+
+            // We reset the counters...
+            deserializingTime = Instant.now();
+            txsOrderNumber++;
+        }
+        numTxsDeserialized++;
+    }
+
+    // It pushes the current batch down the pipeline, if not empty
+    private void flushBatch() {
+        if (txList.size() > 0)
+            notifyDeserialization(PartialBlockTXsMsg.builder()
+                    .blockHeader(blockHeader)
+                    .txs(txList)
+                    .txsOrdersNumber(txsOrderNumber)
+                    .build());
+        txList = new ArrayList<>();
+        currentBatchSize = 0;
+    }
 }
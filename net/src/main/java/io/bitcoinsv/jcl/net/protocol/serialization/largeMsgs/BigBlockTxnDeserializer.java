@@ -1,6 +1,7 @@
 package io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs;
 
 
+import io.bitcoinsv.jcl.net.protocol.messages.HashMsg;
 import io.bitcoinsv.jcl.net.protocol.messages.HeaderMsg;
 import io.bitcoinsv.jcl.net.protocol.messages.PartialBlockTxnMsg;
 import io.bitcoinsv.jcl.net.protocol.messages.TxMsg;
@@ -20,11 +21,22 @@ import static java.util.Optional.ofNullable;
  * @author j.pomer@nchain.com
  * Copyright (c) 2018-2021 nChain Ltd
  */
-public class BigBlockTxnDeserializer extends LargeMessageDeserializerImpl {
+public class BigBlockTxnDeserializer extends LargeMessageDeserializerImpl implements ResumableLargeMessageDeserializer {
 
     // The TX are Deserialized and notified in batches:
     private static final int TX_BATCH = 10_000;
 
+    // Cursor of the Deserialization, so it can be resumed when more bytes arrive:
+    private DeserializerContext context;
+    private HeaderMsg headerMsg;
+    private HashMsg blockHash;
+    private long numOfTxs;
+    private long numTxsDeserialized;
+    private long txsBytesRemaining;
+    private long batchSize;
+    private int order;
+    private List<TxMsg> transactions = new ArrayList<>();
+
     public BigBlockTxnDeserializer() {
     }
 
@@ -34,34 +46,82 @@ public class BigBlockTxnDeserializer extends LargeMessageDeserializerImpl {
 
     @Override
     public void deserializeBody(DeserializerContext context, HeaderMsg headerMsg, ByteArrayReader byteReader) {
-        var blockHash = HashMsgSerializer.getInstance().deserialize(context, byteReader);
-        var numOfTxs = VarIntMsgSerializer.getInstance().deserialize(context, byteReader).getValue();
-
-        context.setCalculateHashes(true);
+        start(context, headerMsg);
+        deserializeBlockHash(byteReader);
 
-        long batchSize = ofNullable(context.getBatchSize()).orElse(TX_BATCH);
+        while (numTxsDeserialized < numOfTxs) {
+            deserializeNextTx(byteReader);
+        }
 
-        int order = 0;
+        flushBatch();
+    }
 
-        List<TxMsg> transactions = new ArrayList<>();
-        for (int i = 0; i < numOfTxs; i++) {
-            transactions.add(TxMsgSerializer.getInstance().deserialize(context, byteReader));
+    @Override
+    public void start(DeserializerContext context, HeaderMsg headerMsg) {
+        this.context = context;
+        this.headerMsg = headerMsg;
+        this.blockHash = null;
+        this.numOfTxs = 0;
+        this.numTxsDeserialized = 0;
+        this.txsBytesRemaining = 0;
+        this.batchSize = ofNullable(context.getBatchSize()).orElse(TX_BATCH);
+        this.order = 0;
+        this.transactions = new ArrayList<>();
+    }
 
-            if (transactions.size() == batchSize) {
-                notifyDeserialization(
-                    PartialBlockTxnMsg.builder()
-                        .headerMsg(headerMsg)
-                        .blockHash(blockHash)
-                        .transactions(new ArrayList<>(transactions))
-                        .order(order)
-                        .build()
-                );
+    @Override
+    public boolean resume(ByteArrayReader byteReader) {
+        try {
+            // The Block Hash and the number of Txs are only deserialized once we have all their bytes:
+            if (blockHash == null) {
+                if (!isVarIntAvailable(byteReader, HashMsg.HASH_LENGTH)) return false;
+                deserializeBlockHash(byteReader);
+            }
 
-                order++;
-                transactions.clear();
+            // And we deserialize as many complete Txs as we have in the Reader:
+            while (numTxsDeserialized < numOfTxs) {
+                if (getNextTxLengthIfAvailable(byteReader, txsBytesRemaining) < 0) return false;
+                deserializeNextTx(byteReader);
             }
+
+            flushBatch();
+        } catch (Exception e) {
+            notifyError(e);
         }
+        return true;
+    }
+
+    private void deserializeBlockHash(ByteArrayReader byteReader) {
+        blockHash = HashMsgSerializer.getInstance().deserialize(context, byteReader);
+        var txsCount = VarIntMsgSerializer.getInstance().deserialize(context, byteReader);
+        numOfTxs = txsCount.getValue();
+        txsBytesRemaining = context.getMaxBytesToRead() - blockHash.getLengthInBytes() - txsCount.getLengthInBytes();
+
+        context.setCalculateHashes(true);
+    }
+
+    private void deserializeNextTx(ByteArrayReader byteReader) {
+        TxMsg tx = TxMsgSerializer.getInstance().deserialize(context, byteReader);
+        transactions.add(tx);
+        txsBytesRemaining -= tx.getLengthInBytes();
+        numTxsDeserialized++;
+
+        if (transactions.size() == batchSize) {
+            notifyDeserialization(
+                PartialBlockTxnMsg.builder()
+                    .headerMsg(headerMsg)
+                    .blockHash(blockHash)
+                    .transactions(new ArrayList<>(transactions))
+                    .order(order)
+                    .build()
+            );
+
+            order++;
+            transactions.clear();
+        }
+    }
 
+    private void flushBatch() {
         if (!transactions.isEmpty()) {
             notifyDeserialization(
                 PartialBlockTxnMsg.builder()
@@ -71,6 +131,7 @@ public class BigBlockTxnDeserializer extends LargeMessageDeserializerImpl {
                     .order(order)
                     .build()
             );
+            transactions = new ArrayList<>();
         }
     }
 }
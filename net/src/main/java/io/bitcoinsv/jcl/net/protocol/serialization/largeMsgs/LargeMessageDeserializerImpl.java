@@ -5,6 +5,7 @@ import io.bitcoinsv.jcl.net.protocol.messages.common.Message;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReaderRealTime;
 import io.bitcoinsv.jcl.tools.events.EventBus;
+import io.bitcoinsv.jcl.tools.serialization.TxLengthScanner;
 
 import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
@@ -18,6 +19,8 @@ import java.util.function.Consumer;
  */
 public abstract class LargeMessageDeserializerImpl implements LargeMessageDeserializer {
 
+    // Length of a Block Header without the number of Txs (version + prevBlockHash + merkleRoot + time + bits + nonce):
+    protected static final int BLOCK_HEADER_SIMPLE_LENGTH = 80;
 
     // Used to trigger the callbacks
     private EventBus eventBus;
@@ -32,6 +35,10 @@ public abstract class LargeMessageDeserializerImpl implements LargeMessageDeseri
     // uses this property for the chunks/btches of Txs returned.
     protected Integer partialMsgSize;
 
+    // Scan of the length of the next Tx (used by the Resumable Deserializers). It's kept between calls, so the bytes
+    // of a big Tx arriving in small chunks are only scanned once:
+    private final TxLengthScanner txLengthScanner = new TxLengthScanner();
+
     /** Constructor. The ServiceExecutor will be used to trigger the callbacks in a different Thread */
     public LargeMessageDeserializerImpl(ExecutorService executor) {
         this.eventBus = EventBus.builder().executor(executor).build();
@@ -90,4 +97,31 @@ public abstract class LargeMessageDeserializerImpl implements LargeMessageDeseri
             ((ByteArrayReaderRealTime) byteReader).resetReaderSpeed();
         }
     }
+
+    // It checks if the bytes of the VarInt at the offset given are already available in the Reader (used by the
+    // Resumable Deserializers, before reading any field of variable length):
+    protected boolean isVarIntAvailable(ByteArrayReader byteReader, int offset) {
+        if (byteReader.size() <= offset) return false;
+        int firstByte = 0xFF & byteReader.get(offset, 1)[0];
+        int varIntSize = (firstByte < 253) ? 1 : (firstByte == 253) ? 3 : (firstByte == 254) ? 5 : 9;
+        return byteReader.size() >= offset + varIntSize;
+    }
+
+    // It returns the length of the next Tx if all its bytes are already available in the Reader, or -1 otherwise.
+    // If the Tx turns out to be bigger than the bytes remaining in the Message, the Message is corrupted.
+    // If the Tx is not complete yet, the scan goes on from the same point next time. Otherwise, the Tx is expected to
+    // be read from the Reader right after this call.
+    protected long getNextTxLengthIfAvailable(ByteArrayReader byteReader, long bytesRemaining) {
+        long txLength;
+        try {
+            txLength = txLengthScanner.scan(byteReader);
+        } catch (RuntimeException e) {
+            txLengthScanner.reset();
+            throw e;
+        }
+        if (txLength >= 0) txLengthScanner.reset();
+        if (txLength > bytesRemaining || (txLength < 0 && byteReader.size() >= bytesRemaining))
+            throw new IllegalStateException("Tx found is longer than the " + bytesRemaining + " bytes remaining in the Message");
+        return txLength;
+    }
 }
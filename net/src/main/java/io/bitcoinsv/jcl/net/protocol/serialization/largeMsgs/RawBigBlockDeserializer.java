@@ -21,8 +21,11 @@ import java.util.concurrent.ExecutorService;
  * behaviour consists of deserializing "small" parts of the Block and notify them using the convenience methods
  * "notify" provided by the parent Class. Those notifications will trigger callbacks that previously must have been
  * fed by the client of this class. All notifications will contain Raw Tx Data.
+ *
+ * The Deserialization can be run in one go ("deserializeBody()"), or it can be resumed several times as the bytes
+ * arrive ("start()" + "resume()"). The Batches notified are the same in both cases.
  */
-public class RawBigBlockDeserializer extends LargeMessageDeserializerImpl {
+public class RawBigBlockDeserializer extends LargeMessageDeserializerImpl implements ResumableLargeMessageDeserializer {
 
     private static final Logger log = org.slf4j.LoggerFactory.getLogger(RawBigBlockDeserializer.class);
 
@@ -30,6 +33,16 @@ public class RawBigBlockDeserializer extends LargeMessageDeserializerImpl {
     // deserialize each set of TXs:
     private BlockHeaderMsg blockHeader;
 
+    // Cursor of the Deserialization, so it can be resumed when more bytes arrive:
+    private DeserializerContext context;
+    private HeaderMsg headerMsg;
+    private long txsBytesRemaining;
+
+    // Batch of Txs being populated, its size, and its order within the Block:
+    private List<RawTxMsg> rawTxBatch = new ArrayList<>();
+    private int totalSizeInBatch = 0;
+    private long txsOrderNumber = 0;
+
     /** Constructor */
     public RawBigBlockDeserializer(ExecutorService executor) {
         super(executor);
@@ -47,79 +60,17 @@ public class RawBigBlockDeserializer extends LargeMessageDeserializerImpl {
             adjustReaderSpeed(byteReader);
 
             // We first deserialize the Block Header:
-            log.trace("Deserializing the Block Header...");
-            blockHeader = BlockHeaderMsgSerializer.getInstance().deserialize(context, byteReader);
-            PartialBlockHeaderMsg partialBlockHeader = PartialBlockHeaderMsg.builder()
-                    .headerMsg(headerMsg)
-                    .blockHeader(blockHeader)
-                    .txsSizeInBytes(context.getMaxBytesToRead() - blockHeader.getLengthInBytes())
-                    .blockTxsFormat(PartialBlockHeaderMsg.BlockTxsFormat.RAW)
-                    .build();
-            notifyDeserialization(partialBlockHeader);
+            start(context, headerMsg);
+            deserializeBlockHeader(byteReader);
 
             // Now we Deserialize the Txs, in batches...
             log.trace("Deserializing TXs...");
-
-            // We use a RawBlockMsgSerializer, which already contains the logic for this:
-            RawBlockMsgSerializer rawBlockMsgSerializer = RawBlockMsgSerializer.getInstance();
-
-            long txsBytesSize = context.getMaxBytesToRead() - blockHeader.getLengthInBytes();
-            long totalBytesRemaining = txsBytesSize;
-            int totalSizeInBatch = 0;
-
-            // Order of each batch of Txs within the Block
-            long txsOrderNumber = 0;
-
-            //record each tx in this batch
-            List<RawTxMsg> rawTxBatch = new ArrayList<>();
-
-            while (totalBytesRemaining > 0) {
-
-                RawTxMsg tx = rawBlockMsgSerializer.deserializeNextTx(context, byteReader);
-                long totalBytesInTx = tx.getLengthInBytes();
-
-                //if we have enough space then add it
-                if(totalSizeInBatch + totalBytesInTx <= super.partialMsgSize){
-                    totalSizeInBatch += totalBytesInTx;
-                    rawTxBatch.add(tx);
-                } else {
-                    // We do not Have enough space in this Batch for this Tx. push the batch we have so far down the pipeline
-                    PartialBlockRawTxMsg partialBlockRawTXs = PartialBlockRawTxMsg.builder()
-                            .blockHeader(blockHeader)
-                            .txs(rawTxBatch)
-                            .txsOrdersNumber(txsOrderNumber)
-                            .build();
-                    notifyDeserialization(partialBlockRawTXs);
-
-                    //we're now moving onto the next batch
-                    rawTxBatch = new ArrayList<>();
-                    txsOrderNumber++;
-                    totalSizeInBatch = 0;
-
-                    // We add this Tx to the next Batch:
-                    rawTxBatch.add(tx);
-
-                    // If the size of this individual Tx is already bigger than our Max Batch size, this Txs will be
-                    // pushed down in the next iteration, but we warm of this situation here...
-                    if(totalBytesInTx > super.partialMsgSize){
-                        log.warn("Tx bigger than the current max Batch size has been added to the Batch, it will be pushed next.");
-                    }
-
-                }
-
-                totalBytesRemaining -= totalBytesInTx;
+            while (txsBytesRemaining > 0) {
+                deserializeNextTx(byteReader);
             }
 
             //flush any remaining txs
-            if(rawTxBatch.size() > 0){
-                //push the batch down the pipeline
-                PartialBlockRawTxMsg partialBlockRawTXs = PartialBlockRawTxMsg.builder()
-                        .blockHeader(blockHeader)
-                        .txs(rawTxBatch)
-                        .txsOrdersNumber(txsOrderNumber)
-                        .build();
-                notifyDeserialization(partialBlockRawTXs);
-            }
+            flushBatch();
 
             // We reset the reader as it was before..
             resetReaderSpeed(byteReader);
@@ -131,4 +82,95 @@ public class RawBigBlockDeserializer extends LargeMessageDeserializerImpl {
             th.printStackTrace();
         }
     }
+
+    @Override
+    public void start(DeserializerContext context, HeaderMsg headerMsg) {
+        this.context = context;
+        this.headerMsg = headerMsg;
+        this.blockHeader = null;
+        this.txsBytesRemaining = 0;
+        this.rawTxBatch = new ArrayList<>();
+        this.totalSizeInBatch = 0;
+        this.txsOrderNumber = 0;
+    }
+
+    @Override
+    public boolean resume(ByteArrayReader byteReader) {
+        try {
+            // The Block Header is only deserialized once we have all its bytes:
+            if (blockHeader == null) {
+                if (!isVarIntAvailable(byteReader, BLOCK_HEADER_SIMPLE_LENGTH)) return false;
+                deserializeBlockHeader(byteReader);
+            }
+
+            // And we deserialize as many complete Txs as we have in the Reader:
+            while (txsBytesRemaining > 0) {
+                if (getNextTxLengthIfAvailable(byteReader, txsBytesRemaining) < 0) return false;
+                deserializeNextTx(byteReader);
+            }
+
+            //flush any remaining txs
+            flushBatch();
+        } catch (Exception e) {
+            notifyError(e);
+        }
+        return true;
+    }
+
+    // It deserializes the Block Header and notifies it
+    private void deserializeBlockHeader(ByteArrayReader byteReader) {
+        log.trace("Deserializing the Block Header...");
+        blockHeader = BlockHeaderMsgSerializer.getInstance().deserialize(context, byteReader);
+        txsBytesRemaining = context.getMaxBytesToRead() - blockHeader.getLengthInBytes();
+        PartialBlockHeaderMsg partialBlockHeader = PartialBlockHeaderMsg.builder()
+                .headerMsg(headerMsg)
+                .blockHeader(blockHeader)
+                .txsSizeInBytes(txsBytesRemaining)
+                .blockTxsFormat(PartialBlockHeaderMsg.BlockTxsFormat.RAW)
+                .build();
+        notifyDeserialization(partialBlockHeader);
+    }
+
+    // It deserializes the next Tx and adds it to the current batch, which is notified if it's full
+    private void deserializeNextTx(ByteArrayReader byteReader) {
+        RawTxMsg tx = RawBlockMsgSerializer.deserializeNextTx(context, byteReader);
+        long totalBytesInTx = tx.getLengthInBytes();
+
+        //if we have enough space then add it
+        if (totalSizeInBatch + totalBytesInTx <= super.partialMsgSize) {
+            totalSizeInBatch += totalBytesInTx;
+            rawTxBatch.add(tx);
+        } else {
+            // We do not Have enough space in this Batch for this Tx. push the batch we have so far down the pipeline
+            flushBatch();
+
+            //we're now moving onto the next batch
+            txsOrderNumber++;
+
+            // We add this Tx to the next Batch:
+            rawTxBatch.add(tx);
+
+            // If the size of this individual Tx is already bigger than our Max Batch size, this Txs will be
+            // pushed down in the next iteration, but we warm of this situation here...
+            if (totalBytesInTx > super.partialMsgSize) {
+                log.warn("Tx bigger than the current max Batch size has been added to the Batch, it will be pushed next.");
+            }
+        }
+
+        txsBytesRemaining -= totalBytesInTx;
+    }
+
+    // It pushes the current batch down the pipeline, if not empty
+    private void flushBatch() {
+        if (rawTxBatch.size() > 0) {
+            PartialBlockRawTxMsg partialBlockRawTXs = PartialBlockRawTxMsg.builder()
+                    .blockHeader(blockHeader)
+                    .txs(rawTxBatch)
+                    .txsOrdersNumber(txsOrderNumber)
+                    .build();
+            notifyDeserialization(partialBlockRawTXs);
+        }
+        rawTxBatch = new ArrayList<>();
+        totalSizeInBatch = 0;
+    }
 }
@@ -0,0 +1,36 @@
+package io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs;
+
+import io.bitcoinsv.jcl.net.protocol.messages.HeaderMsg;
+import io.bitcoinsv.jcl.net.protocol.serialization.common.DeserializerContext;
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A Large Message Deserializer that never blocks waiting for bytes. Instead of running the whole Deserialization in
+ * one call (which needs a Dedicated Thread, since the bytes are still coming), the Deserialization is split in
+ * several calls: Each time new bytes arrive, "resume()" deserializes as many parts of the Message as those bytes
+ * allow, notifies them through the callbacks, and saves the point where it stopped (the bytes of an incomplete part
+ * are left in the Reader). The next call will resume from that point.
+ *
+ * So these Deserializers can run in the same Thread that feeds the bytes, and no Thread is blocked while the rest of
+ * the Message is coming.
+ */
+public interface ResumableLargeMessageDeserializer extends LargeMessageDeserializer {
+
+    /**
+     * It gets the Deserializer ready for a new Message. No bytes are read at this moment.
+     * @param context    Deserialization Context
+     * @param headerMsg  Header of the message to Deserialize
+     */
+    void start(DeserializerContext context, HeaderMsg headerMsg);
+
+    /**
+     * It deserializes as many parts of the Body as possible from the bytes already available in the Reader, without
+     * waiting for more. The parts (and any error) are notified through the callbacks.
+     * @param byteReader Reader containing the bytes of the BODY received so far (and not deserialized yet)
+     * @return TRUE if the Deserialization of the Body is finished (or has failed), FALSE if more bytes are needed
+     */
+    boolean resume(ByteArrayReader byteReader);
+}
@@ -4,6 +4,8 @@ import io.bitcoinsv.jcl.net.network.PeerAddress;
 import io.bitcoinsv.jcl.net.network.config.NetworkConfig;
 import io.bitcoinsv.jcl.net.network.config.NetworkConfigImpl;
 import io.bitcoinsv.jcl.net.network.config.provided.NetworkDefaultConfig;
+import io.bitcoinsv.jcl.net.network.handlers.LoopbackNetwork;
+import io.bitcoinsv.jcl.net.network.handlers.LoopbackNetworkHandler;
 import io.bitcoinsv.jcl.net.network.handlers.NetworkHandlerImpl;
 import io.bitcoinsv.jcl.net.protocol.config.ProtocolBasicConfig;
 import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfig;
@@ -55,6 +57,8 @@ public class P2PBuilder {
     // instead, that will set the address to "127.0.0.1" which is more efficient.
     private String serverAddress = "0.0.0.0";
     private Integer serverPort; // when running in Server Mode and it might be different for the rest of the network ports
+    // If set, the P2P connects to other P2P instances in the same JVM through this Network, instead of using Sockets:
+    private LoopbackNetwork loopbackNetwork;
 
 
     // Map to store all the Configurations of all the P2P Handlers included in the P2P Wrapper
@@ -163,6 +167,15 @@ public class P2PBuilder {
         return this;
     }
 
+    /**
+     * The P2P will connect to other P2P instances in the same JVM through the LoopbackNetwork given, instead of using
+     * Sockets. Useful for benchmarks, since it takes the kernel networking out of the picture.
+     */
+    public P2PBuilder useLoopbackNetwork(LoopbackNetwork loopbackNetwork) {
+        this.loopbackNetwork = loopbackNetwork;
+        return this;
+    }
+
     private void setUpRuntimeConfigIfNull() {
         if (this.runtimeConfig == null) { this.runtimeConfig = new RuntimeConfigDefault();}
     }
@@ -182,7 +195,9 @@ public class P2PBuilder {
 
             if (this.serverPort == null) this.serverPort = networkConfig.getPort();
             String serverIp = "0.0.0.0:" + this.serverPort;
-            Handler networkHandler = new NetworkHandlerImpl(id, runtimeConfig, networkConfig, PeerAddress.fromIp(serverIp));
+            Handler networkHandler = (loopbackNetwork != null)
+                    ? new LoopbackNetworkHandler(id, runtimeConfig, networkConfig, PeerAddress.fromIp(serverIp), loopbackNetwork)
+                    : new NetworkHandlerImpl(id, runtimeConfig, networkConfig, PeerAddress.fromIp(serverIp));
             result.put(networkHandler.getId(), networkHandler);
 
             // P2P Handlers:
@@ -112,6 +112,7 @@ public class P2PEventStreamer {
         public final EventStreamer<RejectMsgReceivedEvent>                      REJECT              = new EventStreamer<>(eventBus, RejectMsgReceivedEvent.class, numThreads);
         public final EventStreamer<TxMsgReceivedEvent>                          TX                  = new EventStreamer<>(eventBus, TxMsgReceivedEvent.class, numThreads);
         public final EventStreamer<RawTxMsgReceivedEvent>                       TX_RAW              = new EventStreamer<>(eventBus, RawTxMsgReceivedEvent.class, numThreads);
+        public final EventStreamer<TxViewMsgReceivedEvent>                      TX_VIEW             = new EventStreamer<>(eventBus, TxViewMsgReceivedEvent.class, numThreads);
         public final EventStreamer<GetHeadersMsgReceivedEvent>                  GETHEADERS          = new EventStreamer<>(eventBus, GetHeadersMsgReceivedEvent.class, numThreads);
         public final EventStreamer<SendHeadersMsgReceivedEvent>                 SENDHEADERS         = new EventStreamer<>(eventBus, SendHeadersMsgReceivedEvent.class, numThreads);
         public final EventStreamer<HeadersMsgReceivedEvent>                     HEADERS             = new EventStreamer<>(eventBus, HeadersMsgReceivedEvent.class, numThreads);
@@ -120,6 +121,9 @@ public class P2PEventStreamer {
         public final EventStreamer<PartialBlockTxnDownloadedEvent>              PARTIAL_BLOCKTXN    = new EventStreamer<>(eventBus, PartialBlockTxnDownloadedEvent.class, numThreads);
         public final EventStreamer<TxsBatchMsgReceivedEvent>                    TX_BATCH            = new EventStreamer<>(eventBus, TxsBatchMsgReceivedEvent.class, numThreads);
         public final EventStreamer<RawTxsBatchMsgReceivedEvent>                 TX_RAW_BATCH        = new EventStreamer<>(eventBus, RawTxsBatchMsgReceivedEvent.class, numThreads);
+        public final EventStreamer<InvsBatchMsgReceivedEvent>                   INV_BATCH           = new EventStreamer<>(eventBus, InvsBatchMsgReceivedEvent.class, numThreads);
+        public final EventStreamer<AddrsBatchMsgReceivedEvent>                  ADDR_BATCH          = new EventStreamer<>(eventBus, AddrsBatchMsgReceivedEvent.class, numThreads);
+        public final EventStreamer<HeadersBatchMsgReceivedEvent>                HEADERS_BATCH       = new EventStreamer<>(eventBus, HeadersBatchMsgReceivedEvent.class, numThreads);
 
         public final EventStreamer<MsgSentEvent>                                ALL_SENT            = new EventStreamer<>(eventBus, MsgSentEvent.class, numThreads);
         public final EventStreamer<VersionMsgSentEvent>                         VERSION_SENT        = new EventStreamer<>(eventBus, VersionMsgSentEvent.class, numThreads);
@@ -76,8 +76,9 @@ public class LoggerUtil {
         return result.toString();
     }
 
-    public void trace(Object... args)                   { logger.trace(format(args)); }
-    public void debug(Object... args)                   { logger.debug(format(args)); }
+    public boolean isTraceEnabled()                     { return logger.isTraceEnabled(); }
+    public void trace(Object... args)                   { if (logger.isTraceEnabled()) logger.trace(format(args)); }
+    public void debug(Object... args)                   { if (logger.isDebugEnabled()) logger.debug(format(args)); }
     public void info(Object... args)                    { logger.info(format(args)); }
     public void warm(Object... args)                    { logger.warn(format(args)); }
     public void error(Object... args)                   { logger.error(format(args), (Throwable) null); }
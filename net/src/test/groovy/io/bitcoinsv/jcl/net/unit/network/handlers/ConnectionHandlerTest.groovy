@@ -2,12 +2,14 @@ package io.bitcoinsv.jcl.net.unit.network.handlers
 
 import io.bitcoinsv.jcl.net.network.PeerAddress
 import io.bitcoinsv.jcl.net.network.config.NetworkConfig
+import io.bitcoinsv.jcl.net.network.config.NetworkConfigImpl
 import io.bitcoinsv.jcl.net.network.config.provided.NetworkDefaultConfig
 import io.bitcoinsv.jcl.net.network.events.PeerConnectedEvent
 import io.bitcoinsv.jcl.net.network.events.PeerDisconnectedEvent
 import io.bitcoinsv.jcl.net.network.events.PeerRejectedEvent
 import io.bitcoinsv.jcl.net.network.handlers.NetworkHandler
 import io.bitcoinsv.jcl.net.network.handlers.NetworkHandlerImpl
+import io.bitcoinsv.jcl.net.network.handlers.NetworkHandlerState
 import io.bitcoinsv.jcl.tools.config.RuntimeConfig
 import io.bitcoinsv.jcl.tools.config.provided.RuntimeConfigDefault
 import io.bitcoinsv.jcl.tools.events.EventBus
@@ -133,5 +135,87 @@ class ConnectionHandlerTest extends Specification {
             clientRejected.get()
     }
 
+    /**
+     * Testing that when several Peers connect to a Server, the connections are spread across all the I/O Reactors
+     */
+    def "testing Connections spread across Reactors"() {
+        given:
+            int NUM_REACTORS = 3
+            int NUM_CLIENTS = 6
+            RuntimeConfig runtimeConfig = new RuntimeConfigDefault()
+            NetworkConfig networkConfig = ((NetworkConfigImpl) new NetworkDefaultConfig()).toBuilder()
+                    .nioNumReactors(NUM_REACTORS)
+                    .build()
+
+            // The Server:
+            EventBus serverEventBus = EventBus.builder().executor(ThreadUtils.getSingleThreadExecutorService("Server-EventBus-")).build()
+            NetworkHandler server = new NetworkHandlerImpl("server", runtimeConfig, networkConfig, PeerAddress.localhost(0))
+            server.useEventBus(serverEventBus)
+
+            // The Clients:
+            List<NetworkHandler> clients = new ArrayList<>()
+            for (int i = 0; i < NUM_CLIENTS; i++) {
+                EventBus clientEventBus = EventBus.builder().executor(ThreadUtils.getSingleThreadExecutorService("Client-EventBus-")).build()
+                NetworkHandler client = new NetworkHandlerImpl("client" + i, runtimeConfig, networkConfig, PeerAddress.localhost(0))
+                client.useEventBus(clientEventBus)
+                clients.add(client)
+            }
+
+        when:
+            server.startServer()
+            clients.forEach({ c -> c.start() })
+            clients.forEach({ c -> c.connect(server.getPeerAddress()) })
+            Thread.sleep(2_000)
+            NetworkHandlerState serverState = server.getState()
+            clients.forEach({ c -> c.stop() })
+            server.stop()
+        then:
+            serverState.getNumActiveConns() == NUM_CLIENTS
+            serverState.getReactorsState().size() == NUM_REACTORS
+            serverState.getReactorsState().stream().allMatch({ r -> r.getNumConnections() == NUM_CLIENTS / NUM_REACTORS })
+    }
 
+    /**
+     * Testing that when reading from a Connection fails (here the remote Peer resets the Connection, so the read
+     * throws an Exception), the Connection is closed and the right event is triggered.
+     */
+    def "testing Connection closed after a Read error"() {
+        given:
+            RuntimeConfig runtimeConfig = new RuntimeConfigDefault()
+            NetworkConfig networkConfig = new NetworkDefaultConfig()
+
+            // The remote Peer is a plain Socket, so we can reset the Connection from it:
+            ServerSocket remotePeer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())
+
+            EventBus clientEventBus = EventBus.builder().executor(ThreadUtils.getSingleThreadExecutorService("Client-EventBus-")).build()
+            NetworkHandler client = new NetworkHandlerImpl("client", runtimeConfig, networkConfig, PeerAddress.localhost(0))
+            client.useEventBus(clientEventBus)
+
+            AtomicBoolean clientConnected = new AtomicBoolean(false)
+            AtomicBoolean clientDisconnected = new AtomicBoolean(false)
+            clientEventBus.subscribe(PeerConnectedEvent.class, { e -> clientConnected.set(true) })
+            clientEventBus.subscribe(PeerDisconnectedEvent.class, { e ->
+                log.trace("EVENT > CLIENT: DISCONNECTED FROM " + e.getPeerAddress() + ", reason: " + e.getReason())
+                clientDisconnected.set(true)
+            })
+
+        when:
+            client.start()
+            client.connect(PeerAddress.fromIp("127.0.0.1:" + remotePeer.getLocalPort()))
+            Socket socket = remotePeer.accept()
+            Thread.sleep(1_000)
+            boolean connectedBeforeReset = clientConnected.get()
+
+            // We reset the Connection (a linger of zero sends a RST instead of a FIN):
+            socket.setSoLinger(true, 0)
+            socket.close()
+            Thread.sleep(1_000)
+            // We check it before stopping the Client, since stopping it also closes all the Connections:
+            boolean disconnectedAfterReset = clientDisconnected.get()
+            client.stop()
+            remotePeer.close()
+        then:
+            connectedBeforeReset
+            disconnectedAfterReset
+    }
 }
@@ -0,0 +1,121 @@
+package io.bitcoinsv.jcl.net.unit.network.handlers
+
+import io.bitcoinsv.jcl.net.network.PeerAddress
+import io.bitcoinsv.jcl.net.network.config.NetworkConfig
+import io.bitcoinsv.jcl.net.network.config.provided.NetworkDefaultConfig
+import io.bitcoinsv.jcl.net.network.events.PeerConnectedEvent
+import io.bitcoinsv.jcl.net.network.events.PeerDisconnectedEvent
+import io.bitcoinsv.jcl.net.network.events.PeerNIOStreamConnectedEvent
+import io.bitcoinsv.jcl.net.network.events.PeerRejectedEvent
+import io.bitcoinsv.jcl.net.network.handlers.LoopbackNetwork
+import io.bitcoinsv.jcl.net.network.handlers.LoopbackNetworkHandler
+import io.bitcoinsv.jcl.net.network.handlers.NetworkHandler
+import io.bitcoinsv.jcl.net.network.streams.PeerInputStreamEndPoint
+import io.bitcoinsv.jcl.net.network.streams.PeerStream
+import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
+import io.bitcoinsv.jcl.tools.config.RuntimeConfig
+import io.bitcoinsv.jcl.tools.config.provided.RuntimeConfigDefault
+import io.bitcoinsv.jcl.tools.events.EventBus
+import io.bitcoinsv.jcl.tools.thread.ThreadUtils
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Testing the LoopbackNetworkHandler, which connects NetworkHandlers running in the same JVM without Sockets.
+ */
+class LoopbackNetworkHandlerTest extends Specification {
+
+    /**
+     * We connect a Client to a Server through a Loopback Network with some latency, we send some bytes from the
+     * Client and check that they arrive (not before the latency) once the Stream is ready, and then we disconnect.
+     */
+    def "testing Server-Client Connection and data transfer"() {
+        given:
+            RuntimeConfig runtimeConfig = new RuntimeConfigDefault()
+            NetworkConfig networkConfig = new NetworkDefaultConfig()
+            LoopbackNetwork network = new LoopbackNetwork(0, Duration.ofMillis(100), 1024)
+
+            EventBus serverEventBus = EventBus.builder().executor(ThreadUtils.getSingleThreadExecutorService("Server-EventBus-")).build()
+            EventBus clientEventBus = EventBus.builder().executor(ThreadUtils.getSingleThreadExecutorService("Client-EventBus-")).build()
+
+            NetworkHandler server = new LoopbackNetworkHandler("server", runtimeConfig, networkConfig, PeerAddress.localhost(0), network)
+            server.useEventBus(serverEventBus)
+            NetworkHandler client = new LoopbackNetworkHandler("client", runtimeConfig, networkConfig, PeerAddress.localhost(0), network)
+            client.useEventBus(clientEventBus)
+
+            AtomicBoolean serverConnected = new AtomicBoolean()
+            AtomicBoolean serverDisconnected = new AtomicBoolean()
+            AtomicBoolean clientConnected = new AtomicBoolean()
+            AtomicBoolean clientDisconnected = new AtomicBoolean()
+            AtomicReference<PeerStream<ByteArrayReader>> clientStream = new AtomicReference<>()
+
+            // The Server reads the bytes received, once it marks the Stream as ready:
+            AtomicLong numBytesReceived = new AtomicLong()
+            CountDownLatch allBytesReceived = new CountDownLatch(1)
+            int NUM_BYTES = 10_000
+
+            serverEventBus.subscribe(PeerConnectedEvent.class, { e -> serverConnected.set(true) })
+            serverEventBus.subscribe(PeerDisconnectedEvent.class, { e -> serverDisconnected.set(true) })
+            serverEventBus.subscribe(PeerNIOStreamConnectedEvent.class, { e ->
+                PeerInputStreamEndPoint<ByteArrayReader> input = (PeerInputStreamEndPoint<ByteArrayReader>) e.getStream().input()
+                input.expectReady()
+                input.onData({ StreamDataEvent<ByteArrayReader> data ->
+                    if (numBytesReceived.addAndGet(data.getData().size()) == NUM_BYTES) allBytesReceived.countDown()
+                })
+                input.markReady()
+            })
+            clientEventBus.subscribe(PeerConnectedEvent.class, { e -> clientConnected.set(true) })
+            clientEventBus.subscribe(PeerDisconnectedEvent.class, { e -> clientDisconnected.set(true) })
+            clientEventBus.subscribe(PeerNIOStreamConnectedEvent.class, { e -> clientStream.set(e.getStream()) })
+
+        when:
+            server.startServer()
+            client.start()
+            client.connect(server.getPeerAddress())
+            Thread.sleep(200)
+            long startTime = System.currentTimeMillis()
+            clientStream.get().output().send(new StreamDataEvent<>(new ByteArrayReader(new byte[NUM_BYTES])))
+            boolean received = allBytesReceived.await(5, TimeUnit.SECONDS)
+            long transferTime = System.currentTimeMillis() - startTime
+            client.disconnect(server.getPeerAddress())
+            Thread.sleep(500)
+            server.stop()
+            client.stop()
+        then:
+            server.getPeerAddress() != client.getPeerAddress()
+            serverConnected.get()
+            clientConnected.get()
+            received
+            numBytesReceived.get() == NUM_BYTES
+            transferTime >= 100
+            serverDisconnected.get()
+            clientDisconnected.get()
+    }
+
+    /**
+     * Testing that the connection is rejected if there is nobody listening at the Address given
+     */
+    def "testing Failed Connection - REFUSED"() {
+        given:
+            LoopbackNetwork network = new LoopbackNetwork()
+            EventBus clientEventBus = EventBus.builder().executor(ThreadUtils.getSingleThreadExecutorService("Client-EventBus-")).build()
+            NetworkHandler client = new LoopbackNetworkHandler("client", new RuntimeConfigDefault(), new NetworkDefaultConfig(), PeerAddress.localhost(0), network)
+            client.useEventBus(clientEventBus)
+            AtomicBoolean clientRejected = new AtomicBoolean()
+            clientEventBus.subscribe(PeerRejectedEvent.class, { e -> clientRejected.set(true) })
+        when:
+            client.start()
+            client.connect(PeerAddress.fromIp("127.0.0.1:8100")) // nobody there
+            Thread.sleep(500)
+            client.stop()
+        then:
+            clientRejected.get()
+    }
+}
@@ -0,0 +1,68 @@
+package io.bitcoinsv.jcl.net.unit.network.streams
+
+import io.bitcoinsv.jcl.net.network.streams.nio.AdaptiveBufferSizer
+import io.bitcoinsv.jcl.net.network.streams.nio.ReadBufferBudget
+import spock.lang.Specification
+
+/**
+ * Testing the adaptive sizing of the Buffers used to read from the Sockets
+ */
+class AdaptiveBufferSizerTest extends Specification {
+
+    /**
+     * We check that the capacity grows when the reads fill up the Buffer, and shrinks back when the reads are small
+     */
+    def "Testing Buffer growing and shrinking"() {
+        given:
+            ReadBufferBudget budget = new ReadBufferBudget(1_000_000)
+            AdaptiveBufferSizer sizer = new AdaptiveBufferSizer(4096, 65536, budget)
+        when:
+            // Full reads: the capacity doubles every GROW_AFTER_FULL_READS reads, up to the max:
+            List<Integer> capacitiesGrowing = new ArrayList<>()
+            for (int i = 0; i < 20; i++) {
+                sizer.record(sizer.getCapacity(), sizer.getCapacity())
+                capacitiesGrowing.add(sizer.getCapacity())
+            }
+            int maxCapacity = sizer.getCapacity()
+            long reservedAtMax = budget.getReservedBytes()
+
+            // One single small read does not shrink it (hysteresis)...
+            sizer.record(10, sizer.getCapacity())
+            int capacityAfterOneSmallRead = sizer.getCapacity()
+
+            // ...but many of them do, down to the min:
+            for (int i = 0; i < 10 * AdaptiveBufferSizer.SHRINK_AFTER_SMALL_READS; i++) sizer.record(10, sizer.getCapacity())
+            int minCapacity = sizer.getCapacity()
+            long reservedAtMin = budget.getReservedBytes()
+
+            sizer.release()
+        then:
+            capacitiesGrowing[0] == 4096
+            capacitiesGrowing[1] == 8192
+            maxCapacity == 65536
+            reservedAtMax == 65536
+            capacityAfterOneSmallRead == 65536
+            minCapacity == 4096
+            reservedAtMin == 4096
+            budget.getReservedBytes() == 0
+    }
+
+    /**
+     * We check that the Buffers can not grow beyond the Budget shared by all of them
+     */
+    def "Testing Buffer growing limited by Budget"() {
+        given:
+            ReadBufferBudget budget = new ReadBufferBudget(40_000)
+            AdaptiveBufferSizer sizer1 = new AdaptiveBufferSizer(4096, 65536, budget)
+            AdaptiveBufferSizer sizer2 = new AdaptiveBufferSizer(4096, 65536, budget)
+        when:
+            for (int i = 0; i < 20; i++) {
+                sizer1.record(sizer1.getCapacity(), sizer1.getCapacity())
+                sizer2.record(sizer2.getCapacity(), sizer2.getCapacity())
+            }
+        then:
+            budget.getReservedBytes() <= 40_000
+            sizer1.getCapacity() + sizer2.getCapacity() == budget.getReservedBytes()
+            sizer1.getCapacity() < 65536
+    }
+}
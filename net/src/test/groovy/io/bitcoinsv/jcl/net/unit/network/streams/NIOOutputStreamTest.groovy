@@ -0,0 +1,113 @@
+package io.bitcoinsv.jcl.net.unit.network.streams
+
+import io.bitcoinsv.jcl.net.network.PeerAddress
+import io.bitcoinsv.jcl.net.network.config.provided.NetworkDefaultConfig
+import io.bitcoinsv.jcl.net.network.streams.OutboundDataEvent
+import io.bitcoinsv.jcl.net.network.streams.OutboundLane
+import io.bitcoinsv.jcl.net.network.streams.nio.NIOOutputStream
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
+import io.bitcoinsv.jcl.tools.config.provided.RuntimeConfigDefault
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.nio.ByteBuffer
+import java.nio.channels.SelectableChannel
+import java.nio.channels.SelectionKey
+import java.nio.channels.Selector
+import java.nio.channels.SocketChannel
+import java.nio.channels.spi.SelectorProvider
+
+/**
+ * Testing the writing of the bytes queued in a NIOOutputStream into its Socket
+ */
+class NIOOutputStreamTest extends Specification {
+
+    /**
+     * A Socket that only takes a limited number of bytes, like a real one when its buffer gets full: Once the bytes
+     * free in the buffer are used up, all the writes return zero
+     */
+    static class PartialWriteSocketChannel extends SocketChannel {
+        long bytesFree
+        ByteArrayOutputStream bytesWritten = new ByteArrayOutputStream()
+
+        PartialWriteSocketChannel(long bytesFree) {
+            super(SelectorProvider.provider())
+            this.bytesFree = bytesFree
+        }
+
+        @Override
+        long write(ByteBuffer[] srcs, int offset, int length) {
+            long result = 0
+            for (int i = offset; i < offset + length && bytesFree > 0; i++) {
+                while (srcs[i].hasRemaining() && bytesFree > 0) {
+                    bytesWritten.write(srcs[i].get())
+                    bytesFree--
+                    result++
+                }
+            }
+            return result
+        }
+
+        @Override int write(ByteBuffer src) { return (int) write([src] as ByteBuffer[], 0, 1) }
+        @Override int read(ByteBuffer dst) { return 0 }
+        @Override long read(ByteBuffer[] dsts, int offset, int length) { return 0 }
+        @Override SocketChannel bind(SocketAddress local) { return this }
+        @Override SocketChannel setOption(java.net.SocketOption name, Object value) { return this }
+        @Override Object getOption(java.net.SocketOption name) { return null }
+        @Override Set<java.net.SocketOption<?>> supportedOptions() { return Collections.emptySet() }
+        @Override SocketChannel shutdownInput() { return this }
+        @Override SocketChannel shutdownOutput() { return this }
+        @Override Socket socket() { return null }
+        @Override boolean isConnected() { return true }
+        @Override boolean isConnectionPending() { return false }
+        @Override boolean connect(SocketAddress remote) { return true }
+        @Override boolean finishConnect() { return true }
+        @Override SocketAddress getRemoteAddress() { return null }
+        @Override SocketAddress getLocalAddress() { return null }
+        @Override protected void implCloseSelectableChannel() {}
+        @Override protected void implConfigureBlocking(boolean block) {}
+    }
+
+    /** A Key linked to the Socket given, and not registered in any Selector */
+    static class DummySelectionKey extends SelectionKey {
+        SocketChannel channel
+        int ops
+        DummySelectionKey(SocketChannel channel) { this.channel = channel }
+        @Override SelectableChannel channel() { return channel }
+        @Override Selector selector() { return null }
+        @Override boolean isValid() { return true }
+        @Override void cancel() {}
+        @Override int interestOps() { return ops }
+        @Override SelectionKey interestOps(int ops) { this.ops = ops; return this }
+        @Override int readyOps() { return 0 }
+    }
+
+    /**
+     * We queue a message (which ends with an empty Buffer marking the end of the message) into a Socket that only
+     * takes some of its bytes. The write must stop as soon as the Socket does not take any more bytes (instead of
+     * looping on empty writes), and the rest of the bytes must go out in the next write, in order.
+     */
+    @Timeout(5)
+    def "Testing partial write with the end of message queued last"() {
+        given:
+            PartialWriteSocketChannel socket = new PartialWriteSocketChannel(100)
+            NIOOutputStream stream = new NIOOutputStream(PeerAddress.localhost(8333), new RuntimeConfigDefault(),
+                    new NetworkDefaultConfig(), new DummySelectionKey(socket))
+            byte[] msg = new byte[5_000]
+            for (int i = 0; i < msg.length; i++) msg[i] = (byte) i
+        when:
+            stream.send(new OutboundDataEvent<>(new ByteArrayReader(msg), OutboundLane.BULK, false))
+            int firstWrite = stream.writeToSocket()
+            long bytesPendingAfterFirstWrite = stream.getNumBytesToWrite()
+
+            // Now the Socket takes everything:
+            socket.bytesFree = Long.MAX_VALUE
+            int secondWrite = stream.writeToSocket()
+        then:
+            firstWrite == 100
+            bytesPendingAfterFirstWrite == msg.length - 100
+            secondWrite == msg.length - 100
+            stream.getNumBytesToWrite() == 0
+            socket.bytesWritten.toByteArray() == msg
+    }
+}
@@ -25,6 +25,10 @@ class NumberStringInputStream extends PeerInputStreamImpl<String, Integer> {
         super(peerAddress, executor, source);
     }
 
+    public NumberStringInputStream(PeerAddress peerAddress, ExecutorService executor, PeerInputStream<String> source, boolean fused) {
+        super(peerAddress, executor, source, fused);
+    }
+
     @Override
     public List<StreamDataEvent<Integer>> transform(StreamDataEvent<String> dataEvent) {
         try { Thread.sleep(10);} catch (Exception e) {} // simulate real work
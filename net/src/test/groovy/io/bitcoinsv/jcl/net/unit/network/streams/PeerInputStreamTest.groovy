@@ -2,6 +2,7 @@ package io.bitcoinsv.jcl.net.unit.network.streams
 
 import io.bitcoinsv.jcl.net.network.PeerAddress
 import io.bitcoinsv.jcl.net.network.streams.PeerInputStream
+import io.bitcoinsv.jcl.net.network.streams.PeerInputStreamImpl
 import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent
 import spock.lang.Specification
 
@@ -108,4 +109,36 @@ class PeerInputStreamTest extends Specification {
             "2 Threads"             |   Executors.newFixedThreadPool(2)        |   false
             "Multiple Threads"      |   Executors.newCachedThreadPool()                 |   false
     }
+
+    /**
+     * We test a Pipeline where the second Stream is "fused" to the first one: The data is handed over to the
+     * Executor only once (in the first Stream), and the rest of the Pipeline (including the client of the second
+     * Stream) runs in that same Thread. Even if the Executor of the second Stream is a multi-thread one, the order
+     * is preserved, since it's not used.
+     */
+    def "Testing Fused Pipeline"() {
+        given:
+            PeerAddress peerAddress = PeerAddress.localhost(5050)
+            ExecutorService laneExecutor = Executors.newSingleThreadExecutor({ r -> new Thread(r, "lane") })
+            ExecutorService otherExecutor = Executors.newCachedThreadPool()
+            PeerStreamInOutSimulator<Integer> source = new PeerStreamInOutSimulator<>(peerAddress, laneExecutor)
+
+            PeerInputStream<String> numberToStringStream = new StringNumberInputStream(peerAddress, laneExecutor, source)
+            PeerInputStream<Integer> stringToNumberStream = new NumberStringInputStream(peerAddress, otherExecutor, numberToStringStream, true)
+
+            List<Integer> resultData = new ArrayList<>()
+            Set<String> clientThreads = new HashSet<>()
+            stringToNumberStream.onData({ e ->
+                clientThreads.add(Thread.currentThread().getName())
+                resultData.add(e.getData())
+            })
+            List<Integer> sourceData = (0..<20).toList()
+        when:
+            for (Integer data : sourceData) { source.send(new StreamDataEvent<Integer>(data)) }
+            Thread.sleep(1000)
+        then:
+            ((PeerInputStreamImpl) stringToNumberStream).isFused()
+            resultData == sourceData
+            clientThreads == ["lane"] as Set
+    }
 }
@@ -39,6 +39,7 @@ public class PeerStreamInOutSimulator<T> implements PeerInputStream<T>, PeerOutp
     @Override
     public void onData(Consumer<? extends StreamDataEvent<T>> eventHandler) {
         eventBus.subscribe(StreamDataEvent.class, eventHandler);
+        eventBus.subscribe(OutboundDataEvent.class, eventHandler);
     }
     @Override
     public void onClose(Consumer<? extends StreamCloseEvent> eventHandler) {
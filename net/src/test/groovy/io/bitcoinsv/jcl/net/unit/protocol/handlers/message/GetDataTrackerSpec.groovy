@@ -0,0 +1,165 @@
+package io.bitcoinsv.jcl.net.unit.protocol.handlers.message
+
+import io.bitcoinsv.bitcoinjsv.core.Sha256Hash
+import io.bitcoinsv.bitcoinjsv.core.Utils
+import io.bitcoinsv.bitcoinjsv.params.MainNetParams
+import io.bitcoinsv.bitcoinjsv.params.Net
+import io.bitcoinsv.jcl.net.network.PeerAddress
+import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfig
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfigBuilder
+import io.bitcoinsv.jcl.net.protocol.handlers.message.GetDataTracker
+import io.bitcoinsv.jcl.net.protocol.handlers.message.InventoryTrackerConfig
+import io.bitcoinsv.jcl.net.protocol.handlers.message.MessageHandlerConfig
+import io.bitcoinsv.jcl.net.protocol.handlers.message.SeenFilter
+import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer.Deserializer
+import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer.DeserializerConfig
+import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer.DeserializerStream
+import io.bitcoinsv.jcl.net.protocol.messages.HashMsg
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorList
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorMsg
+import io.bitcoinsv.jcl.net.protocol.messages.TxMsg
+import io.bitcoinsv.jcl.net.unit.protocol.serialization.TxMsgSerializerSpec
+import io.bitcoinsv.jcl.net.unit.protocol.tools.MsgTest
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
+import io.bitcoinsv.jcl.tools.config.provided.RuntimeConfigDefault
+import io.bitcoinsv.jcl.tools.thread.TimerWheel
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * Testing class for the Tracker of the Txs requested (GETDATA) to the Peers.
+ */
+class GetDataTrackerSpec extends Specification {
+
+    // A Tx Hash (wire format), different for each number given:
+    private static byte[] txHash(int number) {
+        byte[] hash = new byte[HashMsg.HASH_LENGTH]
+        hash[0] = (byte) number
+        return hash
+    }
+
+    private static InventoryVectorList buildInventory(List<Integer> numbers,
+                                                      InventoryVectorMsg.VectorType type = InventoryVectorMsg.VectorType.MSG_TX) {
+        return buildInventoryOf(numbers.collect { n -> txHash(n) }, type)
+    }
+
+    private static InventoryVectorList buildInventoryOf(List<byte[]> hashes,
+                                                        InventoryVectorMsg.VectorType type = InventoryVectorMsg.VectorType.MSG_TX) {
+        return InventoryVectorList.of(hashes.collect { hash ->
+            InventoryVectorMsg.builder()
+                .type(type)
+                .hashMsg(HashMsg.builder().hash(hash).build())
+                .build()
+        })
+    }
+
+    def "testing Txs requested only once, and requested again to another Peer after the timeout"() {
+        given:
+            InventoryTrackerConfig config = InventoryTrackerConfig.builder().getDataTimeout(Duration.ofMillis(100)).build()
+            TimerWheel timer = new TimerWheel("testGetDataTimer", 10, TimeUnit.MILLISECONDS, 64)
+            CountDownLatch latch = new CountDownLatch(1)
+            Map<PeerAddress, InventoryVectorList> reRequests = Collections.synchronizedMap(new HashMap<>())
+            GetDataTracker tracker = new GetDataTracker(config, timer, { peer, inv ->
+                reRequests.put(peer, inv)
+                latch.countDown()
+            })
+            PeerAddress peer1 = PeerAddress.localhost(8333)
+            PeerAddress peer2 = PeerAddress.localhost(8334)
+            InventoryVectorList firstRequest = buildInventory([1, 2])
+        when:
+            InventoryVectorList toPeer1 = tracker.onGetData(peer1, firstRequest)
+            InventoryVectorList toPeer2 = tracker.onGetData(peer2, buildInventory([1, 2, 3]))
+            // Blocks are not tracked:
+            InventoryVectorList blocksToPeer2 = tracker.onGetData(peer2, buildInventory([1], InventoryVectorMsg.VectorType.MSG_BLOCK))
+            // Tx 1 arrives, but Tx 2 doesn't:
+            tracker.onTxReceived(txHash(1))
+            int numInFlightBeforeTimeout = tracker.getNumTxsInFlight()
+            boolean reRequested = latch.await(2, TimeUnit.SECONDS)
+            timer.stop()
+        then:
+            toPeer1.is(firstRequest)
+            toPeer2.size() == 1
+            toPeer2.hashEquals(0, txHash(3))
+            blocksToPeer2.size() == 1
+            numInFlightBeforeTimeout == 2
+            reRequested
+            reRequests.size() == 1
+            reRequests.get(peer2).size() == 1
+            reRequests.get(peer2).hashEquals(0, txHash(2))
+    }
+
+    def "testing Txs requested again after a NOTFOUND or a disconnection"() {
+        given:
+            InventoryTrackerConfig config = InventoryTrackerConfig.builder().getDataTimeout(Duration.ofSeconds(60)).build()
+            TimerWheel timer = new TimerWheel("testGetDataTimer", 10, TimeUnit.MILLISECONDS, 64)
+            List<PeerAddress> reRequestedPeers = Collections.synchronizedList(new ArrayList<>())
+            GetDataTracker tracker = new GetDataTracker(config, timer, { peer, inv -> reRequestedPeers.add(peer) })
+            PeerAddress peer1 = PeerAddress.localhost(8333)
+            PeerAddress peer2 = PeerAddress.localhost(8334)
+            PeerAddress peer3 = PeerAddress.localhost(8335)
+        when:
+            tracker.onGetData(peer1, buildInventory([1, 2]))
+            tracker.onGetData(peer2, buildInventory([1]))
+            tracker.onGetData(peer3, buildInventory([2]))
+            // Peer1 doesn't have Tx 1, so it's requested to Peer2:
+            tracker.onNotFound(peer1, buildInventory([1]))
+            // Peer1 disconnects, so Tx 2 is requested to Peer3:
+            tracker.onPeerDisconnected(peer1)
+            int numInFlight = tracker.getNumTxsInFlight()
+            // Peer2 disconnects: Tx 1 has no more alternatives:
+            tracker.onPeerDisconnected(peer2)
+            int numInFlightAfterDisconnection = tracker.getNumTxsInFlight()
+            timer.stop()
+        then:
+            reRequestedPeers == [peer2, peer3]
+            numInFlight == 2
+            numInFlightAfterDisconnection == 1
+    }
+
+    def "testing TxMsg received with the default configuration is not requested again"() {
+        given:
+            InventoryTrackerConfig trackerConfig = InventoryTrackerConfig.builder().getDataTimeout(Duration.ofMillis(100)).build()
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            MessageHandlerConfig messageConfig = config.getMessageConfig().toBuilder()
+                    .inventoryTrackerConfig(trackerConfig)
+                    .build()
+            TimerWheel timer = new TimerWheel("testGetDataTimer", 10, TimeUnit.MILLISECONDS, 64)
+            List<PeerAddress> reRequestedPeers = Collections.synchronizedList(new ArrayList<>())
+            GetDataTracker tracker = new GetDataTracker(trackerConfig, timer, { peer, inv -> reRequestedPeers.add(peer) })
+
+            // The Tx (deserialized as a TxMsg, raw Txs are NOT enabled) and its Hash (wire format):
+            byte[] txBytes = Utils.HEX.decode(TxMsgSerializerSpec.REF_MSG)
+            byte[] refTxHash = Sha256Hash.hashTwice(txBytes)
+
+            // The Tx is delivered to the Tracker the same way the MessageHandler does:
+            MsgTest.DummyPeerStreamSource source = MsgTest.getDummyStreamSource()
+            Deserializer deserializer = new Deserializer(new RuntimeConfigDefault(), DeserializerConfig.builder().build())
+            DeserializerStream stream = new DeserializerStream(Executors.newSingleThreadExecutor(), source,
+                    new RuntimeConfigDefault(), messageConfig, deserializer, Executors.newSingleThreadExecutor())
+            List<TxMsg> txsReceived = Collections.synchronizedList(new ArrayList<>())
+            stream.onData({ e ->
+                txsReceived.add((TxMsg) e.getData().getBody())
+                tracker.onTxReceived(SeenFilter.txHashOf(e.getData().getBody()))
+            })
+        when:
+            tracker.onGetData(PeerAddress.localhost(8333), buildInventoryOf([refTxHash]))
+            tracker.onGetData(PeerAddress.localhost(8334), buildInventoryOf([refTxHash]))
+            source.send(new StreamDataEvent<ByteArrayReader>(new ByteArrayReader(Utils.HEX.decode(TxMsgSerializerSpec.REF_MSG_FULL))))
+            // We wait longer than the timeout:
+            Thread.sleep(500)
+            timer.stop()
+        then:
+            txsReceived.size() == 1
+            txsReceived.get(0).getHash().isPresent()
+            tracker.getNumTxsInFlight() == 0
+            reRequestedPeers.isEmpty()
+    }
+}
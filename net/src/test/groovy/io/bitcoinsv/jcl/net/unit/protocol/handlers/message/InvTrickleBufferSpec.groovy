@@ -0,0 +1,77 @@
+package io.bitcoinsv.jcl.net.unit.protocol.handlers.message
+
+import io.bitcoinsv.jcl.net.protocol.handlers.message.InvTrickleBuffer
+import io.bitcoinsv.jcl.net.protocol.messages.HashMsg
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorList
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorMsg
+import io.bitcoinsv.jcl.tools.thread.TimerWheel
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * Testing class for the Buffer that accumulates the INVs sent to a Peer ("trickling").
+ */
+class InvTrickleBufferSpec extends Specification {
+
+    // It builds a list of Inventory Vectors, with consecutive Hashes starting at the number given:
+    private static InventoryVectorList buildInventory(int from, int numInvs) {
+        List<InventoryVectorMsg> result = new ArrayList<>()
+        for (int i = from; i < from + numInvs; i++) {
+            byte[] hash = new byte[HashMsg.HASH_LENGTH]
+            hash[0] = (byte) (i & 0xFF)
+            hash[1] = (byte) ((i >> 8) & 0xFF)
+            result.add(InventoryVectorMsg.builder()
+                    .type(InventoryVectorMsg.VectorType.MSG_TX)
+                    .hashMsg(HashMsg.builder().hash(hash).build())
+                    .build())
+        }
+        return InventoryVectorList.of(result)
+    }
+
+    /**
+     * We add more INVs than fit into one Message, and we check that full Messages are sent straight away, and the
+     * rest is sent once the trickle interval expires, keeping the original order.
+     */
+    def "testing INVs flushed by size and by the trickle interval"() {
+        given:
+            TimerWheel timer = new TimerWheel("testTrickleTimer", 10, TimeUnit.MILLISECONDS, 64)
+            List<InventoryVectorList> invsSent = Collections.synchronizedList(new ArrayList<>())
+            CountDownLatch latch = new CountDownLatch(3)
+            InvTrickleBuffer buffer = new InvTrickleBuffer(100, TimeUnit.MILLISECONDS.toNanos(50), timer, { inv ->
+                invsSent.add(inv)
+                latch.countDown()
+            })
+        when:
+            25.times { i -> buffer.add(buildInventory(i * 10, 10)) }
+            int numMsgsBeforeTrickle = invsSent.size()
+            boolean allSent = latch.await(5, TimeUnit.SECONDS)
+            timer.stop()
+        then:
+            numMsgsBeforeTrickle == 2
+            allSent
+            invsSent.collect { it.size() } == [100, 100, 50]
+            invsSent.get(2).hashEquals(0, buildInventory(200, 1).getHash(0))
+            buffer.getNumPendingInvs() == 0
+    }
+
+    def "testing INVs discarded when the Buffer is closed"() {
+        given:
+            TimerWheel timer = new TimerWheel("testTrickleTimer", 10, TimeUnit.MILLISECONDS, 64)
+            List<InventoryVectorList> invsSent = Collections.synchronizedList(new ArrayList<>())
+            InvTrickleBuffer buffer = new InvTrickleBuffer(100, TimeUnit.MILLISECONDS.toNanos(50), timer, { inv -> invsSent.add(inv) })
+        when:
+            buffer.add(buildInventory(0, 10))
+            buffer.close()
+            buffer.add(buildInventory(10, 10))
+            Thread.sleep(500)
+            timer.stop()
+        then:
+            invsSent.isEmpty()
+            buffer.getNumPendingInvs() == 0
+    }
+}
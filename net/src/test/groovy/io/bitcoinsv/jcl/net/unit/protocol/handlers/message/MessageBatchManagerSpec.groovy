@@ -0,0 +1,138 @@
+package io.bitcoinsv.jcl.net.unit.protocol.handlers.message
+
+import io.bitcoinsv.bitcoinjsv.params.MainNetParams
+import io.bitcoinsv.bitcoinjsv.params.Net
+import io.bitcoinsv.jcl.net.network.PeerAddress
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfig
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfigBuilder
+import io.bitcoinsv.jcl.net.protocol.events.data.InvMsgReceivedEvent
+import io.bitcoinsv.jcl.net.protocol.events.data.InvsBatchMsgReceivedEvent
+import io.bitcoinsv.jcl.net.protocol.events.data.MsgReceivedBatchEvent
+import io.bitcoinsv.jcl.net.protocol.handlers.message.MessageBatchConfig
+import io.bitcoinsv.jcl.net.protocol.handlers.message.MessageBatchManager
+import io.bitcoinsv.jcl.net.protocol.messages.InvMessage
+import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsgBuilder
+import io.bitcoinsv.jcl.tools.thread.TimerWheel
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * Testing class for the Batches of Messages kept by the Message Handler.
+ */
+class MessageBatchManagerSpec extends Specification {
+
+    private static InvMsgReceivedEvent buildEvent(ProtocolConfig config, PeerAddress peerAddress) {
+        InvMessage invMsg = InvMessage.builder().invVectorMsgList(new ArrayList<>()).build()
+        return new InvMsgReceivedEvent(peerAddress, new BitcoinMsgBuilder<>(config.getBasicConfig(), invMsg).build())
+    }
+
+    /**
+     * We add Events from several Threads at the same time, and we check that all of them end up in a Batch, and that
+     * no Batch is bigger than the max size configured.
+     */
+    def "testing Batches by number of Msgs, from several Threads"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            PeerAddress peerAddress = PeerAddress.localhost(8333)
+            MessageBatchConfig batchConfig = new MessageBatchConfig.MessageBatchBuilder()
+                .maxMsgsInBatch(10)
+                .maxIntervalBetweenBatches(Duration.ofSeconds(60))
+                .maxBatchSizeInBytes(Integer.MAX_VALUE)
+                .build()
+            TimerWheel timer = new TimerWheel("testBatchTimer", 10, TimeUnit.MILLISECONDS, 64)
+            Queue<MsgReceivedBatchEvent> batches = new ConcurrentLinkedQueue<>()
+            MessageBatchManager batchManager = new MessageBatchManager(InvMsgReceivedEvent.class, batchConfig, timer, { b -> batches.add(b) })
+
+            int numThreads = 4
+            int numEventsPerThread = 250
+            CountDownLatch latch = new CountDownLatch(numThreads)
+        when:
+            numThreads.times {
+                Thread.start {
+                    numEventsPerThread.times { batchManager.addEvent(buildEvent(config, peerAddress)) }
+                    latch.countDown()
+                }
+            }
+            latch.await(10, TimeUnit.SECONDS)
+            timer.stop()
+        then:
+            batches.every { it instanceof InvsBatchMsgReceivedEvent }
+            batches.every { it.getEvents().size() <= 10 }
+            batches.sum { it.getEvents().size() } + batchManager.getNumPendingEvents() == numThreads * numEventsPerThread
+    }
+
+    /**
+     * We add a few Events, not enough to complete a Batch, and we check that the Timer flushes them once the max
+     * interval between Batches expires.
+     */
+    def "testing Batches flushed by the Timer"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            PeerAddress peerAddress = PeerAddress.localhost(8333)
+            MessageBatchConfig batchConfig = new MessageBatchConfig.MessageBatchBuilder()
+                .maxMsgsInBatch(1000)
+                .maxIntervalBetweenBatches(Duration.ofMillis(200))
+                .maxBatchSizeInBytes(Integer.MAX_VALUE)
+                .build()
+            TimerWheel timer = new TimerWheel("testBatchTimer", 10, TimeUnit.MILLISECONDS, 64)
+            CountDownLatch batchLatch = new CountDownLatch(1)
+            List<MsgReceivedBatchEvent> batches = Collections.synchronizedList(new ArrayList<>())
+            MessageBatchManager batchManager = new MessageBatchManager(InvMsgReceivedEvent.class, batchConfig, timer, { b ->
+                batches.add(b)
+                batchLatch.countDown()
+            })
+        when:
+            5.times { batchManager.addEvent(buildEvent(config, peerAddress)) }
+            boolean flushedTooEarly = batchLatch.await(50, TimeUnit.MILLISECONDS)
+            boolean flushed = batchLatch.await(2, TimeUnit.SECONDS)
+            timer.stop()
+        then:
+            !flushedTooEarly
+            flushed
+            batches.size() == 1
+            batches.get(0).getEvents().size() == 5
+            batchManager.getNumPendingEvents() == 0
+    }
+
+    /**
+     * We add Events from several Threads at the same time, with a very long interval between Batches, and we check
+     * that no complete Batch is left behind when a Thread finds another one extracting at the same time.
+     */
+    def "testing no complete Batch left behind, from several Threads"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            PeerAddress peerAddress = PeerAddress.localhost(8333)
+            MessageBatchConfig batchConfig = new MessageBatchConfig.MessageBatchBuilder()
+                .maxMsgsInBatch(10)
+                .maxIntervalBetweenBatches(Duration.ofSeconds(60))
+                .maxBatchSizeInBytes(Integer.MAX_VALUE)
+                .build()
+            TimerWheel timer = new TimerWheel("testBatchTimer", 10, TimeUnit.MILLISECONDS, 64)
+            Queue<MsgReceivedBatchEvent> batches = new ConcurrentLinkedQueue<>()
+            MessageBatchManager batchManager = new MessageBatchManager(InvMsgReceivedEvent.class, batchConfig, timer, { b -> batches.add(b) })
+
+            int numThreads = 8
+            int numEventsPerThread = 500
+            CountDownLatch latch = new CountDownLatch(numThreads)
+        when:
+            numThreads.times {
+                Thread.start {
+                    numEventsPerThread.times { batchManager.addEvent(buildEvent(config, peerAddress)) }
+                    latch.countDown()
+                }
+            }
+            latch.await(10, TimeUnit.SECONDS)
+            Thread.sleep(200) // The extractions re-triggered by the Timer are done by now
+            timer.stop()
+        then:
+            batchManager.getNumPendingEvents() < 10
+            batches.sum { it.getEvents().size() } + batchManager.getNumPendingEvents() == numThreads * numEventsPerThread
+    }
+}
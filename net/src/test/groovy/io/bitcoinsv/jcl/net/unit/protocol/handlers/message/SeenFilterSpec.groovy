@@ -0,0 +1,161 @@
+package io.bitcoinsv.jcl.net.unit.protocol.handlers.message
+
+import io.bitcoinsv.bitcoinjsv.core.Sha256Hash
+import io.bitcoinsv.bitcoinjsv.params.MainNetParams
+import io.bitcoinsv.bitcoinjsv.params.Net
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfig
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfigBuilder
+import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent
+import io.bitcoinsv.jcl.net.protocol.handlers.message.MessageHandlerConfig
+import io.bitcoinsv.jcl.net.protocol.handlers.message.MessagePeerInfo
+import io.bitcoinsv.jcl.net.protocol.handlers.message.SeenFilter
+import io.bitcoinsv.jcl.net.protocol.handlers.message.SeenFilterConfig
+import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer.Deserializer
+import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer.DeserializerConfig
+import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.deserializer.DeserializerStream
+import io.bitcoinsv.jcl.net.protocol.messages.HashMsg
+import io.bitcoinsv.jcl.net.protocol.messages.InvMessage
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorMsg
+import io.bitcoinsv.jcl.net.protocol.messages.RawTxMsg
+import io.bitcoinsv.jcl.net.protocol.messages.TxMsg
+import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsg
+import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsgBuilder
+import io.bitcoinsv.jcl.net.unit.protocol.serialization.TxMsgSerializerSpec
+import io.bitcoinsv.jcl.net.unit.protocol.tools.MsgTest
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
+import io.bitcoinsv.jcl.tools.config.RuntimeConfig
+import io.bitcoinsv.jcl.tools.config.provided.RuntimeConfigDefault
+import io.bitcoinsv.bitcoinjsv.core.Utils
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * Testing class for the Filter that drops the TXs and INVs already received from other Peers.
+ */
+class SeenFilterSpec extends Specification {
+
+    // A Hash (human-readable format), different for each number given:
+    private static Sha256Hash txHash(int number) {
+        byte[] hash = new byte[HashMsg.HASH_LENGTH]
+        hash[0] = (byte) number
+        return Sha256Hash.wrap(hash)
+    }
+
+    private static BitcoinMsg<RawTxMsg> buildTx(ProtocolConfig config, int number) {
+        RawTxMsg txMsg = new RawTxMsg(new byte[10], txHash(number))
+        return new BitcoinMsgBuilder<>(config.getBasicConfig(), txMsg).build()
+    }
+
+    // An INV announcing the Txs given (the Hashes in an INV go in wire format, reversed):
+    private static BitcoinMsg<InvMessage> buildInv(ProtocolConfig config, List<Integer> numbers) {
+        List<InventoryVectorMsg> invs = numbers.collect { n ->
+            InventoryVectorMsg.builder()
+                .type(InventoryVectorMsg.VectorType.MSG_TX)
+                .hashMsg(HashMsg.builder().hash(txHash(n).getReversedBytes()).build())
+                .build()
+        }
+        return new BitcoinMsgBuilder<>(config.getBasicConfig(), InvMessage.builder().invVectorMsgList(invs).build()).build()
+    }
+
+    def "testing duplicated TXs dropped and first Peer credited"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            SeenFilter filter = new SeenFilter(SeenFilterConfig.builder().build(), config.getBasicConfig())
+            MessagePeerInfo peer1 = new MessagePeerInfo(null)
+            MessagePeerInfo peer2 = new MessagePeerInfo(null)
+        when:
+            def tx1FromPeer1 = filter.filter(peer1, buildTx(config, 1))
+            def tx1FromPeer2 = filter.filter(peer2, buildTx(config, 1))
+            def tx2FromPeer2 = filter.filter(peer2, buildTx(config, 2))
+            def tx2FromPeer1 = filter.filter(peer1, buildTx(config, 2))
+            def tx3FromPeer2 = filter.filter(peer2, buildTx(config, 3))
+        then:
+            tx1FromPeer1 != null
+            tx1FromPeer2 == null
+            tx2FromPeer2 != null
+            tx2FromPeer1 == null
+            tx3FromPeer2 != null
+            peer1.getNumTxsFirstSeen() == 1
+            peer2.getNumTxsFirstSeen() == 2
+            filter.getNumMsgsDropped() == 2
+    }
+
+    def "testing INVs rebuilt without the Vectors already seen"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            SeenFilter filter = new SeenFilter(SeenFilterConfig.builder().build(), config.getBasicConfig())
+            MessagePeerInfo peer1 = new MessagePeerInfo(null)
+            MessagePeerInfo peer2 = new MessagePeerInfo(null)
+        when:
+            // Tx 5 is received before it's announced:
+            filter.filter(peer1, buildTx(config, 5))
+            BitcoinMsg<InvMessage> firstInv = filter.filter(peer1, buildInv(config, [1, 2, 5]))
+            BitcoinMsg<InvMessage> secondInv = filter.filter(peer2, buildInv(config, [1, 3, 2, 4]))
+            BitcoinMsg<InvMessage> thirdInv = filter.filter(peer1, buildInv(config, [3, 4]))
+        then:
+            firstInv.getBody().getInventory().size() == 2
+            firstInv.getBody().getInventory().hashEquals(1, txHash(2).getReversedBytes())
+            secondInv.getBody().getInventory().size() == 2
+            secondInv.getBody().getInventory().hashEquals(0, txHash(3).getReversedBytes())
+            secondInv.getBody().getInventory().hashEquals(1, txHash(4).getReversedBytes())
+            secondInv.getHeader().getMsgLength() == secondInv.getBody().getLengthInBytes()
+            thirdInv == null
+            peer1.getNumInvsFirstSeen() == 2
+            peer2.getNumInvsFirstSeen() == 2
+    }
+
+    def "testing TXs not filtered if disabled"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            SeenFilter filter = new SeenFilter(SeenFilterConfig.builder().filterTxs(false).build(), config.getBasicConfig())
+        when:
+            def first = filter.filter(null, buildTx(config, 1))
+            def second = filter.filter(null, buildTx(config, 1))
+        then:
+            first != null
+            second != null
+            filter.getNumMsgsDropped() == 0
+    }
+
+    def "testing duplicated TxMsgs dropped when deserialized with the default configuration"() {
+        given:
+            // Both Peers send us the same Tx, deserialized as a TxMsg (raw Txs are NOT enabled):
+            RuntimeConfig runtimeConfig = new RuntimeConfigDefault()
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            MessageHandlerConfig messageConfig = config.getMessageConfig().toBuilder()
+                    .seenFilterConfig(SeenFilterConfig.builder().build())
+                    .build()
+            Deserializer deserializer = new Deserializer(runtimeConfig, DeserializerConfig.builder().build())
+            SeenFilter filter = new SeenFilter(messageConfig.getSeenFilterConfig(), config.getBasicConfig())
+            MessagePeerInfo peer1 = new MessagePeerInfo(null)
+            MessagePeerInfo peer2 = new MessagePeerInfo(null)
+
+            List<BitcoinMsg> published = Collections.synchronizedList(new ArrayList<>())
+            List<BitcoinMsg> received = Collections.synchronizedList(new ArrayList<>())
+        when:
+            // What each Peer's Deserializer Stream publishes goes through the Filter:
+            [peer1, peer2].each { peer ->
+                MsgTest.DummyPeerStreamSource source = MsgTest.getDummyStreamSource()
+                DeserializerStream stream = new DeserializerStream(Executors.newSingleThreadExecutor(), source,
+                        runtimeConfig, messageConfig, deserializer, Executors.newSingleThreadExecutor())
+                stream.onData({ e ->
+                    received.add(e.getData())
+                    BitcoinMsg<?> result = filter.filter(peer, e.getData())
+                    if (result != null) published.add(result)
+                })
+                source.send(new StreamDataEvent<ByteArrayReader>(new ByteArrayReader(Utils.HEX.decode(TxMsgSerializerSpec.REF_MSG_FULL))))
+                Thread.sleep(100)
+            }
+        then:
+            received.size() == 2
+            ((TxMsg) received.get(0).getBody()).getHash().isPresent()
+            published.size() == 1
+            peer1.getNumTxsFirstSeen() == 1
+            peer2.getNumTxsFirstSeen() == 0
+            filter.getNumMsgsDropped() == 1
+    }
+}
@@ -220,7 +220,9 @@ class DeserializerSpec extends Specification {
         then:
             msgsFromP2P.equals(messagesFromCache)
             cacheState.numLoads == 1
+            cacheState.numMisses == 1
             cacheState.numHits == NUM_MSGS - 1
+            cacheState.numBytesSaved == (NUM_MSGS - 1) * msgsFromP2P.get(0).header.getMsgLength()
     }
 
 
@@ -317,4 +319,43 @@ class DeserializerSpec extends Specification {
         then:
             cacheSize <= MAX_CACHE_SIZE_IN_NUM_MSGS
     }
+
+    /**
+     * We test that the Cache is also bounded by the size in bytes of the Messages, when that limit is reached
+     * before the limit in number of Messages
+     */
+    def "testing Cache Eviction policy by size in bytes"() {
+
+        // Number of Messages to deserialize
+        int NUM_MSGS = 1000
+
+        // The Cache should fit (in bytes) this number of Messages, much less than its limit in number of Messages:
+        int NUM_MSGS_FITTING_IN_BYTES = 20
+        int MAX_CACHE_SIZE_IN_NUM_MSGS = 500
+
+        given:
+            ProtocolBasicConfig protocolConfig = new ProtocolBSVMainConfig().basicConfig
+            List<BitcoinMsg> msgsFromP2P = new ArrayList<>()
+            for (int i = 0; i < NUM_MSGS; i++) msgsFromP2P.add(buildVersionMsg(protocolConfig, false))
+            long msgSize = msgsFromP2P.get(0).header.getMsgLength()
+
+            DeserializerConfig cacheConfig = DeserializerConfig.builder()
+                .messagesToCache(new HashSet<String>() {{add(VersionMsg.MESSAGE_TYPE.toUpperCase())}})
+                .maxCacheSizeInBytes(msgSize * NUM_MSGS_FITTING_IN_BYTES)
+                .maxCacheSizeInNumMsgs(MAX_CACHE_SIZE_IN_NUM_MSGS)
+                .generateStats(true)
+                .build()
+
+            RuntimeConfig runtimeConfig = new RuntimeConfigDefault()
+            Deserializer cache = new Deserializer(runtimeConfig, cacheConfig)
+
+        when:
+            ByteArrayReader reader = serializeMessages(protocolConfig, msgsFromP2P)
+            deserializeWithCache(protocolConfig, reader, cache)
+            long cacheSize = cache.getCacheSize()
+            println("Cache Size: " + cacheSize)
+        then:
+            cacheSize > 0
+            cacheSize <= NUM_MSGS_FITTING_IN_BYTES
+    }
 }
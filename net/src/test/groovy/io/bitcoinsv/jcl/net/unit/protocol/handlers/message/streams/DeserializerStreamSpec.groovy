@@ -12,6 +12,7 @@ import io.bitcoinsv.jcl.net.unit.protocol.tools.MsgTest
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
 import io.bitcoinsv.jcl.tools.config.RuntimeConfig
 import io.bitcoinsv.jcl.tools.config.provided.RuntimeConfigDefault
+import io.bitcoinsv.jcl.tools.thread.TimerWheel
 
 import io.bitcoinsv.bitcoinjsv.core.Utils
 import io.bitcoinsv.bitcoinjsv.params.MainNetParams
@@ -20,6 +21,8 @@ import spock.lang.Specification
 
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicReference
 
 /**
@@ -59,4 +62,37 @@ class DeserializerStreamSpec extends Specification {
             // We check the Deserialized Msg is the same as the original one:
             msgReceived.get().equals(msg)
     }
+
+    /**
+     * We test that a Big Message that stops arriving in the middle is detected as too slow, even if no more bytes
+     * come after that.
+     */
+    def "Testing Deserializer Big Message stalled"() {
+        given:
+            RuntimeConfig runtimeConfig = new RuntimeConfigDefault().toBuilder()
+                    .msgSizeInBytesForRealTimeProcessing(100)
+                    .build()
+            ProtocolConfig protocolConfig = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            ExecutorService eventBusExecutor = Executors.newSingleThreadExecutor()
+            ExecutorService dedicatedConnExecutor = Executors.newSingleThreadExecutor()
+            TimerWheel timer = new TimerWheel("testStallTimer", 20, TimeUnit.MILLISECONDS, 64)
+
+            MsgTest.DummyPeerStreamSource source = MsgTest.getDummyStreamSource()
+            Deserializer deserializer = new Deserializer(runtimeConfig, DeserializerConfig.builder().build())
+            DeserializerStream stream = new DeserializerStream(eventBusExecutor, source, runtimeConfig, protocolConfig.getMessageConfig(), deserializer, dedicatedConnExecutor)
+            stream.setRealTimeProcessingEnabled(true)
+            stream.setStallTimer(timer)
+
+            AtomicInteger numErrors = new AtomicInteger()
+            stream.onError({ e -> numErrors.incrementAndGet()})
+        when:
+            // Only the first bytes of the Block are sent, and nothing else after that:
+            byte[] blockBytes = Utils.HEX.decode(MsgTest.BLOCK_MSG_HEX)
+            source.send(new StreamDataEvent<ByteArrayReader>(new ByteArrayReader(Arrays.copyOf(blockBytes, 150))))
+            Thread.sleep(3000)
+            timer.stop()
+        then:
+            numErrors.get() == 1
+            stream.getState().getProcessState().isCorrupted()
+    }
 }
@@ -1,17 +1,26 @@
 package io.bitcoinsv.jcl.net.unit.protocol.handlers.message.streams
 
 import io.bitcoinsv.jcl.net.network.PeerAddress
+import io.bitcoinsv.jcl.net.network.streams.OutboundLane
 import io.bitcoinsv.jcl.net.network.streams.PeerOutputStream
 import io.bitcoinsv.jcl.net.network.streams.StreamDataEvent
 import io.bitcoinsv.jcl.net.network.streams.StreamState
 import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfig
 import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfigBuilder
 import io.bitcoinsv.jcl.net.protocol.handlers.message.streams.serializer.SerializerStream
+import io.bitcoinsv.jcl.net.protocol.messages.ByteStreamMsg
+import io.bitcoinsv.jcl.net.protocol.messages.GetAddrMsg
 import io.bitcoinsv.jcl.net.protocol.messages.HeaderMsg
+import io.bitcoinsv.jcl.net.protocol.messages.InvMessage
+import io.bitcoinsv.jcl.net.protocol.messages.PingMsg
+import io.bitcoinsv.jcl.net.protocol.messages.TxMsg
 import io.bitcoinsv.jcl.net.protocol.messages.NetAddressMsg
 import io.bitcoinsv.jcl.net.protocol.messages.VarStrMsg
 import io.bitcoinsv.jcl.net.protocol.messages.VersionMsg
 import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsg
+import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsgBuilder
+import io.bitcoinsv.jcl.net.protocol.messages.common.SerializedBitcoinMsg
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayBuffer
 import io.bitcoinsv.jcl.net.unit.network.streams.PeerStreamInOutSimulator
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
 import io.bitcoinsv.bitcoinjsv.params.MainNetParams
@@ -115,5 +124,107 @@ class SerializerStreamSpec extends Specification {
             messageToSent == messageReceived
     }
 
+    /**
+     * We test that each Message is assigned to the right OutboundLane
+     */
+    def "Testing Lanes assigned to Messages"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+        when:
+            OutboundLane pingLane = SerializerStream.laneFor(
+                    new BitcoinMsgBuilder<>(config.getBasicConfig(), PingMsg.builder().nonce(1).build()).build())
+            OutboundLane getAddrLane = SerializerStream.laneFor(
+                    new BitcoinMsgBuilder<>(config.getBasicConfig(), GetAddrMsg.builder().build()).build())
+            OutboundLane invLane = SerializerStream.laneFor(
+                    new BitcoinMsgBuilder<>(config.getBasicConfig(), InvMessage.builder().invVectorMsgList(new ArrayList<>()).build()).build())
+            OutboundLane txLane = SerializerStream.laneFor(
+                    new BitcoinMsgBuilder<>(config.getBasicConfig(), TxMsg.builder().version(1).tx_in(new ArrayList<>()).tx_out(new ArrayList<>()).build()).build())
+            OutboundLane bytesLane = SerializerStream.laneFor(new ByteStreamMsg(new ByteArrayBuffer()))
+        then:
+            pingLane == OutboundLane.CONTROL
+            getAddrLane == OutboundLane.CONTROL
+            invLane == OutboundLane.INVENTORY
+            txLane == OutboundLane.BULK
+            bytesLane == OutboundLane.BULK
+    }
 
+    /**
+     * We test that a Message serialized once can be sent through several Streams, and each one of them gets the
+     * same bytes as if the Message had been serialized separately.
+     */
+    def "Testing Transformation Function with a Message serialized once for several Peers"() {
+        given:
+            ExecutorService executor = Executors.newSingleThreadExecutor()
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            BitcoinMsg<PingMsg> pingMsg = new BitcoinMsgBuilder<>(config.getBasicConfig(), PingMsg.builder().nonce(5).build()).build()
+            byte[] expectedBytes = BitcoinMsgSerializerImpl.getInstance().serialize(
+                    SerializerStream.serializerContextFor(config.getMessageConfig(), pingMsg), pingMsg).getFullContentAndClose()
+
+            // 2 Peers, each one with its own Stream:
+            List<byte[]> bytesReceived = Collections.synchronizedList(new ArrayList<>())
+            List<PeerOutputStream<BitcoinMsg>> streams = new ArrayList<>()
+            for (int i = 0; i < 2; i++) {
+                PeerOutputStream<ByteArrayReader> destination = new PeerDestination(executor, REF_BODY_ADDRESS)
+                destination.onData({ e -> bytesReceived.add(e.getData().getFullContentAndClose()) })
+                streams.add(new SerializerStream(destination, config.getMessageConfig()))
+            }
+        when:
+            SerializedBitcoinMsg serializedMsg = SerializerStream.serializeShared(config.getMessageConfig(), pingMsg)
+            streams.forEach({ s -> s.send(new StreamDataEvent<>(serializedMsg.retain())) })
+            serializedMsg.release()
+            Thread.sleep(500)
+        then:
+            SerializedBitcoinMsg.isShareable(pingMsg)
+            SerializerStream.laneFor(serializedMsg) == OutboundLane.CONTROL
+            serializedMsg.getLengthInBytes() == expectedBytes.length
+            bytesReceived.size() == 2
+            bytesReceived.every { b -> Arrays.equals(b, expectedBytes) }
+    }
+
+    /**
+     * We test that the Version Messages are not shared between Peers
+     */
+    def "Testing Version Messages are not shareable"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            NetAddressMsg addr = NetAddressMsg.builder().address(REF_BODY_ADDRESS).build()
+            VersionMsg versionMsg = VersionMsg.builder()
+                    .version(config.getBasicConfig().protocolVersion)
+                    .timestamp(REF_BODY_TIMESTAMP)
+                    .user_agent(VarStrMsg.builder().str(REF_BODY_USER_AGENT).build())
+                    .start_height(REF_BODY_START_HEIGHT)
+                    .addr_from(addr)
+                    .addr_recv(addr)
+                    .relay(true)
+                    .build()
+        when:
+            BitcoinMsg<VersionMsg> btcMsg = new BitcoinMsgBuilder<>(config.getBasicConfig(), versionMsg).build()
+        then:
+            !SerializedBitcoinMsg.isShareable(btcMsg)
+            SerializerStream.serializerContextFor(config.getMessageConfig(), btcMsg).isInsideVersionMsg()
+    }
+
+    /**
+     * We test that a Message whose frame does not fit into an int (they can be up to 4GB even without an extended
+     * Header) is not shared between Peers, so it never gets into a single frame.
+     */
+    def "Testing Messages too big for a single frame are not shareable"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            BitcoinMsg<PingMsg> pingMsg = new BitcoinMsgBuilder<>(config.getBasicConfig(), PingMsg.builder().nonce(5).build()).build()
+        when:
+            // Same Message, but pretending to be as long as we say:
+            BitcoinMsg<PingMsg> maxFrameMsg = new BitcoinMsg<PingMsg>(pingMsg.getHeader(), pingMsg.getBody()) {
+                @Override long getLengthInBytes() { return SerializedBitcoinMsg.MAX_FRAME_LENGTH }
+            }
+            BitcoinMsg<PingMsg> tooBigMsg = new BitcoinMsg<PingMsg>(pingMsg.getHeader(), pingMsg.getBody()) {
+                @Override long getLengthInBytes() { return SerializedBitcoinMsg.MAX_FRAME_LENGTH + 1 }
+            }
+            SerializerStream.serializeShared(config.getMessageConfig(), tooBigMsg)
+        then:
+            thrown(IllegalArgumentException)
+            !tooBigMsg.getHeader().isExtendedMsg()
+            SerializedBitcoinMsg.isShareable(maxFrameMsg)
+            !SerializedBitcoinMsg.isShareable(tooBigMsg)
+    }
 }
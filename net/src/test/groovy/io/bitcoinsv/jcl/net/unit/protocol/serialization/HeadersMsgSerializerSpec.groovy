@@ -2,6 +2,7 @@ package io.bitcoinsv.jcl.net.unit.protocol.serialization
 
 import io.bitcoinsv.jcl.net.protocol.config.ProtocolBasicConfig
 import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfigBuilder
+import io.bitcoinsv.jcl.net.protocol.messages.BlockHeaderList
 import io.bitcoinsv.jcl.net.protocol.messages.BlockHeaderMsg
 import io.bitcoinsv.jcl.net.protocol.messages.HashMsg
 import io.bitcoinsv.jcl.net.protocol.messages.HeaderMsg
@@ -128,4 +129,60 @@ class HeadersMsgSerializerSpec extends Specification {
 
     }
 
+    /**
+     * We test that the Headers are stored packed, and that their Hashes (calculated all at once) and their
+     * conversion into Domain Classes match the ones calculated for each Header separately.
+     */
+    def "testing HeadersMsg packed Headers"() {
+        given:
+            ProtocolBasicConfig protocolBasicConfig = ProtocolConfigBuilder.get(MainNetParams.get()).getBasicConfig()
+            DeserializerContext deserializerContext = DeserializerContext.builder()
+                .protocolBasicConfig(protocolBasicConfig)
+                .build()
+            byte[] content = Utils.HEX.decode(VALID_HEADER)
+        when:
+            HeadersMsg headersMsg = HeadersMsgSerializer.getInstance().deserialize(deserializerContext, new ByteArrayReader(content))
+            BlockHeaderList headers = headersMsg.getBlockHeaders()
+            List<Sha256Hash> expectedHashes = new ArrayList<>()
+            for (int i = 0; i < headers.size(); i++) {
+                byte[] headerBytes = Arrays.copyOfRange(headers.getHeaders(), i * BlockHeaderList.HEADER_LENGTH, (i + 1) * BlockHeaderList.HEADER_LENGTH)
+                expectedHashes.add(Sha256Hash.wrapReversed(Sha256Hash.hashTwice(headerBytes)))
+            }
+            ByteArrayWriter writer = new ByteArrayWriter()
+            HeadersMsgSerializer.getInstance().serialize(null, headersMsg, writer)
+        then:
+            headers.size() == 2
+            headersMsg.getLengthInBytes() == content.length
+            (0..1).every { i -> headers.getHash(i) == expectedHashes.get(i) }
+            (0..1).every { i -> headers.get(i).getHash() == expectedHashes.get(i) }
+            (0..1).every { i -> headers.toBeans().get(i).getHash() == expectedHashes.get(i) }
+            headers.toBeans().get(1).getPrevBlockHash() == expectedHashes.get(0)
+            HeadersMsg.builder().blockHeaderMsgList(new ArrayList<>(headers)).build() == headersMsg
+            writer.reader().getFullContentAndClose() == content
+    }
+
+    /**
+     * We test that the Hashes calculated in parallel (big lists) are the same as the ones calculated one by one
+     */
+    def "testing HeadersMsg packed Headers hashed in parallel"() {
+        given:
+            List<BlockHeaderMsg> msgList = new ArrayList<>()
+            for (int i = 0; i < BlockHeaderList.PARALLEL_HASHING_THRESHOLD + 10; i++) {
+                msgList.add(BlockHeaderMsg.builder()
+                    .version(1)
+                    .prevBlockHash(HashMsg.builder().hash(Sha256Hash.ZERO_HASH.getBytes()).build())
+                    .merkleRoot(HashMsg.builder().hash(Sha256Hash.ZERO_HASH.getBytes()).build())
+                    .difficultyTarget(1)
+                    .creationTimestamp(0)
+                    .nonce(i)
+                    .build())
+            }
+        when:
+            BlockHeaderList headers = BlockHeaderList.of(msgList).calculateHashes()
+        then:
+            (0..<headers.size()).every { i ->
+                byte[] headerBytes = Arrays.copyOfRange(headers.getHeaders(), i * BlockHeaderList.HEADER_LENGTH, (i + 1) * BlockHeaderList.HEADER_LENGTH)
+                headers.getHash(i) == Sha256Hash.wrapReversed(Sha256Hash.hashTwice(headerBytes))
+            }
+    }
 }
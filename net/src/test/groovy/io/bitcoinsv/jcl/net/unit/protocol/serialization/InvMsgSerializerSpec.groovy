@@ -7,7 +7,9 @@ import io.bitcoinsv.jcl.net.protocol.serialization.common.BitcoinMsgSerializerIm
 import io.bitcoinsv.jcl.net.protocol.serialization.common.DeserializerContext
 import io.bitcoinsv.jcl.net.protocol.serialization.common.SerializerContext
 import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfig
+import io.bitcoinsv.jcl.net.protocol.messages.HashMsg
 import io.bitcoinsv.jcl.net.protocol.messages.InvMessage
+import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorList
 import io.bitcoinsv.jcl.net.protocol.messages.InventoryVectorMsg
 import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsg
 import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsgBuilder
@@ -149,4 +151,64 @@ class InvMsgSerializerSpec extends Specification {
     }
 
 
+
+    /**
+     * We test that the Inventory is stored packed, and that it can be accessed both as a List and directly,
+     * and that both ways return the same content.
+     */
+    def "testing invMessage packed Inventory"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            DeserializerContext context = DeserializerContext.builder()
+                    .protocolBasicConfig(config.getBasicConfig())
+                    .maxBytesToRead((long) (REF_INV_MSG_BODY.length()/2))
+                    .build()
+            InventoryVectorMsg refItem = InventoryVectorMsgSerializer.getInstance()
+                    .deserialize(null, new ByteArrayReader(Utils.HEX.decode(REF_INV_ITEM)))
+            List<Integer> typesVisited = new ArrayList<>()
+        when:
+            InvMessage invMessage = InvMsgSerializer.getInstance().deserialize(context, new ByteArrayReader(Utils.HEX.decode(REF_INV_MSG_BODY)))
+            InventoryVectorList inventory = invMessage.getInventory()
+            inventory.forEachRecord({ index, typeCode, records, hashOffset -> typesVisited.add(typeCode) })
+            InvMessage rebuiltMsg = InvMessage.builder().invVectorMsgList(Arrays.asList(refItem)).build()
+        then:
+            inventory.size() == REF_NUM_ITEMS
+            inventory.getType(0) == refItem.getType()
+            inventory.hashEquals(0, refItem.getHashMsg().getHashBytes())
+            inventory.indexOf(refItem.getType(), refItem.getHashMsg().getHashBytes()) == 0
+            inventory.indexOf(InventoryVectorMsg.VectorType.MSG_BLOCK, refItem.getHashMsg().getHashBytes()) == -1
+            typesVisited == [refItem.getType().getValue()]
+            invMessage.getInvVectorList().get(0) == refItem
+            invMessage.getInvVectorList() == Arrays.asList(refItem)
+            rebuiltMsg == invMessage
+            rebuiltMsg.getInventory().getRecords() == inventory.getRecords()
+    }
+
+    def "testing packed Inventory filtered"() {
+        given:
+            List<InventoryVectorMsg> items = (1..4).collect { n ->
+                byte[] hash = new byte[32]
+                hash[0] = (byte) n
+                InventoryVectorMsg.builder()
+                    .type(InventoryVectorMsg.VectorType.MSG_TX)
+                    .hashMsg(HashMsg.builder().hash(hash).build())
+                    .build()
+            }
+            InventoryVectorList inventory = InventoryVectorList.of(items)
+        when:
+            InventoryVectorList all = inventory.filter({ typeCode, records, hashOffset -> true })
+            InventoryVectorList even = inventory.filter({ typeCode, records, hashOffset -> records[hashOffset] % 2 == 0 })
+            InventoryVectorList none = inventory.filter({ typeCode, records, hashOffset -> false })
+        then:
+            all.is(inventory)
+            even == [items[1], items[3]]
+            none.isEmpty()
+    }
+
+    def "testing packed Inventory with wrong length"() {
+        when:
+            InventoryVectorList.wrap(new byte[InventoryVectorList.RECORD_LENGTH + 1])
+        then:
+            thrown IllegalArgumentException
+    }
 }
@@ -0,0 +1,142 @@
+package io.bitcoinsv.jcl.net.unit.protocol.serialization
+
+import io.bitcoinsv.bitcoinjsv.core.Utils
+import io.bitcoinsv.bitcoinjsv.params.MainNetParams
+import io.bitcoinsv.bitcoinjsv.params.Net
+import io.bitcoinsv.jcl.net.network.PeerAddress
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfig
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfigBuilder
+import io.bitcoinsv.jcl.net.protocol.events.data.PingMsgReceivedEvent
+import io.bitcoinsv.jcl.net.protocol.events.data.PingMsgSentEvent
+import io.bitcoinsv.jcl.net.protocol.handlers.message.EventFactory
+import io.bitcoinsv.jcl.net.protocol.messages.BlockMsg
+import io.bitcoinsv.jcl.net.protocol.messages.HeaderMsg
+import io.bitcoinsv.jcl.net.protocol.messages.PingMsg
+import io.bitcoinsv.jcl.net.protocol.messages.TxMsg
+import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsg
+import io.bitcoinsv.jcl.net.protocol.messages.common.BitcoinMsgBuilder
+import io.bitcoinsv.jcl.net.protocol.messages.common.MsgCommands
+import io.bitcoinsv.jcl.net.protocol.serialization.HeaderMsgSerializer
+import io.bitcoinsv.jcl.net.protocol.serialization.PingMsgSerializer
+import io.bitcoinsv.jcl.net.protocol.serialization.common.DeserializerContext
+import io.bitcoinsv.jcl.net.protocol.serialization.common.MsgSerializersFactory
+import io.bitcoinsv.jcl.net.protocol.serialization.common.SerializerContext
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayWriter
+import spock.lang.Specification
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * Testing class for the Message Commands Registry, and for the lookups done with the Command ids.
+ */
+class MsgCommandsSpec extends Specification {
+
+    // A full Ping Message (Header + Body):
+    private static final String REF_PING_MSG = "e3e1f3e870696e6700000000000000000800000032ab095c3d9a9cb22d32b40b"
+
+    // It returns the "command" field of a Header, NULL padded:
+    private static byte[] commandBytes(String command) {
+        byte[] result = new byte[MsgCommands.COMMAND_LENGTH]
+        System.arraycopy(command.getBytes("US-ASCII"), 0, result, 0, command.length())
+        return result
+    }
+
+    def "testing Commands resolved from Strings and raw bytes"() {
+        given:
+            // We make sure all the Serializers are registered:
+            MsgSerializersFactory.getSerializer(TxMsg.MESSAGE_TYPE)
+        when:
+            int txId = MsgCommands.idOf(TxMsg.MESSAGE_TYPE)
+            int blockId = MsgCommands.idOf(BlockMsg.MESSAGE_TYPE)
+            byte[] blockBytes = commandBytes("block")
+            byte[] upperBlockBytes = commandBytes("BLOCK")
+            byte[] unknownBytes = commandBytes("unknowncmd")
+        then:
+            txId != MsgCommands.UNKNOWN
+            blockId != MsgCommands.UNKNOWN
+            txId != blockId
+            MsgCommands.idOf("TX") == txId
+            MsgCommands.nameOf(blockId) == "block"
+            MsgCommands.idOf(commandBytes("tx"), 0) == txId
+
+            // Known commands in lower case always get the same instance:
+            MsgCommands.idOf(blockBytes, 0) == blockId
+            MsgCommands.commandOf(blockBytes, 0, blockId).is(MsgCommands.nameOf(blockId))
+
+            // Commands are case-insensitive, but the original text is kept:
+            MsgCommands.idOf(upperBlockBytes, 0) == blockId
+            MsgCommands.commandOf(upperBlockBytes, 0, blockId) == "BLOCK"
+
+            // Unknown Commands:
+            MsgCommands.idOf(unknownBytes, 0) == MsgCommands.UNKNOWN
+            MsgCommands.commandOf(unknownBytes, 0, MsgCommands.UNKNOWN) == "unknowncmd"
+            MsgCommands.idOf("unknowncmd") == MsgCommands.UNKNOWN
+            MsgSerializersFactory.getSerializer(MsgCommands.UNKNOWN) == null
+    }
+
+    def "testing Header Deserialization resolves the Command id"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            DeserializerContext context = DeserializerContext.builder()
+                    .protocolBasicConfig(config.getBasicConfig())
+                    .build()
+            ByteArrayReader reader = new ByteArrayReader(Utils.HEX.decode(REF_PING_MSG))
+        when:
+            HeaderMsg headerMsg = HeaderMsgSerializer.getInstance().deserialize(context, reader)
+        then:
+            headerMsg.getCommand() == PingMsg.MESSAGE_TYPE
+            headerMsg.getMsgCommandId() == MsgCommands.idOf(PingMsg.MESSAGE_TYPE)
+            MsgSerializersFactory.getSerializer(headerMsg.getMsgCommandId()) == PingMsgSerializer.getInstance()
+            MsgSerializersFactory.hasSerializerFor(headerMsg.getMsgCommandId(), false)
+            !MsgSerializersFactory.hasSerializerFor(headerMsg.getMsgCommandId(), true)
+    }
+
+    def "testing Extended Header Deserialization resolves the Command ids"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            DeserializerContext desContext = DeserializerContext.builder()
+                    .protocolBasicConfig(config.getBasicConfig())
+                    .build()
+            SerializerContext serContext = SerializerContext.builder()
+                    .protocolBasicConfig(config.getBasicConfig())
+                    .build()
+            HeaderMsg extHeader = HeaderMsg.builder()
+                    .magic(config.getBasicConfig().getMagicPackage())
+                    .command(HeaderMsg.EXT_COMMAND)
+                    .length(HeaderMsg.EXT_LENGTH)
+                    .extCommand(BlockMsg.MESSAGE_TYPE)
+                    .extLength(5_000_000_000L)
+                    .build()
+            ByteArrayWriter writer = new ByteArrayWriter()
+        when:
+            HeaderMsgSerializer.getInstance().serialize(serContext, extHeader, writer)
+            HeaderMsg headerMsg = HeaderMsgSerializer.getInstance().deserialize(desContext, writer.reader())
+            HeaderMsg rebuiltMsg = headerMsg.toBuilder().build()
+        then:
+            extHeader.isExtendedMsg()
+            headerMsg.isExtendedMsg()
+            headerMsg.getLengthInBytes() == HeaderMsg.MESSAGE_LENGTH_EXT
+            headerMsg.getMsgCommand() == BlockMsg.MESSAGE_TYPE
+            headerMsg.getMsgCommandId() == MsgCommands.idOf(BlockMsg.MESSAGE_TYPE)
+            headerMsg.getMsgLength() == 5_000_000_000L
+            rebuiltMsg == headerMsg
+            rebuiltMsg.getMsgCommandId() == headerMsg.getMsgCommandId()
+    }
+
+    def "testing Events built from the Class of the Body"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            PeerAddress peerAddress = PeerAddress.localhost(8333)
+            PingMsg pingMsg = PingMsg.builder().nonce(1).build()
+            BitcoinMsg<PingMsg> btcMsg = new BitcoinMsgBuilder<>(config.getBasicConfig(), pingMsg).build()
+        when:
+            def incomingEvent = EventFactory.buildIncomingEvent(peerAddress, btcMsg)
+            def outcomingEvent = EventFactory.buildOutcomingEvent(peerAddress, btcMsg)
+        then:
+            incomingEvent instanceof PingMsgReceivedEvent
+            outcomingEvent instanceof PingMsgSentEvent
+            incomingEvent.getBtcMsg() == btcMsg
+    }
+}
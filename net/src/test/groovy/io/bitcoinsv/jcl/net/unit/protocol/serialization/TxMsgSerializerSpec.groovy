@@ -18,7 +18,9 @@ import io.bitcoinsv.jcl.net.protocol.serialization.common.DeserializerContext
 import io.bitcoinsv.jcl.net.protocol.serialization.common.SerializerContext
 import io.bitcoinsv.jcl.net.unit.protocol.tools.ByteArrayArtificalStreamProducer
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReaderOptimized
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayWriter
+import io.bitcoinsv.bitcoinjsv.core.Sha256Hash
 import io.bitcoinsv.bitcoinjsv.core.Utils
 import io.bitcoinsv.bitcoinjsv.params.MainNetParams
 import io.bitcoinsv.bitcoinjsv.params.Net
@@ -80,6 +82,40 @@ class TxMsgSerializerSpec extends Specification {
                 10       |    15
     }
 
+    /**
+     * The Hash of the Tx is calculated from the bytes read while deserializing it, so it must be the same as the
+     * Hash of the whole Tx bytes. We also check that the Hash is not affected by the bytes read before the Tx.
+     */
+    def "Testing TransactionMsg Deserialize with Hash"(boolean optimizedReader) {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            DeserializerContext context = DeserializerContext.builder()
+                    .protocolBasicConfig(config.getBasicConfig())
+                    .calculateHashes(true)
+                    .build()
+            TxMsgSerializer serializer = TxMsgSerializer.getInstance()
+            byte[] txBytes = Utils.HEX.decode(REF_MSG)
+            Sha256Hash expectedHash = Sha256Hash.wrapReversed(Sha256Hash.twiceOf(txBytes).getBytes())
+
+            // Some bytes in front of the Tx, so the Tx is read from the middle of the Reader:
+            byte[] allBytes = new byte[txBytes.length + 4]
+            System.arraycopy(txBytes, 0, allBytes, 4, txBytes.length)
+        when:
+            ByteArrayReader byteReader = (optimizedReader)
+                    ? new ByteArrayReaderOptimized(new ByteArrayReader(allBytes))
+                    : new ByteArrayReader(allBytes)
+            byteReader.readUint32()
+            TxMsg message = serializer.deserialize(context, byteReader)
+        then:
+            message.getHash().isPresent()
+            message.getHash().get() == expectedHash
+            message.lockTime == REF_LOCKTIME
+        where:
+            optimizedReader | _
+                false       | _
+                true        | _
+    }
+
     def "Testing TxInputMessage Serializing"() {
         given:
             ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
@@ -0,0 +1,75 @@
+package io.bitcoinsv.jcl.net.unit.protocol.serialization
+
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfig
+import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfigBuilder
+import io.bitcoinsv.jcl.net.protocol.messages.TxMsg
+import io.bitcoinsv.jcl.net.protocol.messages.TxViewMsg
+import io.bitcoinsv.jcl.net.protocol.serialization.TxMsgSerializer
+import io.bitcoinsv.jcl.net.protocol.serialization.TxViewMsgSerializer
+import io.bitcoinsv.jcl.net.protocol.serialization.common.DeserializerContext
+import io.bitcoinsv.jcl.net.protocol.serialization.common.SerializerContext
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayWriter
+import io.bitcoinsv.bitcoinjsv.core.Utils
+import io.bitcoinsv.bitcoinjsv.params.MainNetParams
+import io.bitcoinsv.bitcoinjsv.params.Net
+import spock.lang.Specification
+
+/**
+ * Testing class for the TxView message Serialization: The Tx is read in raw format, and its fields decoded on
+ * demand must be the same as the ones we get from a regular TxMsg Deserialization.
+ */
+class TxViewMsgSerializerSpec extends Specification {
+
+    def "Testing TxView Deserialize and decode"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            byte[] txBytes = Utils.HEX.decode(TxMsgSerializerSpec.REF_MSG)
+            DeserializerContext context = DeserializerContext.builder()
+                    .protocolBasicConfig(config.getBasicConfig())
+                    .maxBytesToRead(txBytes.length)
+                    .calculateHashes(true)
+                    .build()
+            TxMsg refTx = TxMsgSerializer.getInstance().deserialize(context, new ByteArrayReader(txBytes))
+        when:
+            TxViewMsg txView = TxViewMsgSerializer.getInstance().deserialize(context, new ByteArrayReader(txBytes))
+            TxMsg txConverted = txView.toTxMsg()
+        then:
+            txView.getMessageType() == TxMsg.MESSAGE_TYPE
+            txView.getContent() == txBytes
+            txView.getHash() == refTx.getHash().get()
+            txView.getVersion() == TxMsgSerializerSpec.REF_VERSION
+            txView.getLockTime() == TxMsgSerializerSpec.REF_LOCKTIME
+            txView.getInputCount() == 1
+            txView.getOutputCount() == 1
+            txView.getInput(0) == refTx.getTx_in().get(0)
+            txView.getOutput(0) == refTx.getTx_out().get(0)
+            txView.getOutputValue(0) == refTx.getTx_out().get(0).getTxValue()
+            txConverted == refTx
+    }
+
+    def "Testing TxView Serialize"() {
+        given:
+            ProtocolConfig config = ProtocolConfigBuilder.get(new MainNetParams(Net.MAINNET))
+            SerializerContext context = SerializerContext.builder()
+                    .protocolBasicConfig(config.getBasicConfig())
+                    .build()
+            TxViewMsg txView = TxViewMsg.builder().content(Utils.HEX.decode(TxMsgSerializerSpec.REF_MSG)).build()
+        when:
+            ByteArrayWriter byteWriter = new ByteArrayWriter()
+            TxViewMsgSerializer.getInstance().serialize(context, txView, byteWriter)
+            String messageSerializedBytes = Utils.HEX.encode(byteWriter.reader().getFullContent())
+        then:
+            messageSerializedBytes == TxMsgSerializerSpec.REF_MSG
+    }
+
+    def "Testing TxView with malformed content"() {
+        given:
+            byte[] txBytes = Utils.HEX.decode(TxMsgSerializerSpec.REF_MSG)
+            TxViewMsg txView = TxViewMsg.builder().content(Arrays.copyOf(txBytes, txBytes.length - 10)).build()
+        when:
+            txView.getOutput(0)
+        then:
+            thrown IllegalStateException
+    }
+}
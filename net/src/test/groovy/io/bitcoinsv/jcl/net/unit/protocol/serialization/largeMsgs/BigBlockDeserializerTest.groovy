@@ -3,10 +3,14 @@ package io.bitcoinsv.jcl.net.unit.protocol.serialization.largeMsgs
 import io.bitcoinsv.jcl.net.protocol.config.ProtocolConfig
 import io.bitcoinsv.jcl.net.protocol.config.provided.ProtocolBSVMainConfig
 import io.bitcoinsv.jcl.net.protocol.messages.PartialBlockHeaderMsg
+import io.bitcoinsv.jcl.net.protocol.messages.PartialBlockRawTxMsg
 import io.bitcoinsv.jcl.net.protocol.messages.PartialBlockTXsMsg
 import io.bitcoinsv.jcl.net.protocol.serialization.common.DeserializerContext
 import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.BigBlockDeserializer
+import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.RawBigBlockDeserializer
+import io.bitcoinsv.jcl.net.protocol.serialization.largeMsgs.ResumableLargeMessageDeserializer
 import io.bitcoinsv.jcl.net.unit.protocol.tools.MsgTest
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayBuffer
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReaderOptimized
 import io.bitcoinsv.bitcoinjsv.core.Utils
@@ -71,4 +75,68 @@ class BigBlockDeserializerTest extends Specification {
             !errorThrown.get()
     }
 
+    /**
+     * We test that a Big Block is deserialized properly by a Resumable Deserializer when its bytes arrive in small
+     * chunks: after each chunk, the Deserializer deserializes what it can and returns without waiting for the rest,
+     * and it only finishes once the last chunk has been fed.
+     */
+    def "Testing Big-Block Deserialized resuming in chunks"(ResumableLargeMessageDeserializer largeMsgDeserializer, int chunkSize) {
+        given:
+            // We are using the Block defined in the MsgTest Utility class, that Block contains 2 TXs
+            final int NUM_TXS = 2
+            byte[] blockBytes = Utils.HEX.decode(MsgTest.BLOCK_BODY_HEX)
+
+            ProtocolConfig protocolConfig = new ProtocolBSVMainConfig()
+
+            // We keep track of the info sent by the callbacks triggered:
+            AtomicBoolean headerReceived = new AtomicBoolean(false)
+            AtomicInteger numTXsReceived = new AtomicInteger()
+            AtomicBoolean errorThrown = new AtomicBoolean(false)
+
+            DeserializerContext deserializedContext = DeserializerContext.builder()
+                .protocolBasicConfig(protocolConfig.getBasicConfig())
+                .maxBytesToRead(blockBytes.length)
+                .build()
+
+            largeMsgDeserializer.setPartialMsgSize(1_000_000) // 1MB
+            largeMsgDeserializer.onDeserialized({ e ->
+                if (e.getData() instanceof PartialBlockHeaderMsg) headerReceived.set(true)
+                else if (e.getData() instanceof PartialBlockTXsMsg) numTXsReceived.addAndGet(((PartialBlockTXsMsg) e.getData()).getTxs().size())
+                else if (e.getData() instanceof PartialBlockRawTxMsg) numTXsReceived.addAndGet(((PartialBlockRawTxMsg) e.getData()).getTxs().size())
+                else errorThrown.set(true)
+            })
+            largeMsgDeserializer.onError({e ->
+                errorThrown.set(true)
+                println("ERROR Received: " + e.getException())
+            })
+
+        when:
+            // We feed the bytes in chunks, resuming the Deserializer after each one:
+            ByteArrayBuffer buffer = new ByteArrayBuffer()
+            ByteArrayReader reader = new ByteArrayReader(buffer)
+            largeMsgDeserializer.start(deserializedContext, null)
+            int numResumesUnfinished = 0
+            boolean finished = false
+            for (int offset = 0; offset < blockBytes.length; offset += chunkSize) {
+                buffer.add(Arrays.copyOfRange(blockBytes, offset, Math.min(offset + chunkSize, blockBytes.length)))
+                finished = largeMsgDeserializer.resume(reader)
+                if (!finished) numResumesUnfinished++
+            }
+
+        then:
+            // We check that we received the Header, the right number of TXs, and no errors have been thrown
+            finished
+            numResumesUnfinished == Math.ceil(blockBytes.length / chunkSize) - 1
+            headerReceived.get()
+            numTXsReceived.get() == NUM_TXS
+            !errorThrown.get()
+            buffer.size() == 0
+
+        where:
+            largeMsgDeserializer            | chunkSize
+            new BigBlockDeserializer()      | 1
+            new BigBlockDeserializer()      | 50
+            new RawBigBlockDeserializer()   | 1
+            new RawBigBlockDeserializer()   | 50
+    }
 }
@@ -2,6 +2,7 @@ package io.bitcoinsv.jcl.tools.bytes;
 
 
 import javax.annotation.concurrent.GuardedBy;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
@@ -19,16 +20,18 @@ import static com.google.common.base.Preconditions.checkArgument;
  * This class also implements the ByteArray inrterface, so once the content has been fed, it can be used as a
  * regular ByteArray.
  *
- * NOTE: This class is NOT Thread-Safe. At this moment, operformance is the highest concern, so making it Thread-Safe
- * is on our list but it will taken up only if needed, reason geing: This class is massively used by the Streams open
- * with each Remorte Peer:
- *  - The remote peer sends data to us, and that data is ADDED to this class (to the end, it's right side)
- *  - We read the data, socnuming bytes from the beginning (left side)
- *
- *  The two operations above are happening at the same time and at incredible high rate (several thousands per sec). I'm
- *  afraid that if I add lock management to these oeprations, that will affect performance. In the real scenarios, the
- *  data is written ont he left and red fromt he right, so the only problme will come if we try to read data is still not
- *  there, but we always verify that before reading, so there shouldn't be an issue.
+ * Thread-Safety: This class is used by the Streams open with each Remote Peer, where the data sent by the Peer is
+ * ADDED to the end (right side) by one Thread, while another one READS it, consuming bytes from the beginning (left
+ * side), both at a very high rate:
+ *  - All the methods that add, extract, read or modify the content ("add", "addSegment", "extract", "extractInto",
+ *    "get", "overwrite", "digest", "detachBuffers", "clear" and "updateConfig") are synchronized, so they can be
+ *    safely called from different Threads.
+ *  - "size()", "available()", "capacity()" and "isEmpty()" are lock-free (they read atomic counters), so they are
+ *    safe to call from any Thread, but the value returned might be outdated by the time the caller uses it.
+ *  - "signalBytesAdded()", "getBytesAddedSignals()" and "awaitBytesAdded()" are safe to call from any Thread (they use
+ *    their own monitor): they are used by the Readers that wait for more bytes to arrive (see ByteArrayReaderRealTime).
+ *  - A sequence of calls (like checking the size and then extracting) is NOT atomic. Having a single Thread
+ *    consuming the bytes, as the Streams do, is enough to guarantee that the bytes checked are still there.
  */
 public class ByteArrayBuffer implements ByteArray {
 
@@ -40,6 +43,10 @@ public class ByteArrayBuffer implements ByteArray {
     AtomicLong capacity = new AtomicLong();
     AtomicLong available = new AtomicLong();
 
+    // The Readers waiting for more bytes to arrive (see ByteArrayReaderRealTime) park on this monitor until whoever
+    // feeds this Buffer calls "signalBytesAdded()". The counter lets them detect a signal sent before they parked.
+    private final Object bytesAddedMonitor = new Object();
+    @GuardedBy("bytesAddedMonitor") private long bytesAddedSignals = 0;
 
     public ByteArrayBuffer(){
         this.config = new ByteArrayConfig();
@@ -98,6 +105,69 @@ public class ByteArrayBuffer implements ByteArray {
 
     }
 
+    /**
+     * Adds a Segment to the end of the current data, WITHOUT copying its content. From now on, this class owns the
+     * Segment, and it will release it once all its bytes have been extracted (or when this class is cleared).
+     */
+    public synchronized void addSegment(ByteArraySegment segment) {
+        if (segment.isEmpty()) {
+            segment.clear();
+            return;
+        }
+        buffers.add(segment);
+
+        // Performance counters:
+        size.addAndGet(segment.size());
+        capacity.addAndGet(segment.capacity());
+    }
+
+    /**
+     * It wakes up the Readers waiting for more bytes in this Buffer. It's NOT called by "add()" itself, it's up to
+     * whoever feeds this Buffer to call it once a batch of bytes has been added.
+     */
+    public void signalBytesAdded() {
+        synchronized (bytesAddedMonitor) {
+            bytesAddedSignals++;
+            bytesAddedMonitor.notifyAll();
+        }
+    }
+
+    /** Returns the number of signals sent so far. To be used as a parameter in "awaitBytesAdded()" */
+    public long getBytesAddedSignals() {
+        synchronized (bytesAddedMonitor) {
+            return bytesAddedSignals;
+        }
+    }
+
+    /**
+     * It blocks until a new signal is sent (see "signalBytesAdded()") or the timeout expires. If some signal has been
+     * sent since "lastSignal" was taken, it returns right away.
+     */
+    public void awaitBytesAdded(long lastSignal, long timeoutMillis) throws InterruptedException {
+        synchronized (bytesAddedMonitor) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long remainingMillis = timeoutMillis;
+            while (bytesAddedSignals == lastSignal && remainingMillis > 0) {
+                bytesAddedMonitor.wait(remainingMillis);
+                remainingMillis = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * It detaches all the internal buffers and returns them, so their content can be used directly by the caller,
+     * without copying it. From now on the caller owns them, and it must "clear()" them once it's done. After this,
+     * this class is empty.
+     */
+    public synchronized List<ByteArray> detachBuffers() {
+        List<ByteArray> result = new ArrayList<>(buffers);
+        buffers.clear();
+        size.set(0);
+        capacity.set(0);
+        available.set(0);
+        return result;
+    }
+
     /** Adds a byte Array at the specific location */
     public synchronized void add(byte[] data, int offset, int length) {
         throw new UnsupportedOperationException("Not supported at the moment");
@@ -118,7 +188,7 @@ public class ByteArrayBuffer implements ByteArray {
 
 
     @Override
-    public void extractInto(int length, byte[] array, int writeOffset) {
+    public synchronized void extractInto(int length, byte[] array, int writeOffset) {
         checkArgument(size() >= length,
                 "trying to extract too many bytes, current: " + size() + ", requested: " + length);
 
@@ -139,7 +209,7 @@ public class ByteArrayBuffer implements ByteArray {
             bytesRemaining -= bytesToWriteLength;
             indexBuffer++;
         }
-        // We remove those ByteArrays that are now empty after the extraction...
+        // We remove those ByteArrays that are now empty after the extraction (their memory goes back to the Pool)...
         buffersToRemove.forEach(b -> b.clear());
         buffers.removeAll(buffersToRemove);
 
@@ -166,12 +236,15 @@ public class ByteArrayBuffer implements ByteArray {
     public boolean isEmpty() { return (size() == 0);}
 
     /**
-     * Cleans the data. For the data stored in Memory, it
-     * becomes eligible for the Garbage Collector, so it will be eventually cleaned as well.
+     * Cleans the data. No data available after this. The memory used by the internal buffers is released (returned
+     * to the DirectBufferPool, or made eligible for the Garbage Collector).
      */
     public synchronized void clear() {
         buffers.forEach(b -> b.clear());
         buffers.clear();
+        size.set(0);
+        capacity.set(0);
+        available.set(0);
     }
 
     /**
@@ -219,7 +292,8 @@ public class ByteArrayBuffer implements ByteArray {
         for(ByteArray buffer : buffers){
 
             // If we haven't reach the beginning of the data, we accumulate counters and move on:
-            if(previousBuffersSize + buffer.size() <= offset){
+            // (once found, the following buffers are never skipped, whatever their size)
+            if(!initialBufferOffsetFound && previousBuffersSize + buffer.size() <= offset){
                 previousBuffersSize += buffer.size();
                 continue;
             }
@@ -254,17 +328,86 @@ public class ByteArrayBuffer implements ByteArray {
         return result;
     }
 
+    /**
+     * It overwrites some bytes already stored, at the position given. The size of the content does not change.
+     * Only the bytes stored in the internal buffers can be overwritten, NOT the ones added as Segments (read-only).
+     * @param offset    position of the first byte to overwrite
+     * @param data      new value of the bytes
+     */
+    public synchronized void overwrite(long offset, byte[] data) {
+        checkArgument(offset >= 0 && offset + data.length <= this.size(),
+                " trying to overwrite too many bytes (offset:" + offset + ", length: " + data.length + ", size:" + this.size + ")");
+
+        long bytesToSkip = offset;
+        int bytesWritten = 0;
+        for (ByteArray buffer : buffers) {
+            if (bytesWritten == data.length) break;
+
+            // We skip the buffers before the position given:
+            if (bytesToSkip >= buffer.size()) {
+                bytesToSkip -= buffer.size();
+                continue;
+            }
+            if (!(buffer instanceof ByteArrayNIO)) {
+                throw new UnsupportedOperationException("Trying to overwrite bytes stored in a read-only Segment");
+            }
+            int bytesToWrite = (int) Math.min(buffer.size() - bytesToSkip, data.length - bytesWritten);
+            ((ByteArrayNIO) buffer).overwrite((int) bytesToSkip, data, bytesWritten, bytesToWrite);
+            bytesToSkip = 0;
+            bytesWritten += bytesToWrite;
+        }
+    }
+
+    /**
+     * It feeds a piece of data into the Digest given, WITHOUT consuming it. The bytes are fed directly from the
+     * internal buffers (no copy is made if they are backed by a ByteBuffer), so it can be used on large amounts of data
+     * without increasing memory usage.
+     * @param offset    position of the beginning of the data
+     * @param length    length of the data
+     * @param digest    Digest to feed the data into
+     */
+    public synchronized void digest(long offset, long length, Sha256HashIncremental digest) {
+        checkArgument(offset >= 0 && length >= 0 && offset + length <= this.size(),
+                " trying to digest too many bytes (offset:" + offset + ", length: " + length + ", size:" + this.size + ")");
+
+        long bytesToSkip = offset;
+        long bytesRemaining = length;
+        for (ByteArray buffer : buffers) {
+            if (bytesRemaining == 0) break;
+
+            // We skip the buffers before the beginning of the data:
+            if (bytesToSkip >= buffer.size()) {
+                bytesToSkip -= buffer.size();
+                continue;
+            }
+
+            int bufferOffset = (int) bytesToSkip;
+            int bytesToDigest = (int) Math.min(buffer.size() - bufferOffset, bytesRemaining);
+            if (buffer instanceof ByteBufferBacked) {
+                ByteBuffer view = ((ByteBufferBacked) buffer).getReadableBuffer();
+                view.position(view.position() + bufferOffset);
+                view.limit(view.position() + bytesToDigest);
+                digest.add(view);
+            } else {
+                digest.add(buffer.get(bufferOffset, bytesToDigest));
+            }
+            bytesToSkip = 0;
+            bytesRemaining -= bytesToDigest;
+        }
+    }
+
     /**
      * Returns the Full Content of the Buffer.
      */
     public synchronized byte[] get() {
-        ByteArray result =  new ByteArrayNIO((int) this.size());
+        byte[] result = new byte[(int) this.size()];
+        int writeOffset = 0;
         for (int i = 0; i < buffers.size(); i++) {
-            ByteArray bufferItem = buffers.get(i);
-            byte[] bufferItemContent = bufferItem.get();
-            result.add(bufferItemContent);
+            byte[] bufferItemContent = buffers.get(i).get();
+            System.arraycopy(bufferItemContent, 0, result, writeOffset, bufferItemContent.length);
+            writeOffset += bufferItemContent.length;
         }
-        return result.get();
+        return result;
     }
 
     public synchronized void updateConfig(ByteArrayConfig memoryConfig) {
@@ -12,20 +12,27 @@ import static com.google.common.base.Preconditions.checkArgument;
  * Copyright (c) 2018-2020 nChain Ltd
  *
  * This class is the implementation for a ByteArray using NIO and DirectBuffer.
- * The memory is allocated from the Native (off-heap memory).
+ * The memory is allocated from the Native (off-heap memory). The Buffer is taken from the DirectBufferPool, and it's
+ * returned to it when this ByteArray is cleared, so it must NOT be used after that.
  *
  */
-public class ByteArrayNIO implements ByteArray {
+public class ByteArrayNIO implements ByteArray, ByteBufferBacked {
 
     protected ByteBuffer buffer;
     protected int capacity;
     protected int dataSize;
     protected int remaining;
+    protected DirectBufferPool pool;
 
 
     public ByteArrayNIO(int capacity) {
+        this(capacity, DirectBufferPool.getDefault());
+    }
+
+    public ByteArrayNIO(int capacity, DirectBufferPool pool) {
         this.capacity = capacity;
-        this.buffer = ByteBuffer.allocateDirect(capacity);
+        this.pool = pool;
+        this.buffer = pool.acquire(capacity);
         this.dataSize = buffer.position();
         this.remaining = buffer.remaining();
     }
@@ -161,9 +168,44 @@ public class ByteArrayNIO implements ByteArray {
         return result;
     }
 
+    /**
+     * It overwrites some bytes already stored, at the position given. The size of the data stored does not change.
+     */
+    public void overwrite(int offset, byte[] data, int dataOffset, int length) {
+        checkArgument(offset >= 0 && length >= 0 && (offset + length) <= size(),
+                "not enough data in the buffer to overwrite: actual data: " + size() + " bytes,"
+                        + " , requested: " + offset + "+" + length + " bytes");
+        for (int i = 0; i < length; i++) buffer.put(offset + i, data[dataOffset + i]);
+    }
+
     public void clear_content() throws IOException {
-        buffer.clear();
+        if (buffer == null) return;
+        pool.release(buffer);
         buffer = null;
+        dataSize = 0;
+        remaining = 0;
+    }
+
+    /**
+     * It hands the Buffer over to a new RefCountedByteBuffer, without copying it. The Buffer goes back to the Pool
+     * once all its references are released. The bytes stored go from position zero up to the current "size()". After
+     * this, this ByteArray is empty and must NOT be used anymore.
+     */
+    public RefCountedByteBuffer detach() {
+        checkArgument(buffer != null, "This ByteArray has been already cleared or detached");
+        ByteBuffer result = buffer;
+        result.limit(dataSize).position(0);
+        buffer = null;
+        dataSize = 0;
+        remaining = 0;
+        return new RefCountedByteBuffer(result, pool::release);
+    }
+
+    @Override
+    public ByteBuffer getReadableBuffer() {
+        ByteBuffer result = buffer.duplicate();
+        result.limit(dataSize).position(0);
+        return result;
     }
 
     public long size()          { return dataSize; }
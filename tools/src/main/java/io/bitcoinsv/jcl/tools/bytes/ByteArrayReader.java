@@ -23,6 +23,12 @@ public class ByteArrayReader implements IReader {
     protected ByteArray byteArray;
     protected long bytesReadCount = 0; // Number of bytes read....
 
+    // Max number of bytes copied at once when feeding a Digest from a ByteArray which is not a ByteArrayBuffer:
+    private static final int MAX_DIGEST_CHUNK_SIZE = 1_000_000; // 1MB
+
+    // If active, all the bytes consumed are also hashed (only created when needed):
+    protected DigestTee digestTee;
+
     public ByteArrayReader(ByteArrayReader reader) {
         this(reader.byteArray);
     }
@@ -43,6 +49,7 @@ public class ByteArrayReader implements IReader {
     public byte[] read(int length) {
         byte[] result = byteArray.extract(length);
         bytesReadCount += length;
+        teeConsumed(result, 0, length);
         return result;
     }
 
@@ -74,6 +81,7 @@ public class ByteArrayReader implements IReader {
     public byte[] getFullContent()              { return byteArray.get(); }
     @Override
     public long getBytesReadCount()             { return bytesReadCount; }
+    public ByteArray getByteArray()             { return byteArray; }
     @Override
     public long getUint32(int offset)                 { return Utils.readUint32(get(offset, 4), 0);}
     @Override
@@ -84,9 +92,47 @@ public class ByteArrayReader implements IReader {
         byte[] result = byteArray.get();
         closeAndClear();
         bytesReadCount += result.length;
+        teeConsumed(result, 0, result.length);
         return result;
     }
 
+    /**
+     * It feeds a piece of the data into the Digest given, WITHOUT consuming it. If the underlying ByteArray is a
+     * ByteArrayBuffer, the bytes are fed directly from its internal buffers, otherwise they are copied in chunks.
+     * @param offset    position of the beginning of the data (relative to the bytes not consumed yet)
+     * @param length    length of the data
+     * @param digest    Digest to feed the data into
+     */
+    public void digest(long offset, long length, Sha256HashIncremental digest) {
+        if (byteArray instanceof ByteArrayBuffer) {
+            ((ByteArrayBuffer) byteArray).digest(offset, length, digest);
+            return;
+        }
+        long bytesDigested = 0;
+        while (bytesDigested < length) {
+            int bytesToDigest = (int) Math.min(MAX_DIGEST_CHUNK_SIZE, length - bytesDigested);
+            digest.add(get(offset + bytesDigested, bytesToDigest));
+            bytesDigested += bytesToDigest;
+        }
+    }
+
+    @Override
+    public void startDigestTee() {
+        if (digestTee == null) digestTee = new DigestTee();
+        digestTee.start();
+    }
+
+    @Override
+    public byte[] stopDigestTee() {
+        if (digestTee == null) throw new IllegalStateException("No Digest Tee has been started in this Reader");
+        return digestTee.stopAndHashTwice();
+    }
+
+    // It feeds the bytes consumed into the Digest Tee, if active:
+    protected void teeConsumed(byte[] bytes, int offset, int length) {
+        if (digestTee != null && digestTee.isActive()) digestTee.feed(bytes, offset, length);
+    }
+
     // Performs a Default "trim" on the String, removing spaces from beginning and end.
     @Override
     public String readString(int length, String charset) {
@@ -99,6 +99,7 @@ public class ByteArrayReaderOptimized extends ByteArrayReader {
     public long readUint32() {
         adjustBufferIfNeededForReading(4);
         long result= Utils.readUint32(buffer, bytesConsumed);
+        teeConsumed(buffer, bytesConsumed, 4);
         bytesConsumed += 4;
         return result;
     }
@@ -106,6 +107,7 @@ public class ByteArrayReaderOptimized extends ByteArrayReader {
     public byte read() {
         adjustBufferIfNeededForReading(1);
         byte result = buffer[bytesConsumed];
+        teeConsumed(buffer, bytesConsumed, 1);
         bytesConsumed+= 1;
         return result;
     }
@@ -117,6 +119,7 @@ public class ByteArrayReaderOptimized extends ByteArrayReader {
     public long readInt64LE() {
         adjustBufferIfNeededForReading(8);
         long result = Utils.readInt64(buffer, bytesConsumed);
+        teeConsumed(buffer, bytesConsumed, 8);
         bytesConsumed += 8;
         return result;
     }
@@ -137,6 +140,7 @@ public class ByteArrayReaderOptimized extends ByteArrayReader {
         if ((buffer.length) >= length) {
             adjustBufferIfNeededForReading(length);
             System.arraycopy(buffer, bytesConsumed, result, 0, length);
+            teeConsumed(result, 0, length);
             bytesConsumed += length;
         } else {
             super.byteArray.extract(bytesConsumed);
@@ -167,10 +171,17 @@ public class ByteArrayReaderOptimized extends ByteArrayReader {
         return get(0, length);
     }
 
+    @Override
+    public void digest(long offset, long length, Sha256HashIncremental digest) {
+        // The bytes consumed from our buffer are still in the ByteArray:
+        super.digest(bytesConsumed + offset, length, digest);
+    }
+
     public byte[] getFullContentAndClose() {
         super.byteArray.extract(bytesConsumed);
         byte[] result = byteArray.get();
         closeAndClear();
+        teeConsumed(result, 0, result.length);
         return result;
     }
 }
@@ -36,7 +36,7 @@ public class ByteArrayReaderRealTime extends ByteArrayReaderOptimized {
         DYNAMIC_WAIT    // it waits an amount of time which is based on the speed (bytes/Sec) we expect for this reader
     }
 
-    // during the wait, we wait several times for small amounts of time each, specified in this property:
+    // during the wait, we park until we are signaled that more bytes have arrived, but never longer than this:
     private static final Duration WAITING_INTERVAL = Duration.ofMillis(50);
 
     // If we are in FIXED_WAIT mode, the waitingTime will take this value for the next bytes to read (no matter how many bytes)
@@ -80,7 +80,7 @@ public class ByteArrayReaderRealTime extends ByteArrayReaderOptimized {
         super(initialData);
     }
 
-    private Duration getWaitingTime(long length) {
+    private Duration getTimeout(long length) {
         return readerMode.equals(ReaderMode.FIXED_WAIT)
                 ? FIXED_WAIT_TIMEOUT
                 : Duration.ofMillis(length * 1000 / speedBytesPerSec);
@@ -101,6 +101,12 @@ public class ByteArrayReaderRealTime extends ByteArrayReaderOptimized {
         return super.get(length);
     }
 
+    @Override
+    public void digest(long offset, long length, Sha256HashIncremental digest) {
+        if (offset + length <= Integer.MAX_VALUE) waitForBytes((int) (offset + length));
+        super.digest(offset, length, digest);
+    }
+
     public long getUint32(int offset) {
         waitForBytes(offset + 4);
         return super.getUint32(offset);
@@ -140,31 +146,51 @@ public class ByteArrayReaderRealTime extends ByteArrayReaderOptimized {
         this.speedBytesPerSec = DEFAULT_SPEED_BYTES_PER_SECOND;
     }
 
+    /** Returns the total time this Reader has been waiting for bytes to arrive */
+    public Duration getWaitingTime() {
+        return this.waitingTime;
+    }
+
     /*
      * Waits for the bytes to be written before returning. This will cause the thread to be blocked.
+     * If the underlying ByteArray is a ByteArrayBuffer, the thread parks until whoever feeds the buffer signals that
+     * new bytes have been added (see ByteArrayBuffer.signalBytesAdded()), so it resumes as soon as they arrive. We
+     * never park longer than WAITING_INTERVAL, so we also get the bytes added without any signal.
      */
     public void waitForBytes(int length) throws RuntimeException {
-        long millisecsToWait = getWaitingTime(length).toMillis();
+        if (size() >= length) return;
 
+        long millisecsToWait = getTimeout(length).toMillis();
         long timeout = System.currentTimeMillis() + millisecsToWait;
-
-        while (size() < length) {
-
-            if (System.currentTimeMillis() > timeout) {
-                String errorLine = "timeout waiting longer than " + millisecsToWait + " millisecs for " + length + " bytes, current size: " + size();
-                if (readerMode.equals(ReaderMode.DYNAMIC_WAIT)) {
-                    errorLine += " minSpeed = " + speedBytesPerSec + " bytes/sec";
+        long waitStartNanos = System.nanoTime();
+
+        ByteArrayBuffer buffer = (byteArray instanceof ByteArrayBuffer) ? (ByteArrayBuffer) byteArray : null;
+
+        try {
+            while (true) {
+                // We take the signal BEFORE checking the size, so we don't miss any signal sent in between:
+                long lastSignal = (buffer != null) ? buffer.getBytesAddedSignals() : 0;
+                if (size() >= length) break;
+
+                long now = System.currentTimeMillis();
+                if (now > timeout) {
+                    String errorLine = "timeout waiting longer than " + millisecsToWait + " millisecs for " + length + " bytes, current size: " + size();
+                    if (readerMode.equals(ReaderMode.DYNAMIC_WAIT)) {
+                        errorLine += " minSpeed = " + speedBytesPerSec + " bytes/sec";
+                    }
+                    throw new RuntimeException(errorLine);
                 }
-                throw new RuntimeException(errorLine);
-            }
 
-            try {
-                //log.trace("waiting for " + (millisecsToWait) + " millisecs to get " + length + " bytes, byteArray Size: " + byteArray.size());
-                Thread.sleep(WAITING_INTERVAL.toMillis());
-                waitingTime = waitingTime.plus(WAITING_INTERVAL);
-            } catch (InterruptedException ex) {}
+                try {
+                    //log.trace("waiting for " + (millisecsToWait) + " millisecs to get " + length + " bytes, byteArray Size: " + byteArray.size());
+                    long parkMillis = Math.min(WAITING_INTERVAL.toMillis(), timeout - now + 1);
+                    if (buffer != null) buffer.awaitBytesAdded(lastSignal, parkMillis);
+                    else Thread.sleep(parkMillis);
+                } catch (InterruptedException ex) {}
+            }
+        } finally {
+            waitingTime = waitingTime.plusNanos(System.nanoTime() - waitStartNanos);
         }
         //log.trace("WAit finish, bufferSize: " + byteArray.size());
-        return;
     }
 }
@@ -0,0 +1,87 @@
+package io.bitcoinsv.jcl.tools.bytes;
+
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * Implementation of ByteArray backed by a slice of a RefCountedByteBuffer. It's a read-only view over some bytes
+ * that have already been stored somewhere else (usually, bytes read from a Socket), so they can be passed around
+ * without copying them.
+ *
+ * - Data can NOT be added to this ByteArray, only consumed from the beginning (left).
+ * - The Segment holds a reference on the underlying buffer, which is released when the Segment is cleared. The
+ *   ByteArrayBuffer does that automatically once all the bytes in the Segment have been extracted.
+ */
+public class ByteArraySegment implements ByteArray, ByteBufferBacked {
+
+    private final RefCountedByteBuffer source;
+    private final ByteBuffer slice;
+    private final int capacity;
+    private boolean released;
+
+    /**
+     * Constructor. The Segment covers the range [offset, offset + length) of the source, and it takes over one of
+     * the references of the source, so the caller must "retain()" it before if it wants to keep using it.
+     */
+    public ByteArraySegment(RefCountedByteBuffer source, int offset, int length) {
+        this.source = source;
+        this.slice = source.slice(offset, length);
+        this.capacity = length;
+    }
+
+    @Override public long capacity()        { return capacity; }
+    @Override public long size()            { return slice.remaining(); }
+    @Override public long available()       { return 0; }
+    @Override public boolean isEmpty()      { return !slice.hasRemaining(); }
+    @Override public void init()            {}
+    @Override public byte[] get(int length) { return get(0, length); }
+    @Override public byte[] get()           { return get(0, (int) size()); }
+
+    @Override
+    public byte[] get(long offset, int length) {
+        checkArgument(offset >= 0 && length >= 0 && (offset + length) <= size(),
+                "not enough data in the Segment: actual data: " + size() + " bytes, requested: "
+                        + offset + "+" + length + " bytes");
+        byte[] result = new byte[length];
+        ByteBuffer view = slice.duplicate();
+        view.position(slice.position() + (int) offset);
+        view.get(result, 0, length);
+        return result;
+    }
+
+    @Override
+    public byte[] extract(int length) {
+        byte[] result = new byte[length];
+        extractInto(length, result, 0);
+        return result;
+    }
+
+    @Override
+    public void extractInto(int length, byte[] array, int writeOffset) {
+        checkArgument(length >= 0 && length <= size(),
+                "not enough data in the Segment: actual data: " + size() + " bytes, requested: " + length + " bytes");
+        slice.get(array, writeOffset, length);
+    }
+
+    @Override
+    public ByteBuffer getReadableBuffer() {
+        return slice.duplicate();
+    }
+
+    /** It releases the reference held on the underlying buffer. It can be called more than once */
+    @Override
+    public synchronized void clear() {
+        if (released) return;
+        released = true;
+        slice.position(slice.limit());
+        source.release();
+    }
+
+    // This implementation is a read-only view, so adding bytes is not allowed
+    @Override public void add(byte[] data)                          { throw new UnsupportedOperationException(); }
+    @Override public void add(byte[] data, int offset, int length)  { throw new UnsupportedOperationException(); }
+}
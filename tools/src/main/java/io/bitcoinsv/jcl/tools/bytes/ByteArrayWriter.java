@@ -22,6 +22,9 @@ public class ByteArrayWriter {
 
     protected ByteArrayBuffer buffer;
 
+    // If active, all the bytes written are also hashed (only created when needed):
+    private DigestTee digestTee;
+
     public ByteArrayWriter() {
         this.buffer = new ByteArrayBuffer();
     }
@@ -30,12 +33,18 @@ public class ByteArrayWriter {
         this.buffer = new ByteArrayBuffer(byteArrayConfig);
     }
 
+    // All the bytes are written through here:
+    private void append(byte[] data) {
+        buffer.add(data);
+        if (digestTee != null && digestTee.isActive()) digestTee.feed(data, 0, data.length);
+    }
+
     public void write(byte data) {
-        buffer.add(new byte[]{data});
+        append(new byte[]{data});
     }
 
     public void write(byte[] data) {
-        buffer.add(data);
+        append(data);
     }
 
     public void writeUint16LE(int value){
@@ -44,35 +53,60 @@ public class ByteArrayWriter {
         out[0] = (byte) (255L & value);
         out[1] = (byte) (255L & value >> 8);
 
-        buffer.add(out);
+        append(out);
     }
 
     public void writeUint32LE(long value) {
         byte[] out = new byte[4];
         Utils.uint32ToByteArrayLE(value, out, 0);
-        buffer.add(out);
+        append(out);
     }
 
     public void writeUint48LE(long value) {
         byte[] out = new byte[6];
         Utils.uint48ToByteArrayLE(value, out, 0);
-        buffer.add(out);
+        append(out);
     }
 
     public void writeUint64LE(long value) {
         byte[] out = new byte[8];
         Utils.uint64ToByteArrayLE(value, out, 0);
-        buffer.add(out);
+        append(out);
     }
 
     public void writeBoolean(boolean value) {
-        buffer.add(new byte[]{(byte) (value ? 1 : 0)});
+        append(new byte[]{(byte) (value ? 1 : 0)});
     }
 
     public void writeStr(String str) {
         writeStr(str, str.length());
     }
 
+    /**
+     * It overwrites 4 bytes already written, at the position given, with the value given. Useful to fill in a field
+     * whose value is only known after writing the data that comes after it (like the checksum of a Message).
+     */
+    public void overwriteUint32LE(long offset, long value) {
+        byte[] out = new byte[4];
+        Utils.uint32ToByteArrayLE(value, out, 0);
+        buffer.overwrite(offset, out);
+    }
+
+    /**
+     * It starts a "Digest Tee" (see DigestTee): from now on, all the bytes written are also hashed, until
+     * "stopDigestTee()" is called.
+     */
+    public void startDigestTee() {
+        if (digestTee == null) digestTee = new DigestTee();
+        digestTee.start();
+    }
+
+    /** It stops the most recent "Digest Tee", and returns the double-SHA256 of the bytes written since it started */
+    public byte[] stopDigestTee() {
+        if (digestTee == null) throw new IllegalStateException("No Digest Tee has been started in this Writer");
+        return digestTee.stopAndHashTwice();
+    }
+
     public ByteArrayReader reader() {
         return new ByteArrayReader(buffer);
     }
@@ -0,0 +1,19 @@
+package io.bitcoinsv.jcl.tools.bytes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A ByteArray which content is stored in a ByteBuffer, and can be accessed directly (without copying it). This is
+ * used by the NIO Streams, so the bytes can be written to a Socket right from the same memory they've been
+ * serialized into.
+ */
+public interface ByteBufferBacked {
+    /**
+     * Returns a view over the bytes currently stored, ready to be read (from its position to its limit). The view is
+     * only valid until the ByteArray is cleared.
+     */
+    ByteBuffer getReadableBuffer();
+}
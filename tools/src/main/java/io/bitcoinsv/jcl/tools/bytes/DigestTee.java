@@ -0,0 +1,42 @@
+package io.bitcoinsv.jcl.tools.bytes;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A "Digest Tee" attached to a Reader: While it's active, all the bytes consumed from the Reader are also fed into
+ * a SHA-256 Digest, so we can get the Hash of a piece of data (a Tx, for instance) at the same time we deserialize
+ * it, without serializing it again afterwards. It can also be attached to a Writer, in that case the bytes fed are
+ * the ones written.
+ *
+ * Tees can be nested (a Tx inside a Block, for instance): each call to "start()" opens a new Digest, which is fed
+ * along with the ones already open, and "stopAndHashTwice()" closes the most recent one.
+ */
+public class DigestTee {
+
+    private final Deque<Sha256HashIncremental> digests = new ArrayDeque<>();
+
+    /** It opens a new Digest. From now on, all the bytes consumed will be fed into it */
+    public void start() {
+        digests.push(new Sha256HashIncremental());
+    }
+
+    /** It closes the most recent Digest, and returns the double-SHA256 of all the bytes fed into it */
+    public byte[] stopAndHashTwice() {
+        if (digests.isEmpty()) throw new IllegalStateException("No Digest Tee has been started in this Reader");
+        return digests.pop().hashTwice();
+    }
+
+    /** Indicates if there is any Digest open */
+    public boolean isActive() {
+        return !digests.isEmpty();
+    }
+
+    /** It feeds the bytes consumed into all the Digests open */
+    public void feed(byte[] bytes, int offset, int length) {
+        for (Sha256HashIncremental digest : digests) digest.add(bytes, offset, length);
+    }
+}
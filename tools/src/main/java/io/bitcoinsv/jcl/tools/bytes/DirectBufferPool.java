@@ -0,0 +1,139 @@
+package io.bitcoinsv.jcl.tools.bytes;
+
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A Thread-safe Pool of Direct ByteBuffers.
+ *
+ * Allocating Direct Memory is slow, and that memory is only returned to the OS when the Buffer is Garbage-Collected,
+ * so allocating and discarding Buffers at a high rate (as the ByteArrays and the NIO Streams do) ends up in spikes of
+ * native memory usage. This Pool keeps the Buffers that are released, so they can be reused later on.
+ *
+ * - The Buffers are organized in size classes (powers of 2, from MIN_CLASS_SIZE to MAX_CLASS_SIZE). A request is
+ *   served by a Buffer of the smallest class that fits it, so the Buffer returned might be bigger than requested,
+ *   but its "limit" is always set to the capacity requested.
+ * - Requests bigger than MAX_CLASS_SIZE are NOT pooled: they are allocated and discarded as usual.
+ * - The total amount of memory kept idle in the Pool is limited. Buffers released beyond that limit are discarded.
+ * - A Buffer must NOT be used after releasing it. Buffers that are never released are not a leak (they will be
+ *   Garbage-Collected as usual), but they will show up in the "outstanding" bytes.
+ */
+public class DirectBufferPool {
+
+    public static final int MIN_CLASS_SIZE = 1024;              // 1 KB
+    public static final int MAX_CLASS_SIZE = 16 * 1024 * 1024;  // 16 MB
+    public static final long DEFAULT_MAX_POOLED_BYTES = 128L * 1024 * 1024; // 128 MB
+
+    private static final int MIN_CLASS_SHIFT = Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+    private static final int NUM_CLASSES = Integer.numberOfTrailingZeros(MAX_CLASS_SIZE) - MIN_CLASS_SHIFT + 1;
+
+    // Default Pool, shared by all the ByteArrays and NIO Streams:
+    private static final DirectBufferPool DEFAULT = new DirectBufferPool(DEFAULT_MAX_POOLED_BYTES);
+
+    private final long maxPooledBytes;
+    private final Deque<ByteBuffer>[] freeBuffers;
+
+    // Metrics:
+    private final AtomicLong numHits = new AtomicLong();
+    private final AtomicLong numMisses = new AtomicLong();
+    private final AtomicLong numDiscarded = new AtomicLong();
+    private final AtomicLong outstandingBytes = new AtomicLong();
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    /** Constructor */
+    @SuppressWarnings("unchecked")
+    public DirectBufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        this.freeBuffers = new Deque[NUM_CLASSES];
+        for (int i = 0; i < NUM_CLASSES; i++) freeBuffers[i] = new ConcurrentLinkedDeque<>();
+    }
+
+    /** Returns the Default Pool */
+    public static DirectBufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    // Returns the index of the smallest size class that fits the capacity given, or -1 if it's too big to be pooled
+    private static int classIndex(int capacity) {
+        if (capacity > MAX_CLASS_SIZE) return -1;
+        if (capacity <= MIN_CLASS_SIZE) return 0;
+        return (32 - Integer.numberOfLeadingZeros(capacity - 1)) - MIN_CLASS_SHIFT;
+    }
+
+    private static int classSize(int classIndex) {
+        return MIN_CLASS_SIZE << classIndex;
+    }
+
+    /**
+     * Returns a Direct Buffer ready to be written, with at least the capacity given. Its position is zero and its
+     * limit is the capacity requested.
+     */
+    public ByteBuffer acquire(int capacity) {
+        checkArgument(capacity >= 0, "'capacity' must be >= 0");
+        int index = classIndex(capacity);
+        ByteBuffer result = (index >= 0) ? freeBuffers[index].pollFirst() : null;
+        if (result != null) {
+            numHits.incrementAndGet();
+            pooledBytes.addAndGet(-result.capacity());
+        } else {
+            numMisses.incrementAndGet();
+            result = ByteBuffer.allocateDirect((index >= 0) ? classSize(index) : capacity);
+        }
+        outstandingBytes.addAndGet(result.capacity());
+        result.clear().limit(capacity);
+        return result;
+    }
+
+    /**
+     * Returns the Buffer to the Pool, so it can be reused. If the Buffer does not belong to any size class, or the
+     * Pool is already full, the Buffer is just discarded.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) return;
+        int capacity = buffer.capacity();
+        outstandingBytes.addAndGet(-capacity);
+        int index = classIndex(capacity);
+        boolean poolable = buffer.isDirect() && index >= 0 && classSize(index) == capacity;
+        if (!poolable || pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            if (poolable) pooledBytes.addAndGet(-capacity);
+            numDiscarded.incrementAndGet();
+            return;
+        }
+        buffer.clear();
+        freeBuffers[index].offerFirst(buffer);
+    }
+
+    /** It discards all the Buffers currently stored in the Pool */
+    public void clear() {
+        for (Deque<ByteBuffer> buffers : freeBuffers) {
+            ByteBuffer buffer;
+            while ((buffer = buffers.pollFirst()) != null) pooledBytes.addAndGet(-buffer.capacity());
+        }
+    }
+
+    public long getNumHits()            { return this.numHits.get(); }
+    public long getNumMisses()          { return this.numMisses.get(); }
+    public long getNumDiscarded()       { return this.numDiscarded.get(); }
+    public long getOutstandingBytes()   { return this.outstandingBytes.get(); }
+    public long getPooledBytes()        { return this.pooledBytes.get(); }
+    public long getMaxPooledBytes()     { return this.maxPooledBytes; }
+
+    @Override
+    public String toString() {
+        StringBuffer result = new StringBuffer();
+        result.append("DirectBufferPool: ");
+        result.append(numHits.get()).append(" hits, ");
+        result.append(numMisses.get()).append(" misses, ");
+        result.append(numDiscarded.get()).append(" discarded, ");
+        result.append(outstandingBytes.get()).append(" bytes outstanding, ");
+        result.append(pooledBytes.get()).append(" bytes pooled");
+        return result.toString();
+    }
+}
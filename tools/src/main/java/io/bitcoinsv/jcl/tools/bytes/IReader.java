@@ -41,4 +41,13 @@ public interface IReader {
     String readString(int length, String charset);
 
     String readStringNoTrim(int length, String charset);
+
+    /**
+     * It starts a "Digest Tee" (see DigestTee): from now on, all the bytes consumed from this Reader are also hashed,
+     * until "stopDigestTee()" is called.
+     */
+    void startDigestTee();
+
+    /** It stops the most recent "Digest Tee", and returns the double-SHA256 of the bytes consumed since it started */
+    byte[] stopDigestTee();
 }
@@ -17,6 +17,9 @@ import java.io.UnsupportedEncodingException;
 public class InputStreamReader implements IReader, AutoCloseable {
     protected BufferedInputStream inputStream;
 
+    // If active, all the bytes consumed are also hashed (only created when needed):
+    private DigestTee digestTee;
+
     public InputStreamReader(InputStream inputStream) {
         this.inputStream = new BufferedInputStream(inputStream);
     }
@@ -24,12 +27,26 @@ public class InputStreamReader implements IReader, AutoCloseable {
     @Override
     public byte[] read(int length) {
         try {
-            return inputStream.readNBytes(length);
+            byte[] result = inputStream.readNBytes(length);
+            if (digestTee != null && digestTee.isActive()) digestTee.feed(result, 0, result.length);
+            return result;
         } catch (IOException ignored) {
             return new byte[0];
         }
     }
 
+    @Override
+    public void startDigestTee() {
+        if (digestTee == null) digestTee = new DigestTee();
+        digestTee.start();
+    }
+
+    @Override
+    public byte[] stopDigestTee() {
+        if (digestTee == null) throw new IllegalStateException("No Digest Tee has been started in this Reader");
+        return digestTee.stopAndHashTwice();
+    }
+
     @Override
     public byte[] get(int length) {
         try {
@@ -147,6 +164,7 @@ public class InputStreamReader implements IReader, AutoCloseable {
         try {
             byte[] result = inputStream.readAllBytes();
             closeAndClear();
+            if (digestTee != null && digestTee.isActive()) digestTee.feed(result, 0, result.length);
             return result;
         } catch (IOException e) {
             throw new IllegalStateException("Couldn't read bytes!", e);
@@ -0,0 +1,80 @@
+package io.bitcoinsv.jcl.tools.bytes;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A ByteBuffer (usually a Direct one) shared by several owners, with a Reference Counter.
+ *
+ * This is used in the zero-copy read path: the bytes read from a Socket are stored in a ByteBuffer, and different
+ * slices of it are handed down the Stream as ByteArraySegments, without copying them. Each Segment "retains" the
+ * buffer, and "releases" it when it's no longer needed. When the counter reaches zero, the buffer is not used by
+ * anybody, and the "onRelease" callback is triggered (if any), so the memory can be recycled.
+ *
+ * The counter starts at 1, which is the reference held by whoever has created this instance.
+ */
+public class RefCountedByteBuffer {
+
+    private final ByteBuffer buffer;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+    private final Consumer<ByteBuffer> onRelease;
+
+    /** Constructor */
+    public RefCountedByteBuffer(ByteBuffer buffer, Consumer<ByteBuffer> onRelease) {
+        this.buffer = buffer;
+        this.onRelease = onRelease;
+    }
+
+    /** Constructor. The buffer will be eventually collected by the GC once it's released */
+    public RefCountedByteBuffer(ByteBuffer buffer) {
+        this(buffer, null);
+    }
+
+    /** Allocates a new Direct Buffer of the capacity given */
+    public static RefCountedByteBuffer allocateDirect(int capacity) {
+        return new RefCountedByteBuffer(ByteBuffer.allocateDirect(capacity));
+    }
+
+    /** Takes a Direct Buffer of the capacity given from the Pool. It will go back to the Pool once released */
+    public static RefCountedByteBuffer fromPool(DirectBufferPool pool, int capacity) {
+        return new RefCountedByteBuffer(pool.acquire(capacity), pool::release);
+    }
+
+    /** Increases the Reference counter */
+    public RefCountedByteBuffer retain() {
+        int previous = refCnt.getAndIncrement();
+        checkState(previous > 0, "Trying to retain a Buffer already released");
+        return this;
+    }
+
+    /**
+     * Decreases the Reference counter. If it reaches zero, the buffer is released and it must not be used anymore.
+     * @return true if the buffer has been released after this call
+     */
+    public boolean release() {
+        int current = refCnt.decrementAndGet();
+        checkState(current >= 0, "Trying to release a Buffer already released");
+        if (current == 0) {
+            if (onRelease != null) onRelease.accept(buffer);
+            return true;
+        }
+        return false;
+    }
+
+    /** Returns a new slice of the buffer, covering the range [offset, offset + length) */
+    public ByteBuffer slice(int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset).limit(offset + length);
+        return duplicate.slice();
+    }
+
+    public ByteBuffer getBuffer()   { return this.buffer; }
+    public int refCnt()             { return this.refCnt.get(); }
+    public int capacity()           { return this.buffer.capacity(); }
+}
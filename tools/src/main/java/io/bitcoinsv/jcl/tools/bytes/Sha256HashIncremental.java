@@ -1,5 +1,6 @@
 package io.bitcoinsv.jcl.tools.bytes;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -33,6 +34,18 @@ public class Sha256HashIncremental {
         return this;
     }
 
+    /** Adds a piece of the array given to hash */
+    public Sha256HashIncremental add(byte[] bytes, int offset, int length) {
+        this.digest.update(bytes, offset, length);
+        return this;
+    }
+
+    /** Adds the bytes remaining in the buffer given to hash (the buffer position is moved to its limit) */
+    public Sha256HashIncremental add(ByteBuffer buffer) {
+        this.digest.update(buffer);
+        return this;
+    }
+
     /** Returns the hash of all the data fed so far */
     public byte[] hash() {
         return digest.digest();
@@ -38,4 +38,11 @@ public interface RuntimeConfig {
      * system.
      */
     boolean useCachedThreadPoolForP2P();
+
+    /**
+     * Returns the number of Lanes (single-thread Executors) used to process the data coming in/out the Streams
+     * connected to the remote Peers. Each Peer is always assigned to the same Lane, so its bytes are processed in
+     * order, but different Peers can be processed in parallel in different Lanes.
+     */
+    int getNumPeerStreamLanes();
 }
@@ -17,17 +17,20 @@ public class RuntimeConfigImpl implements RuntimeConfig {
     protected FileUtils fileUtils;
     protected int maxNumThreadsForP2P;
     protected boolean useCachedThreadPoolForP2P;
+    protected int numPeerStreamLanes;
 
     public RuntimeConfigImpl(ByteArrayConfig byteArrayMemoryConfig,
                              int msgSizeInBytesForRealTimeProcessing,
                              FileUtils fileUtils,
                              int maxNumThreadsForP2P,
-                             boolean useCachedThreadPoolForP2P) {
+                             boolean useCachedThreadPoolForP2P,
+                             int numPeerStreamLanes) {
         this.byteArrayMemoryConfig = byteArrayMemoryConfig;
         this.msgSizeInBytesForRealTimeProcessing = msgSizeInBytesForRealTimeProcessing;
         this.fileUtils = fileUtils;
         this.maxNumThreadsForP2P = maxNumThreadsForP2P;
         this.useCachedThreadPoolForP2P = useCachedThreadPoolForP2P;
+        this.numPeerStreamLanes = numPeerStreamLanes;
     }
 
     public RuntimeConfigImpl() {}
@@ -37,6 +40,7 @@ public class RuntimeConfigImpl implements RuntimeConfig {
     public FileUtils getFileUtils()                                 { return this.fileUtils; }
     public int getMaxNumThreadsForP2P()                             { return this.maxNumThreadsForP2P; }
     public boolean useCachedThreadPoolForP2P()                      { return this.useCachedThreadPoolForP2P;}
+    public int getNumPeerStreamLanes()                              { return this.numPeerStreamLanes; }
     public static RuntimeConfigImplBuilder builder()                { return new RuntimeConfigImplBuilder(); }
 
     public RuntimeConfigImplBuilder toBuilder() {
@@ -45,7 +49,8 @@ public class RuntimeConfigImpl implements RuntimeConfig {
                 .msgSizeInBytesForRealTimeProcessing(this.msgSizeInBytesForRealTimeProcessing)
                 .fileUtils(this.fileUtils)
                 .maxNumThreadsForP2P(this.maxNumThreadsForP2P)
-                .useCachedThreadPoolForP2P(this.useCachedThreadPoolForP2P);
+                .useCachedThreadPoolForP2P(this.useCachedThreadPoolForP2P)
+                .numPeerStreamLanes(this.numPeerStreamLanes);
     }
 
     /**
@@ -57,6 +62,7 @@ public class RuntimeConfigImpl implements RuntimeConfig {
         private FileUtils fileUtils;
         protected int maxNumThreadsForP2P;
         protected boolean useCachedThreadPoolForP2P;
+        protected int numPeerStreamLanes;
 
         RuntimeConfigImplBuilder() {
         }
@@ -86,8 +92,13 @@ public class RuntimeConfigImpl implements RuntimeConfig {
             return this;
         }
 
+        public RuntimeConfigImplBuilder numPeerStreamLanes(int numPeerStreamLanes) {
+            this.numPeerStreamLanes = numPeerStreamLanes;
+            return this;
+        }
+
         public RuntimeConfigImpl build() {
-            return new RuntimeConfigImpl(byteArrayMemoryConfig, msgSizeInBytesForRealTimeProcessing, fileUtils, maxNumThreadsForP2P, useCachedThreadPoolForP2P);
+            return new RuntimeConfigImpl(byteArrayMemoryConfig, msgSizeInBytesForRealTimeProcessing, fileUtils, maxNumThreadsForP2P, useCachedThreadPoolForP2P, numPeerStreamLanes);
         }
     }
 }
@@ -20,6 +20,7 @@ public final class RuntimeConfigDefault extends RuntimeConfigImpl implements Run
     public final static int DEF_MSG_SIZE_BYTES_REAL_TIME = 10_000_000;;
     public final static int DEF_P2P_THREADS_MAX = 50;
     public final static boolean DEF_P2P_THREADS_CACHED = false;
+    public final static int DEF_PEER_STREAM_LANES = Runtime.getRuntime().availableProcessors();
 
     /** Constructor */
     public RuntimeConfigDefault() {
@@ -39,6 +40,7 @@ public final class RuntimeConfigDefault extends RuntimeConfigImpl implements Run
         super.msgSizeInBytesForRealTimeProcessing = DEF_MSG_SIZE_BYTES_REAL_TIME;
         super.maxNumThreadsForP2P = DEF_P2P_THREADS_MAX;
         super.useCachedThreadPoolForP2P = DEF_P2P_THREADS_CACHED;
+        super.numPeerStreamLanes = DEF_PEER_STREAM_LANES;
 
         try {
             FileUtilsBuilder fileUtilsBuilder = new FileUtilsBuilder().useTempFolder();
@@ -91,9 +91,22 @@ public class EventBus {
      * It publishes a new Event to the Bus and executes the handlers subscribed to it
      */
     public void publish(Event event) {
+        publish(event, null);
+    }
+
+    /**
+     * It publishes a new Event to the Bus and executes the handlers subscribed to it. Once ALL of them have been
+     * executed, the callback given is triggered (right away if nobody is listening to this event).
+     */
+    public void publish(Event event, Runnable onDispatched) {
         // We do not do anything at all if nobody is listening to this event
-        if (eventHandlersOptimized.containsKey(event.getClass())) {
-            Runnable task = () -> {eventHandlersOptimized.get(event.getClass()).accept(event);};
+        if (!eventHandlersOptimized.containsKey(event.getClass())) {
+            if (onDispatched != null) onDispatched.run();
+        } else {
+            Runnable task = () -> {
+                eventHandlersOptimized.get(event.getClass()).accept(event);
+                if (onDispatched != null) onDispatched.run();
+            };
             if (executor != null) { // Asynchronously
                 try {
                     executor.submit(task);
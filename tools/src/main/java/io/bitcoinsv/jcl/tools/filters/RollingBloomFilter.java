@@ -0,0 +1,159 @@
+package io.bitcoinsv.jcl.tools.filters;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A Bloom Filter that "forgets" the oldest elements, so it can be fed forever using a fixed amount of memory. It's
+ * meant to keep track of the Hashes (Txs, Blocks, Inventory) seen recently.
+ *
+ * The elements are stored in 3 "generations", each one a regular Bloom Filter sized for half the number of elements
+ * given. The elements are always added to the current generation. When it gets full, the oldest generation is
+ * cleared and it becomes the current one. So the last "numElements" elements added are always remembered (and up to
+ * 1.5 times that number).
+ *
+ * A query might return a false positive (with a probability close to the rate given), but never a false negative
+ * for the elements remembered.
+ *
+ * The elements are byte arrays (or a range within a byte array), so they can be checked straight from the raw bytes
+ * of a Message, without creating any object. They are hashed with a random seed, different for each instance.
+ *
+ * This class is thread-safe.
+ */
+public class RollingBloomFilter {
+
+    private static final int NUM_GENERATIONS = 3;
+
+    private final int numElementsPerGeneration;
+    private final int numHashFunctions;
+    private final long numBits;
+
+    // One bitset per generation:
+    private final long[][] generations;
+    private int currentGeneration;
+    private int numElementsInCurrentGeneration;
+
+    // Seeds used for hashing:
+    private final long seed1;
+    private final long seed2;
+
+    /**
+     * Constructor.
+     * @param numElements       Number of (last) elements that are always remembered
+     * @param falsePositiveRate Probability of a false positive
+     */
+    public RollingBloomFilter(int numElements, double falsePositiveRate) {
+        checkArgument(numElements > 0, "'numElements' must be > 0");
+        checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1, "'falsePositiveRate' must be between 0 and 1");
+        this.numElementsPerGeneration = Math.max(1, (numElements + 1) / 2);
+
+        // A query is checked against all the generations, so each one gets a share of the false positive rate:
+        double rate = falsePositiveRate / NUM_GENERATIONS;
+        long bits = (long) Math.ceil(-numElementsPerGeneration * Math.log(rate) / (Math.log(2) * Math.log(2)));
+        this.numBits = Math.max(64, (bits + 63) & ~63L);
+        this.numHashFunctions = Math.max(1, (int) Math.round((double) numBits / numElementsPerGeneration * Math.log(2)));
+        this.generations = new long[NUM_GENERATIONS][(int) (numBits / 64)];
+
+        this.seed1 = ThreadLocalRandom.current().nextLong();
+        this.seed2 = ThreadLocalRandom.current().nextLong();
+    }
+
+    /** It adds the element given */
+    public void add(byte[] element) {
+        add(element, 0, element.length);
+    }
+
+    /** It adds the element given (a range within the array given) */
+    public synchronized void add(byte[] bytes, int offset, int length) {
+        if (numElementsInCurrentGeneration == numElementsPerGeneration) {
+            currentGeneration = (currentGeneration + 1) % NUM_GENERATIONS;
+            Arrays.fill(generations[currentGeneration], 0L);
+            numElementsInCurrentGeneration = 0;
+        }
+        long[] bitset = generations[currentGeneration];
+        long hash1 = hash(bytes, offset, length, seed1);
+        long hash2 = hash(bytes, offset, length, seed2) | 1;
+        for (int i = 0; i < numHashFunctions; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, numBits);
+            bitset[(int) (bit >>> 6)] |= (1L << bit);
+        }
+        numElementsInCurrentGeneration++;
+    }
+
+    /** Indicates if the element given MIGHT have been added (false positives are possible) */
+    public boolean mightContain(byte[] element) {
+        return mightContain(element, 0, element.length);
+    }
+
+    /** Indicates if the element given (a range within the array given) MIGHT have been added */
+    public synchronized boolean mightContain(byte[] bytes, int offset, int length) {
+        long hash1 = hash(bytes, offset, length, seed1);
+        long hash2 = hash(bytes, offset, length, seed2) | 1;
+        for (long[] bitset : generations) {
+            boolean found = true;
+            for (int i = 0; i < numHashFunctions && found; i++) {
+                long bit = Long.remainderUnsigned(hash1 + i * hash2, numBits);
+                found = (bitset[(int) (bit >>> 6)] & (1L << bit)) != 0;
+            }
+            if (found) return true;
+        }
+        return false;
+    }
+
+    /**
+     * It adds the element given (a range within the array given), and returns TRUE if it MIGHT have been already
+     * added before.
+     */
+    public synchronized boolean addIfAbsent(byte[] bytes, int offset, int length) {
+        if (mightContain(bytes, offset, length)) return true;
+        add(bytes, offset, length);
+        return false;
+    }
+
+    /** It removes all the elements */
+    public synchronized void reset() {
+        for (long[] bitset : generations) Arrays.fill(bitset, 0L);
+        currentGeneration = 0;
+        numElementsInCurrentGeneration = 0;
+    }
+
+    /** Returns the memory used by the bits of the Filter, in bytes */
+    public long getSizeInBytes() {
+        return NUM_GENERATIONS * numBits / 8;
+    }
+
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    // 64-bit Hash of the bytes given. The bytes are processed in 8-byte words, each one mixed with the previous
+    // result (the mixing function is the "finalizer" of the SplitMix64 generator):
+    private static long hash(byte[] bytes, int offset, int length, long seed) {
+        long result = seed ^ (length * 0x9E3779B97F4A7C15L);
+        int end = offset + length;
+        int pos = offset;
+        for (; pos + 8 <= end; pos += 8) {
+            long word = 0;
+            for (int i = 0; i < 8; i++) word = (word << 8) | (bytes[pos + i] & 0xFF);
+            result = mix(result ^ word);
+        }
+        if (pos < end) {
+            long word = 0;
+            for (; pos < end; pos++) word = (word << 8) | (bytes[pos] & 0xFF);
+            result = mix(result ^ word);
+        }
+        return mix(result);
+    }
+
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
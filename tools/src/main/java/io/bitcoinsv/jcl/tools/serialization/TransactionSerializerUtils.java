@@ -52,4 +52,14 @@ public class TransactionSerializerUtils {
 
         return byteReader.read(numBytesInTx);
     }
+
+    /**
+     * It returns the length in bytes of the next Tx in the Reader, WITHOUT extracting anything from it. If the Reader
+     * does not contain the whole Tx yet, it returns -1. This method never waits for more bytes to arrive.
+     * If the same Tx is going to be checked again as more bytes arrive, use a TxLengthScanner instead, so the scan
+     * goes on from where it stopped.
+     */
+    public static long getNextTxLength(IReader byteReader) {
+        return new TxLengthScanner().scan(byteReader);
+    }
 }
@@ -0,0 +1,104 @@
+package io.bitcoinsv.jcl.tools.serialization;
+
+import io.bitcoinsv.jcl.tools.bytes.IReader;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * It works out the length in bytes of the next Tx in a Reader, WITHOUT extracting anything from it, while the bytes
+ * of the Tx might still be arriving.
+ *
+ * The scan is resumable: If the Reader does not contain the whole Tx yet, the point where the scan stopped (and the
+ * number of Inputs and Outputs already parsed) is kept, so the next call goes on from there instead of going over
+ * the whole Tx again. So a big Tx arriving in lots of small chunks is only scanned once.
+ *
+ * NOTE: Between calls, the Reader must still start at the beginning of the same Tx. Once the Tx has been read from
+ * the Reader, "reset()" must be called before scanning the next one.
+ */
+public class TxLengthScanner {
+
+    // Parts of the Tx, in the order they are scanned:
+    private enum Stage { INPUT_COUNT, INPUTS, OUTPUT_COUNT, OUTPUTS, DONE }
+
+    private Stage stage;
+    private long numBytesInTx;      // Length of the parts of the Tx scanned so far
+    private long inputCount;
+    private long inputsScanned;
+    private long outputCount;
+    private long outputsScanned;
+
+    public TxLengthScanner() {
+        reset();
+    }
+
+    /** It gets the Scanner ready for the next Tx */
+    public void reset() {
+        this.stage = Stage.INPUT_COUNT;
+        this.numBytesInTx = 4; // Version
+        this.inputCount = 0;
+        this.inputsScanned = 0;
+        this.outputCount = 0;
+        this.outputsScanned = 0;
+    }
+
+    /**
+     * It returns the length in bytes of the next Tx in the Reader, or -1 if the Reader does not contain the whole Tx
+     * yet. This method never waits for more bytes to arrive.
+     */
+    public long scan(IReader byteReader) {
+        long available = byteReader.size();
+
+        if (stage == Stage.INPUT_COUNT) {
+            long count = peekVarInt(byteReader, numBytesInTx, available);
+            if (count < 0) return -1;
+            inputCount = count;
+            numBytesInTx += BitcoinSerializerUtils.getVarIntSizeInBytes(count);
+            stage = Stage.INPUTS;
+        }
+
+        if (stage == Stage.INPUTS) {
+            while (inputsScanned < inputCount) {
+                // output (36) + script length + script + sequence (4):
+                long scriptLen = peekVarInt(byteReader, numBytesInTx + 36, available);
+                if (scriptLen < 0) return -1;
+                numBytesInTx += 36 + BitcoinSerializerUtils.getVarIntSizeInBytes(scriptLen) + scriptLen + 4;
+                inputsScanned++;
+            }
+            stage = Stage.OUTPUT_COUNT;
+        }
+
+        if (stage == Stage.OUTPUT_COUNT) {
+            long count = peekVarInt(byteReader, numBytesInTx, available);
+            if (count < 0) return -1;
+            outputCount = count;
+            numBytesInTx += BitcoinSerializerUtils.getVarIntSizeInBytes(count);
+            stage = Stage.OUTPUTS;
+        }
+
+        if (stage == Stage.OUTPUTS) {
+            while (outputsScanned < outputCount) {
+                // Value (8) + script length + script:
+                long scriptLen = peekVarInt(byteReader, numBytesInTx + 8, available);
+                if (scriptLen < 0) return -1;
+                numBytesInTx += 8 + BitcoinSerializerUtils.getVarIntSizeInBytes(scriptLen) + scriptLen;
+                outputsScanned++;
+            }
+            numBytesInTx += 4; // lock time
+            stage = Stage.DONE;
+        }
+
+        return (numBytesInTx <= available) ? numBytesInTx : -1;
+    }
+
+    // It returns the VarInt at the offset given, or -1 if its bytes are not available yet
+    private static long peekVarInt(IReader byteReader, long offset, long available) {
+        if (offset + 1 > available) return -1;
+        int firstByte = 0xFF & byteReader.get(offset, 1)[0];
+        int varIntSize = (firstByte < 253) ? 1 : (firstByte == 253) ? 3 : (firstByte == 254) ? 5 : 9;
+        if (offset + varIntSize > available) return -1;
+        long result = BitcoinSerializerUtils.deserializeVarIntWithoutExtraction(byteReader, (int) offset);
+        if (result < 0) throw new IllegalStateException("Wrong VarInt value found at position " + offset + " within the Tx");
+        return result;
+    }
+}
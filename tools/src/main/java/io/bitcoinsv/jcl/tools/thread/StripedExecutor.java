@@ -0,0 +1,84 @@
+package io.bitcoinsv.jcl.tools.thread;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A "Striped" Executor: a set of single-thread Executors (lanes), where each task is assigned to a Lane depending on
+ * a Key (for example, the Address of a Peer).
+ *
+ * All the tasks submitted with the same Key are executed in the same Lane, so they are executed one after another in
+ * the same order they were submitted, but the tasks for different Keys might run in parallel in different Lanes. This
+ * is what the Streams connected to the remote Peers need: the bytes from one Peer must be processed in order, but
+ * different Peers can be processed at the same time.
+ *
+ * The Threads in each Lane are terminated if they stay idle for some time, and created again when needed.
+ */
+public class StripedExecutor {
+
+    // Time an idle Thread is kept alive before terminating it:
+    private static final long KEEP_ALIVE_SECS = 60;
+
+    private final ThreadPoolExecutor[] lanes;
+
+    /** Constructor */
+    public StripedExecutor(String name, int numLanes) {
+        checkArgument(numLanes > 0, "'numLanes' must be > 0");
+        this.lanes = new ThreadPoolExecutor[numLanes];
+        for (int i = 0; i < numLanes; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), ThreadUtils.getThreadFactory(name + "-" + i, Thread.NORM_PRIORITY, true));
+            lanes[i].allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /** Returns the index of the Lane assigned to the Key given */
+    public int getLaneIndex(Object key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16); // we spread the higher bits, in case the lower ones are poorly distributed
+        return (hash & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    /** Returns the (single-thread) Executor of the Lane assigned to the Key given */
+    public ExecutorService getLane(Object key) {
+        return lanes[getLaneIndex(key)];
+    }
+
+    /** Returns the number of Lanes */
+    public int getNumLanes() {
+        return lanes.length;
+    }
+
+    /** Returns the number of tasks waiting to be executed in each Lane */
+    public int[] getQueueDepths() {
+        int[] result = new int[lanes.length];
+        for (int i = 0; i < lanes.length; i++) result[i] = lanes[i].getQueue().size();
+        return result;
+    }
+
+    /** Returns the number of tasks waiting to be executed in the busiest Lane */
+    public int getMaxQueueDepth() {
+        int result = 0;
+        for (ThreadPoolExecutor lane : lanes) result = Math.max(result, lane.getQueue().size());
+        return result;
+    }
+
+    /** Returns the total number of tasks executed so far, in all the Lanes */
+    public long getNumTasksCompleted() {
+        long result = 0;
+        for (ThreadPoolExecutor lane : lanes) result += lane.getCompletedTaskCount();
+        return result;
+    }
+
+    /** It shuts down all the Lanes. The tasks already submitted are still executed */
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) lane.shutdown();
+    }
+}
@@ -36,9 +36,22 @@ public class ThreadUtils {
     /**
      * A built-in Executor for the Streams connected to the Remote Peers. This Stream needs to be Single-thread,
      * otherwise the order of the bytes coming in/out from the Peer cannot be guaranteed
+     *
+     * @deprecated All the Peers share this single Thread. Use a {@link StripedExecutor} instead (see
+     * {@link #getPeerStreamExecutor(int)}), which keeps the order of the bytes for each Peer while processing
+     * different Peers in parallel.
      */
+    @Deprecated
     public static ExecutorService PEER_STREAM_EXECUTOR = Executors.newSingleThreadExecutor(new PeerStreamThreadFactory());
 
+    /**
+     * Returns a new Striped Executor for the Streams connected to the Remote Peers: each Peer is assigned to one of the
+     * (single-thread) Lanes, so the order of its bytes is guaranteed.
+     */
+    public static StripedExecutor getPeerStreamExecutor(int numLanes) {
+        return new StripedExecutor("JclNetworkStreams", numLanes);
+    }
+
     /** Convenience method to create a ThreadPoolFactory with the name given and other parameters.*/
     public static ThreadFactory getThreadFactory(String name, int priority, boolean daemon) {
         return new ThreadFactory() {
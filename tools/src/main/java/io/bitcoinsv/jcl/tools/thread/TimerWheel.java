@@ -0,0 +1,173 @@
+package io.bitcoinsv.jcl.tools.thread;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A Hashed Timer Wheel. It executes tasks after a delay, and it's optimized for a big number of timeouts that are
+ * most of the times cancelled before they expire (like the timeout of a connection, or a batch of messages).
+ *
+ * - The time is divided in "ticks". The wheel is a circular array of buckets, one per tick, and each timeout is
+ *   stored in the bucket of the tick it expires in (if the delay is longer than a full round of the wheel, it also
+ *   keeps track of the number of rounds left).
+ * - A single Thread advances the wheel one bucket per tick, and runs the tasks of the timeouts expired in it.
+ *   Scheduling and cancelling a timeout are O(1) and never block.
+ * - The precision is the duration of a tick: a task is never executed before its delay, but it might be executed
+ *   up to one tick later. Tasks must be short, since they are all executed by the same Thread.
+ * - The Thread is started with the first timeout scheduled.
+ */
+public class TimerWheel {
+
+    /** A task scheduled in the Wheel. It can be cancelled before it expires */
+    public static final class Timeout {
+        private static final int ST_WAITING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadlineTick;
+        private long remainingRounds;
+        private final AtomicInteger state = new AtomicInteger(ST_WAITING);
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /** It cancels this timeout. Returns FALSE if it was too late (already expired or cancelled) */
+        public boolean cancel()         { return state.compareAndSet(ST_WAITING, ST_CANCELLED); }
+        public boolean isCancelled()    { return state.get() == ST_CANCELLED; }
+        public boolean isExpired()      { return state.get() == ST_EXPIRED; }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final long tickNanos;
+    private final Queue<Timeout>[] wheel;
+    private final int mask;
+    private final ExecutorService executor;
+
+    // Timeouts scheduled, waiting to be placed into the Wheel (by the Wheel Thread):
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final long startNanos = System.nanoTime();
+    private volatile boolean started;
+    private volatile boolean stopped;
+    private long currentTick;
+
+    /**
+     * Constructor.
+     * @param name          Name of the Thread running the Wheel
+     * @param tickDuration  Duration of each tick
+     * @param unit          Time unit of the tick duration
+     * @param wheelSize     Number of buckets in the Wheel (rounded up to a power of 2)
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        checkArgument(tickDuration > 0, "'tickDuration' must be > 0");
+        checkArgument(wheelSize > 0, "'wheelSize' must be > 0");
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        if (size <= 0) size = 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) wheel[i] = new ArrayDeque<>();
+        this.mask = size - 1;
+        this.executor = ThreadUtils.getSingleThreadExecutorService(name);
+    }
+
+    /** It schedules a task to be executed after the delay given */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (stopped) throw new IllegalStateException("The TimerWheel is stopped");
+        startIfNeeded();
+        // The deadline is rounded UP to the next tick, so the task is never executed too early:
+        long deadlineNanos = (System.nanoTime() - startNanos) + Math.max(0, unit.toNanos(delay));
+        long deadlineTick = (deadlineNanos + tickNanos - 1) / tickNanos;
+        Timeout timeout = new Timeout(task, deadlineTick);
+        pendingTimeouts.offer(timeout);
+        return timeout;
+    }
+
+    private synchronized void startIfNeeded() {
+        if (started) return;
+        started = true;
+        executor.submit(this::run);
+    }
+
+    /** It stops the Wheel. The timeouts still pending are NOT executed */
+    public void stop() {
+        stopped = true;
+        executor.shutdownNow();
+    }
+
+    /** Returns the number of timeouts scheduled but not expired or cancelled yet (approximate) */
+    public int getNumPendingTimeouts() {
+        int result = pendingTimeouts.size();
+        for (Queue<Timeout> bucket : wheel) result += bucket.size();
+        return result;
+    }
+
+    // Main loop of the Wheel Thread:
+    private void run() {
+        try {
+            while (!stopped) {
+                waitForNextTick();
+                transferPendingTimeouts();
+                expireTimeouts(wheel[(int) (currentTick & mask)]);
+                currentTick++;
+            }
+        } catch (InterruptedException ie) {
+            // The Wheel has been stopped...
+        }
+    }
+
+    private void waitForNextTick() throws InterruptedException {
+        long nextTickNanos = (currentTick + 1) * tickNanos;
+        long nanosToWait = nextTickNanos - (System.nanoTime() - startNanos);
+        if (nanosToWait > 0) TimeUnit.NANOSECONDS.sleep(nanosToWait);
+    }
+
+    // It moves the new timeouts into their buckets:
+    private void transferPendingTimeouts() {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) continue;
+            long ticks = Math.max(timeout.deadlineTick, currentTick);
+            timeout.remainingRounds = (ticks - currentTick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expireTimeouts(Queue<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.isCancelled()) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                it.remove();
+                if (timeout.state.compareAndSet(Timeout.ST_WAITING, Timeout.ST_EXPIRED)) {
+                    try {
+                        timeout.task.run();
+                    } catch (Throwable th) {
+                        logger.error("Error executing a task in the TimerWheel", th);
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.bitcoinsv.jcl.tools.thread;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * @author i.fernandez@nchain.com
+ * Copyright (c) 2018-2020 nChain Ltd
+ *
+ * A Token-Bucket Rate Limiter. The bucket is refilled at a constant rate ("permitsPerSec"), up to its capacity, and
+ * each operation takes one Token from it. If the bucket is empty, the operation has to wait until a new Token is
+ * available.
+ *
+ * So in the long run the number of operations per second is limited to "permitsPerSec", but short bursts of up to
+ * "capacity" operations are allowed.
+ */
+public class TokenBucket {
+
+    private final double permitsPerNano;
+    private final int capacity;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /** Constructor. The bucket starts full */
+    public TokenBucket(double permitsPerSec, int capacity) {
+        checkArgument(permitsPerSec > 0, "'permitsPerSec' must be > 0");
+        checkArgument(capacity > 0, "'capacity' must be > 0");
+        this.permitsPerNano = permitsPerSec / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * It takes one Token from the bucket if there is any available. Otherwise, it returns the time (in nanosecs)
+     * until a new Token is available.
+     */
+    private synchronized long tryTake() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / permitsPerNano);
+    }
+
+    /** It takes one Token, if available. Returns TRUE if the Token has been taken */
+    public boolean tryAcquire() {
+        return tryTake() == 0;
+    }
+
+    /** It takes one Token, waiting until it's available if needed */
+    public void acquire() throws InterruptedException {
+        long nanosToWait;
+        while ((nanosToWait = tryTake()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanosToWait);
+        }
+    }
+
+    /** Returns the number of Tokens currently available */
+    public synchronized int getAvailableTokens() {
+        refill();
+        return (int) tokens;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+}
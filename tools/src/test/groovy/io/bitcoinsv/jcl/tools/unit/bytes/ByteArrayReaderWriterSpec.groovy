@@ -1,6 +1,9 @@
 package io.bitcoinsv.jcl.tools.unit.bytes
 
 
+import io.bitcoinsv.bitcoinjsv.core.Sha256Hash
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayBuffer
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayConfig
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayReaderRealTime
 import io.bitcoinsv.jcl.tools.bytes.ByteArrayWriter
@@ -225,4 +228,74 @@ class ByteArrayReaderWriterSpec extends Specification {
         then:
             notThrown Exception
     }
+
+    /**
+     * We test that a ByteArrayReaderRealTime waiting for bytes resumes as soon as the bytes are added to the buffer
+     * and the buffer is signaled, instead of waiting for the next polling interval, and that it records how long it
+     * has been waiting.
+     */
+    def "Testing Real-Time reading woken up by signal"() {
+        given:
+            ByteArrayBuffer buffer = new ByteArrayBuffer()
+            ByteArrayReaderRealTime reader = new ByteArrayReaderRealTime(buffer)
+            int NUM_ROUNDS = 10
+        when:
+            long startTime = System.currentTimeMillis()
+            for (int i = 0; i < NUM_ROUNDS; i++) {
+                // In each round, 1 byte is added (and signaled) 10 millisecs after the reader starts waiting for it:
+                Thread writer = new Thread({
+                    Thread.sleep(10)
+                    buffer.add(new byte[] {(byte) i})
+                    buffer.signalBytesAdded()
+                })
+                writer.start()
+                reader.waitForBytes(i + 1)
+                writer.join()
+            }
+            long readTime = System.currentTimeMillis() - startTime
+        then:
+            reader.size() == NUM_ROUNDS
+            reader.getWaitingTime().toMillis() >= NUM_ROUNDS * 10
+            reader.getWaitingTime().toMillis() <= readTime
+            // Polling every 50 millisecs, it would have taken at least 10 * 50 = 500 millisecs:
+            readTime < 400
+    }
+
+    /**
+     * We're testing that the Writer hashes the bytes written while the Digest Tee is active, and that a value already
+     * written can be overwritten later on, even if it's been split between 2 internal buffers.
+     */
+    def "Testing Writer Digest Tee and overwriting"() {
+        given:
+            // Small buffers, so the data is spread over several of them:
+            ByteArrayWriter writer = new ByteArrayWriter(new ByteArrayConfig(6))
+            byte[] body = new byte[50]
+            for (int i = 0; i < body.length; i++) body[i] = (byte) i
+        when:
+            writer.write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF})
+            writer.writeUint32LE(0)             // placeholder, at position 4
+            writer.startDigestTee()
+            writer.write(body)
+            byte[] hash = writer.stopDigestTee()
+            writer.write((byte) 0xFF)           // not hashed
+            writer.overwriteUint32LE(4, 0x01020304)
+            byte[] result = writer.reader().getFullContentAndClose()
+        then:
+            hash == Sha256Hash.hashTwice(body)
+            result.length == 4 + 4 + body.length + 1
+            result[4..7] == [(byte) 0x04, (byte) 0x03, (byte) 0x02, (byte) 0x01]
+            result[8..(7 + body.length)] == body.toList()
+    }
+
+    /**
+     * We're testing that stopping a Digest Tee that has not been started fails
+     */
+    def "Testing Writer Digest Tee not started"() {
+        given:
+            ByteArrayWriter writer = new ByteArrayWriter()
+        when:
+            writer.stopDigestTee()
+        then:
+            thrown IllegalStateException
+    }
 }
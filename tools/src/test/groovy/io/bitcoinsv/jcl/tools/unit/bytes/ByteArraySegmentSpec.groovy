@@ -0,0 +1,82 @@
+package io.bitcoinsv.jcl.tools.unit.bytes
+
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayBuffer
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayConfig
+import io.bitcoinsv.jcl.tools.bytes.ByteArraySegment
+import io.bitcoinsv.jcl.tools.bytes.RefCountedByteBuffer
+import io.bitcoinsv.jcl.tools.bytes.Sha256HashIncremental
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+/**
+ * Testing class for the ByteArraySegment and its use within a ByteArrayBuffer (zero-copy path)
+ */
+class ByteArraySegmentSpec extends Specification {
+
+    /**
+     * We store some bytes in a ref-counted Buffer, and add 2 Segments of it to a ByteArrayBuffer, mixed with
+     * regular data. We check that the content is right, and that the Buffer is released once all the bytes have
+     * been extracted.
+     */
+    def "adding Segments and extracting data"() {
+        given:
+            boolean released = false
+            ByteBuffer byteBuffer = ByteBuffer.allocateDirect(10)
+            byteBuffer.put([1, 2, 3, 4, 5, 6] as byte[])
+            RefCountedByteBuffer source = new RefCountedByteBuffer(byteBuffer, { b -> released = true })
+
+            ByteArrayBuffer buffer = new ByteArrayBuffer(new ByteArrayConfig(4))
+        when:
+            buffer.addSegment(new ByteArraySegment(source.retain(), 0, 4))
+            buffer.add([9, 9] as byte[])
+            buffer.addSegment(new ByteArraySegment(source.retain(), 4, 2))
+            source.release() // The owner does not need it anymore
+            byte[] firstContent = buffer.get(6)
+            byte[] offsetContent = buffer.get(3, 3)
+            byte[] firstExtract = buffer.extract(5)
+            boolean releasedAfterFirstExtract = released
+            byte[] secondExtract = buffer.extract(3)
+        then:
+            firstContent == ([1, 2, 3, 4, 9, 9] as byte[])
+            offsetContent == ([4, 9, 9] as byte[])
+            firstExtract == ([1, 2, 3, 4, 9] as byte[])
+            !releasedAfterFirstExtract
+            secondExtract == ([9, 5, 6] as byte[])
+            buffer.size() == 0
+            released
+            source.refCnt() == 0
+    }
+
+    /**
+     * We feed a piece of the content of a ByteArrayBuffer (Segments and regular buffers mixed) into a Digest. The
+     * result must be the same as hashing those bytes after getting them, and the content must not be consumed.
+     */
+    def "digesting data without consuming it"(long offset, long length) {
+        given:
+            ByteBuffer byteBuffer = ByteBuffer.allocateDirect(10)
+            byteBuffer.put([1, 2, 3, 4, 5, 6] as byte[])
+            RefCountedByteBuffer source = new RefCountedByteBuffer(byteBuffer, { b -> })
+
+            ByteArrayBuffer buffer = new ByteArrayBuffer(new ByteArrayConfig(4))
+            buffer.addSegment(new ByteArraySegment(source.retain(), 0, 4))
+            buffer.add([7, 8, 9, 10, 11] as byte[])
+            buffer.addSegment(new ByteArraySegment(source.retain(), 4, 2))
+            source.release()
+        when:
+            Sha256HashIncremental digest = new Sha256HashIncremental()
+            buffer.digest(offset, length, digest)
+            byte[] expected = new Sha256HashIncremental().add(buffer.get(offset, (int) length)).hashTwice()
+        then:
+            digest.hashTwice() == expected
+            buffer.size() == 11
+        where:
+            offset  | length
+                0   |   11
+                0   |   4
+                2   |   5
+                5   |   6
+                10  |   1
+                3   |   0
+    }
+}
@@ -0,0 +1,102 @@
+package io.bitcoinsv.jcl.tools.unit.bytes
+
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayNIO
+import io.bitcoinsv.jcl.tools.bytes.DirectBufferPool
+import io.bitcoinsv.jcl.tools.bytes.RefCountedByteBuffer
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+/**
+ * Testing class for the DirectBufferPool
+ */
+class DirectBufferPoolSpec extends Specification {
+
+    /**
+     * We acquire and release some Buffers and check that they are reused, and that the metrics are right.
+     */
+    def "acquiring and releasing Buffers"() {
+        given:
+            DirectBufferPool pool = new DirectBufferPool(64 * 1024)
+        when:
+            ByteBuffer first = pool.acquire(10_000)
+            long outstandingAfterAcquire = pool.getOutstandingBytes()
+            pool.release(first)
+            long pooledAfterRelease = pool.getPooledBytes()
+            ByteBuffer second = pool.acquire(9_000)
+        then:
+            first.isDirect()
+            first.capacity() == 16 * 1024
+            outstandingAfterAcquire == 16 * 1024
+            pooledAfterRelease == 16 * 1024
+            second.is(first)
+            second.position() == 0
+            second.limit() == 9_000
+            pool.getNumHits() == 1
+            pool.getNumMisses() == 1
+            pool.getOutstandingBytes() == 16 * 1024
+            pool.getPooledBytes() == 0
+    }
+
+    /**
+     * We check that Buffers bigger than the biggest size class are not pooled, and that the Pool never keeps more
+     * bytes than its limit.
+     */
+    def "Buffers not pooled"() {
+        given:
+            DirectBufferPool pool = new DirectBufferPool(32 * 1024)
+        when:
+            ByteBuffer huge = pool.acquire(DirectBufferPool.MAX_CLASS_SIZE + 1)
+            pool.release(huge)
+            List<ByteBuffer> buffers = (1..3).collect { pool.acquire(16 * 1024) }
+            buffers.each { pool.release(it) }
+        then:
+            huge.capacity() == DirectBufferPool.MAX_CLASS_SIZE + 1
+            pool.getNumDiscarded() == 2
+            pool.getPooledBytes() == 32 * 1024
+            pool.getOutstandingBytes() == 0
+    }
+
+    /**
+     * We check that a ByteArrayNIO returns its Buffer to the Pool when cleared
+     */
+    def "ByteArrayNIO releasing its Buffer"() {
+        given:
+            DirectBufferPool pool = new DirectBufferPool(64 * 1024)
+            ByteArrayNIO byteArray = new ByteArrayNIO(100, pool)
+        when:
+            byteArray.add([1, 2, 3] as byte[])
+            byte[] content = byteArray.extract(3)
+            byteArray.clear()
+            byteArray.clear() // It's safe to clear it twice
+        then:
+            content == ([1, 2, 3] as byte[])
+            byteArray.capacity() == 100
+            pool.getOutstandingBytes() == 0
+            pool.getPooledBytes() == DirectBufferPool.MIN_CLASS_SIZE
+    }
+
+    /**
+     * We check that a ByteArrayNIO hands its Buffer over when detached, and it goes back to the Pool once released
+     */
+    def "ByteArrayNIO detaching its Buffer"() {
+        given:
+            DirectBufferPool pool = new DirectBufferPool(64 * 1024)
+            ByteArrayNIO byteArray = new ByteArrayNIO(100, pool)
+        when:
+            byteArray.add([1, 2, 3] as byte[])
+            RefCountedByteBuffer detached = byteArray.detach()
+            byte[] content = new byte[3]
+            detached.slice(0, 3).get(content)
+            byteArray.clear() // Nothing to release now
+            long pooledBeforeRelease = pool.getPooledBytes()
+            detached.release()
+        then:
+            content == ([1, 2, 3] as byte[])
+            detached.getBuffer().limit() == 3
+            byteArray.isEmpty()
+            pooledBeforeRelease == 0
+            pool.getOutstandingBytes() == 0
+            pool.getPooledBytes() == DirectBufferPool.MIN_CLASS_SIZE
+    }
+}
@@ -6,6 +6,8 @@ import io.bitcoinsv.jcl.tools.events.EventStreamer
 import io.bitcoinsv.jcl.tools.thread.ThreadUtils
 import spock.lang.Specification
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.function.Consumer
 
@@ -78,4 +80,24 @@ class EventStreamerSpec extends Specification {
             anyConsumer1Called.get()
             anyConsumer2Called.get()
     }
+
+    /**
+     * We test that the callback given when publishing an Event is triggered only after ALL the Handlers subscribed to
+     * that Event have been executed
+     */
+    def "testing callback after all Handlers"() {
+        given:
+            EventBus eventBus = EventBus.builder().executor(ThreadUtils.getCachedThreadExecutorService("testing")).build()
+            List<String> calls = Collections.synchronizedList(new ArrayList<>())
+            eventBus.subscribe(TestEvent.class, {e -> Thread.sleep(200); calls.add("handler1")})
+            eventBus.subscribe(TestEvent.class, {e -> calls.add("handler2")})
+            CountDownLatch latch = new CountDownLatch(1)
+        when:
+            eventBus.publish(new TestEvent("1"), {calls.add("callback"); latch.countDown()})
+            boolean dispatched = latch.await(5, TimeUnit.SECONDS)
+        then:
+            dispatched
+            calls.size() == 3
+            calls.get(2) == "callback"
+    }
 }
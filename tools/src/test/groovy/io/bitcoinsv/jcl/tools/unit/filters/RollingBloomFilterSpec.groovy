@@ -0,0 +1,61 @@
+package io.bitcoinsv.jcl.tools.unit.filters
+
+import io.bitcoinsv.jcl.tools.filters.RollingBloomFilter
+import spock.lang.Specification
+
+/**
+ * Testing class for the RollingBloomFilter
+ */
+class RollingBloomFilterSpec extends Specification {
+
+    // It returns a random 32-bytes Hash:
+    private static byte[] randomHash(Random random) {
+        byte[] result = new byte[32]
+        random.nextBytes(result)
+        return result
+    }
+
+    /**
+     * We add many more elements than the Filter remembers, and we check that the last ones are always found, and
+     * that the false positive rate is close to the one configured.
+     */
+    def "testing last elements remembered and false positive rate"() {
+        given:
+            int numElements = 10_000
+            RollingBloomFilter filter = new RollingBloomFilter(numElements, 0.001)
+            Random random = new Random(1)
+            List<byte[]> hashesAdded = new ArrayList<>()
+        when:
+            (numElements * 5).times {
+                byte[] hash = randomHash(random)
+                filter.add(hash)
+                hashesAdded.add(hash)
+            }
+            int numLastNotFound = hashesAdded.subList(hashesAdded.size() - numElements, hashesAdded.size())
+                    .count { !filter.mightContain(it) }
+            int numFalsePositives = (0..<100_000).count { filter.mightContain(randomHash(random)) }
+        then:
+            numLastNotFound == 0
+            numFalsePositives < 100_000 * 0.002
+    }
+
+    def "testing elements checked within an array"() {
+        given:
+            RollingBloomFilter filter = new RollingBloomFilter(100, 0.000001)
+            byte[] records = new byte[72]
+            new Random(2).nextBytes(records)
+        when:
+            boolean firstAdded = filter.addIfAbsent(records, 4, 32)
+            boolean firstAddedAgain = filter.addIfAbsent(records, 4, 32)
+            boolean firstFound = filter.mightContain(Arrays.copyOfRange(records, 4, 36))
+            boolean secondFound = filter.mightContain(records, 40, 32)
+            filter.reset()
+            boolean firstFoundAfterReset = filter.mightContain(records, 4, 32)
+        then:
+            !firstAdded
+            firstAddedAgain
+            firstFound
+            !secondFound
+            !firstFoundAfterReset
+    }
+}
@@ -0,0 +1,35 @@
+package io.bitcoinsv.jcl.tools.unit.serialization
+
+import io.bitcoinsv.bitcoinjsv.core.Utils
+import io.bitcoinsv.jcl.tools.bytes.ByteArrayReader
+import io.bitcoinsv.jcl.tools.serialization.TransactionSerializerUtils
+import io.bitcoinsv.jcl.tools.serialization.TxLengthScanner
+import spock.lang.Specification
+
+/**
+ * Testing class for the TxLengthScanner
+ */
+class TxLengthScannerSpec extends Specification {
+
+    // A Tx with 1 Input and 1 Output:
+    private static final String TX_HEX = "0500000001bad09aa61d4fff3bba3fb8537dedd6db898996303ac2107060e430c16bb2208f010000000c6a0a00000000000000000000050000000105000000000000000c6a0a0000000000000000000005000000"
+
+    /**
+     * We feed the bytes of the Tx one by one, resuming the same scan each time, and we check that the length is
+     * only returned once the whole Tx is there, and that it's the same as the one returned by a scan from scratch.
+     */
+    def "testing scan resumed as the bytes of the Tx arrive"() {
+        given:
+            byte[] txBytes = Utils.HEX.decode(TX_HEX)
+            TxLengthScanner scanner = new TxLengthScanner()
+            List<Long> lengths = new ArrayList<>()
+        when:
+            for (int numBytes = 0; numBytes <= txBytes.length; numBytes++) {
+                lengths.add(scanner.scan(new ByteArrayReader(Arrays.copyOf(txBytes, numBytes))))
+            }
+        then:
+            lengths.subList(0, txBytes.length).every { it == -1 }
+            lengths.last() == txBytes.length
+            TransactionSerializerUtils.getNextTxLength(new ByteArrayReader(txBytes)) == txBytes.length
+    }
+}
@@ -0,0 +1,71 @@
+package io.bitcoinsv.jcl.tools.unit.thread
+
+import io.bitcoinsv.jcl.tools.thread.StripedExecutor
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Testing class for the StripedExecutor
+ */
+class StripedExecutorSpec extends Specification {
+
+    /**
+     * We submit tasks for several keys, and check that each key always goes to the same Lane, and that the tasks
+     * for the same key are executed in the same order they were submitted.
+     */
+    def "tasks executed in order for each key"() {
+        given:
+            StripedExecutor executor = new StripedExecutor("test", 4)
+            int numKeys = 10
+            int numTasksPerKey = 200
+            Map<String, List<Integer>> results = new HashMap<>()
+            (0..<numKeys).each { results.put("key" + it, new CopyOnWriteArrayList<>()) }
+            CountDownLatch latch = new CountDownLatch(numKeys * numTasksPerKey)
+        when:
+            (0..<numTasksPerKey).each { i ->
+                results.keySet().each { key ->
+                    executor.getLane(key).submit({ results.get(key).add(i); latch.countDown() } as Runnable)
+                }
+            }
+            boolean finished = latch.await(5, TimeUnit.SECONDS)
+            executor.shutdown()
+        then:
+            finished
+            results.values().every { it == (0..<numTasksPerKey).toList() }
+            results.keySet().every { executor.getLane(it).is(executor.getLane(it)) }
+            results.keySet().every { executor.getLaneIndex(it) >= 0 && executor.getLaneIndex(it) < 4 }
+            executor.getNumLanes() == 4
+            executor.getNumTasksCompleted() == numKeys * numTasksPerKey
+            executor.getMaxQueueDepth() == 0
+    }
+
+    /**
+     * We block one Lane and check that the tasks waiting in it are reported in the queue depth metrics, while the
+     * other Lanes keep running.
+     */
+    def "queue depth of a blocked Lane"() {
+        given:
+            StripedExecutor executor = new StripedExecutor("test", 2)
+            String blockedKey = "blocked"
+            int blockedLane = executor.getLaneIndex(blockedKey)
+            String otherKey = (0..100).collect { "other" + it }.find { executor.getLaneIndex(it) != blockedLane }
+            CountDownLatch release = new CountDownLatch(1)
+            CountDownLatch otherDone = new CountDownLatch(1)
+        when:
+            executor.getLane(blockedKey).submit({ release.await() } as Runnable)
+            3.times { executor.getLane(blockedKey).submit({} as Runnable) }
+            executor.getLane(otherKey).submit({ otherDone.countDown() } as Runnable)
+            boolean otherFinished = otherDone.await(5, TimeUnit.SECONDS)
+            Thread.sleep(100)
+            int[] depths = executor.getQueueDepths()
+            release.countDown()
+            executor.shutdown()
+        then:
+            otherFinished
+            depths[blockedLane] == 3
+            depths[1 - blockedLane] == 0
+    }
+}
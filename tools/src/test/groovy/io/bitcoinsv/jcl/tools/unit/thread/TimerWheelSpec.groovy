@@ -0,0 +1,67 @@
+package io.bitcoinsv.jcl.tools.unit.thread
+
+import io.bitcoinsv.jcl.tools.thread.TimerWheel
+import io.bitcoinsv.jcl.tools.thread.TokenBucket
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Testing class for the TimerWheel and the TokenBucket
+ */
+class TimerWheelSpec extends Specification {
+
+    /**
+     * We schedule some tasks, cancel some of them, and check that only the rest are executed, and not before
+     * their delay.
+     */
+    def "timeouts executed and cancelled"() {
+        given:
+            TimerWheel wheel = new TimerWheel("test", 10, TimeUnit.MILLISECONDS, 8)
+            CountDownLatch latch = new CountDownLatch(2)
+            AtomicInteger numCancelledExecuted = new AtomicInteger()
+            long startTime = System.currentTimeMillis()
+            List<Long> executionTimes = Collections.synchronizedList(new ArrayList<>())
+        when:
+            // The second delay is longer than a whole round of the Wheel:
+            TimerWheel.Timeout first = wheel.schedule({ executionTimes.add(System.currentTimeMillis() - startTime); latch.countDown() }, 50, TimeUnit.MILLISECONDS)
+            TimerWheel.Timeout second = wheel.schedule({ executionTimes.add(System.currentTimeMillis() - startTime); latch.countDown() }, 200, TimeUnit.MILLISECONDS)
+            TimerWheel.Timeout cancelled = wheel.schedule({ numCancelledExecuted.incrementAndGet() }, 100, TimeUnit.MILLISECONDS)
+            boolean cancelResult = cancelled.cancel()
+            boolean finished = latch.await(2, TimeUnit.SECONDS)
+            Thread.sleep(100)
+            wheel.stop()
+        then:
+            finished
+            cancelResult
+            first.isExpired()
+            second.isExpired()
+            !first.cancel()
+            cancelled.isCancelled()
+            numCancelledExecuted.get() == 0
+            executionTimes.size() == 2
+            executionTimes[0] >= 50
+            executionTimes[1] >= 200
+            wheel.getNumPendingTimeouts() == 0
+    }
+
+    /**
+     * We check that the TokenBucket allows a burst up to its capacity, and then it limits the rate
+     */
+    def "token bucket rate"() {
+        given:
+            TokenBucket bucket = new TokenBucket(20, 5)
+        when:
+            int numBurst = 0
+            while (bucket.tryAcquire()) numBurst++
+            long startTime = System.currentTimeMillis()
+            4.times { bucket.acquire() }
+            long duration = System.currentTimeMillis() - startTime
+        then:
+            numBurst == 5
+            duration >= 150 // 4 tokens at 20 tokens/sec = 200 millisecs (approx)
+            duration < 1000
+    }
+}